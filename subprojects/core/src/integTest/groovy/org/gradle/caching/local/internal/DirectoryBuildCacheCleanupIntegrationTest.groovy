@@ -58,7 +58,7 @@ class DirectoryBuildCacheCleanupIntegrationTest extends AbstractIntegrationSpec
             
             task assertBuildCacheOverTarget {
                 doLast {
-                    def cacheSize = file("${cacheDir.toURI()}").listFiles().collect { it.length() }.sum()
+                    def cacheSize = fileTree("${cacheDir.toURI()}").files.collect { it.length() }.sum()
                     long cacheSizeInMB = cacheSize / 1024 / 1024
                     assert cacheSizeInMB >= ${MAX_CACHE_SIZE}
                 }
@@ -104,6 +104,8 @@ class DirectoryBuildCacheCleanupIntegrationTest extends AbstractIntegrationSpec
             // the next now-1 days, etc.
             cacheEntry.lastModified = timeNow - TimeUnit.DAYS.toMillis(index)
         }
+        // Rebuild the index from the modification times
+        resetBuildCacheIndex()
         and:
         withBuildCache().succeeds("cacheable")
         then:
@@ -135,15 +137,17 @@ class DirectoryBuildCacheCleanupIntegrationTest extends AbstractIntegrationSpec
         originalList.each { cacheEntry ->
             cacheEntry.lastModified = oldTime
         }
+        // Rebuild the index from the modification times
+        resetBuildCacheIndex()
         and:
         withBuildCache().succeeds("cacheable", "-Prun=2")
         withBuildCache().succeeds("cacheable", "-Prun=4")
         withBuildCache().succeeds("cacheable", "-Prun=6")
         then:
-        def recentlyUsed = originalList.findAll {
-            it.lastModified() > oldTime
+        // Loading from the cache does not modify the entries
+        originalList.every {
+            it.lastModified() == oldTime
         }
-        recentlyUsed.size() == 3
 
         when:
         cleanupBuildCacheNow()
@@ -153,7 +157,14 @@ class DirectoryBuildCacheCleanupIntegrationTest extends AbstractIntegrationSpec
         then:
         def newList = listCacheFiles()
         newList.size() == MAX_CACHE_SIZE-1
-        newList.containsAll(recentlyUsed)
+
+        when:
+        withBuildCache().succeeds("cacheable", "-Prun=2")
+        withBuildCache().succeeds("cacheable", "-Prun=4")
+        withBuildCache().succeeds("cacheable", "-Prun=6")
+        then:
+        // The recently used entries were kept
+        listCacheFiles() == newList
     }
 
     def "does not cleanup on every build"() {
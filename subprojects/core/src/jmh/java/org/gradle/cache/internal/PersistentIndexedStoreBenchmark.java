@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.logstructured.LogStructuredPersistentIndexedCache;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the B-tree and the log-structured indexed stores, with about as many entries as the task history of a large build holds,
+ * and with values about the size of a task history entry.
+ */
+@State(Scope.Benchmark)
+public class PersistentIndexedStoreBenchmark {
+    private static final Serializer<String> KEY_SERIALIZER = BaseSerializerFactory.STRING_SERIALIZER;
+    private static final Serializer<byte[]> VALUE_SERIALIZER = BaseSerializerFactory.BYTE_ARRAY_SERIALIZER;
+
+    @Param({"btree", "log"})
+    String storeType;
+
+    @Param({"10000", "100000"})
+    int entries;
+
+    @Param({"512", "8192"})
+    int valueSize;
+
+    File tempDir;
+    File cacheFile;
+    PersistentIndexedStore<String, byte[]> store;
+    byte[] value;
+    Random random;
+
+    @Setup
+    public void setup() {
+        tempDir = Files.createTempDir();
+        cacheFile = new File(tempDir, "cache." + storeType);
+        random = new Random(1234L);
+        value = new byte[valueSize];
+        random.nextBytes(value);
+        store = open();
+        for (int i = 0; i < entries; i++) {
+            store.put(key(i), value);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Benchmark
+    public byte[] get() {
+        return store.get(key(random.nextInt(entries)));
+    }
+
+    @Benchmark
+    public void put() {
+        store.put(key(random.nextInt(entries)), value);
+    }
+
+    @Benchmark
+    public PersistentIndexedStore<String, byte[]> reopen() {
+        store.close();
+        store = open();
+        return store;
+    }
+
+    private PersistentIndexedStore<String, byte[]> open() {
+        if (storeType.equals("log")) {
+            return new LogStructuredPersistentIndexedCache<String, byte[]>(cacheFile, KEY_SERIALIZER, VALUE_SERIALIZER);
+        }
+        return new BTreePersistentIndexedCache<String, byte[]>(cacheFile, KEY_SERIALIZER, VALUE_SERIALIZER);
+    }
+
+    private static String key(int index) {
+        return ":project" + index % 100 + ":task" + index;
+    }
+}
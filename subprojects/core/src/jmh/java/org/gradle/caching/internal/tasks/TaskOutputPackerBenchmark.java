@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginMetadata;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.id.UniqueId;
+import org.gradle.internal.nativeintegration.services.FileSystems;
+import org.gradle.internal.nativeintegration.services.NativeServices;
+import org.gradle.internal.nativeplatform.filesystem.FileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.gradle.api.internal.tasks.CacheableTaskOutputFilePropertySpec.OutputType.DIRECTORY;
+
+/**
+ * Compares packing and unpacking task outputs with the tar+gzip packer and the parallel packer,
+ * on a wide tree of many small files and on a deep tree containing some large files.
+ */
+@State(Scope.Benchmark)
+public class TaskOutputPackerBenchmark {
+    private static final TaskOutputOriginWriter WRITE_ORIGIN = new TaskOutputOriginWriter() {
+        @Override
+        public void execute(OutputStream outputStream) {
+        }
+    };
+    private static final TaskOutputOriginMetadata ORIGIN = new TaskOutputOriginMetadata(UniqueId.generate());
+    private static final TaskOutputOriginReader READ_ORIGIN = new TaskOutputOriginReader() {
+        @Override
+        public TaskOutputOriginMetadata execute(InputStream inputStream) {
+            return ORIGIN;
+        }
+    };
+
+    @Param({"tar.gz", "parallel"})
+    String packerType;
+
+    @Param({"wide", "deep"})
+    String treeShape;
+
+    File tempDir;
+    DefaultExecutorFactory executorFactory;
+    TaskOutputPacker packer;
+    SortedSet<ResolvedTaskOutputFilePropertySpec> sourceSpecs;
+    SortedSet<ResolvedTaskOutputFilePropertySpec> targetSpecs;
+    byte[] packed;
+
+    @Setup
+    public void setup() throws IOException {
+        tempDir = Files.createTempDir();
+        NativeServices.initialize(new File(tempDir, "native"));
+        FileSystem fileSystem = FileSystems.getDefault();
+        executorFactory = new DefaultExecutorFactory();
+        TaskOutputPacker tarPacker = new GZipTaskOutputPacker(new TarTaskOutputPacker(fileSystem));
+        if (packerType.equals("parallel")) {
+            packer = new ParallelTaskOutputPacker(fileSystem, executorFactory, Runtime.getRuntime().availableProcessors(), tarPacker);
+        } else {
+            packer = tarPacker;
+        }
+
+        File sourceDir = new File(tempDir, "source");
+        Random random = new Random(1234L);
+        if (treeShape.equals("wide")) {
+            for (int i = 0; i < 2000; i++) {
+                writeFile(new File(sourceDir, "dir" + (i % 10) + "/file" + i + ".class"), 16 * 1024, random);
+            }
+        } else {
+            File dir = sourceDir;
+            for (int depth = 0; depth < 20; depth++) {
+                dir = new File(dir, "level" + depth);
+                for (int i = 0; i < 5; i++) {
+                    writeFile(new File(dir, "file" + i + ".txt"), 4 * 1024, random);
+                }
+                if (depth % 5 == 0) {
+                    writeFile(new File(dir, "large.jar"), 8 * 1024 * 1024, random);
+                }
+            }
+        }
+
+        sourceSpecs = new TreeSet<ResolvedTaskOutputFilePropertySpec>();
+        sourceSpecs.add(new ResolvedTaskOutputFilePropertySpec("output", DIRECTORY, sourceDir));
+        targetSpecs = new TreeSet<ResolvedTaskOutputFilePropertySpec>();
+        targetSpecs.add(new ResolvedTaskOutputFilePropertySpec("output", DIRECTORY, new File(tempDir, "target")));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        packer.pack(sourceSpecs, output, WRITE_ORIGIN);
+        packed = output.toByteArray();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (packer instanceof ParallelTaskOutputPacker) {
+            ((ParallelTaskOutputPacker) packer).stop();
+        }
+        executorFactory.stop();
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Benchmark
+    public void pack() {
+        packer.pack(sourceSpecs, NullOutputStream.NULL_OUTPUT_STREAM, WRITE_ORIGIN);
+    }
+
+    @Benchmark
+    public void unpack() {
+        packer.unpack(targetSpecs, new ByteArrayInputStream(packed), READ_ORIGIN);
+    }
+
+    private static void writeFile(File file, int size, Random random) throws IOException {
+        // Mix of random and repeated bytes, so that the contents compress roughly like class files do
+        byte[] contents = new byte[size];
+        for (int i = 0; i < size; i += 64) {
+            if (random.nextBoolean()) {
+                byte[] chunk = new byte[Math.min(64, size - i)];
+                random.nextBytes(chunk);
+                System.arraycopy(chunk, 0, contents, i, chunk.length);
+            }
+        }
+        Files.createParentDirs(file);
+        Files.write(contents, file);
+    }
+}
@@ -25,6 +25,7 @@ import org.gradle.internal.event.ListenerManager;
 import java.lang.ref.SoftReference;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -35,13 +36,20 @@ import java.util.Set;
  * Note that this implementation currently retains strong references to keys and values during the whole lifetime of a build session.
  *
  * Uses a simple algorithm to collect unused values, by retaining strong references to all keys and values used during the current build session, and the previous build session. All other values are referenced only by soft references.
+ * The entries whose values have been collected are discarded at the end of each build session.
  */
 @ThreadSafe
 public class CrossBuildInMemoryCacheFactory {
     private final ListenerManager listenerManager;
+    private final InMemoryCacheStatistics cacheStatistics;
 
     public CrossBuildInMemoryCacheFactory(ListenerManager listenerManager) {
+        this(listenerManager, new InMemoryCacheStatistics());
+    }
+
+    public CrossBuildInMemoryCacheFactory(ListenerManager listenerManager, InMemoryCacheStatistics cacheStatistics) {
         this.listenerManager = listenerManager;
+        this.cacheStatistics = cacheStatistics;
     }
 
     /**
@@ -50,18 +58,45 @@ public class CrossBuildInMemoryCacheFactory {
      * Note: this should be used to create _only_ global scoped instances.
      */
     public <K, V> CrossBuildInMemoryCache<K, V> newCache() {
-        DefaultCrossBuildInMemoryCache<K, V> cache = new DefaultCrossBuildInMemoryCache<K, V>();
+        return newCache("cross-build cache entries");
+    }
+
+    /**
+     * Creates a new cache instance, whose entries are reported under the given display name.
+     *
+     * Note: this should be used to create _only_ global scoped instances.
+     */
+    public <K, V> CrossBuildInMemoryCache<K, V> newCache(String displayName) {
+        DefaultCrossBuildInMemoryCache<K, V> cache = new DefaultCrossBuildInMemoryCache<K, V>(displayName);
         listenerManager.addListener(cache);
+        cacheStatistics.register(cache);
         return cache;
     }
 
-    private static class DefaultCrossBuildInMemoryCache<K, V> implements CrossBuildInMemoryCache<K, V>, SessionLifecycleListener {
+    private static class DefaultCrossBuildInMemoryCache<K, V> implements CrossBuildInMemoryCache<K, V>, SessionLifecycleListener, InMemoryCacheStatistics.ReportedCache {
+        private final String displayName;
         private final Object lock = new Object();
         private final Map<K, V> valuesForThisSession = new HashMap<K, V>();
         // This is used only to retain strong references to the values
         private final Set<V> valuesForPreviousSession = new HashSet<V>();
         private final Map<K, SoftReference<V>> allValues = new HashMap<K, SoftReference<V>>();
 
+        DefaultCrossBuildInMemoryCache(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        @Override
+        public int size() {
+            synchronized (lock) {
+                return allValues.size();
+            }
+        }
+
         @Override
         public void afterStart() {
         }
@@ -73,6 +108,14 @@ public class CrossBuildInMemoryCacheFactory {
                 valuesForPreviousSession.clear();
                 valuesForPreviousSession.addAll(valuesForThisSession.values());
                 valuesForThisSession.clear();
+
+                // Discard the keys of the values that have been collected, as the keys may themselves retain a lot, such as class loaders
+                Iterator<SoftReference<V>> iterator = allValues.values().iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().get() == null) {
+                        iterator.remove();
+                    }
+                }
             }
         }
 
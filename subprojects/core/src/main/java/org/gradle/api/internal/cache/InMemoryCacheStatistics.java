@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.cache;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps track of the in-memory caches that live across builds, so that the number of entries each of them retains can be reported, for example
+ * by the daemon status report.
+ *
+ * Note that this should only be used as a global scoped service.
+ */
+@ThreadSafe
+public class InMemoryCacheStatistics {
+    private final List<ReportedCache> caches = new CopyOnWriteArrayList<ReportedCache>();
+
+    public void register(ReportedCache cache) {
+        caches.add(cache);
+    }
+
+    public void unregister(ReportedCache cache) {
+        caches.remove(cache);
+    }
+
+    /**
+     * Returns the number of entries retained by the registered caches, by display name. The entries of caches with the same display name are added up.
+     */
+    public Map<String, Integer> getEntryCounts() {
+        Map<String, Integer> entryCounts = new LinkedHashMap<String, Integer>();
+        for (ReportedCache cache : caches) {
+            Integer entryCount = entryCounts.get(cache.getDisplayName());
+            entryCounts.put(cache.getDisplayName(), (entryCount == null ? 0 : entryCount) + cache.size());
+        }
+        return entryCounts;
+    }
+
+    public interface ReportedCache {
+        String getDisplayName();
+
+        int size();
+    }
+}
@@ -19,6 +19,7 @@ import com.google.common.hash.HashCode;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
+import org.gradle.api.Nullable;
 import org.gradle.api.internal.tasks.compile.ApiClassExtractor;
 import org.gradle.caching.internal.BuildCacheHasher;
 import org.gradle.internal.IoActions;
@@ -34,8 +35,15 @@ import java.util.zip.ZipEntry;
 
 public class AbiExtractingClasspathResourceHasher implements ResourceHasher {
     private HashCode hashClassBytes(InputStream inputStream) throws IOException {
+        return hashClassBytes(ByteStreams.toByteArray(inputStream));
+    }
+
+    /**
+     * Returns the hash of the ABI of the given class, or null when the class is not part of the ABI, for example when it is a private inner class.
+     */
+    @Nullable
+    public HashCode hashClassBytes(byte[] classBytes) {
         // Use the ABI as the hash
-        byte[] classBytes = ByteStreams.toByteArray(inputStream);
         ApiClassExtractor extractor = new ApiClassExtractor(Collections.<String>emptySet());
         Java9ClassReader reader = new Java9ClassReader(classBytes);
         if (extractor.shouldExtractApiClassFrom(reader)) {
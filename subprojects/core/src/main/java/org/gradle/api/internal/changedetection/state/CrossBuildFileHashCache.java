@@ -16,24 +16,37 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.hash.HashCode;
 import org.gradle.api.Nullable;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.FileLockManager;
+import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.serialize.Serializer;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class CrossBuildFileHashCache implements Closeable, TaskHistoryStore {
     private final PersistentCache cache;
+    // 256KB to start with, growing up to 128MB
+    private static final int FILE_HASH_STORE_INITIAL_CAPACITY = 1 << 12;
+    private static final int FILE_HASH_STORE_MAX_CAPACITY = 1 << 21;
+    private static final int MAX_FILE_HASH_STORES = 8;
+    private static final Logger LOGGER = Logging.getLogger(CrossBuildFileHashCache.class);
+
     private final InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory;
+    private final List<MappedFileHashStore> fileHashStores = new CopyOnWriteArrayList<MappedFileHashStore>();
 
     public CrossBuildFileHashCache(@Nullable File cacheDir, CacheRepository repository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
         this.inMemoryCacheDecoratorFactory = inMemoryCacheDecoratorFactory;
@@ -47,12 +60,46 @@ public class CrossBuildFileHashCache implements Closeable, TaskHistoryStore {
     @Override
     public <K, V> PersistentIndexedCache<K, V> createCache(String cacheName, Class<K> keyType, Serializer<V> valueSerializer, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
         PersistentIndexedCacheParameters<K, V> parameters = new PersistentIndexedCacheParameters<K, V>(cacheName, keyType, valueSerializer)
+                .storeType(PersistentIndexedCacheParameters.StoreType.fromSystemProperty())
                 .cacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses));
         return cache.createCache(parameters);
     }
 
+    /**
+     * Creates a store for file hashes, kept off the heap in a memory-mapped file in this cache's directory. The file starts small and grows with the
+     * number of files whose hashes are stored.
+     *
+     * <p>A store file is written by one process at a time. When the store file is in use by another process, the next of a few alternative files is
+     * used instead. When all of these are in use, hashes are not stored.</p>
+     */
+    public FileHashStore createFileHashStore(String storeName) {
+        for (int i = 0; i < MAX_FILE_HASH_STORES; i++) {
+            String fileName = i == 0 ? storeName + ".map" : storeName + "-" + i + ".map";
+            MappedFileHashStore store = MappedFileHashStore.tryOpen(new File(cache.getBaseDir(), fileName), FILE_HASH_STORE_INITIAL_CAPACITY, FILE_HASH_STORE_MAX_CAPACITY);
+            if (store != null) {
+                fileHashStores.add(store);
+                return store;
+            }
+        }
+        LOGGER.info("All {} stores of {} are in use, file hashes will not be stored.", storeName, cache);
+        return new FileHashStore() {
+            @Override
+            public HashCode get(String absolutePath, long length, long timestamp) {
+                return null;
+            }
+
+            @Override
+            public void put(String absolutePath, long length, long timestamp, HashCode hash) {
+            }
+
+            @Override
+            public void remove(String absolutePath) {
+            }
+        };
+    }
+
     @Override
     public void close() throws IOException {
-        cache.close();
+        CompositeStoppable.stoppable(fileHashStores).add(cache).stop();
     }
 }
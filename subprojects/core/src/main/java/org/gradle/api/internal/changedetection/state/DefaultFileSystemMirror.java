@@ -16,34 +16,104 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.collect.Sets;
+import org.gradle.api.Action;
+import org.gradle.api.JavaVersion;
 import org.gradle.api.Nullable;
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener;
 import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.internal.classpath.CachedJarFileStore;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.file.DefaultFileHierarchySet;
 import org.gradle.internal.file.FileHierarchySet;
+import org.gradle.internal.filewatch.FileWatcher;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.FileWatcherListener;
+import org.gradle.internal.os.OperatingSystem;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * See {@link DefaultFileSystemSnapshotter} for some more details
+ *
+ * <p>By default, all state is thrown away at the end of each build. When {@value #RETAIN_STATE_PROPERTY} is set, the state for files outside the
+ * append-only caches is kept between builds instead. The directories containing those files are watched, and each change reported by the watcher
+ * discards the state for the changed path, its descendants and its ancestors. State for a path is only kept once its directory is being watched,
+ * so that changes made before the watch was registered cannot be missed.</p>
+ *
+ * <p>The watcher reports changes asynchronously, so the changes made between two builds may not have been reported when the next build starts.
+ * At the start of a build, a sentinel file is created in a watched directory of its own, and the retained state is only used once the change to
+ * the sentinel file has been reported, as the changes made before it have been reported by then. A watch service that polls, as on macOS, polls
+ * each directory separately, so in that case the build also waits for one polling interval. When the sentinel change is not reported in time,
+ * the retained state is discarded. State is not retained on macOS with Java 9 and later, where the polling interval cannot be shortened.</p>
  */
-public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGenerationListener, RootBuildLifecycleListener {
+public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGenerationListener, RootBuildLifecycleListener, Stoppable {
+    /**
+     * System property that enables keeping file system state in the daemon between builds.
+     */
+    public static final String RETAIN_STATE_PROPERTY = "org.gradle.vfs.retain";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultFileSystemMirror.class);
+    private static final long SENTINEL_TIMEOUT_MILLIS = 5000;
+    // The polling interval of the watch service on macOS, with the sensitivity used by WatchServiceRegistrar
+    private static final long POLL_INTERVAL_MILLIS = OperatingSystem.current().isMacOsX() ? 2000 : 0;
+    // The sensitivity cannot be set on Java 9 and later, where the watch service on macOS polls every 10 seconds
+    private static final boolean RETAINING_SUPPORTED = !(OperatingSystem.current().isMacOsX() && JavaVersion.current().isJava9Compatible());
+
     // Maps from interned absolute path for a file to known details for the file.
-    private final Map<String, FileSnapshot> files = new ConcurrentHashMap<String, FileSnapshot>();
+    // While state is retained, the state outside the caches is sorted by path, so that the state for a directory and everything below it can be discarded together.
+    private volatile Map<String, FileSnapshot> files = new ConcurrentHashMap<String, FileSnapshot>();
     private final Map<String, FileSnapshot> cacheFiles = new ConcurrentHashMap<String, FileSnapshot>();
     // Maps from interned absolute path for a directory to known details for the directory.
-    private final Map<String, FileTreeSnapshot> trees = new ConcurrentHashMap<String, FileTreeSnapshot>();
+    private volatile Map<String, FileTreeSnapshot> trees = new ConcurrentHashMap<String, FileTreeSnapshot>();
     private final Map<String, FileTreeSnapshot> cacheTrees = new ConcurrentHashMap<String, FileTreeSnapshot>();
     // Maps from interned absolute path to a snapshot
-    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
+    private volatile Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
     private final Map<String, Snapshot> cacheSnapshots = new ConcurrentHashMap<String, Snapshot>();
     private final FileHierarchySet cachedDirectories;
 
+    private final FileWatcherFactory fileWatcherFactory;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final long sentinelTimeoutMillis;
+    private final long pollIntervalMillis;
+    private final Object sentinelLock = new Object();
+    // The sentinel file whose change is waited for, and whether its change has been reported. Guarded by sentinelLock.
+    private String pendingSentinel;
+    private boolean sentinelReported;
+    private volatile File sentinelDirectory;
+    private int sentinelCount;
+    // Paths reported as changed during the current build
+    private final Set<String> changedPaths = Sets.newConcurrentHashSet();
+    private final AtomicBoolean unknownChange = new AtomicBoolean();
+    private final Object lock = new Object();
+    private volatile boolean retainState;
+    private FileWatcher watcher;
+    private FileHierarchySet watchedDirectories = DefaultFileHierarchySet.of();
+
     public DefaultFileSystemMirror(List<CachedJarFileStore> fileStores) {
+        this(fileStores, null, null);
+    }
+
+    public DefaultFileSystemMirror(List<CachedJarFileStore> fileStores, @Nullable FileWatcherFactory fileWatcherFactory, @Nullable TemporaryFileProvider temporaryFileProvider) {
+        this(fileStores, fileWatcherFactory, temporaryFileProvider, SENTINEL_TIMEOUT_MILLIS, POLL_INTERVAL_MILLIS);
+    }
+
+    DefaultFileSystemMirror(List<CachedJarFileStore> fileStores, @Nullable FileWatcherFactory fileWatcherFactory, @Nullable TemporaryFileProvider temporaryFileProvider, long sentinelTimeoutMillis, long pollIntervalMillis) {
         FileHierarchySet cachedDirectories = DefaultFileHierarchySet.of();
         for (CachedJarFileStore fileStore : fileStores) {
             for (File file : fileStore.getFileStoreRoots()) {
@@ -51,6 +121,10 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
             }
         }
         this.cachedDirectories = cachedDirectories;
+        this.fileWatcherFactory = fileWatcherFactory;
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.sentinelTimeoutMillis = sentinelTimeoutMillis;
+        this.pollIntervalMillis = pollIntervalMillis;
     }
 
     @Nullable
@@ -69,7 +143,7 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     public void putFile(FileSnapshot file) {
         if (cachedDirectories.contains(file.getPath())) {
             cacheFiles.put(file.getPath(), file);
-        } else {
+        } else if (isWatched(parentOf(file.getPath()))) {
             files.put(file.getPath(), file);
         }
     }
@@ -88,7 +162,7 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     public void putContent(String path, Snapshot snapshot) {
         if (cachedDirectories.contains(path)) {
             cacheSnapshots.put(path, snapshot);
-        } else {
+        } else if (isWatched(parentOf(path))) {
             snapshots.put(path, snapshot);
         }
     }
@@ -109,32 +183,263 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     public void putDirectory(FileTreeSnapshot directory) {
         if (cachedDirectories.contains(directory.getPath())) {
             cacheTrees.put(directory.getPath(), directory);
-        } else {
+        } else if (isWatched(directory.getPath())) {
             trees.put(directory.getPath(), directory);
         }
     }
 
-    @Override
-    public void beforeTaskOutputsGenerated() {
-        // When the task outputs are generated, throw away all state for files that do not live in an append-only cache.
-        // This is intentionally very simple, to be improved later
+    /**
+     * Returns whether state for something in the given directory can be kept. When state is retained between builds, this starts watching
+     * the directory if it is not watched yet. In that case the state was taken before the watch was registered and may already be out-of-date,
+     * so it is not kept.
+     */
+    private boolean isWatched(@Nullable String directory) {
+        if (!retainState) {
+            return true;
+        }
+        if (directory == null) {
+            return false;
+        }
+        synchronized (lock) {
+            if (!retainState || watchedDirectories.contains(directory)) {
+                return true;
+            }
+            try {
+                getWatcher().watch(FileSystemSubset.builder().add(new File(directory)).build());
+                watchedDirectories = watchedDirectories.plus(new File(directory));
+            } catch (IOException e) {
+                LOGGER.debug("Could not watch {} for changes, not retaining file system state between builds", directory, e);
+                stopWatching();
+            } catch (RuntimeException e) {
+                LOGGER.debug("Could not watch {} for changes, not retaining file system state between builds", directory, e);
+                stopWatching();
+            }
+            return false;
+        }
+    }
+
+    private FileWatcher getWatcher() throws IOException {
+        if (watcher == null) {
+            watcher = fileWatcherFactory.watch(new Action<Throwable>() {
+                @Override
+                public void execute(Throwable throwable) {
+                    LOGGER.debug("Problem watching for file changes, not retaining file system state between builds", throwable);
+                    synchronized (lock) {
+                        stopWatching();
+                    }
+                }
+            }, new FileWatcherListener() {
+                @Override
+                public void onChange(FileWatcher watcher, FileWatcherEvent event) {
+                    if (event.getType() == FileWatcherEvent.Type.UNDEFINED || event.getFile() == null) {
+                        unknownChange.set(true);
+                        invalidateAll();
+                    } else {
+                        String path = event.getFile().getAbsolutePath();
+                        if (sentinelReported(path)) {
+                            return;
+                        }
+                        changedPaths.add(path);
+                        invalidate(path);
+                    }
+                }
+            });
+            sentinelDirectory = temporaryFileProvider.createTemporaryDirectory("vfs", "sentinel");
+            watcher.watch(FileSystemSubset.builder().add(sentinelDirectory).build());
+        }
+        return watcher;
+    }
+
+    private boolean sentinelReported(String path) {
+        File directory = sentinelDirectory;
+        if (directory == null || !path.startsWith(directory.getAbsolutePath() + File.separatorChar)) {
+            return false;
+        }
+        synchronized (sentinelLock) {
+            if (path.equals(pendingSentinel)) {
+                sentinelReported = true;
+                sentinelLock.notifyAll();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the watcher to report the changes made before this method was called. Returns false when this could not be done.
+     */
+    private boolean awaitReportedChanges(File sentinelDirectory) {
+        File sentinel = new File(sentinelDirectory, "sentinel-" + (++sentinelCount));
+        synchronized (sentinelLock) {
+            pendingSentinel = sentinel.getAbsolutePath();
+            sentinelReported = false;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            if (!sentinel.createNewFile()) {
+                return false;
+            }
+            synchronized (sentinelLock) {
+                long remaining = sentinelTimeoutMillis;
+                while (!sentinelReported && remaining > 0) {
+                    sentinelLock.wait(remaining);
+                    remaining = start + sentinelTimeoutMillis - System.currentTimeMillis();
+                }
+                if (!sentinelReported) {
+                    return false;
+                }
+            }
+            // Each directory is polled separately, so the changes in other directories may be reported after the sentinel
+            long remaining = start + pollIntervalMillis - System.currentTimeMillis();
+            if (remaining > 0) {
+                Thread.sleep(remaining);
+            }
+            return true;
+        } catch (IOException e) {
+            LOGGER.debug("Could not create sentinel file {}", sentinel, e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            synchronized (sentinelLock) {
+                pendingSentinel = null;
+            }
+            sentinel.delete();
+        }
+    }
+
+    private void stopWatching() {
+        retainState = false;
+        if (watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
+        watchedDirectories = DefaultFileHierarchySet.of();
+        if (sentinelDirectory != null) {
+            GFileUtils.deleteQuietly(sentinelDirectory);
+            sentinelDirectory = null;
+        }
+        invalidateAll();
+    }
+
+    private void invalidate(String path) {
+        invalidate(files, path);
+        invalidate(trees, path);
+        invalidate(snapshots, path);
+    }
+
+    private static void invalidate(Map<String, ?> state, String path) {
+        if (!(state instanceof ConcurrentNavigableMap)) {
+            // State is not retained, so a change reported after the watcher has been stopped
+            state.clear();
+            return;
+        }
+        state.remove(path);
+        ((ConcurrentNavigableMap<String, ?>) state).subMap(path + File.separatorChar, path + (char) (File.separatorChar + 1)).clear();
+        // The state for the ancestors of the path includes the path itself
+        for (String ancestor = parentOf(path); ancestor != null; ancestor = parentOf(ancestor)) {
+            state.remove(ancestor);
+        }
+    }
+
+    private void invalidateAll() {
         files.clear();
         trees.clear();
         snapshots.clear();
     }
 
+    /**
+     * Uses maps sorted by path while state is retained, and hash maps otherwise. Discards all state when the kind of map changes.
+     */
+    private void useSortedState(boolean sorted) {
+        if (files instanceof ConcurrentNavigableMap == sorted) {
+            return;
+        }
+        files = newState(sorted);
+        trees = newState(sorted);
+        snapshots = newState(sorted);
+    }
+
+    private static <T> Map<String, T> newState(boolean sorted) {
+        return sorted ? new ConcurrentSkipListMap<String, T>() : new ConcurrentHashMap<String, T>();
+    }
+
+    /**
+     * Returns the parent of the given absolute path, or null for a file system root.
+     */
+    @Nullable
+    private static String parentOf(String path) {
+        int separator = path.lastIndexOf(File.separatorChar);
+        if (separator < 0 || separator == path.length() - 1) {
+            return null;
+        }
+        if (separator == 0 || path.charAt(separator - 1) == ':') {
+            // The parent is a root, such as / or C:\
+            return path.substring(0, separator + 1);
+        }
+        return path.substring(0, separator);
+    }
+
+    @Override
+    public void beforeTaskOutputsGenerated() {
+        // The task may change any file, throw away all state for files that do not live in an append-only cache
+        invalidateAll();
+    }
+
+    @Override
+    public void beforeTaskOutputsGenerated(Iterable<File> outputs) {
+        if (!retainState) {
+            // The task may also change files that are not declared as outputs
+            invalidateAll();
+            return;
+        }
+        for (File output : outputs) {
+            invalidate(output.getAbsolutePath());
+        }
+    }
+
     @Override
     public void afterStart() {
+        boolean retain = fileWatcherFactory != null && temporaryFileProvider != null && RETAINING_SUPPORTED && Boolean.getBoolean(RETAIN_STATE_PROPERTY);
+        File sentinelDirectory;
+        synchronized (lock) {
+            if (!retain) {
+                stopWatching();
+            }
+            useSortedState(retain);
+            retainState = retain;
+            sentinelDirectory = this.sentinelDirectory;
+        }
+        if (sentinelDirectory != null && !awaitReportedChanges(sentinelDirectory)) {
+            LOGGER.debug("Changes made since the previous build may not have been reported, not using file system state retained from the previous build");
+            invalidateAll();
+        }
+        changedPaths.clear();
+        unknownChange.set(false);
     }
 
     @Override
     public void beforeComplete() {
-        // We throw away all state between builds
-        files.clear();
         cacheFiles.clear();
-        trees.clear();
         cacheTrees.clear();
-        snapshots.clear();
         cacheSnapshots.clear();
+        if (!retainState || unknownChange.getAndSet(false)) {
+            // We throw away all state between builds
+            invalidateAll();
+            changedPaths.clear();
+            return;
+        }
+        // State taken while a change was happening may have been stored after the change was reported
+        for (Iterator<String> iterator = changedPaths.iterator(); iterator.hasNext();) {
+            invalidate(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            stopWatching();
+        }
     }
 }
@@ -19,6 +19,7 @@ package org.gradle.api.internal.changedetection.state;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.hash.HashCode;
+import org.gradle.api.Nullable;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
@@ -35,11 +36,18 @@ import org.gradle.cache.internal.ProducerGuard;
 import org.gradle.caching.internal.BuildCacheHasher;
 import org.gradle.caching.internal.DefaultBuildCacheHasher;
 import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
 import org.gradle.internal.nativeintegration.filesystem.FileMetadataSnapshot;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Responsible for snapshotting various aspects of the file system.
@@ -50,7 +58,10 @@ import java.util.List;
  *
  * The implementations are currently intentionally very, very simple, and so there are a number of ways in which they can be made much more efficient. This can happen over time.
  */
-public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
+public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter, Stoppable {
+    // Below this, handing the files over to other threads costs more than it saves
+    private static final int MIN_FILES_TO_HASH_IN_PARALLEL = 16;
+
     private final FileHasher hasher;
     private final StringInterner stringInterner;
     private final FileSystem fileSystem;
@@ -60,9 +71,21 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
     private final ProducerGuard<String> producingTrees = new DefaultProducerGuard<String>();
     private final ProducerGuard<String> producingAllSnapshots = new DefaultProducerGuard<String>();
     private final DefaultGenericFileCollectionSnapshotter snapshotter;
+    private final ExecutorFactory executorFactory;
+    private final int maxHashingThreads;
+    private StoppableExecutor hashingExecutor;
 
     public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
+        this(hasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror, null, 1);
+    }
+
+    /**
+     * Creates a snapshotter that hashes the files of a directory tree using up to {@code maxHashingThreads} threads, including the calling thread.
+     */
+    public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror, @Nullable ExecutorFactory executorFactory, int maxHashingThreads) {
         this.hasher = hasher;
+        this.executorFactory = executorFactory;
+        this.maxHashingThreads = executorFactory == null ? 1 : maxHashingThreads;
         this.stringInterner = stringInterner;
         this.fileSystem = fileSystem;
         this.directoryFileTreeFactory = directoryFileTreeFactory;
@@ -133,7 +156,9 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
         // Currently cache only those trees where we want everything from a directory
         if (!dirTree.getPatterns().isEmpty()) {
             List<FileSnapshot> elements = Lists.newArrayList();
-            dirTree.visit(new FileVisitorImpl(elements));
+            FileVisitorImpl visitor = new FileVisitorImpl(elements, true);
+            dirTree.visit(visitor);
+            hashFiles(elements, visitor.deferredFiles);
             return new DirectoryTreeDetails(dirTree.getDir().getAbsolutePath(), elements);
         }
 
@@ -155,14 +180,17 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
     @Override
     public List<FileSnapshot> snapshotTree(FileTreeInternal tree) {
         List<FileSnapshot> elements = Lists.newArrayList();
-        tree.visitTreeOrBackingFile(new FileVisitorImpl(elements));
+        // The files of an arbitrary tree, such as an archive, may not be available once the tree has been visited
+        tree.visitTreeOrBackingFile(new FileVisitorImpl(elements, false));
         return elements;
     }
 
     private FileTreeSnapshot doSnapshot(DirectoryFileTree directoryTree) {
         String path = getPath(directoryTree.getDir());
         List<FileSnapshot> elements = Lists.newArrayList();
-        directoryTree.visit(new FileVisitorImpl(elements));
+        FileVisitorImpl visitor = new FileVisitorImpl(elements, true);
+        directoryTree.visit(visitor);
+        hashFiles(elements, visitor.deferredFiles);
         return new DirectoryTreeDetails(path, ImmutableList.copyOf(elements));
     }
 
@@ -193,6 +221,66 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
         return new FileHashSnapshot(hasher.hash(file, fileDetails), fileDetails.getLastModified());
     }
 
+    /**
+     * Replaces the {@code null} placeholders for the files visited in a directory tree with their snapshots, in order. The files are hashed in parallel when there are enough of them.
+     */
+    private void hashFiles(final List<FileSnapshot> elements, final List<FileVisitDetails> files) {
+        final int[] placeholders = new int[files.size()];
+        int placeholder = 0;
+        for (int i = 0; i < elements.size(); i++) {
+            if (elements.get(i) == null) {
+                placeholders[placeholder++] = i;
+            }
+        }
+        final AtomicInteger next = new AtomicInteger();
+        Runnable hashRemainingFiles = new Runnable() {
+            @Override
+            public void run() {
+                int index;
+                while ((index = next.getAndIncrement()) < files.size()) {
+                    FileVisitDetails fileDetails = files.get(index);
+                    FileSnapshot snapshot = new RegularFileSnapshot(getPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, fileSnapshot(fileDetails));
+                    // Each thread sets distinct elements, and the list is not resized
+                    elements.set(placeholders[index], snapshot);
+                }
+            }
+        };
+
+        int threads = Math.min(maxHashingThreads, files.size() / MIN_FILES_TO_HASH_IN_PARALLEL);
+        List<Future<?>> helpers = Lists.newArrayList();
+        if (threads > 1) {
+            StoppableExecutor executor = getHashingExecutor();
+            for (int i = 1; i < threads; i++) {
+                helpers.add(executor.submit(hashRemainingFiles));
+            }
+        }
+        hashRemainingFiles.run();
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            } catch (ExecutionException e) {
+                throw UncheckedException.throwAsUncheckedException(e.getCause());
+            }
+        }
+    }
+
+    private synchronized StoppableExecutor getHashingExecutor() {
+        if (hashingExecutor == null) {
+            hashingExecutor = executorFactory.create("File hasher", maxHashingThreads - 1);
+        }
+        return hashingExecutor;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (hashingExecutor != null) {
+            hashingExecutor.stop();
+            hashingExecutor = null;
+        }
+    }
+
     private static class HashBackedSnapshot implements Snapshot {
         private final HashCode hashCode;
 
@@ -208,9 +296,15 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
 
     private class FileVisitorImpl implements FileVisitor {
         private final List<FileSnapshot> fileTreeElements;
+        private final boolean deferHashing;
+        private final List<FileVisitDetails> deferredFiles = Lists.newArrayList();
 
-        FileVisitorImpl(List<FileSnapshot> fileTreeElements) {
+        /**
+         * @param deferHashing when true, a {@code null} placeholder is added for each file, to be replaced by {@link #hashFiles(List, List)} once the whole tree has been visited.
+         */
+        FileVisitorImpl(List<FileSnapshot> fileTreeElements, boolean deferHashing) {
             this.fileTreeElements = fileTreeElements;
+            this.deferHashing = deferHashing;
         }
 
         @Override
@@ -220,6 +314,11 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
 
         @Override
         public void visitFile(FileVisitDetails fileDetails) {
+            if (deferHashing) {
+                fileTreeElements.add(null);
+                deferredFiles.add(fileDetails);
+                return;
+            }
             fileTreeElements.add(new RegularFileSnapshot(getPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, fileSnapshot(fileDetails)));
         }
     }
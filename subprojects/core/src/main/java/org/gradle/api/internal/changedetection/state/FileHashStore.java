@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.hash.HashCode;
+import org.gradle.api.Nullable;
+
+/**
+ * Remembers the hash of the content of files, along with the length and timestamp of the file when it was hashed.
+ *
+ * <p>A store is allowed to forget about entries at any time.</p>
+ */
+public interface FileHashStore {
+    /**
+     * Returns the hash of the given file, when the file has been hashed with the given length and timestamp.
+     */
+    @Nullable
+    HashCode get(String absolutePath, long length, long timestamp);
+
+    void put(String absolutePath, long length, long timestamp, HashCode hash);
+
+    void remove(String absolutePath);
+}
@@ -22,6 +22,7 @@ import org.gradle.api.Transformer;
 import org.gradle.api.internal.cache.CrossBuildInMemoryCache;
 import org.gradle.api.internal.cache.CrossBuildInMemoryCacheFactory;
 import org.gradle.api.internal.cache.HeapProportionalCacheSizer;
+import org.gradle.api.internal.cache.InMemoryCacheStatistics;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.cache.internal.AsyncCacheAccess;
@@ -33,6 +34,11 @@ import org.gradle.cache.internal.FileLock;
 import org.gradle.cache.internal.MultiProcessSafeAsyncPersistentIndexedCache;
 import org.gradle.cache.internal.MultiProcessSafePersistentIndexedCache;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -41,15 +47,35 @@ import java.util.concurrent.atomic.AtomicReference;
  *
  * Also decorates each cache so that updates to the backing cache are made asynchronously.
  */
-public class InMemoryCacheDecoratorFactory {
+public class InMemoryCacheDecoratorFactory implements InMemoryCacheStatistics.ReportedCache {
     private final static Logger LOG = Logging.getLogger(InMemoryCacheDecoratorFactory.class);
     private final boolean longLivingProcess;
     private final HeapProportionalCacheSizer cacheSizer = new HeapProportionalCacheSizer();
     private final CrossBuildInMemoryCache<String, CacheDetails> caches;
+    // Referenced weakly, as the in-memory stores are discarded along with their details
+    private final Set<Cache<Object, Object>> inMemoryCaches = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<Cache<Object, Object>, Boolean>()));
 
     public InMemoryCacheDecoratorFactory(boolean longLivingProcess, CrossBuildInMemoryCacheFactory cacheFactory) {
         this.longLivingProcess = longLivingProcess;
-        caches = cacheFactory.newCache();
+        caches = cacheFactory.newCache("in-memory stores of persistent caches");
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "in-memory entries of persistent caches";
+    }
+
+    @Override
+    public int size() {
+        List<Cache<Object, Object>> inMemoryCaches;
+        synchronized (this.inMemoryCaches) {
+            inMemoryCaches = new ArrayList<Cache<Object, Object>>(this.inMemoryCaches);
+        }
+        int size = 0;
+        for (Cache<Object, Object> inMemoryCache : inMemoryCaches) {
+            size += inMemoryCache.size();
+        }
+        return size;
     }
 
     public CacheDecorator decorator(final int maxEntriesToKeepInMemory, final boolean cacheInMemoryForShortLivedProcesses) {
@@ -88,6 +114,7 @@ public class InMemoryCacheDecoratorFactory {
         final CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().removalListener(evictionListener);
         Cache<Object, Object> inMemoryCache = cacheBuilder.build();
         evictionListener.setCache(inMemoryCache);
+        inMemoryCaches.add(inMemoryCache);
         return inMemoryCache;
     }
 
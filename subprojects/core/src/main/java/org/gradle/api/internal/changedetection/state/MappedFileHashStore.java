@@ -0,0 +1,506 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.hash.HashCode;
+import org.gradle.api.Nullable;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.IoActions;
+import org.gradle.internal.io.MappedByteBuffers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link FileHashStore} backed by a memory-mapped file of fixed-width records, so that no entries are held on the heap.
+ *
+ * <p>A path is identified by two independent 64-bit hashes of its characters, which select a bucket of {@value #WAYS} records in the file. Each record
+ * holds the path hashes, the length, timestamp and 128-bit content hash of the file, and a checksum of these values. Looking up an entry allocates
+ * nothing apart from the returned hash.</p>
+ *
+ * <p>The store starts with a small file, and doubles its capacity when an entry does not fit in its bucket and at least a quarter of the records are used,
+ * up to a maximum capacity. The capacity is kept in the file, so a store that has grown is opened with the same capacity later. Once the store has
+ * reached its maximum capacity, or when a bucket is full while most records are free, an existing entry in the bucket is replaced.</p>
+ *
+ * <p>A store holds an exclusive lock on its file while it is open, so that only one store in one process writes to the file. Writes to a bucket are
+ * serialized, while reads take no lock: a record that is read while it is being written or moved fails its checksum, and is treated as missing.</p>
+ */
+public class MappedFileHashStore implements FileHashStore, Closeable {
+    private static final long MAGIC = 0x4752444C46484153L;
+    private static final int VERSION = 1;
+    private static final int WAYS = 4;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 64;
+    private static final int HASH_SIZE = 16;
+    private static final int LOCK_STRIPES = 64;
+
+    private static final int KEY1 = 0;
+    private static final int KEY2 = 8;
+    private static final int LENGTH = 16;
+    private static final int TIMESTAMP = 24;
+    private static final int HASH = 32;
+    private static final int CHECKSUM = 48;
+
+    private final File file;
+    private final int maxCapacity;
+    private final RandomAccessFile randomAccessFile;
+    private final Object[] bucketLocks = new Object[LOCK_STRIPES];
+    // Held for reading while writing records, and for writing while the store grows
+    private final ReadWriteLock growLock = new ReentrantReadWriteLock();
+    private final AtomicInteger entries = new AtomicInteger();
+    // The mappings replaced when the store has grown. Readers may still use them, so they are only released when the store is closed.
+    private final List<MappedByteBuffer> previousBuffers = new ArrayList<MappedByteBuffer>();
+    private volatile Table table;
+
+    /**
+     * Opens a store with a fixed capacity in the given file, failing when the file is in use by another store.
+     *
+     * @param capacity The number of entries the store can hold. Must be a power of two.
+     */
+    public MappedFileHashStore(File file, int capacity) {
+        this(file, capacity, capacity);
+    }
+
+    /**
+     * Opens a store that grows as needed in the given file, failing when the file is in use by another store.
+     *
+     * @param initialCapacity The number of entries the store can hold when it is created. Must be a power of two.
+     * @param maxCapacity The number of entries the store can grow to. Must be a power of two.
+     */
+    public MappedFileHashStore(File file, int initialCapacity, int maxCapacity) {
+        this(file, checkCapacity(initialCapacity, maxCapacity), maxCapacity, lockOrFail(file));
+    }
+
+    private MappedFileHashStore(File file, int initialCapacity, int maxCapacity, RandomAccessFile randomAccessFile) {
+        this.file = file;
+        this.maxCapacity = maxCapacity;
+        this.randomAccessFile = randomAccessFile;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            bucketLocks[i] = new Object();
+        }
+        this.table = open(initialCapacity);
+    }
+
+    /**
+     * Opens a store that grows as needed in the given file, or returns null when the file is in use by another store, in this or another process.
+     *
+     * @param initialCapacity The number of entries the store can hold when it is created. Must be a power of two.
+     * @param maxCapacity The number of entries the store can grow to. Must be a power of two.
+     */
+    @Nullable
+    public static MappedFileHashStore tryOpen(File file, int initialCapacity, int maxCapacity) {
+        checkCapacity(initialCapacity, maxCapacity);
+        RandomAccessFile randomAccessFile = lock(file);
+        return randomAccessFile == null ? null : new MappedFileHashStore(file, initialCapacity, maxCapacity, randomAccessFile);
+    }
+
+    private static int checkCapacity(int initialCapacity, int maxCapacity) {
+        for (int capacity : new int[]{initialCapacity, maxCapacity}) {
+            if (capacity < WAYS || Integer.bitCount(capacity) != 1) {
+                throw new IllegalArgumentException(String.format("Capacity must be a power of two of at least %d, but was %d.", WAYS, capacity));
+            }
+        }
+        if (maxCapacity < initialCapacity) {
+            throw new IllegalArgumentException(String.format("Maximum capacity %d must not be less than the initial capacity %d.", maxCapacity, initialCapacity));
+        }
+        return initialCapacity;
+    }
+
+    private static RandomAccessFile lockOrFail(File file) {
+        RandomAccessFile randomAccessFile = lock(file);
+        if (randomAccessFile == null) {
+            throw new IllegalStateException(String.format("File hash store '%s' is in use by another store.", file));
+        }
+        return randomAccessFile;
+    }
+
+    /**
+     * Opens the given file and locks it exclusively, returning null when the file is locked by another store. The lock is held until the file is closed.
+     */
+    @Nullable
+    private static RandomAccessFile lock(File file) {
+        try {
+            file.getParentFile().mkdirs();
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            FileLock lock;
+            try {
+                lock = randomAccessFile.getChannel().tryLock();
+            } catch (OverlappingFileLockException e) {
+                // Locked by another store in this process
+                lock = null;
+            } catch (IOException e) {
+                IoActions.closeQuietly(randomAccessFile);
+                throw e;
+            }
+            if (lock == null) {
+                randomAccessFile.close();
+                return null;
+            }
+            return randomAccessFile;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not open file hash store '%s'.", file), e);
+        }
+    }
+
+    /**
+     * Maps the file with the capacity it was written with, or creates an empty store with the initial capacity when the file has a different format
+     * or a capacity this store does not use.
+     */
+    private Table open(int initialCapacity) {
+        try {
+            int capacity = readCapacity();
+            boolean empty = capacity < initialCapacity || capacity > maxCapacity;
+            if (empty) {
+                // Extending the file fills it with zeros, which are empty records
+                capacity = initialCapacity;
+                randomAccessFile.setLength(0);
+                randomAccessFile.setLength(sizeOf(capacity));
+            }
+            Table table = new Table(map(capacity), capacity);
+            if (empty) {
+                table.buffer.putInt(8, VERSION);
+                table.buffer.putInt(12, capacity);
+                table.buffer.putLong(0, MAGIC);
+            } else {
+                for (int offset = HEADER_SIZE; offset < sizeOf(capacity); offset += RECORD_SIZE) {
+                    if (isValid(table.buffer, offset)) {
+                        entries.incrementAndGet();
+                    }
+                }
+            }
+            return table;
+        } catch (IOException e) {
+            IoActions.closeQuietly(randomAccessFile);
+            throw new UncheckedIOException(String.format("Could not open file hash store '%s'.", file), e);
+        }
+    }
+
+    /**
+     * Returns the capacity recorded in the header of the file, or -1 when the file does not contain a store.
+     */
+    private int readCapacity() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+        FileChannel channel = randomAccessFile.getChannel();
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // Keep reading
+        }
+        if (header.hasRemaining() || header.getLong(0) != MAGIC || header.getInt(8) != VERSION) {
+            return -1;
+        }
+        int capacity = header.getInt(12);
+        if (capacity < WAYS || Integer.bitCount(capacity) != 1 || randomAccessFile.length() != sizeOf(capacity)) {
+            return -1;
+        }
+        return capacity;
+    }
+
+    private MappedByteBuffer map(int capacity) throws IOException {
+        MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, sizeOf(capacity));
+        buffer.order(ByteOrder.nativeOrder());
+        return buffer;
+    }
+
+    private static long sizeOf(int capacity) {
+        return HEADER_SIZE + (long) capacity * RECORD_SIZE;
+    }
+
+    @Nullable
+    @Override
+    public HashCode get(String absolutePath, long length, long timestamp) {
+        long key1 = hash1(absolutePath);
+        long key2 = hash2(absolutePath);
+        Table table = this.table;
+        MappedByteBuffer buffer = table.buffer;
+        int bucket = table.bucketOffset(key1);
+        for (int way = 0; way < WAYS; way++) {
+            int offset = bucket + way * RECORD_SIZE;
+            if (buffer.getLong(offset + KEY1) != key1 || buffer.getLong(offset + KEY2) != key2) {
+                continue;
+            }
+            // Read each value once, so that the checksum covers exactly the values that are returned
+            long recordLength = buffer.getLong(offset + LENGTH);
+            long recordTimestamp = buffer.getLong(offset + TIMESTAMP);
+            long hash0 = buffer.getLong(offset + HASH);
+            long hash1 = buffer.getLong(offset + HASH + 8);
+            if (buffer.getLong(offset + CHECKSUM) != checksum(key1, key2, recordLength, recordTimestamp, hash0, hash1)) {
+                continue;
+            }
+            if (recordLength != length || recordTimestamp != timestamp) {
+                return null;
+            }
+            ByteBuffer hash = ByteBuffer.allocate(HASH_SIZE).order(ByteOrder.nativeOrder());
+            hash.putLong(hash0);
+            hash.putLong(hash1);
+            return HashCode.fromBytes(hash.array());
+        }
+        return null;
+    }
+
+    @Override
+    public void put(String absolutePath, long length, long timestamp, HashCode hash) {
+        if (hash.bits() != HASH_SIZE * 8) {
+            // Cannot store this hash, the file will be hashed again next time
+            remove(absolutePath);
+            return;
+        }
+        long key1 = hash1(absolutePath);
+        long key2 = hash2(absolutePath);
+        ByteBuffer hashBytes = ByteBuffer.wrap(hash.asBytes()).order(ByteOrder.nativeOrder());
+        long hash0 = hashBytes.getLong(0);
+        long hash1 = hashBytes.getLong(8);
+        while (!tryPut(key1, key2, length, timestamp, hash0, hash1)) {
+            grow();
+        }
+    }
+
+    /**
+     * Writes the record for the given key, or returns false when the store should grow first.
+     */
+    private boolean tryPut(long key1, long key2, long length, long timestamp, long hash0, long hash1) {
+        // Computed from the values written rather than read back from the file
+        long checksum = checksum(key1, key2, length, timestamp, hash0, hash1);
+        growLock.readLock().lock();
+        try {
+            Table table = this.table;
+            MappedByteBuffer buffer = table.buffer;
+            synchronized (lockFor(table, key1)) {
+                int offset = find(table, key1, key2);
+                if (offset < 0) {
+                    offset = findEmpty(table, key1);
+                    if (offset >= 0) {
+                        entries.incrementAndGet();
+                    } else if (shouldGrow(table)) {
+                        return false;
+                    } else {
+                        offset = table.bucketOffset(key1) + (int) ((key2 >>> 32) & (WAYS - 1)) * RECORD_SIZE;
+                    }
+                }
+                buffer.putLong(offset + CHECKSUM, 0);
+                buffer.putLong(offset + KEY1, key1);
+                buffer.putLong(offset + KEY2, key2);
+                buffer.putLong(offset + LENGTH, length);
+                buffer.putLong(offset + TIMESTAMP, timestamp);
+                buffer.putLong(offset + HASH, hash0);
+                buffer.putLong(offset + HASH + 8, hash1);
+                buffer.putLong(offset + CHECKSUM, checksum);
+                return true;
+            }
+        } finally {
+            growLock.readLock().unlock();
+        }
+    }
+
+    private boolean shouldGrow(Table table) {
+        // With buckets of four records, some bucket is full long before all records are used
+        return table.capacity < maxCapacity && entries.get() >= table.capacity / 4;
+    }
+
+    /**
+     * Doubles the capacity of the store. The records of each bucket either stay in place or move to the matching bucket in the new half of the file.
+     */
+    private void grow() {
+        growLock.writeLock().lock();
+        try {
+            Table table = this.table;
+            if (!shouldGrow(table)) {
+                // Grown by another thread, or entries have been removed in the meantime
+                return;
+            }
+            int capacity = table.capacity * 2;
+            Table grown;
+            try {
+                randomAccessFile.setLength(sizeOf(capacity));
+                grown = new Table(map(capacity), capacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Could not grow file hash store '%s'.", file), e);
+            }
+            MappedByteBuffer buffer = grown.buffer;
+            int buckets = table.bucketMask + 1;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                int target = Table.offsetOfBucket(bucket + buckets);
+                for (int way = 0; way < WAYS; way++) {
+                    int offset = Table.offsetOfBucket(bucket) + way * RECORD_SIZE;
+                    if (isValid(buffer, offset) && ((int) buffer.getLong(offset + KEY1) & grown.bucketMask) != bucket) {
+                        for (int field = 0; field < RECORD_SIZE; field += 8) {
+                            buffer.putLong(target + field, buffer.getLong(offset + field));
+                        }
+                        buffer.putLong(offset + CHECKSUM, 0);
+                        target += RECORD_SIZE;
+                    }
+                }
+            }
+            buffer.putInt(12, capacity);
+            previousBuffers.add(table.buffer);
+            this.table = grown;
+        } finally {
+            growLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String absolutePath) {
+        long key1 = hash1(absolutePath);
+        growLock.readLock().lock();
+        try {
+            Table table = this.table;
+            synchronized (lockFor(table, key1)) {
+                int offset = find(table, key1, hash2(absolutePath));
+                if (offset >= 0) {
+                    table.buffer.putLong(offset + CHECKSUM, 0);
+                    entries.decrementAndGet();
+                }
+            }
+        } finally {
+            growLock.readLock().unlock();
+        }
+    }
+
+    private Object lockFor(Table table, long key1) {
+        return bucketLocks[(int) key1 & table.bucketMask & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Returns the offset of the valid record for the given key, or -1 when there is none.
+     */
+    private static int find(Table table, long key1, long key2) {
+        int bucket = table.bucketOffset(key1);
+        for (int way = 0; way < WAYS; way++) {
+            int offset = bucket + way * RECORD_SIZE;
+            if (table.buffer.getLong(offset + KEY1) == key1 && table.buffer.getLong(offset + KEY2) == key2 && isValid(table.buffer, offset)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offset of an empty record in the bucket for the given key, or -1 when the bucket is full.
+     */
+    private static int findEmpty(Table table, long key1) {
+        int bucket = table.bucketOffset(key1);
+        for (int way = 0; way < WAYS; way++) {
+            int offset = bucket + way * RECORD_SIZE;
+            if (!isValid(table.buffer, offset)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isValid(ByteBuffer buffer, int offset) {
+        long checksum = checksum(buffer.getLong(offset + KEY1), buffer.getLong(offset + KEY2), buffer.getLong(offset + LENGTH),
+            buffer.getLong(offset + TIMESTAMP), buffer.getLong(offset + HASH), buffer.getLong(offset + HASH + 8));
+        return buffer.getLong(offset + CHECKSUM) == checksum;
+    }
+
+    /**
+     * Checksum of the values of a record. Never 0, so that a zeroed record is always empty.
+     */
+    private static long checksum(long key1, long key2, long length, long timestamp, long hash0, long hash1) {
+        long checksum = 0x9E3779B97F4A7C15L;
+        checksum = mix(checksum ^ key1);
+        checksum = mix(checksum ^ key2);
+        checksum = mix(checksum ^ length);
+        checksum = mix(checksum ^ timestamp);
+        checksum = mix(checksum ^ hash0);
+        checksum = mix(checksum ^ hash1);
+        return checksum | 1;
+    }
+
+    // FNV-1a
+    private static long hash1(String path) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    // A polynomial hash with a different multiplier, seeded with the length of the path
+    private static long hash2(String path) {
+        long hash = path.length();
+        for (int i = 0; i < path.length(); i++) {
+            hash = hash * 0xC2B2AE3D27D4EB4FL + path.charAt(i);
+        }
+        return mix(hash);
+    }
+
+    // The 64-bit finalizer of MurmurHash3
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "file hash store " + file;
+    }
+
+    @Override
+    public void close() {
+        try {
+            Table table = this.table;
+            table.buffer.force();
+            for (MappedByteBuffer previousBuffer : previousBuffers) {
+                MappedByteBuffers.unmap(previousBuffer);
+            }
+            MappedByteBuffers.unmap(table.buffer);
+            // Releases the lock on the file
+            randomAccessFile.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not close file hash store '%s'.", file), e);
+        }
+    }
+
+    private static class Table {
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final int bucketMask;
+
+        Table(MappedByteBuffer buffer, int capacity) {
+            this.buffer = buffer;
+            this.capacity = capacity;
+            this.bucketMask = capacity / WAYS - 1;
+        }
+
+        int bucketOffset(long key1) {
+            return offsetOfBucket((int) key1 & bucketMask);
+        }
+
+        static int offsetOfBucket(int bucket) {
+            return HEADER_SIZE + bucket * WAYS * RECORD_SIZE;
+        }
+    }
+}
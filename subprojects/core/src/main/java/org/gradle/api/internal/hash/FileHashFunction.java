@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * The hash functions that can be used to hash the contents of files.
+ *
+ * <p>File hashes end up in the task history and in build cache keys, so the function is chosen per daemon using {@value #SYSTEM_PROPERTY}.
+ * MD5 is used by default. Murmur3 is a lot faster, but as it is not a cryptographic hash function, entries with colliding keys could be crafted
+ * by anyone who can write to a shared build cache.</p>
+ */
+public enum FileHashFunction {
+    MD5("md5", Hashing.md5()),
+    MURMUR3("murmur3", Hashing.murmur3_128());
+
+    public static final String SYSTEM_PROPERTY = "org.gradle.internal.file.hash.function";
+
+    private final String id;
+    private final HashFunction hashFunction;
+
+    FileHashFunction(String id, HashFunction hashFunction) {
+        this.id = id;
+        this.hashFunction = hashFunction;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Returns the name of a persistent cache holding hashes created by this function, so that hashes created by different functions are never mixed.
+     */
+    public String cacheName(String baseName) {
+        return this == MD5 ? baseName : baseName + "-" + id;
+    }
+
+    public static FileHashFunction current() {
+        String id = System.getProperty(SYSTEM_PROPERTY);
+        if (id == null) {
+            return MD5;
+        }
+        for (FileHashFunction function : values()) {
+            if (function.id.equals(id)) {
+                return function;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown file hash function '%s' specified by %s.", id, SYSTEM_PROPERTY));
+    }
+}
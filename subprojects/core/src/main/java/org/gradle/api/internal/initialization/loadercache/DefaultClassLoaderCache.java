@@ -23,18 +23,22 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multiset;
 import com.google.common.hash.HashCode;
 import org.gradle.api.Nullable;
+import org.gradle.api.internal.cache.InMemoryCacheStatistics;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
+import org.gradle.internal.classloader.ClassLoaderHierarchyHasher;
 import org.gradle.internal.classloader.ClassLoaderUtils;
 import org.gradle.internal.classloader.ClasspathHasher;
+import org.gradle.internal.classloader.ConfigurableClassLoaderHierarchyHasher;
 import org.gradle.internal.classloader.FilteringClassLoader;
 import org.gradle.internal.classloader.HashingClassLoaderFactory;
 import org.gradle.internal.classpath.ClassPath;
 import org.gradle.internal.concurrent.Stoppable;
 
+import java.util.Collections;
 import java.util.Map;
 
-public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable {
+public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable, InMemoryCacheStatistics.ReportedCache {
     private static final Logger LOGGER = Logging.getLogger(DefaultClassLoaderCache.class);
 
     private final Object lock = new Object();
@@ -42,10 +46,19 @@ public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable {
     private final Map<ClassLoaderSpec, CachedClassLoader> bySpec = Maps.newHashMap();
     private final ClasspathHasher classpathHasher;
     private final HashingClassLoaderFactory classLoaderFactory;
+    private final ClassLoaderHierarchyHasher classLoaderHierarchyHasher;
+    private final InMemoryCacheStatistics cacheStatistics;
 
     public DefaultClassLoaderCache(HashingClassLoaderFactory classLoaderFactory, ClasspathHasher classpathHasher) {
+        this(classLoaderFactory, classpathHasher, new ConfigurableClassLoaderHierarchyHasher(Collections.<ClassLoader, String>emptyMap(), classLoaderFactory), new InMemoryCacheStatistics());
+    }
+
+    public DefaultClassLoaderCache(HashingClassLoaderFactory classLoaderFactory, ClasspathHasher classpathHasher, ClassLoaderHierarchyHasher classLoaderHierarchyHasher, InMemoryCacheStatistics cacheStatistics) {
         this.classLoaderFactory = classLoaderFactory;
         this.classpathHasher = classpathHasher;
+        this.classLoaderHierarchyHasher = classLoaderHierarchyHasher;
+        this.cacheStatistics = cacheStatistics;
+        cacheStatistics.register(this);
     }
 
     @Override
@@ -58,7 +71,8 @@ public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable {
         if (implementationHash == null) {
             implementationHash = classpathHasher.hash(classPath);
         }
-        ManagedClassLoaderSpec spec = new ManagedClassLoaderSpec(parent, classPath, implementationHash, filterSpec);
+        HashCode parentHash = parent == null ? null : classLoaderHierarchyHasher.getClassLoaderHash(parent);
+        ManagedClassLoaderSpec spec = new ManagedClassLoaderSpec(parent, parentHash, classPath, implementationHash, filterSpec);
 
         synchronized (lock) {
             CachedClassLoader cachedLoader = byId.get(id);
@@ -126,8 +140,14 @@ public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable {
         }
     }
 
+    @Override
+    public String getDisplayName() {
+        return "class loaders";
+    }
+
     @Override
     public void stop() {
+        cacheStatistics.unregister(this);
         synchronized (lock) {
             for (CachedClassLoader cachedClassLoader : byId.values()) {
                 ClassLoaderUtils.tryClose(cachedClassLoader.classLoader);
@@ -148,21 +168,27 @@ public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable {
         }
     }
 
+    /**
+     * Parents are compared by the hash of their hierarchy when it is known, so that a class loader is shared with later builds that create
+     * their own instance of the same parent hierarchy. Otherwise, parents are compared by identity.
+     */
     private static class ManagedClassLoaderSpec extends ClassLoaderSpec {
         private final ClassLoader parent;
+        private final HashCode parentHash;
         private final ClassPath classPath;
         private final HashCode implementationHash;
         private final FilteringClassLoader.Spec filterSpec;
 
-        public ManagedClassLoaderSpec(ClassLoader parent, ClassPath classPath, HashCode implementationHash, FilteringClassLoader.Spec filterSpec) {
+        public ManagedClassLoaderSpec(ClassLoader parent, @Nullable HashCode parentHash, ClassPath classPath, HashCode implementationHash, FilteringClassLoader.Spec filterSpec) {
             this.parent = parent;
+            this.parentHash = parentHash;
             this.classPath = classPath;
             this.implementationHash = implementationHash;
             this.filterSpec = filterSpec;
         }
 
         public ManagedClassLoaderSpec unfiltered() {
-            return new ManagedClassLoaderSpec(parent, classPath, implementationHash, null);
+            return new ManagedClassLoaderSpec(parent, parentHash, classPath, implementationHash, null);
         }
 
         public boolean isFiltered() {
@@ -173,7 +199,7 @@ public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable {
         @Override
         public boolean equals(Object o) {
             ManagedClassLoaderSpec that = (ManagedClassLoaderSpec) o;
-            return Objects.equal(this.parent, that.parent)
+            return sameParent(that)
                 && this.implementationHash.equals(that.implementationHash)
                 && this.classPath.equals(that.classPath)
                 && Objects.equal(this.filterSpec, that.filterSpec);
@@ -184,9 +210,20 @@ public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable {
             int result = implementationHash.hashCode();
             result = 31 * result + classPath.hashCode();
             result = 31 * result + (filterSpec != null ? filterSpec.hashCode() : 0);
-            result = 31 * result + (parent != null ? parent.hashCode() : 0);
+            if (parentHash != null) {
+                result = 31 * result + parentHash.hashCode();
+            } else {
+                result = 31 * result + (parent != null ? parent.hashCode() : 0);
+            }
             return result;
         }
+
+        private boolean sameParent(ManagedClassLoaderSpec that) {
+            if (this.parentHash != null || that.parentHash != null) {
+                return Objects.equal(this.parentHash, that.parentHash);
+            }
+            return Objects.equal(this.parent, that.parent);
+        }
     }
 
     private class CachedClassLoader {
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.project;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.execution.ParallelProjectConfigurer;
+
+/**
+ * Keeps track of the project that the current thread configures concurrently with other projects, so that configuring another project that has
+ * not been configured yet fails, rather than racing with the configuration of that project.
+ *
+ * <p>Which projects are configured concurrently is decided by looking at their build scripts, which misses the projects that are configured by
+ * plugins or by code in other files. This check catches these at the point the other project is reached.</p>
+ */
+public abstract class ConcurrentProjectConfiguration {
+    private static final ThreadLocal<ProjectInternal> CURRENT = new ThreadLocal<ProjectInternal>();
+
+    /**
+     * Configures the given project with the given action, checking that the action does not configure other projects that have not been configured.
+     */
+    public static void configure(ProjectInternal project, Runnable action) {
+        ProjectInternal previous = CURRENT.get();
+        CURRENT.set(project);
+        try {
+            action.run();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Fails when the current thread configures a project concurrently with other projects, and the given project is another project that has
+     * not been configured yet.
+     */
+    public static void checkCanConfigure(Project target) {
+        ProjectInternal current = CURRENT.get();
+        if (current == null || current == target) {
+            return;
+        }
+        ProjectInternal targetProject = (ProjectInternal) target;
+        if (targetProject.getState().getExecuted()) {
+            return;
+        }
+        throw new GradleException(String.format("%s was configured concurrently with other projects, but configures %s, which has not been configured yet. "
+            + "Projects that configure other projects cannot be configured concurrently. Run the build without the '%s' system property.",
+            capitalize(current.getDisplayName()), targetProject.getDisplayName(), ParallelProjectConfigurer.SYSTEM_PROPERTY));
+    }
+
+    private static String capitalize(String displayName) {
+        return Character.toUpperCase(displayName.charAt(0)) + displayName.substring(1);
+    }
+}
@@ -189,6 +189,8 @@ public class DefaultProject extends AbstractPluginAware implements ProjectIntern
 
     private ListenerBroadcast<ProjectEvaluationListener> evaluationListener = new ListenerBroadcast<ProjectEvaluationListener>(ProjectEvaluationListener.class);
 
+    private boolean externalEvaluationClosures;
+
     private ExtensibleDynamicObject extensibleDynamicObject;
 
     private String description;
@@ -612,12 +614,19 @@ public class DefaultProject extends AbstractPluginAware implements ProjectIntern
 
     @Override
     public void subprojects(Action<? super Project> action) {
-        getProjectConfigurator().subprojects(getSubprojects(), action);
+        getProjectConfigurator().subprojects(checkCanConfigure(getSubprojects()), action);
     }
 
     @Override
     public void allprojects(Action<? super Project> action) {
-        getProjectConfigurator().allprojects(getAllprojects(), action);
+        getProjectConfigurator().allprojects(checkCanConfigure(getAllprojects()), action);
+    }
+
+    private Set<Project> checkCanConfigure(Set<Project> projects) {
+        for (Project project : projects) {
+            ConcurrentProjectConfiguration.checkCanConfigure(project);
+        }
+        return projects;
     }
 
     @Override
@@ -731,6 +740,7 @@ public class DefaultProject extends AbstractPluginAware implements ProjectIntern
     }
 
     private Project evaluationDependsOn(DefaultProject projectToEvaluate) {
+        ConcurrentProjectConfiguration.checkCanConfigure(projectToEvaluate);
         if (projectToEvaluate.getState().getExecuting()) {
             throw new CircularReferenceException(String.format("Circular referencing during evaluation for %s.",
                 projectToEvaluate));
@@ -944,24 +954,40 @@ public class DefaultProject extends AbstractPluginAware implements ProjectIntern
 
     @Override
     public void beforeEvaluate(Action<? super Project> action) {
+        recordExternalEvaluationClosure();
         evaluationListener.add("beforeEvaluate", action);
     }
 
     @Override
     public void afterEvaluate(Action<? super Project> action) {
+        recordExternalEvaluationClosure();
         evaluationListener.add("afterEvaluate", action);
     }
 
     @Override
     public void beforeEvaluate(Closure closure) {
+        recordExternalEvaluationClosure();
         evaluationListener.add(new ClosureBackedMethodInvocationDispatch("beforeEvaluate", closure));
     }
 
     @Override
     public void afterEvaluate(Closure closure) {
+        recordExternalEvaluationClosure();
         evaluationListener.add(new ClosureBackedMethodInvocationDispatch("afterEvaluate", closure));
     }
 
+    private void recordExternalEvaluationClosure() {
+        ConcurrentProjectConfiguration.checkCanConfigure(this);
+        if (!state.getExecuting() && !state.getExecuted()) {
+            externalEvaluationClosures = true;
+        }
+    }
+
+    @Override
+    public boolean hasExternalEvaluationClosures() {
+        return externalEvaluationClosures;
+    }
+
     @Override
     public Logger getLogger() {
         return BUILD_LOGGER;
@@ -1100,22 +1126,26 @@ public class DefaultProject extends AbstractPluginAware implements ProjectIntern
 
     @Override
     public void subprojects(Closure configureClosure) {
-        getProjectConfigurator().subprojects(getSubprojects(), configureClosure);
+        getProjectConfigurator().subprojects(checkCanConfigure(getSubprojects()), configureClosure);
     }
 
     @Override
     public void allprojects(Closure configureClosure) {
-        getProjectConfigurator().allprojects(getAllprojects(), configureClosure);
+        getProjectConfigurator().allprojects(checkCanConfigure(getAllprojects()), configureClosure);
     }
 
     @Override
     public Project project(String path, Closure configureClosure) {
-        return getProjectConfigurator().project(project(path), configureClosure);
+        ProjectInternal project = project(path);
+        ConcurrentProjectConfiguration.checkCanConfigure(project);
+        return getProjectConfigurator().project(project, configureClosure);
     }
 
     @Override
     public Project project(String path, Action<? super Project> configureAction) {
-        return getProjectConfigurator().project(project(path), configureAction);
+        ProjectInternal project = project(path);
+        ConcurrentProjectConfiguration.checkCanConfigure(project);
+        return getProjectConfigurator().project(project, configureAction);
     }
 
     @Override
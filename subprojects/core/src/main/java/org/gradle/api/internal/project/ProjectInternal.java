@@ -73,6 +73,12 @@ public interface ProjectInternal extends Project, ProjectIdentifier, FileOperati
 
     ProjectEvaluationListener getProjectEvaluationBroadcaster();
 
+    /**
+     * Returns true when closures or actions to run before or after this project is evaluated were added before its evaluation started, that is, by the
+     * build script of another project or by a settings or init script.
+     */
+    boolean hasExternalEvaluationClosures();
+
     FileResolver getFileResolver();
 
     ServiceRegistry getServices();
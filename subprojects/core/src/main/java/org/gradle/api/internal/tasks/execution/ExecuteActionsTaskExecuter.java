@@ -15,10 +15,12 @@
  */
 package org.gradle.api.internal.tasks.execution;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import org.gradle.api.GradleException;
 import org.gradle.api.execution.TaskActionListener;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.TaskOutputsInternal;
 import org.gradle.api.internal.tasks.ContextAwareTaskAction;
 import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.api.internal.tasks.TaskExecutionContext;
@@ -63,7 +65,12 @@ public class ExecuteActionsTaskExecuter implements TaskExecuter {
     public void execute(TaskInternal task, TaskStateInternal state, TaskExecutionContext context) {
         listener.beforeActions(task);
         if (!task.getTaskActions().isEmpty()) {
-            outputsGenerationListener.beforeTaskOutputsGenerated();
+            TaskOutputsInternal outputs = task.getOutputs();
+            if (outputs.hasDeclaredOutputs()) {
+                outputsGenerationListener.beforeTaskOutputsGenerated(Iterables.concat(outputs.getFiles(), task.getDestroyables().getFiles()));
+            } else {
+                outputsGenerationListener.beforeTaskOutputsGenerated();
+            }
         }
         state.setExecuting(true);
         try {
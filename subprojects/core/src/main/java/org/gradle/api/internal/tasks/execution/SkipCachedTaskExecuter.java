@@ -37,8 +37,11 @@ import org.gradle.internal.time.Timers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.SortedSet;
 
 public class SkipCachedTaskExecuter implements TaskExecuter {
@@ -129,7 +132,13 @@ public class SkipCachedTaskExecuter implements TaskExecuter {
 
         @Override
         public void readFrom(final InputStream input) {
-            taskOutputsGenerationListener.beforeTaskOutputsGenerated();
+            List<File> outputFiles = new ArrayList<File>(outputProperties.size());
+            for (ResolvedTaskOutputFilePropertySpec outputProperty : outputProperties) {
+                if (outputProperty.getOutputFile() != null) {
+                    outputFiles.add(outputProperty.getOutputFile());
+                }
+            }
+            taskOutputsGenerationListener.beforeTaskOutputsGenerated(outputFiles);
             originMetadata = packer.unpack(outputProperties, input, taskOutputOriginFactory.createReader(task));
             LOGGER.info("Unpacked output for {} from cache (took {}).", task, clock.getElapsed());
         }
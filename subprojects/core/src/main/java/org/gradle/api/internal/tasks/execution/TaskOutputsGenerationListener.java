@@ -16,10 +16,18 @@
 
 package org.gradle.api.internal.tasks.execution;
 
+import java.io.File;
+
 public interface TaskOutputsGenerationListener {
     /**
-     * Invoked when the outputs for a task are about to be generated.
-     * This is for example just before the task actions are executed or the outputs are loaded from the cache.
+     * Invoked when the outputs for a task are about to be generated, and the task may change any file.
+     * This is for example just before the actions of a task without declared outputs are executed.
      */
     void beforeTaskOutputsGenerated();
+
+    /**
+     * Invoked when the outputs for a task are about to be generated, and the task only changes the given files and the files below them.
+     * This is for example just before the actions of a task with declared outputs are executed or the outputs are loaded from the cache.
+     */
+    void beforeTaskOutputsGenerated(Iterable<File> outputs);
 }
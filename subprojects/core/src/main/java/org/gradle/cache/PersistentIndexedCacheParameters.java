@@ -21,11 +21,57 @@ import org.gradle.internal.serialize.BaseSerializerFactory;
 import org.gradle.internal.serialize.Serializer;
 
 public class PersistentIndexedCacheParameters<K, V> {
+    /**
+     * The kind of file that backs an indexed cache.
+     */
+    public enum StoreType {
+        /**
+         * A B-tree that is updated in place.
+         */
+        BTREE(".bin"),
+        /**
+         * An append-only log with an in-memory index, for caches that are written a lot.
+         */
+        LOG_STRUCTURED(".log");
+
+        /**
+         * The system property used by {@link #fromSystemProperty()}.
+         */
+        public static final String SYSTEM_PROPERTY = "org.gradle.cache.internal.indexed.store";
+
+        private final String fileSuffix;
+
+        StoreType(String fileSuffix) {
+            this.fileSuffix = fileSuffix;
+        }
+
+        public String getFileSuffix() {
+            return fileSuffix;
+        }
+
+        /**
+         * Returns the store type chosen using {@value #SYSTEM_PROPERTY}, defaulting to {@link #BTREE}.
+         */
+        public static StoreType fromSystemProperty() {
+            String value = System.getProperty(SYSTEM_PROPERTY);
+            if (value == null) {
+                return BTREE;
+            }
+            for (StoreType storeType : values()) {
+                if (storeType.name().equalsIgnoreCase(value.replace('-', '_'))) {
+                    return storeType;
+                }
+            }
+            throw new IllegalArgumentException(String.format("Unknown indexed cache store '%s' specified by %s.", value, SYSTEM_PROPERTY));
+        }
+    }
+
     private static final BaseSerializerFactory SERIALIZER_FACTORY = new BaseSerializerFactory();
     private final String cacheName;
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
     private CacheDecorator cacheDecorator;
+    private StoreType storeType = StoreType.BTREE;
 
     public PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
         this.cacheName = cacheName;
@@ -67,4 +113,14 @@ public class PersistentIndexedCacheParameters<K, V> {
         this.cacheDecorator = cacheDecorator;
         return this;
     }
+
+    public StoreType getStoreType() {
+        return storeType;
+    }
+
+    public PersistentIndexedCacheParameters<K, V> storeType(StoreType storeType) {
+        assert storeType != null;
+        this.storeType = storeType;
+        return this;
+    }
 }
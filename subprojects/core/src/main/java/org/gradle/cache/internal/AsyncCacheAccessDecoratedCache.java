@@ -20,9 +20,19 @@ import org.gradle.api.Nullable;
 import org.gradle.api.Transformer;
 import org.gradle.internal.Factory;
 
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Applies updates to the backing cache using an {@link AsyncCacheAccess}.
+ *
+ * <p>Updates to a key that are submitted while an earlier update to the key is still waiting to be applied replace that update,
+ * so that only the latest value is written. Reads of such a key are answered from the waiting update.</p>
+ */
 public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentIndexedCache<K, V> {
     private final AsyncCacheAccess asyncCacheAccess;
     private final MultiProcessSafePersistentIndexedCache<K, V> persistentCache;
+    private final Map<K, PendingUpdate<V>> pendingUpdates = new HashMap<K, PendingUpdate<V>>();
 
     public AsyncCacheAccessDecoratedCache(AsyncCacheAccess asyncCacheAccess, MultiProcessSafePersistentIndexedCache<K, V> persistentCache) {
         this.asyncCacheAccess = asyncCacheAccess;
@@ -37,6 +47,12 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
     @Nullable
     @Override
     public V get(final K key) {
+        synchronized (pendingUpdates) {
+            PendingUpdate<V> pendingUpdate = pendingUpdates.get(key);
+            if (pendingUpdate != null) {
+                return pendingUpdate.value;
+            }
+        }
         return asyncCacheAccess.read(new Factory<V>() {
             @Override
             public V create() {
@@ -51,28 +67,48 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
     }
 
     @Override
-    public void putLater(final K key, final V value, final Runnable completion) {
-        asyncCacheAccess.enqueue(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    persistentCache.put(key, value);
-                } finally {
-                    completion.run();
-                }
-            }
-        });
+    public void putLater(K key, V value, Runnable completion) {
+        update(key, value, completion);
     }
 
     @Override
-    public void removeLater(final K key, final Runnable completion) {
+    public void removeLater(K key, Runnable completion) {
+        update(key, null, completion);
+    }
+
+    private void update(final K key, @Nullable V value, Runnable completion) {
+        Runnable replacedCompletion;
+        synchronized (pendingUpdates) {
+            PendingUpdate<V> pendingUpdate = pendingUpdates.get(key);
+            if (pendingUpdate == null) {
+                pendingUpdates.put(key, new PendingUpdate<V>(value, completion));
+                replacedCompletion = null;
+            } else {
+                replacedCompletion = pendingUpdate.completion;
+                pendingUpdate.value = value;
+                pendingUpdate.completion = completion;
+            }
+        }
+        if (replacedCompletion != null) {
+            // The update that has already been queued will write the new value
+            replacedCompletion.run();
+            return;
+        }
         asyncCacheAccess.enqueue(new Runnable() {
             @Override
             public void run() {
+                PendingUpdate<V> pendingUpdate;
+                synchronized (pendingUpdates) {
+                    pendingUpdate = pendingUpdates.remove(key);
+                }
                 try {
-                    persistentCache.remove(key);
+                    if (pendingUpdate.value == null) {
+                        persistentCache.remove(key);
+                    } else {
+                        persistentCache.put(key, pendingUpdate.value);
+                    }
                 } finally {
-                    completion.run();
+                    pendingUpdate.completion.run();
                 }
             }
         });
@@ -92,4 +128,15 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
     public void beforeLockRelease(FileLock.State currentCacheState) {
         persistentCache.beforeLockRelease(currentCacheState);
     }
+
+    private static class PendingUpdate<V> {
+        // null when the entry is to be removed
+        V value;
+        Runnable completion;
+
+        PendingUpdate(@Nullable V value, Runnable completion) {
+            this.value = value;
+            this.completion = completion;
+        }
+    }
 }
@@ -24,6 +24,8 @@ import org.gradle.internal.concurrent.ExecutorPolicy;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.time.CountdownTimer;
 import org.gradle.internal.time.Timers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -36,6 +38,7 @@ import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
 class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheAccessWorker.class);
     private final BlockingQueue<Runnable> workQueue;
     private final String displayName;
     private final CacheAccess cacheAccess;
@@ -46,6 +49,12 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
     private boolean stopSeen;
     private final CountDownLatch doneSignal = new CountDownLatch(1);
     private final ExecutorPolicy.CatchAndRecordFailures failureHandler = new ExecutorPolicy.CatchAndRecordFailures();
+    // Statistics, only updated by the worker thread
+    private int operations;
+    private int batches;
+    private int maxQueueDepth;
+    private long totalLockHoldNanos;
+    private long maxLockHoldNanos;
 
     CacheAccessWorker(String displayName, CacheAccess cacheAccess) {
         this.displayName = displayName;
@@ -160,12 +169,26 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
                 }
             }
             workerCompleted = true;
+            logStatistics();
             doneSignal.countDown();
         }
     }
 
     private Runnable takeFromQueue() throws InterruptedException {
-        return workQueue.take();
+        Runnable runnable = workQueue.take();
+        recordQueueDepth();
+        return runnable;
+    }
+
+    private void recordQueueDepth() {
+        maxQueueDepth = Math.max(maxQueueDepth, workQueue.size() + 1);
+    }
+
+    private void logStatistics() {
+        if (LOGGER.isDebugEnabled() && batches > 0) {
+            LOGGER.debug("Cache worker for {} ran {} operations in {} batches. Maximum queue depth: {}. Lock held for {} ms in total and at most {} ms at a time.",
+                displayName, operations, batches, maxQueueDepth, TimeUnit.NANOSECONDS.toMillis(totalLockHoldNanos), TimeUnit.NANOSECONDS.toMillis(maxLockHoldNanos));
+        }
     }
 
     private void flushOperations(final Runnable updateOperation) {
@@ -174,15 +197,21 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
             cacheAccess.useCache(new Runnable() {
                 @Override
                 public void run() {
+                    long start = System.nanoTime();
                     CountdownTimer timer = Timers.startTimer(maximumLockingTimeMillis, TimeUnit.MILLISECONDS);
                     if (updateOperation != null) {
                         failureHandler.onExecute(updateOperation);
+                        operations++;
                     }
                     Runnable otherOperation;
                     try {
                         while ((otherOperation = workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS)) != null) {
+                            recordQueueDepth();
                             failureHandler.onExecute(otherOperation);
                             final Class<? extends Runnable> runnableClass = otherOperation.getClass();
+                            if (runnableClass != FlushOperationsCommand.class && runnableClass != ShutdownOperationsCommand.class) {
+                                operations++;
+                            }
                             if (runnableClass == FlushOperationsCommand.class) {
                                 flushOperations.add((FlushOperationsCommand) otherOperation);
                             }
@@ -197,6 +226,11 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
                         }
                     } catch (InterruptedException e) {
                         throw UncheckedException.throwAsUncheckedException(e);
+                    } finally {
+                        long lockHoldNanos = System.nanoTime() - start;
+                        batches++;
+                        totalLockHoldNanos += lockHoldNanos;
+                        maxLockHoldNanos = Math.max(maxLockHoldNanos, lockHoldNanos);
                     }
                 }
             });
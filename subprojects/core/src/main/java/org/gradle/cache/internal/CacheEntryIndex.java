@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Keeps track of the entries of a cache together with their size and the time they were last accessed,
+ * so that cleanup can choose entries to evict without scanning the cache directory.
+ */
+public interface CacheEntryIndex {
+    /**
+     * Returns the entries currently known to this index.
+     */
+    List<Entry> getEntries();
+
+    /**
+     * Removes the given entries from this index. Does not remove the entry files.
+     */
+    void remove(Collection<? extends Entry> entries);
+
+    interface Entry {
+        String getKey();
+
+        File getFile();
+
+        long getSize();
+
+        long getLastAccessTime();
+    }
+}
@@ -21,6 +21,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.Action;
+import org.gradle.api.Nullable;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.cache.PersistentCache;
@@ -33,6 +34,7 @@ import org.gradle.internal.progress.BuildOperationDescriptor;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -44,13 +46,29 @@ public final class FixedSizeOldestCacheCleanup implements Action<PersistentCache
             return input.lastModified();
         }
     }).reverse();
+    private static final Comparator<CacheEntryIndex.Entry> MOST_RECENTLY_ACCESSED_FIRST = Ordering.natural().onResultOf(new Function<CacheEntryIndex.Entry, Comparable>() {
+        @Override
+        public Comparable apply(CacheEntryIndex.Entry input) {
+            return input.getLastAccessTime();
+        }
+    }).reverse();
 
     private final BuildOperationExecutor buildOperationExecutor;
     private final long targetSizeInMB;
+    private final CacheEntryIndex entryIndex;
 
     public FixedSizeOldestCacheCleanup(BuildOperationExecutor buildOperationExecutor, long targetSizeInMB) {
+        this(buildOperationExecutor, targetSizeInMB, null);
+    }
+
+    /**
+     * Creates a cleanup action that uses the given index to find the entries of the cache, instead of listing the cache directory
+     * and using the modification time of each file.
+     */
+    public FixedSizeOldestCacheCleanup(BuildOperationExecutor buildOperationExecutor, long targetSizeInMB, @Nullable CacheEntryIndex entryIndex) {
         this.buildOperationExecutor = buildOperationExecutor;
         this.targetSizeInMB = targetSizeInMB;
+        this.entryIndex = entryIndex;
     }
 
     @Override
@@ -70,6 +88,11 @@ public final class FixedSizeOldestCacheCleanup implements Action<PersistentCache
     }
 
     private void cleanup(final PersistentCache persistentCache) {
+        if (entryIndex != null) {
+            cleanupIndexedEntries(persistentCache, entryIndex);
+            return;
+        }
+
         final File[] filesEligibleForCleanup = buildOperationExecutor.call(new CallableBuildOperation<File[]>() {
             @Override
             public File[] call(BuildOperationContext context) {
@@ -111,6 +134,78 @@ public final class FixedSizeOldestCacheCleanup implements Action<PersistentCache
         }
     }
 
+    private void cleanupIndexedEntries(final PersistentCache persistentCache, final CacheEntryIndex entryIndex) {
+        final List<CacheEntryIndex.Entry> entriesForDeletion = buildOperationExecutor.call(new CallableBuildOperation<List<CacheEntryIndex.Entry>>() {
+            @Override
+            public List<CacheEntryIndex.Entry> call(BuildOperationContext context) {
+                return findEntriesToDelete(persistentCache, entryIndex.getEntries());
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Choosing entries to delete from " + persistentCache);
+            }
+        });
+
+        if (!entriesForDeletion.isEmpty()) {
+            buildOperationExecutor.run(new RunnableBuildOperation() {
+                @Override
+                public void run(BuildOperationContext context) {
+                    cleanupEntries(persistentCache, entryIndex, entriesForDeletion);
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    return BuildOperationDescriptor.displayName("Deleting files for " + persistentCache);
+                }
+            });
+        }
+    }
+
+    List<CacheEntryIndex.Entry> findEntriesToDelete(final PersistentCache persistentCache, List<CacheEntryIndex.Entry> entries) {
+        if (entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<CacheEntryIndex.Entry> sortedEntries = Lists.newArrayList(entries);
+        Collections.sort(sortedEntries, MOST_RECENTLY_ACCESSED_FIRST);
+
+        // All sizes are in bytes
+        long totalSize = 0;
+        long targetSize = targetSizeInMB * 1024 * 1024;
+        final List<CacheEntryIndex.Entry> entriesForDeletion = Lists.newArrayList();
+
+        for (CacheEntryIndex.Entry entry : sortedEntries) {
+            totalSize += entry.getSize();
+
+            if (totalSize > targetSize) {
+                entriesForDeletion.add(entry);
+            }
+        }
+
+        LOGGER.info("{} consuming {} MB (target: {} MB).", persistentCache, FileUtils.byteCountToDisplaySize(totalSize), targetSizeInMB);
+
+        return entriesForDeletion;
+    }
+
+    void cleanupEntries(final PersistentCache persistentCache, CacheEntryIndex entryIndex, final List<CacheEntryIndex.Entry> entriesForDeletion) {
+        long removedSize = 0;
+        List<CacheEntryIndex.Entry> removedEntries = Lists.newArrayListWithCapacity(entriesForDeletion.size());
+        for (CacheEntryIndex.Entry entry : entriesForDeletion) {
+            File file = entry.getFile();
+            try {
+                if (file.delete() || !file.exists()) {
+                    removedSize += entry.getSize();
+                    removedEntries.add(entry);
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Could not clean up cache " + file, e);
+            }
+        }
+        // Entries that could not be deleted stay in the index, so that they are deleted by a later cleanup
+        entryIndex.remove(removedEntries);
+        LOGGER.info("{} removing {} cache entries ({} MB reclaimed).", persistentCache, removedEntries.size(), FileUtils.byteCountToDisplaySize(removedSize));
+    }
+
     List<File> findFilesToDelete(final PersistentCache persistentCache, File[] filesEligibleForCleanup) {
         Arrays.sort(filesEligibleForCleanup, NEWEST_FIRST);
 
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.PersistentIndexedStore;
+import org.gradle.cache.internal.btree.KeyHasher;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link PersistentIndexedStore} that appends every change to the end of a log file, and keeps the location of the latest value of each key in memory.
+ *
+ * <p>The file starts with a header holding a generation number, followed by records. Each record holds the length of the serialized value, the hash of
+ * the key, a checksum and the serialized value. A removal is recorded as a record without a value. The log is replayed when the store is opened to
+ * build the index. Replay stops at the first record that fails its checksum, which can only be a partially written record at the end of the file,
+ * and the file is truncated there.</p>
+ *
+ * <p>When the store is closed and more than half of the file is taken by values that have been replaced or removed, the live records are copied to a
+ * new file with a new generation number, which then replaces the log.</p>
+ *
+ * <p>The index is kept when the store is closed. Other processes only ever append to the log or replace it with a new generation, so when the store
+ * is opened again only the records appended in the meantime are replayed.</p>
+ */
+public class LogStructuredPersistentIndexedCache<K, V> implements PersistentIndexedStore<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredPersistentIndexedCache.class);
+    private static final Random GENERATIONS = new Random();
+    private static final long MAGIC = 0x47524C4F47535452L;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int REMOVED = -1;
+    private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    private final File cacheFile;
+    private final File compactedFile;
+    private final KeyHasher<K> keyHasher;
+    private final Serializer<V> serializer;
+    private final RecordBuffer recordBuffer = new RecordBuffer();
+    private final CRC32 crc = new CRC32();
+    private RecordIndex index = new RecordIndex();
+    private RandomAccessFile file;
+    private long generation;
+    // The end of the last record in the log
+    private long end;
+    // The number of bytes taken by records that have been replaced or removed
+    private long garbage;
+
+    public LogStructuredPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this.cacheFile = cacheFile;
+        this.compactedFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".compacted");
+        this.keyHasher = new KeyHasher<K>(keySerializer);
+        this.serializer = valueSerializer;
+        open();
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + cacheFile.getName() + " (" + cacheFile + ")";
+    }
+
+    /**
+     * Opens the log, when it is not already open, replaying any records added since it was closed.
+     */
+    public void open() {
+        if (file != null) {
+            return;
+        }
+        LOGGER.debug("Opening {}", this);
+        try {
+            cacheFile.getParentFile().mkdirs();
+            file = new RandomAccessFile(cacheFile, "rw");
+            doOpen();
+        } catch (Exception e) {
+            closeFile();
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    private void doOpen() throws IOException {
+        long length = file.length();
+        if (length < HEADER_SIZE) {
+            startNewLog();
+            return;
+        }
+        file.seek(0);
+        if (file.readLong() != MAGIC || file.readInt() != VERSION) {
+            LOGGER.warn("{} is corrupt. Discarding.", this);
+            startNewLog();
+            return;
+        }
+        long currentGeneration = file.readLong();
+        if (currentGeneration != generation || length < end) {
+            // Replaced by another process, or opened for the first time
+            generation = currentGeneration;
+            index.clear();
+            end = HEADER_SIZE;
+            garbage = 0;
+        }
+        replay(length);
+    }
+
+    private void startNewLog() throws IOException {
+        compactedFile.delete();
+        generation = GENERATIONS.nextLong();
+        index.clear();
+        end = HEADER_SIZE;
+        garbage = 0;
+        file.setLength(0);
+        file.writeLong(MAGIC);
+        file.writeInt(VERSION);
+        file.writeLong(generation);
+    }
+
+    private void replay(long length) throws IOException {
+        if (end == length) {
+            return;
+        }
+        file.getChannel().position(end);
+        // Not closed, as that would close the file
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(file.getChannel()), 64 * 1024));
+        byte[] record = new byte[1024];
+        long offset = end;
+        while (length - offset >= RECORD_HEADER_SIZE) {
+            input.readFully(record, 0, RECORD_HEADER_SIZE);
+            int valueLength = readInt(record, 0);
+            if (valueLength < REMOVED || valueLength > length - offset - RECORD_HEADER_SIZE) {
+                break;
+            }
+            int size = RECORD_HEADER_SIZE + Math.max(valueLength, 0);
+            if (record.length < size) {
+                record = grow(record, size);
+            }
+            input.readFully(record, RECORD_HEADER_SIZE, size - RECORD_HEADER_SIZE);
+            if (readInt(record, 12) != checksum(record, size)) {
+                break;
+            }
+            indexRecord(readLong(record, 4), offset, size, valueLength == REMOVED);
+            offset += size;
+        }
+        if (offset < length) {
+            LOGGER.warn("{} ends with a partially written entry. Discarding it.", this);
+            file.setLength(offset);
+        }
+        end = offset;
+    }
+
+    private void indexRecord(long keyHash, long offset, int size, boolean removed) {
+        int slot = index.find(keyHash);
+        if (slot >= 0) {
+            garbage += index.sizeAt(slot);
+        }
+        if (!removed) {
+            index.put(keyHash, offset, size);
+            return;
+        }
+        garbage += size;
+        if (slot >= 0) {
+            index.removeAt(slot);
+        }
+    }
+
+    public V get(K key) {
+        try {
+            open();
+            long keyHash = keyHasher.getHashCode(key);
+            int slot = index.find(keyHash);
+            if (slot < 0) {
+                return null;
+            }
+            int size = index.sizeAt(slot);
+            byte[] record = new byte[size];
+            file.seek(index.offsetAt(slot));
+            file.readFully(record);
+            if (readLong(record, 4) != keyHash || readInt(record, 12) != checksum(record, size)) {
+                LOGGER.warn("{} contains a corrupt entry for '{}'. Discarding it.", this, key);
+                garbage += size;
+                index.removeAt(slot);
+                return null;
+            }
+            return serializer.read(new KryoBackedDecoder(new ByteArrayInputStream(record, RECORD_HEADER_SIZE, size - RECORD_HEADER_SIZE)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    public void put(K key, V value) {
+        try {
+            open();
+            recordBuffer.reset();
+            KryoBackedEncoder encoder = new KryoBackedEncoder(recordBuffer);
+            serializer.write(encoder, value);
+            encoder.flush();
+            append(keyHasher.getHashCode(key), recordBuffer.size() - RECORD_HEADER_SIZE);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    public void remove(K key) {
+        try {
+            open();
+            long keyHash = keyHasher.getHashCode(key);
+            if (index.find(keyHash) < 0) {
+                return;
+            }
+            recordBuffer.reset();
+            append(keyHash, REMOVED);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    /**
+     * Appends the record in the record buffer. The record is written with a single write, so that it is either fully written or fails its checksum.
+     */
+    private void append(long keyHash, int valueLength) throws IOException {
+        byte[] record = recordBuffer.buffer();
+        int size = recordBuffer.size();
+        writeInt(record, 0, valueLength);
+        writeLong(record, 4, keyHash);
+        writeInt(record, 12, checksum(record, size));
+        file.seek(end);
+        file.write(record, 0, size);
+        indexRecord(keyHash, end, size, valueLength == REMOVED);
+        end += size;
+    }
+
+    public void close() {
+        if (file == null) {
+            return;
+        }
+        LOGGER.debug("Closing {}", this);
+        try {
+            if (garbage > 0 && end > MIN_COMPACTION_SIZE && 2 * garbage > end - HEADER_SIZE) {
+                compact();
+            }
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Could not compact %s.", this), e);
+            compactedFile.delete();
+        } finally {
+            closeFile();
+        }
+    }
+
+    private void closeFile() {
+        try {
+            if (file != null) {
+                file.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            file = null;
+        }
+    }
+
+    /**
+     * Copies the live records to a new log, in the order they appear in the current log, and replaces the current log with it.
+     */
+    private void compact() throws IOException {
+        LOGGER.debug("Compacting {}", this);
+        long newGeneration = GENERATIONS.nextLong();
+        RecordIndex newIndex = new RecordIndex();
+        long position = HEADER_SIZE;
+        FileOutputStream outputStream = new FileOutputStream(compactedFile);
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1024));
+            output.writeLong(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(newGeneration);
+            byte[] record = new byte[1024];
+            for (long offset : index.sortedOffsets()) {
+                file.seek(offset);
+                file.readFully(record, 0, RECORD_HEADER_SIZE);
+                int size = RECORD_HEADER_SIZE + readInt(record, 0);
+                if (record.length < size) {
+                    record = grow(record, size);
+                }
+                file.readFully(record, RECORD_HEADER_SIZE, size - RECORD_HEADER_SIZE);
+                output.write(record, 0, size);
+                newIndex.put(readLong(record, 4), position, size);
+                position += size;
+            }
+            output.flush();
+            outputStream.getFD().sync();
+        } finally {
+            outputStream.close();
+        }
+        file.close();
+        file = null;
+        if (!compactedFile.renameTo(cacheFile)) {
+            // Cannot replace an existing file on some platforms
+            if (!cacheFile.delete() || !compactedFile.renameTo(cacheFile)) {
+                throw new IOException(String.format("Could not replace %s with %s.", cacheFile, compactedFile));
+            }
+        }
+        index = newIndex;
+        generation = newGeneration;
+        end = position;
+        garbage = 0;
+    }
+
+    private static byte[] grow(byte[] record, int size) {
+        byte[] larger = new byte[Math.max(size, record.length * 2)];
+        System.arraycopy(record, 0, larger, 0, RECORD_HEADER_SIZE);
+        return larger;
+    }
+
+    private int checksum(byte[] record, int size) {
+        crc.reset();
+        crc.update(record, 0, 12);
+        crc.update(record, RECORD_HEADER_SIZE, size - RECORD_HEADER_SIZE);
+        return (int) crc.getValue();
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8 | bytes[offset + 3] & 0xFF;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return (long) readInt(bytes, offset) << 32 | readInt(bytes, offset + 4) & 0xFFFFFFFFL;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        writeInt(bytes, offset, (int) (value >>> 32));
+        writeInt(bytes, offset + 4, (int) value);
+    }
+
+    /**
+     * Collects a record, leaving room for the record header in front of the serialized value.
+     */
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(1024);
+            reset();
+        }
+
+        @Override
+        public synchronized void reset() {
+            super.reset();
+            count = RECORD_HEADER_SIZE;
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
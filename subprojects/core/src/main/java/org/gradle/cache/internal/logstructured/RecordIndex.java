@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured;
+
+import java.util.Arrays;
+
+/**
+ * Maps the hash of a key to the offset and size of the latest record for the key in the log.
+ *
+ * <p>An open addressing hash table over primitive arrays, so that an entry takes 20 bytes regardless of the number of entries. The key hashes are
+ * already uniformly distributed, so they are used to select a slot directly.</p>
+ */
+class RecordIndex {
+    private static final long EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] keys;
+    private long[] offsets;
+    private int[] sizes;
+    private int mask;
+    private int count;
+
+    RecordIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        offsets = new long[capacity];
+        sizes = new int[capacity];
+        Arrays.fill(offsets, EMPTY);
+        mask = capacity - 1;
+        count = 0;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Returns the slot holding the given key, or -1 when the key is not present.
+     */
+    int find(long key) {
+        for (int slot = slotFor(key); offsets[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    long offsetAt(int slot) {
+        return offsets[slot];
+    }
+
+    int sizeAt(int slot) {
+        return sizes[slot];
+    }
+
+    void put(long key, long offset, int size) {
+        if (2 * (count + 1) > keys.length) {
+            grow();
+        }
+        int slot = slotFor(key);
+        while (offsets[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (offsets[slot] == EMPTY) {
+            count++;
+        }
+        keys[slot] = key;
+        offsets[slot] = offset;
+        sizes[slot] = size;
+    }
+
+    void removeAt(int slot) {
+        // Shift back the entries that follow in the same run, so that lookups never stop at the removed slot
+        int hole = slot;
+        for (int current = (slot + 1) & mask; offsets[current] != EMPTY; current = (current + 1) & mask) {
+            int preferred = slotFor(keys[current]);
+            if (((current - preferred) & mask) >= ((current - hole) & mask)) {
+                keys[hole] = keys[current];
+                offsets[hole] = offsets[current];
+                sizes[hole] = sizes[current];
+                hole = current;
+            }
+        }
+        offsets[hole] = EMPTY;
+        count--;
+    }
+
+    void clear() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the offsets of all records, in ascending order.
+     */
+    long[] sortedOffsets() {
+        long[] result = new long[count];
+        int next = 0;
+        for (long offset : offsets) {
+            if (offset != EMPTY) {
+                result[next++] = offset;
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldOffsets = offsets;
+        int[] oldSizes = sizes;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldOffsets[i] != EMPTY) {
+                put(oldKeys[i], oldOffsets[i], oldSizes[i]);
+            }
+        }
+    }
+
+    private int slotFor(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.file.TemporaryFileProvider;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Stores entries in the background, so that the task producing an entry does not need to wait for it to be uploaded.
+ *
+ * <p>The entry is written to a temporary file on the calling thread, and then handed to a single background thread that stores it in the
+ * delegate. At most {@code maxPendingStores} entries are queued at any time; when the queue is full, storing waits for an earlier entry
+ * to be uploaded. Closing the service waits for all queued entries to be stored.</p>
+ */
+public class BackgroundStoringBuildCacheServiceDecorator extends AbstractRoleAwareBuildCacheServiceDecorator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackgroundStoringBuildCacheServiceDecorator.class);
+
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final ExecutorFactory executorFactory;
+    private final Semaphore queueSlots;
+    private final ConcurrentMap<String, File> pendingEntries = new ConcurrentHashMap<String, File>();
+    private StoppableExecutor executor;
+    private boolean closed;
+
+    public BackgroundStoringBuildCacheServiceDecorator(int maxPendingStores, TemporaryFileProvider temporaryFileProvider, ExecutorFactory executorFactory, RoleAwareBuildCacheService delegate) {
+        super(delegate);
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.executorFactory = executorFactory;
+        this.queueSlots = new Semaphore(maxPendingStores);
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        File pendingEntry = pendingEntries.get(key.getHashCode());
+        if (pendingEntry != null) {
+            try {
+                InputStream input = new FileInputStream(pendingEntry);
+                try {
+                    reader.readFrom(input);
+                    return true;
+                } finally {
+                    IOUtils.closeQuietly(input);
+                }
+            } catch (FileNotFoundException e) {
+                // Entry has been stored in the meantime
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return super.load(key, reader);
+    }
+
+    @Override
+    public void store(final BuildCacheKey key, BuildCacheEntryWriter writer) throws BuildCacheException {
+        StoppableExecutor executor = getExecutor();
+        final File entry = temporaryFileProvider.createTemporaryFile("gradle_cache", "entry");
+        try {
+            writeEntry(writer, entry);
+        } catch (RuntimeException e) {
+            GFileUtils.deleteQuietly(entry);
+            throw e;
+        }
+
+        try {
+            queueSlots.acquire();
+        } catch (InterruptedException e) {
+            GFileUtils.deleteQuietly(entry);
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        pendingEntries.put(key.getHashCode(), entry);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    BackgroundStoringBuildCacheServiceDecorator.super.store(key, new FileBuildCacheEntryWriter(entry));
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Could not store entry {} in {} build cache", key, getRole(), e);
+                } finally {
+                    pendingEntries.remove(key.getHashCode(), entry);
+                    GFileUtils.deleteQuietly(entry);
+                    queueSlots.release();
+                }
+            }
+        });
+    }
+
+    private static void writeEntry(BuildCacheEntryWriter writer, File destination) {
+        try {
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(destination));
+            try {
+                writer.writeTo(output);
+            } finally {
+                output.close();
+            }
+        } catch (FileNotFoundException e) {
+            throw new BuildCacheException("Couldn't create local file for cache entry", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized StoppableExecutor getExecutor() {
+        if (closed) {
+            throw new IllegalStateException(String.format("The %s build cache has been closed", getRole()));
+        }
+        if (executor == null) {
+            executor = executorFactory.create("Build cache " + getRole() + " store", 1);
+        }
+        return executor;
+    }
+
+    @Override
+    public void close() throws IOException {
+        StoppableExecutor executor;
+        synchronized (this) {
+            closed = true;
+            executor = this.executor;
+            this.executor = null;
+        }
+        if (executor != null) {
+            LOGGER.debug("Waiting for pending stores to {} build cache", getRole());
+            executor.stop();
+        }
+        super.close();
+    }
+
+    private static class FileBuildCacheEntryWriter implements BuildCacheEntryWriter {
+        private final File source;
+
+        private FileBuildCacheEntryWriter(File source) {
+            this.source = source;
+        }
+
+        @Override
+        public void writeTo(OutputStream output) throws IOException {
+            Files.copy(source, output);
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.gradle.caching.BuildCacheServiceFactory;
 import org.gradle.caching.configuration.BuildCache;
 import org.gradle.caching.configuration.internal.BuildCacheConfigurationInternal;
 import org.gradle.internal.Cast;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.CallableBuildOperation;
@@ -46,20 +47,23 @@ import java.util.Map;
 public class BuildCacheServiceProvider {
     private static final Logger LOGGER = Logging.getLogger(BuildCacheServiceProvider.class);
     private static final int MAX_ERROR_COUNT_FOR_BUILD_CACHE = 3;
+    private static final int MAX_PENDING_REMOTE_STORES = 16;
 
     private final BuildCacheConfigurationInternal buildCacheConfiguration;
     private final BuildOperationExecutor buildOperationExecutor;
     private final Instantiator instantiator;
     private final StartParameter startParameter;
     private final TemporaryFileProvider temporaryFileProvider;
+    private final ExecutorFactory executorFactory;
 
     @Inject
-    public BuildCacheServiceProvider(BuildCacheConfigurationInternal buildCacheConfiguration, StartParameter startParameter, Instantiator instantiator, BuildOperationExecutor buildOperationExecutor, TemporaryFileProvider temporaryFileProvider) {
+    public BuildCacheServiceProvider(BuildCacheConfigurationInternal buildCacheConfiguration, StartParameter startParameter, Instantiator instantiator, BuildOperationExecutor buildOperationExecutor, TemporaryFileProvider temporaryFileProvider, ExecutorFactory executorFactory) {
         this.buildCacheConfiguration = buildCacheConfiguration;
         this.startParameter = startParameter;
         this.instantiator = instantiator;
         this.buildOperationExecutor = buildOperationExecutor;
         this.temporaryFileProvider = temporaryFileProvider;
+        this.executorFactory = executorFactory;
     }
 
     public BuildCacheService createBuildCacheService(final Path buildIdentityPath) {
@@ -109,7 +113,7 @@ public class BuildCacheServiceProvider {
 
                 //noinspection ConstantConditions
                 RoleAwareBuildCacheService remoteRoleAware = remoteEnabled
-                    ? decorate(remoteDescribedService.service, "remote")
+                    ? decorateRemote(decorate(remoteDescribedService.service, "remote"), remote.isPush())
                     : null;
 
                 if (localEnabled && remoteEnabled) {
@@ -150,6 +154,13 @@ public class BuildCacheServiceProvider {
         return decoratedService;
     }
 
+    private RoleAwareBuildCacheService decorateRemote(RoleAwareBuildCacheService decoratedService, boolean pushEnabled) {
+        if (pushEnabled) {
+            decoratedService = new BackgroundStoringBuildCacheServiceDecorator(MAX_PENDING_REMOTE_STORES, temporaryFileProvider, executorFactory, decoratedService);
+        }
+        return new MissCachingBuildCacheServiceDecorator(decoratedService);
+    }
+
     private <T extends BuildCache> DescribedBuildCacheService createRawBuildCacheService(final T configuration, String role, Path buildIdentityPath) {
         Class<? extends BuildCacheServiceFactory<T>> castFactoryType = Cast.uncheckedCast(
             buildCacheConfiguration.getBuildCacheServiceFactoryType(configuration.getClass())
@@ -28,11 +28,14 @@ import org.gradle.caching.BuildCacheKey;
 import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.util.GFileUtils;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 
 public class DispatchingBuildCacheService implements RoleAwareBuildCacheService {
@@ -60,7 +63,42 @@ public class DispatchingBuildCacheService implements RoleAwareBuildCacheService
 
     @Override
     public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
-        return local.load(key, reader) || remote.load(key, reader);
+        if (local.load(key, reader)) {
+            return true;
+        }
+        if (pushToLocal) {
+            return loadFromRemoteAndStoreLocally(key, reader);
+        }
+        return remote.load(key, reader);
+    }
+
+    private boolean loadFromRemoteAndStoreLocally(BuildCacheKey key, BuildCacheEntryReader reader) {
+        // Keep a copy of entries found in the remote cache, so that later builds can load them from the local cache
+        final File destination = temporaryFileProvider.createTemporaryFile("gradle_cache", "entry");
+        try {
+            boolean found = remote.load(key, new BuildCacheEntryReader() {
+                @Override
+                public void readFrom(InputStream input) throws IOException {
+                    Files.asByteSink(destination).writeFrom(input);
+                }
+            });
+            if (!found) {
+                return false;
+            }
+            InputStream input = new BufferedInputStream(new FileInputStream(destination));
+            try {
+                reader.readFrom(input);
+            } finally {
+                input.close();
+            }
+            // Only keep entries that could be read, so that a corrupt entry is not copied to the local cache
+            local.store(key, new CopyBuildCacheEntryWriter(destination));
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            GFileUtils.deleteQuietly(destination);
+        }
     }
 
     @Override
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import com.google.common.collect.Sets;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+
+import java.util.Set;
+
+/**
+ * Remembers the keys that were not found in the delegate, so that the same entry is not requested again during the lifetime of this service.
+ * Storing an entry forgets that it was missing.
+ */
+public class MissCachingBuildCacheServiceDecorator extends AbstractRoleAwareBuildCacheServiceDecorator {
+    private final Set<String> missingKeys = Sets.newConcurrentHashSet();
+
+    public MissCachingBuildCacheServiceDecorator(RoleAwareBuildCacheService delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        if (missingKeys.contains(key.getHashCode())) {
+            return false;
+        }
+        boolean found = super.load(key, reader);
+        if (!found) {
+            missingKeys.add(key.getHashCode());
+        }
+        return found;
+    }
+
+    @Override
+    public void store(BuildCacheKey key, BuildCacheEntryWriter writer) throws BuildCacheException {
+        missingKeys.remove(key.getHashCode());
+        super.store(key, writer);
+    }
+}
@@ -0,0 +1,537 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.GradleException;
+import org.gradle.api.JavaVersion;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.FileVisitor;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.file.collections.DefaultDirectoryWalkerFactory;
+import org.gradle.api.internal.tasks.CacheableTaskOutputFilePropertySpec.OutputType;
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.api.specs.Specs;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginMetadata;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.internal.nativeplatform.filesystem.FileSystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Packages task output in a format that can be compressed and extracted in parallel.
+ *
+ * <p>A cache entry starts with the origin metadata, followed by an index of all the directories and files of each output property.
+ * The contents of the files follow as a sequence of independently deflated blocks, each referring to a file of the index and an offset
+ * within that file. Blocks are compressed on a bounded pool while packing and written in order. When unpacking, the index is used to
+ * create the output files up-front, so that blocks read from the stream can be inflated and written to their files concurrently,
+ * without buffering the whole entry.</p>
+ *
+ * <p>Entries that do not start with the format's magic number are unpacked by the given fallback packer.</p>
+ */
+public class ParallelTaskOutputPacker implements TaskOutputPacker, Stoppable {
+    private static final int MAGIC = 0x47544f50;
+    private static final int FORMAT_VERSION = 1;
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final int END_OF_BLOCKS = -1;
+
+    private static final byte PROPERTY_MISSING = 0;
+    private static final byte PROPERTY_FILE = 1;
+    private static final byte PROPERTY_DIRECTORY = 2;
+
+    private final DefaultDirectoryWalkerFactory directoryWalkerFactory;
+    private final FileSystem fileSystem;
+    private final ExecutorFactory executorFactory;
+    private final int parallelism;
+    private final TaskOutputPacker fallback;
+    private StoppableExecutor executor;
+
+    public ParallelTaskOutputPacker(FileSystem fileSystem, ExecutorFactory executorFactory, int parallelism, TaskOutputPacker fallback) {
+        this.directoryWalkerFactory = new DefaultDirectoryWalkerFactory(JavaVersion.current(), fileSystem);
+        this.fileSystem = fileSystem;
+        this.executorFactory = executorFactory;
+        this.parallelism = Math.max(1, parallelism);
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void pack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, OutputStream output, TaskOutputOriginWriter writeOrigin) {
+        try {
+            DataOutputStream dataOutput = new DataOutputStream(new BufferedOutputStream(output));
+            dataOutput.writeInt(MAGIC);
+            dataOutput.writeInt(FORMAT_VERSION);
+            packMetadata(writeOrigin, dataOutput);
+            List<OutputEntry> entries = packIndex(propertySpecs, dataOutput);
+            packBlocks(entries, dataOutput);
+            dataOutput.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void packMetadata(TaskOutputOriginWriter writeOrigin, DataOutputStream output) throws IOException {
+        ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+        writeOrigin.execute(metadata);
+        output.writeInt(metadata.size());
+        metadata.writeTo(output);
+    }
+
+    private List<OutputEntry> packIndex(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, DataOutputStream output) throws IOException {
+        List<OutputEntry> allEntries = Lists.newArrayList();
+        List<ResolvedTaskOutputFilePropertySpec> packedSpecs = Lists.newArrayList();
+        List<List<OutputEntry>> packedEntries = Lists.newArrayList();
+        for (ResolvedTaskOutputFilePropertySpec spec : propertySpecs) {
+            if (spec.getOutputFile() == null) {
+                continue;
+            }
+            try {
+                packedEntries.add(collectEntries(spec));
+                packedSpecs.add(spec);
+            } catch (Exception ex) {
+                throw new GradleException(String.format("Could not pack property '%s': %s", spec.getPropertyName(), ex.getMessage()), ex);
+            }
+        }
+
+        output.writeInt(packedSpecs.size());
+        for (int i = 0; i < packedSpecs.size(); i++) {
+            ResolvedTaskOutputFilePropertySpec spec = packedSpecs.get(i);
+            List<OutputEntry> entries = packedEntries.get(i);
+            output.writeUTF(spec.getPropertyName());
+            output.writeByte(!spec.getOutputFile().exists() ? PROPERTY_MISSING : spec.getOutputType() == OutputType.DIRECTORY ? PROPERTY_DIRECTORY : PROPERTY_FILE);
+            output.writeInt(entries.size());
+            for (OutputEntry entry : entries) {
+                output.writeUTF(entry.path);
+                output.writeBoolean(entry.directory);
+                output.writeLong(entry.lastModified);
+                output.writeInt(entry.mode);
+                output.writeLong(entry.size);
+                allEntries.add(entry);
+            }
+        }
+        return allEntries;
+    }
+
+    private List<OutputEntry> collectEntries(ResolvedTaskOutputFilePropertySpec spec) {
+        File outputFile = spec.getOutputFile();
+        final List<OutputEntry> entries = Lists.newArrayList();
+        if (!outputFile.exists()) {
+            return entries;
+        }
+        switch (spec.getOutputType()) {
+            case DIRECTORY:
+                if (!outputFile.isDirectory()) {
+                    throw new IllegalArgumentException(String.format("Expected '%s' to be a directory", outputFile));
+                }
+                entries.add(new OutputEntry(outputFile, "", true, outputFile.lastModified(), fileSystem.getUnixMode(outputFile), 0));
+                FileVisitor visitor = new FileVisitor() {
+                    @Override
+                    public void visitDir(FileVisitDetails dirDetails) {
+                        entries.add(new OutputEntry(dirDetails.getFile(), dirDetails.getRelativePath().getPathString(), true, dirDetails.getLastModified(), dirDetails.getMode(), 0));
+                    }
+
+                    @Override
+                    public void visitFile(FileVisitDetails fileDetails) {
+                        entries.add(new OutputEntry(fileDetails.getFile(), fileDetails.getRelativePath().getPathString(), false, fileDetails.getLastModified(), fileDetails.getMode(), fileDetails.getSize()));
+                    }
+                };
+                directoryWalkerFactory.create().walkDir(outputFile, RelativePath.EMPTY_ROOT, visitor, Specs.satisfyAll(), new AtomicBoolean(), false);
+                break;
+            case FILE:
+                if (!outputFile.isFile()) {
+                    throw new IllegalArgumentException(String.format("Expected '%s' to be a file", outputFile));
+                }
+                entries.add(new OutputEntry(outputFile, "", false, outputFile.lastModified(), fileSystem.getUnixMode(outputFile), outputFile.length()));
+                break;
+            default:
+                throw new AssertionError();
+        }
+        return entries;
+    }
+
+    private void packBlocks(List<OutputEntry> entries, DataOutputStream output) throws IOException {
+        // Keep a bounded number of blocks in flight, so that memory use does not depend on the size of the output
+        Deque<Future<CompressedBlock>> pending = new ArrayDeque<Future<CompressedBlock>>();
+        int maxPending = parallelism * 2;
+        try {
+            for (int id = 0; id < entries.size(); id++) {
+                OutputEntry entry = entries.get(id);
+                if (entry.directory) {
+                    continue;
+                }
+                for (long offset = 0; offset < entry.size; offset += BLOCK_SIZE) {
+                    int length = (int) Math.min(BLOCK_SIZE, entry.size - offset);
+                    pending.addLast(getExecutor().submit(new CompressBlock(id, entry.file, offset, length)));
+                    if (pending.size() >= maxPending) {
+                        writeBlock(await(pending.removeFirst()), output);
+                    }
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeBlock(await(pending.removeFirst()), output);
+            }
+        } finally {
+            for (Future<CompressedBlock> future : pending) {
+                future.cancel(false);
+            }
+        }
+        output.writeInt(END_OF_BLOCKS);
+    }
+
+    private static void writeBlock(CompressedBlock block, DataOutputStream output) throws IOException {
+        output.writeInt(block.entryId);
+        output.writeLong(block.offset);
+        output.writeInt(block.length);
+        output.writeInt(block.compressedLength);
+        output.write(block.data, 0, block.compressedLength);
+    }
+
+    @Override
+    public TaskOutputOriginMetadata unpack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, InputStream input, TaskOutputOriginReader readOrigin) {
+        try {
+            PushbackInputStream pushbackInput = new PushbackInputStream(input, 4);
+            byte[] magic = new byte[4];
+            int read = ByteStreams.read(pushbackInput, magic, 0, magic.length);
+            pushbackInput.unread(magic, 0, read);
+            if (read < magic.length || Ints.fromByteArray(magic) != MAGIC) {
+                return fallback.unpack(propertySpecs, pushbackInput, readOrigin);
+            }
+
+            DataInputStream dataInput = new DataInputStream(new BufferedInputStream(pushbackInput));
+            dataInput.readInt();
+            int version = dataInput.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException("Cached result format error, unsupported format version: " + version);
+            }
+            TaskOutputOriginMetadata originMetadata = unpackMetadata(readOrigin, dataInput);
+            List<OutputEntry> entries = unpackIndex(propertySpecs, dataInput);
+            unpackBlocks(entries, dataInput);
+            for (int id = entries.size() - 1; id >= 0; id--) {
+                // Directories are updated last, as creating their children changes their modification time
+                OutputEntry entry = entries.get(id);
+                //noinspection OctalInteger
+                fileSystem.chmod(entry.file, entry.mode & 0777);
+                if (!entry.file.setLastModified(entry.lastModified)) {
+                    throw new UnsupportedOperationException(String.format("Could not set modification time for '%s'", entry.file));
+                }
+            }
+            return originMetadata;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static TaskOutputOriginMetadata unpackMetadata(TaskOutputOriginReader readOrigin, DataInputStream input) throws IOException {
+        byte[] metadata = new byte[input.readInt()];
+        input.readFully(metadata);
+        return readOrigin.execute(new ByteArrayInputStream(metadata));
+    }
+
+    private List<OutputEntry> unpackIndex(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, DataInputStream input) throws IOException {
+        Map<String, ResolvedTaskOutputFilePropertySpec> propertySpecsMap = new TreeMap<String, ResolvedTaskOutputFilePropertySpec>();
+        for (ResolvedTaskOutputFilePropertySpec propertySpec : propertySpecs) {
+            propertySpecsMap.put(propertySpec.getPropertyName(), propertySpec);
+        }
+
+        List<OutputEntry> allEntries = Lists.newArrayList();
+        int propertyCount = input.readInt();
+        for (int i = 0; i < propertyCount; i++) {
+            String propertyName = input.readUTF();
+            ResolvedTaskOutputFilePropertySpec propertySpec = propertySpecsMap.get(propertyName);
+            if (propertySpec == null) {
+                throw new IllegalStateException(String.format("No output property '%s' registered", propertyName));
+            }
+            File propertyRoot = propertySpec.getOutputFile();
+            if (propertyRoot == null) {
+                throw new IllegalStateException("Optional property should have a value: " + propertyName);
+            }
+            byte kind = input.readByte();
+            prepareProperty(propertySpec, propertyRoot, kind);
+
+            int entryCount = input.readInt();
+            for (int j = 0; j < entryCount; j++) {
+                String path = input.readUTF();
+                boolean directory = input.readBoolean();
+                long lastModified = input.readLong();
+                int mode = input.readInt();
+                long size = input.readLong();
+                File file = path.length() == 0 ? propertyRoot : new File(propertyRoot, path);
+                OutputEntry entry = new OutputEntry(file, path, directory, lastModified, mode, size);
+                createEntry(entry);
+                allEntries.add(entry);
+            }
+        }
+        return allEntries;
+    }
+
+    private static void prepareProperty(ResolvedTaskOutputFilePropertySpec propertySpec, File propertyRoot, byte kind) throws IOException {
+        OutputType outputType = propertySpec.getOutputType();
+        switch (kind) {
+            case PROPERTY_MISSING:
+                if (!TarTaskOutputPacker.makeDirectory(propertyRoot.getParentFile())) {
+                    // Make sure output is removed if it exists already
+                    if (propertyRoot.exists()) {
+                        FileUtils.forceDelete(propertyRoot);
+                    }
+                }
+                return;
+            case PROPERTY_DIRECTORY:
+                if (outputType != OutputType.DIRECTORY) {
+                    throw new IllegalStateException("Property should be an output directory property: " + propertySpec.getPropertyName());
+                }
+                break;
+            case PROPERTY_FILE:
+                if (outputType == OutputType.DIRECTORY) {
+                    throw new IllegalStateException("Property should be an output file property: " + propertySpec.getPropertyName());
+                }
+                break;
+            default:
+                throw new IllegalStateException("Cached result format error, invalid property type: " + kind);
+        }
+        TarTaskOutputPacker.ensureDirectoryForProperty(outputType, propertyRoot);
+    }
+
+    private static void createEntry(OutputEntry entry) throws IOException {
+        if (entry.directory) {
+            FileUtils.forceMkdir(entry.file);
+        } else {
+            RandomAccessFile file = new RandomAccessFile(entry.file, "rw");
+            try {
+                file.setLength(entry.size);
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    private void unpackBlocks(List<OutputEntry> entries, DataInputStream input) throws IOException {
+        // Bound the number of blocks read ahead of the threads writing them
+        Semaphore available = new Semaphore(parallelism * 2);
+        List<Future<?>> written = Lists.newArrayList();
+        try {
+            int entryId;
+            while ((entryId = input.readInt()) != END_OF_BLOCKS) {
+                long offset = input.readLong();
+                int length = input.readInt();
+                int compressedLength = input.readInt();
+                if (entryId < 0 || entryId >= entries.size() || entries.get(entryId).directory || length > BLOCK_SIZE || offset + length > entries.get(entryId).size) {
+                    throw new IllegalStateException("Cached result format error, invalid block for entry " + entryId);
+                }
+                byte[] data = new byte[compressedLength];
+                input.readFully(data);
+                available.acquire();
+                written.add(getExecutor().submit(new DecompressBlock(entries.get(entryId).file, offset, length, data, available)));
+            }
+            for (Future<?> future : written) {
+                await(future);
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            for (Future<?> future : written) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private synchronized StoppableExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Build cache output packer", parallelism);
+        }
+        return executor;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+
+    private static class OutputEntry {
+        private final File file;
+        private final String path;
+        private final boolean directory;
+        private final long lastModified;
+        private final int mode;
+        private final long size;
+
+        OutputEntry(File file, String path, boolean directory, long lastModified, int mode, long size) {
+            this.file = file;
+            this.path = path;
+            this.directory = directory;
+            this.lastModified = lastModified;
+            this.mode = mode;
+            this.size = size;
+        }
+    }
+
+    private static class CompressedBlock {
+        private final int entryId;
+        private final long offset;
+        private final int length;
+        private final byte[] data;
+        private final int compressedLength;
+
+        CompressedBlock(int entryId, long offset, int length, byte[] data, int compressedLength) {
+            this.entryId = entryId;
+            this.offset = offset;
+            this.length = length;
+            this.data = data;
+            this.compressedLength = compressedLength;
+        }
+    }
+
+    private static class CompressBlock implements Callable<CompressedBlock> {
+        private final int entryId;
+        private final File file;
+        private final long offset;
+        private final int length;
+
+        CompressBlock(int entryId, File file, long offset, int length) {
+            this.entryId = entryId;
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public CompressedBlock call() throws IOException {
+            byte[] contents = new byte[length];
+            RandomAccessFile input = new RandomAccessFile(file, "r");
+            try {
+                input.seek(offset);
+                input.readFully(contents);
+            } finally {
+                input.close();
+            }
+
+            Deflater deflater = new Deflater();
+            try {
+                deflater.setInput(contents);
+                deflater.finish();
+                byte[] compressed = new byte[length + (length >> 6) + 64];
+                int compressedLength = 0;
+                while (!deflater.finished()) {
+                    if (compressedLength == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+                }
+                return new CompressedBlock(entryId, offset, length, compressed, compressedLength);
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private static class DecompressBlock implements Callable<Void> {
+        private final File file;
+        private final long offset;
+        private final int length;
+        private final byte[] data;
+        private final Semaphore available;
+
+        DecompressBlock(File file, long offset, int length, byte[] data, Semaphore available) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+            this.data = data;
+            this.available = available;
+        }
+
+        @Override
+        public Void call() throws IOException, DataFormatException {
+            try {
+                byte[] contents = new byte[length];
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(data);
+                    int inflated = 0;
+                    while (inflated < length && !inflater.finished()) {
+                        int count = inflater.inflate(contents, inflated, length - inflated);
+                        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            break;
+                        }
+                        inflated += count;
+                    }
+                    if (inflated != length) {
+                        throw new IllegalStateException(String.format("Cached result format error, truncated block for '%s'", file));
+                    }
+                } finally {
+                    inflater.end();
+                }
+
+                RandomAccessFile output = new RandomAccessFile(file, "rw");
+                try {
+                    output.seek(offset);
+                    output.write(contents);
+                } finally {
+                    output.close();
+                }
+                return null;
+            } finally {
+                available.release();
+            }
+        }
+    }
+}
@@ -327,7 +327,7 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         }
     }
 
-    private static boolean makeDirectory(File output) throws IOException {
+    static boolean makeDirectory(File output) throws IOException {
         if (output.isDirectory()) {
             return false;
         } else if (output.isFile()) {
@@ -18,6 +18,7 @@ package org.gradle.caching.local.internal;
 
 import com.google.common.io.Closer;
 import org.apache.commons.io.FileUtils;
+import org.gradle.api.Transformer;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
@@ -28,14 +29,12 @@ import org.gradle.caching.BuildCacheEntryWriter;
 import org.gradle.caching.BuildCacheException;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
-import org.gradle.internal.Factory;
 import org.gradle.internal.operations.BuildOperationExecutor;
-import org.gradle.internal.resource.local.LocallyAvailableResource;
 import org.gradle.internal.resource.local.PathKeyFileStore;
-import org.gradle.util.GFileUtils;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -43,19 +42,48 @@ import java.io.OutputStream;
 import static org.gradle.cache.internal.FileLockManager.LockMode.None;
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
+/**
+ * A build cache backed by a local directory.
+ *
+ * <p>Entries are sharded into sub-directories by the first two characters of their key. The size and last access time of each entry
+ * is kept in a {@link MappedBuildCacheEntryIndex}, which is used to choose the entries to remove when cleaning up the cache.</p>
+ *
+ * <p>Loading an entry does not lock the cache: entries are only ever added by atomically moving a complete file into place,
+ * and an entry that is removed by a concurrent cleanup is either still readable or treated as a miss.</p>
+ */
 public class DirectoryBuildCacheService implements BuildCacheService {
+    private static final String INDEX_FILE_NAME = "entries.bin";
+    private static final int SHARD_PREFIX_LENGTH = 2;
+
+    private final File baseDir;
     private final PathKeyFileStore fileStore;
+    private final MappedBuildCacheEntryIndex index;
     private final PersistentCache persistentCache;
 
     public DirectoryBuildCacheService(CacheRepository cacheRepository, BuildOperationExecutor buildOperationExecutor, File baseDir, long targetCacheSize) {
+        this.baseDir = checkDirectory(baseDir);
         this.fileStore = new PathKeyFileStore(baseDir);
+        this.index = new MappedBuildCacheEntryIndex(new File(baseDir, INDEX_FILE_NAME), new Transformer<File, String>() {
+            @Override
+            public File transform(String key) {
+                return getEntryFile(key);
+            }
+        });
         this.persistentCache = cacheRepository
-            .cache(checkDirectory(baseDir))
-            .withCleanup(new FixedSizeOldestCacheCleanup(buildOperationExecutor, targetCacheSize))
+            .cache(baseDir)
+            .withCleanup(new FixedSizeOldestCacheCleanup(buildOperationExecutor, targetCacheSize, index))
             .withDisplayName("Build cache")
             .withLockOptions(mode(None))
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
             .open();
+        persistentCache.useCache(new Runnable() {
+            @Override
+            public void run() {
+                if (index.open()) {
+                    indexExistingEntries();
+                }
+            }
+        });
     }
 
     private static File checkDirectory(File directory) {
@@ -77,34 +105,57 @@ public class DirectoryBuildCacheService implements BuildCacheService {
         return directory;
     }
 
+    private static String getEntryPath(String key) {
+        return key.substring(0, Math.min(SHARD_PREFIX_LENGTH, key.length())) + "/" + key;
+    }
+
+    private File getEntryFile(String key) {
+        return new File(baseDir, getEntryPath(key));
+    }
+
+    private void indexExistingEntries() {
+        File[] shards = baseDir.listFiles();
+        if (shards == null) {
+            return;
+        }
+        for (File shard : shards) {
+            File[] entries = shard.isDirectory() ? shard.listFiles() : null;
+            if (entries == null) {
+                continue;
+            }
+            for (File entry : entries) {
+                if (entry.isFile() && MappedBuildCacheEntryIndex.isIndexable(entry.getName())) {
+                    index.put(entry.getName(), entry.length(), entry.lastModified());
+                }
+            }
+        }
+    }
+
     @Override
     public boolean load(final BuildCacheKey key, final BuildCacheEntryReader reader) throws BuildCacheException {
-        // We need to lock here because garbage collection can be under way in another process
-        return persistentCache.withFileLock(new Factory<Boolean>() {
-            @Override
-            public Boolean create() {
-                LocallyAvailableResource resource = fileStore.get(key.getHashCode());
-                if (resource == null) {
-                    return false;
-                }
+        String hashCode = key.getHashCode();
+        FileInputStream stream;
+        try {
+            stream = new FileInputStream(getEntryFile(hashCode));
+        } catch (FileNotFoundException e) {
+            return false;
+        }
 
-                try {
-                    // Mark as recently used
-                    GFileUtils.touch(resource.getFile());
-
-                    Closer closer = Closer.create();
-                    FileInputStream stream = closer.register(new FileInputStream(resource.getFile()));
-                    try {
-                        reader.readFrom(stream);
-                        return true;
-                    } finally {
-                        closer.close();
-                    }
-                } catch (IOException ex) {
-                    throw new UncheckedIOException(ex);
-                }
+        try {
+            // Mark as recently used
+            index.recordAccess(hashCode, System.currentTimeMillis());
+
+            Closer closer = Closer.create();
+            closer.register(stream);
+            try {
+                reader.readFrom(stream);
+                return true;
+            } finally {
+                closer.close();
             }
-        });
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
     }
 
     @Override
@@ -132,7 +183,15 @@ public class DirectoryBuildCacheService implements BuildCacheService {
             persistentCache.useCache(new Runnable() {
                 @Override
                 public void run() {
-                    fileStore.move(hashCode, tempFile);
+                    // Entries are never modified once stored, as they may be read concurrently without holding the lock.
+                    // An existing entry for the same key holds equivalent content.
+                    File entryFile = getEntryFile(hashCode);
+                    if (!entryFile.isFile()) {
+                        // Recorded before the entry is moved into place, so that an entry is never left out of the index when the process
+                        // stops in between. A record without an entry is removed by the next cleanup.
+                        index.put(hashCode, tempFile.length(), System.currentTimeMillis());
+                        fileStore.move(getEntryPath(hashCode), tempFile);
+                    }
                 }
             });
         } finally {
@@ -142,6 +201,10 @@ public class DirectoryBuildCacheService implements BuildCacheService {
 
     @Override
     public void close() throws IOException {
-        persistentCache.close();
+        try {
+            persistentCache.close();
+        } finally {
+            index.close();
+        }
     }
 }
@@ -29,7 +29,7 @@ import javax.inject.Inject;
 import java.io.File;
 
 public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFactory<DirectoryBuildCache> {
-    private static final String BUILD_CACHE_VERSION = "1";
+    private static final String BUILD_CACHE_VERSION = "2";
     private static final String BUILD_CACHE_KEY = "build-cache-" + BUILD_CACHE_VERSION;
     private static final String DIRECTORY_BUILD_CACHE_TYPE = "directory";
 
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.gradle.api.Transformer;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.CacheEntryIndex;
+import org.gradle.internal.concurrent.CompositeStoppable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An index of the entries of a {@link DirectoryBuildCacheService}, kept in a memory-mapped file alongside the entries.
+ *
+ * <p>The index is an open addressing hash table of fixed width records. Each record holds the 128 bit key of an entry,
+ * the time the entry was last accessed and the size of the entry. The top bit of the size marks the record as used, so that every
+ * key, including the all-zero key, can be recorded. Recording an access is a single write to the mapped file,
+ * so that loading an entry neither needs to hold the cache lock nor update the file system metadata of the entry.</p>
+ *
+ * <p>Adding and removing records changes the layout of the table, so these operations must only be performed while holding
+ * the exclusive lock on the cache. Access times are advisory: an access recorded while another process changes the layout
+ * of the table can be lost.</p>
+ */
+public class MappedBuildCacheEntryIndex implements CacheEntryIndex, Closeable {
+    private static final int MAGIC = 0x47424332;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 32;
+    private static final int KEY_HIGH_OFFSET = 0;
+    private static final int KEY_LOW_OFFSET = 8;
+    private static final int ACCESS_TIME_OFFSET = 16;
+    private static final int SIZE_OFFSET = 24;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int KEY_LENGTH = 32;
+    private static final long USED = Long.MIN_VALUE;
+
+    private final File indexFile;
+    private final Transformer<File, String> entryFiles;
+    private RandomAccessFile file;
+    private volatile Mapping mapping;
+
+    public MappedBuildCacheEntryIndex(File indexFile, Transformer<File, String> entryFiles) {
+        this.indexFile = indexFile;
+        this.entryFiles = entryFiles;
+    }
+
+    /**
+     * Returns true if the given key can be recorded in this index. Only keys that are 128 bit hashes in hexadecimal form are supported.
+     */
+    public static boolean isIndexable(String key) {
+        if (key.length() != KEY_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < KEY_LENGTH; i++) {
+            if (Character.digit(key.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Opens the index file, creating an empty index if the file does not exist or is not a valid index.
+     * Must be called while holding the exclusive lock on the cache.
+     *
+     * @return true when a new, empty index was created.
+     */
+    public synchronized boolean open() {
+        try {
+            file = new RandomAccessFile(indexFile, "rw");
+            if (file.length() >= HEADER_SIZE + RECORD_SIZE) {
+                Mapping existing = map(file.getChannel(), (int) ((file.length() - HEADER_SIZE) / RECORD_SIZE));
+                int capacity = existing.buffer.getInt(CAPACITY_OFFSET);
+                if (existing.buffer.getInt(MAGIC_OFFSET) == MAGIC && capacity == existing.capacity && Integer.bitCount(capacity) == 1) {
+                    mapping = existing;
+                    return false;
+                }
+            }
+            file.setLength(0);
+            Mapping created = createTable(INITIAL_CAPACITY);
+            created.buffer.putInt(CAPACITY_OFFSET, INITIAL_CAPACITY);
+            mapping = created;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not open build cache index %s.", indexFile), e);
+        }
+    }
+
+    /**
+     * Records that the entry with the given key was accessed. Does nothing if the entry is not in the index.
+     * Can be called without holding the lock on the cache.
+     */
+    public void recordAccess(String key, long timestamp) {
+        if (!isIndexable(key)) {
+            return;
+        }
+        Mapping mapping = currentMapping();
+        int record = mapping.find(parseHex(key, 0), parseHex(key, 16));
+        if (record >= 0) {
+            mapping.buffer.putLong(record + ACCESS_TIME_OFFSET, timestamp);
+        }
+    }
+
+    /**
+     * Adds or replaces the record for the given key. Must be called while holding the exclusive lock on the cache.
+     */
+    public synchronized void put(String key, long size, long timestamp) {
+        if (!isIndexable(key)) {
+            return;
+        }
+        long high = parseHex(key, 0);
+        long low = parseHex(key, 16);
+        Mapping mapping = currentMapping();
+        if (mapping.find(high, low) < 0 && (mapping.buffer.getInt(COUNT_OFFSET) + 1) * 4L > mapping.capacity * 3L) {
+            mapping = resize(mapping.capacity * 2);
+        }
+        mapping.put(high, low, timestamp, size);
+    }
+
+    @Override
+    public List<Entry> getEntries() {
+        Mapping mapping = currentMapping();
+        List<Entry> entries = Lists.newArrayList();
+        for (int slot = 0; slot < mapping.capacity; slot++) {
+            int record = recordOffset(slot);
+            long size = mapping.buffer.getLong(record + SIZE_OFFSET);
+            if ((size & USED) != 0) {
+                String key = toHex(mapping.buffer.getLong(record + KEY_HIGH_OFFSET), mapping.buffer.getLong(record + KEY_LOW_OFFSET));
+                entries.add(new IndexedEntry(key, entryFiles.transform(key), size & ~USED, mapping.buffer.getLong(record + ACCESS_TIME_OFFSET)));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Removes the given entries and compacts the table. Must be called while holding the exclusive lock on the cache.
+     */
+    @Override
+    public synchronized void remove(Collection<? extends Entry> entries) {
+        Set<String> removed = Sets.newHashSet();
+        for (Entry entry : entries) {
+            removed.add(entry.getKey());
+        }
+        Mapping mapping = currentMapping();
+        rehash(mapping, mapping, removed);
+    }
+
+    @Override
+    public synchronized void close() {
+        mapping = null;
+        CompositeStoppable.stoppable(file).stop();
+        file = null;
+    }
+
+    private Mapping currentMapping() {
+        Mapping current = mapping;
+        if (current == null) {
+            throw new IllegalStateException(String.format("Build cache index %s is not open.", indexFile));
+        }
+        if (current.buffer.getInt(CAPACITY_OFFSET) != current.capacity) {
+            // Another process has resized the table
+            return remap();
+        }
+        return current;
+    }
+
+    private synchronized Mapping remap() {
+        try {
+            int capacity = mapping.buffer.getInt(CAPACITY_OFFSET);
+            if (capacity != mapping.capacity) {
+                mapping = map(file.getChannel(), capacity);
+            }
+            return mapping;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read build cache index %s.", indexFile), e);
+        }
+    }
+
+    private Mapping resize(int capacity) {
+        Mapping previous = mapping;
+        try {
+            Mapping resized = createTable(capacity);
+            rehash(previous, resized, null);
+            mapping = resized;
+            return resized;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not resize build cache index %s.", indexFile), e);
+        }
+    }
+
+    private Mapping createTable(int capacity) throws IOException {
+        file.setLength(HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        Mapping table = map(file.getChannel(), capacity);
+        table.buffer.putInt(MAGIC_OFFSET, MAGIC);
+        return table;
+    }
+
+    /**
+     * Copies the records of the source table to the (possibly same) target table, leaving out the removed keys.
+     * The capacity is written to the header last, which tells other processes to map the table again.
+     */
+    private static void rehash(Mapping source, Mapping target, Set<String> removed) {
+        List<long[]> records = Lists.newArrayList();
+        for (int slot = 0; slot < source.capacity; slot++) {
+            int record = recordOffset(slot);
+            long size = source.buffer.getLong(record + SIZE_OFFSET);
+            if ((size & USED) == 0) {
+                continue;
+            }
+            long high = source.buffer.getLong(record + KEY_HIGH_OFFSET);
+            long low = source.buffer.getLong(record + KEY_LOW_OFFSET);
+            if (removed == null || !removed.contains(toHex(high, low))) {
+                records.add(new long[]{high, low, source.buffer.getLong(record + ACCESS_TIME_OFFSET), size & ~USED});
+            }
+        }
+        for (int slot = 0; slot < target.capacity; slot++) {
+            int record = recordOffset(slot);
+            for (int offset = 0; offset < RECORD_SIZE; offset += 8) {
+                target.buffer.putLong(record + offset, 0);
+            }
+        }
+        target.buffer.putInt(COUNT_OFFSET, 0);
+        for (long[] record : records) {
+            target.put(record[0], record[1], record[2], record[3]);
+        }
+        target.buffer.putInt(CAPACITY_OFFSET, target.capacity);
+    }
+
+    private static Mapping map(FileChannel channel, int capacity) throws IOException {
+        return new Mapping(channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE), capacity);
+    }
+
+    private static int recordOffset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private static long parseHex(String key, int start) {
+        long value = 0;
+        for (int i = start; i < start + 16; i++) {
+            value = (value << 4) | Character.digit(key.charAt(i), 16);
+        }
+        return value;
+    }
+
+    private static String toHex(long high, long low) {
+        return String.format("%016x%016x", high, low);
+    }
+
+    private static class Mapping {
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+
+        Mapping(MappedByteBuffer buffer, int capacity) {
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+
+        int find(long high, long low) {
+            int mask = capacity - 1;
+            int slot = (int) (high ^ (high >>> 32) ^ low) & mask;
+            for (int probe = 0; probe < capacity; probe++) {
+                int record = recordOffset(slot);
+                if ((buffer.getLong(record + SIZE_OFFSET) & USED) == 0) {
+                    return -1;
+                }
+                if (buffer.getLong(record + KEY_HIGH_OFFSET) == high && buffer.getLong(record + KEY_LOW_OFFSET) == low) {
+                    return record;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        void put(long high, long low, long timestamp, long size) {
+            int mask = capacity - 1;
+            int slot = (int) (high ^ (high >>> 32) ^ low) & mask;
+            for (int probe = 0; probe < capacity; probe++) {
+                int record = recordOffset(slot);
+                boolean empty = (buffer.getLong(record + SIZE_OFFSET) & USED) == 0;
+                if (empty || (buffer.getLong(record + KEY_HIGH_OFFSET) == high && buffer.getLong(record + KEY_LOW_OFFSET) == low)) {
+                    buffer.putLong(record + KEY_HIGH_OFFSET, high);
+                    buffer.putLong(record + KEY_LOW_OFFSET, low);
+                    buffer.putLong(record + ACCESS_TIME_OFFSET, timestamp);
+                    // Written last, as it marks the record as used for readers that do not hold the lock
+                    buffer.putLong(record + SIZE_OFFSET, size | USED);
+                    if (empty) {
+                        buffer.putInt(COUNT_OFFSET, buffer.getInt(COUNT_OFFSET) + 1);
+                    }
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            throw new IllegalStateException("Build cache index is full.");
+        }
+    }
+
+    private static class IndexedEntry implements Entry {
+        private final String key;
+        private final File file;
+        private final long size;
+        private final long lastAccessTime;
+
+        IndexedEntry(String key, File file, long size, long lastAccessTime) {
+            this.key = key;
+            this.file = file;
+            this.size = size;
+            this.lastAccessTime = lastAccessTime;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public File getFile() {
+            return file;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public long getLastAccessTime() {
+            return lastAccessTime;
+        }
+    }
+}
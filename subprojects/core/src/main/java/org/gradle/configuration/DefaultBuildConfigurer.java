@@ -16,6 +16,7 @@
 package org.gradle.configuration;
 
 import org.gradle.StartParameter;
+import org.gradle.api.Nullable;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.execution.ProjectConfigurer;
 import org.gradle.util.SingleMessageLogger;
@@ -25,9 +26,15 @@ import org.slf4j.LoggerFactory;
 public class DefaultBuildConfigurer implements BuildConfigurer {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultBuildConfigurer.class);
     private final ProjectConfigurer projectConfigurer;
+    private final ProjectScriptPrecompiler scriptPrecompiler;
 
     public DefaultBuildConfigurer(ProjectConfigurer projectConfigurer) {
+        this(projectConfigurer, null);
+    }
+
+    public DefaultBuildConfigurer(ProjectConfigurer projectConfigurer, @Nullable ProjectScriptPrecompiler scriptPrecompiler) {
         this.projectConfigurer = projectConfigurer;
+        this.scriptPrecompiler = scriptPrecompiler;
     }
 
     public void configure(GradleInternal gradle) {
@@ -35,6 +42,11 @@ public class DefaultBuildConfigurer implements BuildConfigurer {
         if (gradle.getStartParameter().isConfigureOnDemand()) {
             projectConfigurer.configure(gradle.getRootProject());
         } else {
+            if (scriptPrecompiler != null) {
+                // The class loaders of most subproject scripts are known once the root project is configured
+                projectConfigurer.configure(gradle.getRootProject());
+                scriptPrecompiler.precompileSubprojectScripts(gradle.getRootProject());
+            }
             projectConfigurer.configureHierarchy(gradle.getRootProject());
         }
     }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configuration;
+
+import org.gradle.api.Action;
+import org.gradle.api.Project;
+import org.gradle.api.internal.DocumentationRegistry;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.groovy.scripts.ScriptSource;
+import org.gradle.groovy.scripts.internal.FileCacheBackedScriptClassCompiler;
+import org.gradle.internal.Actions;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.gradle.model.dsl.internal.transform.ClosureCreationInterceptingVerifier;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles the build scripts of the subprojects of a build concurrently into the script cache, so that configuring the subprojects loads their
+ * scripts from the cache rather than compiling them one after the other.
+ *
+ * <p>The first pass over a build script is compiled against the class loader of the parent project, and the second pass against the class loader
+ * of the project itself. These are only known once the {@code buildscript {}} and {@code plugins {}} blocks of the projects have run, so the scripts
+ * are compiled once the root project has been configured, for the projects whose class loaders are then known to be those of the root project:
+ * the projects whose parents, below the root project, do not add to their class path. The second pass is only compiled when the project does
+ * not add to its class path either. A script that fails to compile here is compiled again, and the failure reported, when its project is
+ * configured.</p>
+ */
+public class ProjectScriptPrecompiler {
+    public static final String SYSTEM_PROPERTY = "org.gradle.internal.scripts.precompile";
+    private static final Logger LOGGER = Logging.getLogger(ProjectScriptPrecompiler.class);
+    private static final Pattern BUILDSCRIPT_BLOCK = Pattern.compile("\\bbuildscript\\s*\\{");
+    private static final Pattern PLUGINS_BLOCK = Pattern.compile("\\bplugins\\s*\\{([^}]*)\\}");
+    private static final Pattern PLUGIN_ID = Pattern.compile("\\bid\\s*\\(?\\s*['\"]([^'\"]+)['\"]");
+
+    private final FileCacheBackedScriptClassCompiler scriptCompiler;
+    private final DocumentationRegistry documentationRegistry;
+    private final BuildOperationExecutor buildOperationExecutor;
+
+    public ProjectScriptPrecompiler(FileCacheBackedScriptClassCompiler scriptCompiler, DocumentationRegistry documentationRegistry, BuildOperationExecutor buildOperationExecutor) {
+        this.scriptCompiler = scriptCompiler;
+        this.documentationRegistry = documentationRegistry;
+        this.buildOperationExecutor = buildOperationExecutor;
+    }
+
+    /**
+     * Returns true when build scripts should be precompiled, as requested by the {@value #SYSTEM_PROPERTY} system property.
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(SYSTEM_PROPERTY);
+    }
+
+    /**
+     * Compiles the build scripts of the subprojects of the given root project, which must have been configured.
+     */
+    public void precompileSubprojectScripts(ProjectInternal rootProject) {
+        final ClassLoader classLoader = rootProject.getClassLoaderScope().getExportClassLoader();
+        Set<Project> sharingRootClassLoader = new HashSet<Project>();
+        sharingRootClassLoader.add(rootProject);
+        final List<PrecompileScript> operations = new ArrayList<PrecompileScript>();
+        // Parents come before their children
+        for (Project sub : rootProject.getSubprojects()) {
+            ProjectInternal subproject = (ProjectInternal) sub;
+            ScriptSource buildScript = subproject.getBuildScriptSource();
+            if (!sharingRootClassLoader.contains(subproject.getParent())
+                || !buildScript.getFileName().endsWith(".gradle")
+                || !buildScript.getResource().getExists()) {
+                continue;
+            }
+            operations.add(new PrecompileScript(subproject, buildScript, classLoader, true));
+            if (!addsToClassPath(buildScript.getResource().getText())) {
+                operations.add(new PrecompileScript(subproject, buildScript, classLoader, false));
+                sharingRootClassLoader.add(subproject);
+            }
+        }
+        if (operations.isEmpty()) {
+            return;
+        }
+        buildOperationExecutor.runAll(new Action<BuildOperationQueue<PrecompileScript>>() {
+            @Override
+            public void execute(BuildOperationQueue<PrecompileScript> buildOperationQueue) {
+                for (PrecompileScript operation : operations) {
+                    buildOperationQueue.add(operation);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns true when the given script may add to the class path of its project, through a {@code buildscript {}} block or a plugin that is not
+     * a core plugin.
+     */
+    static boolean addsToClassPath(String script) {
+        if (BUILDSCRIPT_BLOCK.matcher(script).find()) {
+            return true;
+        }
+        Matcher plugins = PLUGINS_BLOCK.matcher(script);
+        while (plugins.find()) {
+            Matcher id = PLUGIN_ID.matcher(plugins.group(1));
+            while (id.find()) {
+                String pluginId = id.group(1);
+                if (pluginId.contains(".") && !pluginId.startsWith("org.gradle.")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private class PrecompileScript implements RunnableBuildOperation {
+        private final ProjectInternal project;
+        private final ScriptSource buildScript;
+        private final ClassLoader classLoader;
+        private final boolean initialPass;
+
+        PrecompileScript(ProjectInternal project, ScriptSource buildScript, ClassLoader classLoader, boolean initialPass) {
+            this.project = project;
+            this.buildScript = buildScript;
+            this.classLoader = classLoader;
+            this.initialPass = initialPass;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            ScriptTarget target = new ProjectScriptTarget(project);
+            try {
+                if (initialPass) {
+                    scriptCompiler.precompile(buildScript, classLoader, DefaultScriptPluginFactory.initialPassOperation(buildScript, target, documentationRegistry), target.getScriptClass(), Actions.doNothing());
+                } else {
+                    scriptCompiler.precompile(buildScript, classLoader, DefaultScriptPluginFactory.secondPassOperation(buildScript, target), target.getScriptClass(), ClosureCreationInterceptingVerifier.INSTANCE);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.debug("Could not precompile {}, it will be compiled when {} is configured.", buildScript.getDisplayName(), project, e);
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Precompile " + buildScript.getDisplayName() + (initialPass ? " (first pass)" : ""));
+        }
+    }
+}
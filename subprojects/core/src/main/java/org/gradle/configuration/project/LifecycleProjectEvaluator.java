@@ -35,6 +35,8 @@ public class LifecycleProjectEvaluator implements ProjectEvaluator {
 
     private final BuildOperationExecutor buildOperationExecutor;
     private final ProjectEvaluator delegate;
+    // Projects may be evaluated concurrently, but the listeners added to the build are not thread-safe
+    private final Object listenerLock = new Object();
 
     public LifecycleProjectEvaluator(BuildOperationExecutor buildOperationExecutor, ProjectEvaluator delegate) {
         this.buildOperationExecutor = buildOperationExecutor;
@@ -52,7 +54,9 @@ public class LifecycleProjectEvaluator implements ProjectEvaluator {
     private void doConfigure(ProjectInternal project, ProjectStateInternal state) {
         ProjectEvaluationListener listener = project.getProjectEvaluationBroadcaster();
         try {
-            listener.beforeEvaluate(project);
+            synchronized (listenerLock) {
+                listener.beforeEvaluate(project);
+            }
         } catch (Exception e) {
             addConfigurationFailure(project, state, e);
             return;
@@ -72,7 +76,9 @@ public class LifecycleProjectEvaluator implements ProjectEvaluator {
 
     private void notifyAfterEvaluate(ProjectEvaluationListener listener, ProjectInternal project, ProjectStateInternal state) {
         try {
-            listener.afterEvaluate(project, state);
+            synchronized (listenerLock) {
+                listener.afterEvaluate(project, state);
+            }
         } catch (Exception e) {
             if (state.hasFailure()) {
                 // Just log this failure, and pass the existing failure out in the project state
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.gradle.api.Nullable;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.groovy.scripts.ScriptSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Determines whether configuring a project may read or change the configuration of other projects, in which case the project cannot be
+ * configured concurrently with other projects.
+ *
+ * <p>The build script of the project, and the scripts it applies, are inspected for the usual ways of reaching other projects. This is a
+ * heuristic: a script that reaches other projects in some other way, or a plugin that does so, is not detected.</p>
+ */
+class CrossProjectConfigurationDetector {
+    private static final Pattern CROSS_PROJECT_ACCESS = Pattern.compile(
+        // Configures other projects
+        "\\b(?:allprojects|getAllprojects|subprojects|getSubprojects|childProjects|getChildProjects|evaluationDependsOn|evaluationDependsOnChildren|findProject)\\b|\\bconfigure\\s*\\("
+            // Configures another project, as in project(':x') { } or project(':x').afterEvaluate { }, but not compile project(':x')
+            + "|\\bproject\\s*\\([^()]*\\)\\s*[.{]|\\bproject\\s*\\([^()]*,\\s*\\{"
+            // Changes the root or parent project, as in rootProject.ext.x = y or rootProject.afterEvaluate { }
+            + "|\\b(?:rootProject|parent|getRootProject\\(\\)|getParent\\(\\))(?:\\s*\\.\\s*\\w+)*\\s*(?:=(?!=)|<<|\\+=|\\{|\\.\\s*(?:add|put|afterEvaluate|beforeEvaluate)\\b)"
+            // Adds hooks that run for all projects
+            + "|\\bgradle\\s*\\.\\s*(?:beforeProject|afterProject|addProjectEvaluationListener|addListener|projectsEvaluated|rootProject)\\b");
+    private static final Pattern APPLY_FROM = Pattern.compile("\\bapply\\s*\\(?\\s*from\\s*[:=]\\s*");
+    private static final Pattern SCRIPT_PATH = Pattern.compile("(['\"])([^'\"]*)\\1");
+    private static final Pattern ROOT_DIR = Pattern.compile("\\$\\{?(?:rootDir|rootProject\\.projectDir)\\}?");
+    private static final Pattern PROJECT_DIR = Pattern.compile("\\$\\{?projectDir\\}?");
+
+    private final Map<File, String> appliedScripts = new HashMap<File, String>();
+
+    /**
+     * Returns why the given project may configure other projects, or null when it does not appear to.
+     */
+    @Nullable
+    public String findCrossProjectConfiguration(ProjectInternal project) {
+        if (project.hasExternalEvaluationClosures()) {
+            return "other scripts added evaluation hooks to it";
+        }
+        ScriptSource buildScript = project.getBuildScriptSource();
+        if (!buildScript.getResource().getExists()) {
+            return null;
+        }
+        return findCrossProjectConfiguration(project, buildScript.getResource().getText(), buildScript.getDisplayName());
+    }
+
+    @Nullable
+    private String findCrossProjectConfiguration(ProjectInternal project, String script, String displayName) {
+        String reason = findCrossProjectAccess(script, displayName);
+        if (reason != null) {
+            return reason;
+        }
+        Matcher applyFrom = APPLY_FROM.matcher(script);
+        while (applyFrom.find()) {
+            Matcher path = SCRIPT_PATH.matcher(script);
+            path.region(applyFrom.end(), script.length());
+            if (!path.lookingAt()) {
+                return displayName + " applies a script that cannot be inspected";
+            }
+            File appliedScript = resolve(project, path.group(2));
+            if (appliedScript == null) {
+                return displayName + " applies script '" + path.group(2) + "' that cannot be inspected";
+            }
+            reason = findCrossProjectConfiguration(project, appliedScript);
+            if (reason != null) {
+                return reason;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private String findCrossProjectConfiguration(ProjectInternal project, File script) {
+        if (appliedScripts.containsKey(script)) {
+            return appliedScripts.get(script);
+        }
+        // Guards against scripts that apply each other
+        appliedScripts.put(script, null);
+        String text;
+        try {
+            text = Files.toString(script, Charsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String reason = findCrossProjectConfiguration(project, text, "script '" + script + "'");
+        appliedScripts.put(script, reason);
+        return reason;
+    }
+
+    @Nullable
+    private static File resolve(ProjectInternal project, String path) {
+        String resolved = ROOT_DIR.matcher(path).replaceAll(Matcher.quoteReplacement(project.getRootDir().getPath()));
+        resolved = PROJECT_DIR.matcher(resolved).replaceAll(Matcher.quoteReplacement(project.getProjectDir().getPath()));
+        if (resolved.contains("$") || resolved.contains(":/")) {
+            // Interpolated or remote
+            return null;
+        }
+        File file = new File(resolved);
+        if (!file.isAbsolute()) {
+            file = new File(project.getProjectDir(), resolved);
+        }
+        return file.isFile() ? file : null;
+    }
+
+    @Nullable
+    private static String findCrossProjectAccess(String script, String displayName) {
+        Matcher matcher = CROSS_PROJECT_ACCESS.matcher(script);
+        if (matcher.find()) {
+            return displayName + " uses '" + matcher.group().trim() + "'";
+        }
+        return null;
+    }
+}
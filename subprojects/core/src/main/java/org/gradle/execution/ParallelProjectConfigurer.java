@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution;
+
+import org.gradle.api.Action;
+import org.gradle.api.Project;
+import org.gradle.api.internal.project.ConcurrentProjectConfiguration;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ProjectConfigurer} that configures the projects of a hierarchy concurrently, where they do not appear to configure each other.
+ *
+ * <p>The projects are taken in the usual order. A project that may reach into other projects, as determined by {@link CrossProjectConfigurationDetector},
+ * is configured on its own, after the projects before it and before the projects after it, as it would be when configuring serially. The projects
+ * between two such projects are configured concurrently, except that a project is never configured concurrently with its parent, whose
+ * properties it inherits. The projects that were configured on their own, and why, are reported once the hierarchy is configured.</p>
+ *
+ * <p>A project that is configured concurrently and turns out to configure another project that has not been configured yet, for example through a
+ * plugin, fails with a message that explains this. See {@link ConcurrentProjectConfiguration}.</p>
+ *
+ * <p>Only the configuration of a hierarchy is concurrent. Configuring a single project, or configuring projects fully, is delegated as is.</p>
+ */
+public class ParallelProjectConfigurer implements ProjectConfigurer {
+    public static final String SYSTEM_PROPERTY = "org.gradle.internal.configure.parallel";
+    private static final Logger LOGGER = Logging.getLogger(ParallelProjectConfigurer.class);
+
+    private final ProjectConfigurer delegate;
+    private final BuildOperationExecutor buildOperationExecutor;
+
+    public ParallelProjectConfigurer(ProjectConfigurer delegate, BuildOperationExecutor buildOperationExecutor) {
+        this.delegate = delegate;
+        this.buildOperationExecutor = buildOperationExecutor;
+    }
+
+    /**
+     * Returns true when projects should be configured concurrently, as requested by the {@value #SYSTEM_PROPERTY} system property.
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(SYSTEM_PROPERTY);
+    }
+
+    @Override
+    public void configure(ProjectInternal project) {
+        delegate.configure(project);
+    }
+
+    @Override
+    public void configureFully(ProjectInternal project) {
+        delegate.configureFully(project);
+    }
+
+    @Override
+    public void configureHierarchy(ProjectInternal project) {
+        delegate.configure(project);
+
+        CrossProjectConfigurationDetector detector = new CrossProjectConfigurationDetector();
+        Map<ProjectInternal, String> serialProjects = new LinkedHashMap<ProjectInternal, String>();
+        List<ProjectInternal> batch = new ArrayList<ProjectInternal>();
+        int count = 0;
+        for (Project sub : project.getSubprojects()) {
+            ProjectInternal subproject = (ProjectInternal) sub;
+            count++;
+            // Determined only once the projects before this one have been configured, as these may have added evaluation hooks to it
+            String reason = detector.findCrossProjectConfiguration(subproject);
+            if (reason != null) {
+                configureConcurrently(batch);
+                serialProjects.put(subproject, reason);
+                delegate.configure(subproject);
+            } else {
+                if (batch.contains(subproject.getParent())) {
+                    configureConcurrently(batch);
+                }
+                batch.add(subproject);
+            }
+        }
+        configureConcurrently(batch);
+
+        if (!serialProjects.isEmpty()) {
+            StringBuilder report = new StringBuilder();
+            report.append(serialProjects.size()).append(" of ").append(count).append(" projects were configured on their own, as they may configure other projects:");
+            for (Map.Entry<ProjectInternal, String> entry : serialProjects.entrySet()) {
+                report.append(String.format("%n  - %s: %s", entry.getKey().getDisplayName(), entry.getValue()));
+            }
+            LOGGER.lifecycle(report.toString());
+        }
+    }
+
+    @Override
+    public void configureHierarchyFully(ProjectInternal project) {
+        delegate.configureHierarchyFully(project);
+    }
+
+    /**
+     * Configures the given projects concurrently, then clears the list. Fails with the failure of the first project that failed, as configuring
+     * the projects serially would.
+     */
+    private void configureConcurrently(List<ProjectInternal> projects) {
+        if (projects.size() == 1) {
+            delegate.configure(projects.get(0));
+        } else if (!projects.isEmpty()) {
+            final List<ConfigureProject> operations = new ArrayList<ConfigureProject>(projects.size());
+            for (ProjectInternal project : projects) {
+                operations.add(new ConfigureProject(project));
+            }
+            buildOperationExecutor.runAll(new Action<BuildOperationQueue<ConfigureProject>>() {
+                @Override
+                public void execute(BuildOperationQueue<ConfigureProject> buildOperationQueue) {
+                    for (ConfigureProject operation : operations) {
+                        buildOperationQueue.add(operation);
+                    }
+                }
+            });
+            for (ConfigureProject operation : operations) {
+                if (operation.failure != null) {
+                    throw operation.failure;
+                }
+            }
+        }
+        projects.clear();
+    }
+
+    private class ConfigureProject implements RunnableBuildOperation {
+        private final ProjectInternal project;
+        private RuntimeException failure;
+
+        ConfigureProject(ProjectInternal project) {
+            this.project = project;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            try {
+                ConcurrentProjectConfiguration.configure(project, new Runnable() {
+                    @Override
+                    public void run() {
+                        delegate.configure(project);
+                    }
+                });
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Configure " + project.getDisplayName() + " concurrently");
+        }
+    }
+}
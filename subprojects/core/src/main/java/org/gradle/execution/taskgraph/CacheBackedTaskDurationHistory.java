@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskHistoryStore;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+
+/**
+ * Keeps task durations in the task history store. The duration of a task is averaged over its recent executions, so that a single unusually
+ * fast or slow execution does not throw off the estimate.
+ */
+public class CacheBackedTaskDurationHistory implements TaskDurationHistory {
+    private final PersistentIndexedCache<String, Long> durations;
+
+    public CacheBackedTaskDurationHistory(TaskHistoryStore store) {
+        this.durations = store.createCache("taskDurations", String.class, BaseSerializerFactory.LONG_SERIALIZER, 10000, false);
+    }
+
+    @Override
+    public long getPreviousDuration(TaskInternal task) {
+        Long duration = durations.get(task.getPath());
+        return duration == null ? -1 : duration;
+    }
+
+    @Override
+    public void recordDuration(TaskInternal task, long durationMillis) {
+        long previousDuration = getPreviousDuration(task);
+        durations.put(task.getPath(), previousDuration < 0 ? durationMillis : (previousDuration + durationMillis) / 2);
+    }
+}
@@ -67,6 +67,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -76,6 +77,7 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -110,12 +112,24 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final Set<TaskInfo> dependenciesCompleteCache = Sets.newHashSet();
     private final ResourceLockCoordinationService coordinationService;
     private final WorkerLeaseService workerLeaseService;
+    private final TaskDurationHistory durationHistory;
+    private final boolean prioritizeCriticalPath;
+    private final Map<TaskInfo, Long> taskStartTimes = Maps.newIdentityHashMap();
     private boolean tasksCancelled;
 
     public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService, WorkerLeaseService workerLeaseService) {
+        this(cancellationToken, coordinationService, workerLeaseService, TaskDurationHistory.NONE, false);
+    }
+
+    /**
+     * @param prioritizeCriticalPath When true, tasks that can run in any order are started longest remaining path first, based on the durations of previous executions.
+     */
+    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService, WorkerLeaseService workerLeaseService, TaskDurationHistory durationHistory, boolean prioritizeCriticalPath) {
         this.cancellationToken = cancellationToken;
         this.coordinationService = coordinationService;
         this.workerLeaseService = workerLeaseService;
+        this.durationHistory = durationHistory;
+        this.prioritizeCriticalPath = prioritizeCriticalPath;
     }
 
     public void addToTaskGraph(Collection<? extends Task> tasks) {
@@ -343,8 +357,98 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             }
         }
         executionQueue.clear();
-        executionQueue.addAll(executionPlan.values());
+        if (prioritizeCriticalPath) {
+            executionQueue.addAll(orderByCriticalPath(Lists.newArrayList(executionPlan.values())));
+        } else {
+            executionQueue.addAll(executionPlan.values());
+        }
+    }
+
+    /**
+     * Reorders the plan so that, of the tasks that can run in any order, the ones with the longest remaining path through the graph come first. The remaining
+     * path of a task is its own duration plus the longest remaining path of the tasks that have to run after it. Every dependency and ordering constraint
+     * satisfied by the plan is still satisfied by the new order, so this only changes which of several ready tasks is started first.
+     */
+    private List<TaskInfo> orderByCriticalPath(List<TaskInfo> plan) {
+        Map<TaskInfo, Long> durations = Maps.newIdentityHashMap();
+        long totalDuration = 0;
+        for (TaskInfo taskInfo : plan) {
+            long duration = durationHistory.getPreviousDuration(taskInfo.getTask());
+            if (duration >= 0) {
+                durations.put(taskInfo, duration);
+                totalDuration += duration;
+            }
+        }
+        if (durations.isEmpty()) {
+            // Nothing to base priorities on
+            return plan;
+        }
+        long defaultDuration = totalDuration / durations.size();
 
+        final Map<TaskInfo, Integer> positions = Maps.newIdentityHashMap();
+        for (TaskInfo taskInfo : plan) {
+            positions.put(taskInfo, positions.size());
+        }
+
+        // The plan has every task after the tasks it has to run after, so visiting it backwards visits a task after all the tasks that wait for it
+        final Map<TaskInfo, Long> remainingPaths = Maps.newIdentityHashMap();
+        Map<TaskInfo, Long> longestWaitingPaths = Maps.newIdentityHashMap();
+        Map<TaskInfo, List<TaskInfo>> waitingTasks = Maps.newIdentityHashMap();
+        Map<TaskInfo, Integer> remainingPredecessors = Maps.newIdentityHashMap();
+        for (int i = plan.size() - 1; i >= 0; i--) {
+            TaskInfo taskInfo = plan.get(i);
+            Long duration = durations.get(taskInfo);
+            Long longestWaitingPath = longestWaitingPaths.get(taskInfo);
+            long remainingPath = (duration != null ? duration : defaultDuration) + (longestWaitingPath != null ? longestWaitingPath : 0);
+            remainingPaths.put(taskInfo, remainingPath);
+
+            Set<TaskInfo> predecessors = Sets.newIdentityHashSet();
+            for (TaskInfo predecessor : Iterables.concat(taskInfo.getDependencySuccessors(), taskInfo.getMustSuccessors(), taskInfo.getShouldSuccessors())) {
+                Integer position = positions.get(predecessor);
+                if (position != null && position < i && predecessors.add(predecessor)) {
+                    Long predecessorWaitingPath = longestWaitingPaths.get(predecessor);
+                    if (predecessorWaitingPath == null || predecessorWaitingPath < remainingPath) {
+                        longestWaitingPaths.put(predecessor, remainingPath);
+                    }
+                    List<TaskInfo> waiting = waitingTasks.get(predecessor);
+                    if (waiting == null) {
+                        waiting = Lists.newArrayList();
+                        waitingTasks.put(predecessor, waiting);
+                    }
+                    waiting.add(taskInfo);
+                }
+            }
+            remainingPredecessors.put(taskInfo, predecessors.size());
+        }
+
+        PriorityQueue<TaskInfo> readyTasks = new PriorityQueue<TaskInfo>(plan.size(), new Comparator<TaskInfo>() {
+            @Override
+            public int compare(TaskInfo left, TaskInfo right) {
+                int result = remainingPaths.get(right).compareTo(remainingPaths.get(left));
+                return result != 0 ? result : positions.get(left).compareTo(positions.get(right));
+            }
+        });
+        for (TaskInfo taskInfo : plan) {
+            if (remainingPredecessors.get(taskInfo) == 0) {
+                readyTasks.add(taskInfo);
+            }
+        }
+        List<TaskInfo> ordered = Lists.newArrayListWithCapacity(plan.size());
+        while (!readyTasks.isEmpty()) {
+            TaskInfo taskInfo = readyTasks.poll();
+            ordered.add(taskInfo);
+            List<TaskInfo> waiting = waitingTasks.get(taskInfo);
+            if (waiting != null) {
+                for (TaskInfo waitingTask : waiting) {
+                    int remaining = remainingPredecessors.get(waitingTask) - 1;
+                    remainingPredecessors.put(waitingTask, remaining);
+                    if (remaining == 0) {
+                        readyTasks.add(waitingTask);
+                    }
+                }
+            }
+        }
+        return ordered;
     }
 
     private TaskMutationInfo getOrCreateMutationsOf(TaskInfo taskInfo) {
@@ -498,6 +602,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 entryTasks.clear();
                 executionPlan.clear();
                 executionQueue.clear();
+                taskStartTimes.clear();
                 projectLocks.clear();
                 failures.clear();
                 taskMutations.clear();
@@ -589,6 +694,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                         if (taskInfo.allDependenciesSuccessful()) {
                             recordTaskStarted(taskInfo);
                             taskInfo.startExecution();
+                            if (prioritizeCriticalPath) {
+                                taskStartTimes.put(taskInfo, System.currentTimeMillis());
+                            }
                         } else {
                             taskInfo.skipExecution();
                         }
@@ -829,6 +937,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     public void taskComplete(final TaskInfo taskInfo) {
+        final AtomicReference<Long> startTime = new AtomicReference<Long>();
         coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
             @Override
             public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
@@ -839,9 +948,19 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
                 taskInfo.finishExecution();
                 recordTaskCompleted(taskInfo);
+                startTime.set(taskStartTimes.remove(taskInfo));
                 return FINISHED;
             }
         });
+        recordDuration(taskInfo, startTime.get());
+    }
+
+    private void recordDuration(TaskInfo taskInfo, @Nullable Long startTime) {
+        // Durations are only read back when prioritizing the critical path, and only the duration of tasks that actually did their work is useful to estimate later executions
+        TaskInternal task = taskInfo.getTask();
+        if (startTime != null && !taskInfo.isFailed() && !task.getState().getSkipped()) {
+            durationHistory.recordDuration(task, System.currentTimeMillis() - startTime);
+        }
     }
 
     private void enforceFinalizerTasks(TaskInfo taskInfo) {
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.internal.TaskInternal;
+
+/**
+ * Remembers how long tasks took to execute in previous builds.
+ */
+public interface TaskDurationHistory {
+    TaskDurationHistory NONE = new TaskDurationHistory() {
+        @Override
+        public long getPreviousDuration(TaskInternal task) {
+            return -1;
+        }
+
+        @Override
+        public void recordDuration(TaskInternal task, long durationMillis) {
+        }
+    };
+
+    /**
+     * Returns the time it took to execute the given task in previous builds, in milliseconds, or -1 when not known.
+     */
+    long getPreviousDuration(TaskInternal task);
+
+    /**
+     * Records that the actions of the given task took the given time to execute.
+     */
+    void recordDuration(TaskInternal task, long durationMillis);
+}
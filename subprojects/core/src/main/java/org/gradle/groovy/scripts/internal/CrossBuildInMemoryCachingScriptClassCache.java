@@ -32,7 +32,7 @@ public class CrossBuildInMemoryCachingScriptClassCache {
 
     public CrossBuildInMemoryCachingScriptClassCache(FileHasher hasher, CrossBuildInMemoryCacheFactory cacheFactory) {
         this.hasher = hasher;
-        cachedCompiledScripts = cacheFactory.newCache();
+        cachedCompiledScripts = cacheFactory.newCache("compiled scripts");
     }
 
     public <T extends Script, M> CompiledScript<T, M> getOrCompile(ScriptSource source, ClassLoader classLoader,
@@ -15,14 +15,19 @@
  */
 package org.gradle.groovy.scripts.internal;
 
+import java.lang.ref.WeakReference;
+
 class ScriptCacheKey {
     private final String className;
-    private final ClassLoader classLoader;
+    // Referenced weakly, so that the key of a discarded script does not retain the class loader of a previous build
+    private final WeakReference<ClassLoader> classLoader;
+    private final int classLoaderHashCode;
     private final String dslId;
 
     public ScriptCacheKey(String className, ClassLoader classLoader, String dslId) {
         this.className = className;
-        this.classLoader = classLoader;
+        this.classLoader = new WeakReference<ClassLoader>(classLoader);
+        this.classLoaderHashCode = classLoader.hashCode();
         this.dslId = dslId;
     }
 
@@ -37,7 +42,9 @@ class ScriptCacheKey {
 
         ScriptCacheKey key = (ScriptCacheKey) o;
 
-        return classLoader.equals(key.classLoader)
+        ClassLoader classLoader = this.classLoader.get();
+        return classLoader != null
+            && classLoader.equals(key.classLoader.get())
             && className.equals(key.className)
             && dslId.equals(key.dslId);
     }
@@ -45,7 +52,7 @@ class ScriptCacheKey {
     @Override
     public int hashCode() {
         int result = className.hashCode();
-        result = 31 * result + classLoader.hashCode();
+        result = 31 * result + classLoaderHashCode;
         result = 31 * result + dslId.hashCode();
         return result;
     }
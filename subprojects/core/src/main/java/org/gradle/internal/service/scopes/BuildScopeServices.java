@@ -85,6 +85,7 @@ import org.gradle.configuration.DefaultBuildConfigurer;
 import org.gradle.configuration.DefaultInitScriptProcessor;
 import org.gradle.configuration.DefaultScriptPluginFactory;
 import org.gradle.configuration.ImportsReader;
+import org.gradle.configuration.ProjectScriptPrecompiler;
 import org.gradle.configuration.ScriptPluginFactory;
 import org.gradle.configuration.ScriptPluginFactorySelector;
 import org.gradle.configuration.project.BuildScriptProcessor;
@@ -93,6 +94,7 @@ import org.gradle.configuration.project.DelayedConfigurationActions;
 import org.gradle.configuration.project.LifecycleProjectEvaluator;
 import org.gradle.configuration.project.PluginsProjectConfigureActions;
 import org.gradle.configuration.project.ProjectEvaluator;
+import org.gradle.execution.ParallelProjectConfigurer;
 import org.gradle.execution.ProjectConfigurer;
 import org.gradle.execution.TaskPathProjectEvaluator;
 import org.gradle.groovy.scripts.DefaultScriptCompilerFactory;
@@ -382,11 +384,19 @@ public class BuildScopeServices extends DefaultServiceRegistry {
         );
     }
 
-    protected ProjectConfigurer createProjectConfigurer(BuildCancellationToken cancellationToken) {
-        return new TaskPathProjectEvaluator(cancellationToken);
+    protected ProjectConfigurer createProjectConfigurer(BuildCancellationToken cancellationToken, BuildOperationExecutor buildOperationExecutor) {
+        ProjectConfigurer projectConfigurer = new TaskPathProjectEvaluator(cancellationToken);
+        if (ParallelProjectConfigurer.isEnabled()) {
+            return new ParallelProjectConfigurer(projectConfigurer, buildOperationExecutor);
+        }
+        return projectConfigurer;
     }
 
-    protected BuildConfigurer createBuildConfigurer(ProjectConfigurer projectConfigurer) {
+    protected BuildConfigurer createBuildConfigurer(ProjectConfigurer projectConfigurer, FileCacheBackedScriptClassCompiler scriptClassCompiler, DocumentationRegistry documentationRegistry,
+                                                    BuildOperationExecutor buildOperationExecutor) {
+        if (ProjectScriptPrecompiler.isEnabled()) {
+            return new DefaultBuildConfigurer(projectConfigurer, new ProjectScriptPrecompiler(scriptClassCompiler, documentationRegistry, buildOperationExecutor));
+        }
         return new DefaultBuildConfigurer(projectConfigurer);
     }
 
@@ -452,13 +462,14 @@ public class BuildScopeServices extends DefaultServiceRegistry {
         return instantiator.newInstance(DefaultBuildCacheConfiguration.class, instantiator, allBuildCacheServiceFactories);
     }
 
-    BuildCacheServiceProvider createBuildCacheServiceProvider(BuildCacheConfigurationInternal buildCacheConfiguration, StartParameter startParameter, BuildOperationExecutor buildOperationExecutor, TemporaryFileProvider temporaryFileProvider, InstantiatorFactory instantiatorFactory) {
+    BuildCacheServiceProvider createBuildCacheServiceProvider(BuildCacheConfigurationInternal buildCacheConfiguration, StartParameter startParameter, BuildOperationExecutor buildOperationExecutor, TemporaryFileProvider temporaryFileProvider, InstantiatorFactory instantiatorFactory, ExecutorFactory executorFactory) {
         return new BuildCacheServiceProvider(
             buildCacheConfiguration,
             startParameter,
             instantiatorFactory.inject(this),
             buildOperationExecutor,
-            temporaryFileProvider
+            temporaryFileProvider,
+            executorFactory
         );
     }
 
@@ -28,6 +28,7 @@ import org.gradle.api.internal.DocumentationRegistry;
 import org.gradle.api.internal.DynamicModulesClassPathProvider;
 import org.gradle.api.internal.InstantiatorFactory;
 import org.gradle.api.internal.cache.CrossBuildInMemoryCacheFactory;
+import org.gradle.api.internal.cache.InMemoryCacheStatistics;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFactory;
 import org.gradle.api.internal.classpath.DefaultModuleRegistry;
@@ -271,12 +272,18 @@ public class GlobalScopeServices {
             fileLockContentionHandler);
     }
 
-    CrossBuildInMemoryCacheFactory createCrossBuildInMemoryCacheFactory(ListenerManager listenerManager) {
-        return new CrossBuildInMemoryCacheFactory(listenerManager);
+    InMemoryCacheStatistics createInMemoryCacheStatistics() {
+        return new InMemoryCacheStatistics();
     }
 
-    InMemoryCacheDecoratorFactory createInMemoryTaskArtifactCache(CrossBuildInMemoryCacheFactory cacheFactory) {
-        return new InMemoryCacheDecoratorFactory(environment.isLongLivingProcess(), cacheFactory);
+    CrossBuildInMemoryCacheFactory createCrossBuildInMemoryCacheFactory(ListenerManager listenerManager, InMemoryCacheStatistics cacheStatistics) {
+        return new CrossBuildInMemoryCacheFactory(listenerManager, cacheStatistics);
+    }
+
+    InMemoryCacheDecoratorFactory createInMemoryTaskArtifactCache(CrossBuildInMemoryCacheFactory cacheFactory, InMemoryCacheStatistics cacheStatistics) {
+        InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory = new InMemoryCacheDecoratorFactory(environment.isLongLivingProcess(), cacheFactory);
+        cacheStatistics.register(inMemoryCacheDecoratorFactory);
+        return inMemoryCacheDecoratorFactory;
     }
 
     DefaultFileLockContentionHandler createFileLockContentionHandler(ExecutorFactory executorFactory, InetAddressFactory inetAddressFactory) {
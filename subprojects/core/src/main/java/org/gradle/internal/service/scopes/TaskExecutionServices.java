@@ -61,11 +61,14 @@ import org.gradle.cache.CacheRepository;
 import org.gradle.caching.BuildCacheService;
 import org.gradle.caching.internal.BuildCacheServiceProvider;
 import org.gradle.caching.internal.tasks.GZipTaskOutputPacker;
+import org.gradle.caching.internal.tasks.ParallelTaskOutputPacker;
 import org.gradle.caching.internal.tasks.TarTaskOutputPacker;
 import org.gradle.caching.internal.tasks.TaskCacheKeyCalculator;
 import org.gradle.caching.internal.tasks.TaskOutputCachingListener;
 import org.gradle.caching.internal.tasks.TaskOutputPacker;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginFactory;
+import org.gradle.execution.taskgraph.CacheBackedTaskDurationHistory;
+import org.gradle.execution.taskgraph.TaskDurationHistory;
 import org.gradle.execution.taskgraph.TaskPlanExecutor;
 import org.gradle.execution.taskgraph.TaskPlanExecutorFactory;
 import org.gradle.internal.SystemProperties;
@@ -199,14 +202,24 @@ public class TaskExecutionServices {
         return new TaskCacheKeyCalculator();
     }
 
+    TaskDurationHistory createTaskDurationHistory(TaskHistoryStore taskHistoryStore) {
+        return new CacheBackedTaskDurationHistory(taskHistoryStore);
+    }
+
     TaskPlanExecutor createTaskExecutorFactory(StartParameter startParameter, ExecutorFactory executorFactory, WorkerLeaseService workerLeaseService) {
         int parallelThreads = startParameter.getMaxWorkerCount();
         return new TaskPlanExecutorFactory(parallelThreads, executorFactory, workerLeaseService).create();
     }
 
-    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem) {
-        return new GZipTaskOutputPacker(
-            new TarTaskOutputPacker(fileSystem)
+    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, ExecutorFactory executorFactory, StartParameter startParameter) {
+        return new ParallelTaskOutputPacker(
+            fileSystem,
+            executorFactory,
+            startParameter.getMaxWorkerCount(),
+            // Used to unpack entries stored in the previous format
+            new GZipTaskOutputPacker(
+                new TarTaskOutputPacker(fileSystem)
+            )
         );
     }
 
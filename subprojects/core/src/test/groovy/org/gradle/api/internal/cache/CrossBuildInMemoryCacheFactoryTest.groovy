@@ -23,7 +23,8 @@ import spock.lang.Specification
 
 class CrossBuildInMemoryCacheFactoryTest extends Specification {
     def listenerManager = new DefaultListenerManager()
-    def factory = new CrossBuildInMemoryCacheFactory(listenerManager)
+    def cacheStatistics = new InMemoryCacheStatistics()
+    def factory = new CrossBuildInMemoryCacheFactory(listenerManager, cacheStatistics)
 
     def "creates a cache that uses the given transformer to create entries"() {
         def a = new Object()
@@ -112,4 +113,27 @@ class CrossBuildInMemoryCacheFactoryTest extends Specification {
         then:
         0 * transformer._
     }
+
+    def "reports the number of entries of each cache"() {
+        def transformer = Stub(Transformer) {
+            transform(_) >> { new Object() }
+        }
+
+        when:
+        def scripts = factory.newCache("scripts")
+        def other = factory.newCache("other")
+        def moreScripts = factory.newCache("scripts")
+        scripts.get("a", transformer)
+        scripts.put("b", new Object())
+        moreScripts.get("a", transformer)
+
+        then:
+        cacheStatistics.sizes == [scripts: 3, other: 0]
+
+        when:
+        listenerManager.getBroadcaster(SessionLifecycleListener).beforeComplete()
+
+        then:
+        cacheStatistics.sizes == [scripts: 3, other: 0]
+    }
 }
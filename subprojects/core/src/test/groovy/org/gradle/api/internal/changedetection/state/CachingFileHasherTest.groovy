@@ -19,11 +19,8 @@ package org.gradle.api.internal.changedetection.state
 import com.google.common.base.Charsets
 import com.google.common.hash.Hashing
 import org.gradle.api.file.FileTreeElement
-import org.gradle.api.internal.cache.StringInterner
-import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.api.internal.hash.FileHasher
-import org.gradle.cache.PersistentIndexedCache
 import org.gradle.internal.nativeintegration.filesystem.DefaultFileMetadata
 import org.gradle.internal.resource.TextResource
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -34,19 +31,16 @@ class CachingFileHasherTest extends Specification {
     @Rule
     TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
     def target = Mock(FileHasher)
-    def cache = Mock(PersistentIndexedCache)
-    def cacheAccess = Mock(TaskHistoryStore)
+    def store = Mock(FileHashStore)
     def timeStampInspector = Mock(FileTimeStampInspector)
     def hash = Hashing.md5().hashString("hello", Charsets.UTF_8)
-    def oldHash = Hashing.md5().hashString("hi", Charsets.UTF_8)
     def file = tmpDir.createFile("testfile")
     def fileSystem = TestFiles.fileSystem()
     CachingFileHasher hasher
 
     def setup() {
         file.write("some-content")
-        1 * cacheAccess.createCache("fileHashes", _, _, _, _) >> cache
-        hasher = new CachingFileHasher(target, cacheAccess, new StringInterner(), timeStampInspector, "fileHashes", fileSystem)
+        hasher = new CachingFileHasher(target, store, timeStampInspector, fileSystem)
     }
 
     def hashesFileWhenHashNotCached() {
@@ -60,55 +54,9 @@ class CachingFileHasherTest extends Specification {
 
         and:
         1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
-        1 * cache.get(file.absolutePath) >> null
+        1 * store.get(file.absolutePath, stat.length, stat.lastModified) >> null
         1 * target.hash(file) >> hash
-        1 * cache.put(file.absolutePath, _) >> { String key, FileInfo fileInfo ->
-            assert fileInfo.hash == hash
-            assert fileInfo.length == stat.length
-            assert fileInfo.timestamp == stat.lastModified
-        }
-        0 * _._
-    }
-
-    def hashesFileWhenLengthHasChanged() {
-        def stat = fileSystem.stat(file)
-
-        when:
-        def result = hasher.hash(file)
-
-        then:
-        result == hash
-
-        and:
-        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
-        1 * cache.get(file.absolutePath) >> new FileInfo(oldHash, 1024, stat.lastModified)
-        1 * target.hash(file) >> hash
-        1 * cache.put(file.absolutePath, _) >> { String key, FileInfo fileInfo ->
-            assert fileInfo.hash == hash
-            assert fileInfo.length == stat.length
-            assert fileInfo.timestamp == stat.lastModified
-        }
-        0 * _._
-    }
-
-    def hashesFileWhenTimestampHasChanged() {
-        def stat = fileSystem.stat(file)
-
-        when:
-        def result = hasher.hash(file)
-
-        then:
-        result == hash
-
-        and:
-        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
-        1 * cache.get(file.absolutePath) >> new FileInfo(oldHash, file.length(), 124)
-        1 * target.hash(file) >> hash
-        1 * cache.put(file.absolutePath, _) >> { String key, FileInfo fileInfo ->
-            assert fileInfo.hash == hash
-            assert fileInfo.length == stat.length
-            assert fileInfo.timestamp == stat.lastModified
-        }
+        1 * store.put(file.absolutePath, stat.length, stat.lastModified, hash)
         0 * _._
     }
 
@@ -123,7 +71,7 @@ class CachingFileHasherTest extends Specification {
 
         and:
         1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
-        1 * cache.get(file.absolutePath) >> new FileInfo(hash, stat.length, stat.lastModified)
+        1 * store.get(file.absolutePath, stat.length, stat.lastModified) >> hash
         0 * _._
     }
 
@@ -139,11 +87,7 @@ class CachingFileHasherTest extends Specification {
         and:
         1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> false
         1 * target.hash(file) >> hash
-        1 * cache.put(file.absolutePath, _) >> { String key, FileInfo fileInfo ->
-            assert fileInfo.hash == hash
-            assert fileInfo.length == stat.length
-            assert fileInfo.timestamp == stat.lastModified
-        }
+        1 * store.put(file.absolutePath, stat.length, stat.lastModified, hash)
         0 * _._
     }
 
@@ -163,13 +107,9 @@ class CachingFileHasherTest extends Specification {
         _ * fileDetails.lastModified >> lastModified
         _ * fileDetails.size >> length
         1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, lastModified) >> true
-        1 * cache.get(file.absolutePath) >> null
+        1 * store.get(file.absolutePath, length, lastModified) >> null
         1 * target.hash(file) >> hash
-        1 * cache.put(file.absolutePath, _) >> { String key, FileInfo fileInfo ->
-            assert fileInfo.hash == hash
-            assert fileInfo.length == length
-            assert fileInfo.timestamp == lastModified
-        }
+        1 * store.put(file.absolutePath, length, lastModified, hash)
         0 * _._
     }
 
@@ -186,13 +126,9 @@ class CachingFileHasherTest extends Specification {
 
         and:
         1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, lastModified) >> true
-        1 * cache.get(file.absolutePath) >> null
+        1 * store.get(file.absolutePath, length, lastModified) >> null
         1 * target.hash(file) >> hash
-        1 * cache.put(file.absolutePath, _) >> { String key, FileInfo fileInfo ->
-            assert fileInfo.hash == hash
-            assert fileInfo.length == length
-            assert fileInfo.timestamp == lastModified
-        }
+        1 * store.put(file.absolutePath, length, lastModified, hash)
         0 * _._
     }
 
@@ -209,7 +145,7 @@ class CachingFileHasherTest extends Specification {
         and:
         1 * resource.file >> file
         1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
-        1 * cache.get(file.absolutePath) >> new FileInfo(hash, stat.length, stat.lastModified)
+        1 * store.get(file.absolutePath, stat.length, stat.lastModified) >> hash
         0 * _._
     }
 
@@ -18,22 +18,39 @@ package org.gradle.api.internal.changedetection.state
 
 import org.gradle.BuildResult
 import org.gradle.api.internal.GradleInternal
+import org.gradle.api.Action
+import org.gradle.api.internal.file.TemporaryFileProvider
 import org.gradle.internal.classpath.CachedJarFileStore
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.internal.filewatch.FileWatcherFactory
+import org.gradle.internal.filewatch.FileWatcherListener
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.SetSystemProperties
 import org.junit.Rule
 import spock.lang.Specification
 
 class DefaultFileSystemMirrorTest extends Specification {
     @Rule
     TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    @Rule
+    SetSystemProperties systemProperties = new SetSystemProperties()
 
     DefaultFileSystemMirror mirror
     TestFile cacheDir
+    def fileStore = Stub(CachedJarFileStore)
+    def watcher = Mock(FileWatcher)
+    def fileWatcherFactory = Mock(FileWatcherFactory)
+    FileWatcherListener watcherListener
+    Action<? super Throwable> watcherErrorAction
+    TestFile sentinelDir
+    def temporaryFileProvider = Stub(TemporaryFileProvider) {
+        createTemporaryDirectory(_, _) >> { sentinelDir = tmpDir.createDir("sentinel") }
+    }
 
     def setup() {
         cacheDir = tmpDir.createDir("cache")
-        def fileStore = Stub(CachedJarFileStore)
         fileStore.fileStoreRoots >> [cacheDir]
         mirror = new DefaultFileSystemMirror([fileStore])
     }
@@ -141,4 +158,268 @@ class DefaultFileSystemMirrorTest extends Specification {
         mirror.getDirectoryTree(file.path) == null
         mirror.getContent(file.path) == null
     }
+
+    def "retains state about a file between builds when enabled"() {
+        def file = tmpDir.file("dir/a")
+        def fileSnapshot = fileSnapshot(file)
+        def retainingMirror = retainingMirror()
+
+        when:
+        retainingMirror.afterStart()
+        retainingMirror.putFile(fileSnapshot)
+
+        then:
+        1 * fileWatcherFactory.watch(_, _) >> { Action<? super Throwable> onError, FileWatcherListener listener ->
+            watcherErrorAction = onError
+            watcherListener = listener
+            watcher
+        }
+        1 * watcher.watch({ it.contains(sentinelDir) })
+        1 * watcher.watch({ it.contains(file.parentFile) })
+        // The snapshot was taken before the directory was watched
+        retainingMirror.getFile(file.path) == null
+
+        when:
+        retainingMirror.putFile(fileSnapshot)
+        retainingMirror.beforeComplete()
+        reportSentinel()
+        retainingMirror.afterStart()
+
+        then:
+        0 * watcher._
+        retainingMirror.getFile(file.path) == fileSnapshot
+    }
+
+    def "discards retained state when the changes made since the previous build are not reported in time"() {
+        def file = tmpDir.file("dir/a")
+        def fileSnapshot = fileSnapshot(file)
+        def retainingMirror = retainingMirror()
+
+        given:
+        fileWatcherFactory.watch(_, _) >> { Action<? super Throwable> onError, FileWatcherListener listener ->
+            watcherListener = listener
+            watcher
+        }
+        retainingMirror.afterStart()
+        2.times { retainingMirror.putFile(fileSnapshot) }
+        retainingMirror.beforeComplete()
+
+        when:
+        retainingMirror.afterStart()
+
+        then:
+        retainingMirror.getFile(file.path) == null
+    }
+
+    def "discards all state when the outputs of a task are generated and state is not retained"() {
+        def output = tmpDir.file("build/out")
+        def input = tmpDir.file("src/in")
+
+        given:
+        [output, input].each { mirror.putFile(fileSnapshot(it)) }
+
+        when:
+        mirror.beforeTaskOutputsGenerated([output])
+
+        then:
+        mirror.getFile(output.path) == null
+        mirror.getFile(input.path) == null
+    }
+
+    def "discards retained state for the outputs of a task when they are generated"() {
+        def output = tmpDir.file("build/out")
+        def input = tmpDir.file("src/in")
+        def retainingMirror = retainingMirror()
+
+        given:
+        fileWatcherFactory.watch(_, _) >> watcher
+        retainingMirror.afterStart()
+        [output, output.file("a"), output.parentFile, input].each { file ->
+            // The first snapshot starts watching the directory, and is not kept
+            2.times { retainingMirror.putFile(fileSnapshot(file)) }
+        }
+
+        when:
+        retainingMirror.beforeTaskOutputsGenerated([output])
+
+        then:
+        retainingMirror.getFile(output.path) == null
+        retainingMirror.getFile(output.file("a").path) == null
+        retainingMirror.getFile(output.parentFile.path) == null
+        retainingMirror.getFile(input.path) != null
+    }
+
+    def "retains state for files in the root directory"() {
+        def root = File.listRoots()[0]
+        def file = new File(root, "file")
+        def retainingMirror = retainingMirror()
+
+        given:
+        fileWatcherFactory.watch(_, _) >> watcher
+        retainingMirror.afterStart()
+
+        when:
+        retainingMirror.putFile(fileSnapshot(file))
+
+        then:
+        1 * watcher.watch({ it.contains(root) })
+        retainingMirror.getFile(file.path) == null
+
+        when:
+        retainingMirror.putFile(fileSnapshot(file))
+
+        then:
+        0 * watcher.watch(_)
+        retainingMirror.getFile(file.path) != null
+    }
+
+    def "discards retained state for changed path, its descendants and its ancestors"() {
+        def dir = tmpDir.file("dir")
+        def child = dir.file("child")
+        def sibling = tmpDir.file("dir2")
+        def retainingMirror = retainingMirror()
+        def retain = { TestFile file ->
+            // The first snapshot starts watching the directory, and is not kept
+            2.times {
+                retainingMirror.putDirectory(treeSnapshot(file))
+                retainingMirror.putContent(file.path, Stub(Snapshot))
+            }
+        }
+
+        given:
+        fileWatcherFactory.watch(_, _) >> { Action<? super Throwable> onError, FileWatcherListener listener ->
+            watcherListener = listener
+            watcher
+        }
+        retainingMirror.afterStart()
+        [dir, child, sibling].each retain
+
+        when:
+        watcherListener.onChange(watcher, FileWatcherEvent.modify(child))
+
+        then:
+        retainingMirror.getDirectoryTree(dir.path) == null
+        retainingMirror.getDirectoryTree(child.path) == null
+        retainingMirror.getContent(dir.path) == null
+        retainingMirror.getContent(child.path) == null
+        retainingMirror.getDirectoryTree(sibling.path) != null
+        retainingMirror.getContent(sibling.path) != null
+
+        when:
+        watcherListener.onChange(watcher, FileWatcherEvent.undefined())
+
+        then:
+        retainingMirror.getDirectoryTree(sibling.path) == null
+        retainingMirror.getContent(sibling.path) == null
+    }
+
+    def "discards state stored after a change was reported during the build at the end of the build"() {
+        def dir = tmpDir.file("dir")
+        def snapshot = treeSnapshot(dir)
+        def retainingMirror = retainingMirror()
+
+        given:
+        fileWatcherFactory.watch(_, _) >> { Action<? super Throwable> onError, FileWatcherListener listener ->
+            watcherListener = listener
+            watcher
+        }
+        retainingMirror.afterStart()
+        retainingMirror.putDirectory(snapshot)
+
+        when:
+        watcherListener.onChange(watcher, FileWatcherEvent.create(dir.file("new")))
+        retainingMirror.putDirectory(snapshot)
+
+        then:
+        retainingMirror.getDirectoryTree(dir.path) == snapshot
+
+        when:
+        retainingMirror.beforeComplete()
+
+        then:
+        retainingMirror.getDirectoryTree(dir.path) == null
+    }
+
+    def "discards state and stops watching when watching fails"() {
+        def dir = tmpDir.file("dir")
+        def snapshot = treeSnapshot(dir)
+        def retainingMirror = retainingMirror()
+
+        given:
+        fileWatcherFactory.watch(_, _) >> { Action<? super Throwable> onError, FileWatcherListener listener ->
+            watcherErrorAction = onError
+            watcher
+        }
+        retainingMirror.afterStart()
+        retainingMirror.putDirectory(snapshot)
+        retainingMirror.putDirectory(snapshot)
+
+        when:
+        watcherErrorAction.execute(new IOException("broken"))
+
+        then:
+        1 * watcher.stop()
+        retainingMirror.getDirectoryTree(dir.path) == null
+
+        when:
+        retainingMirror.putDirectory(snapshot)
+        retainingMirror.beforeComplete()
+
+        then:
+        retainingMirror.getDirectoryTree(dir.path) == null
+    }
+
+    def "does not watch files when state is not retained"() {
+        def file = tmpDir.file("a")
+        def fileSnapshot = fileSnapshot(file)
+        def watchingMirror = new DefaultFileSystemMirror([fileStore], fileWatcherFactory, temporaryFileProvider)
+
+        when:
+        watchingMirror.afterStart()
+        watchingMirror.putFile(fileSnapshot)
+
+        then:
+        0 * fileWatcherFactory._
+        watchingMirror.getFile(file.path) == fileSnapshot
+
+        when:
+        watchingMirror.beforeComplete()
+
+        then:
+        watchingMirror.getFile(file.path) == null
+    }
+
+    private DefaultFileSystemMirror retainingMirror() {
+        System.setProperty(DefaultFileSystemMirror.RETAIN_STATE_PROPERTY, "true")
+        return new DefaultFileSystemMirror([fileStore], fileWatcherFactory, temporaryFileProvider, 1000, 0)
+    }
+
+    /**
+     * Reports the creation of the next sentinel file, as the watcher would.
+     */
+    private void reportSentinel() {
+        Thread.start {
+            def deadline = System.currentTimeMillis() + 5000
+            while (System.currentTimeMillis() < deadline) {
+                def sentinel = sentinelDir.listFiles().find()
+                if (sentinel != null) {
+                    watcherListener.onChange(watcher, FileWatcherEvent.create(sentinel))
+                    return
+                }
+                Thread.sleep(10)
+            }
+        }
+    }
+
+    private FileSnapshot fileSnapshot(File file) {
+        Stub(FileSnapshot) {
+            getPath() >> file.path
+        }
+    }
+
+    private FileTreeSnapshot treeSnapshot(File file) {
+        Stub(FileTreeSnapshot) {
+            getPath() >> file.path
+        }
+    }
 }
@@ -20,6 +20,7 @@ import org.gradle.api.internal.cache.StringInterner
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.api.internal.hash.DefaultFileHasher
 import org.gradle.caching.internal.DefaultBuildCacheHasher
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.nativeintegration.filesystem.FileType
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
@@ -79,6 +80,28 @@ class DefaultFileSystemSnapshotterTest extends Specification {
         snapshot2.is(snapshot)
     }
 
+    def "hashes the files of a large directory hierarchy in parallel"() {
+        def d = tmpDir.createDir("d")
+        100.times {
+            d.file("d${it % 7}/f${it}").text = "content ${it}"
+        }
+        def executorFactory = new DefaultExecutorFactory()
+        def parallelSnapshotter = new DefaultFileSystemSnapshotter(fileHasher, new StringInterner(), TestFiles.fileSystem(), TestFiles.directoryFileTreeFactory(), new DefaultFileSystemMirror([]), executorFactory, 4)
+
+        when:
+        def expected = snapshotter.snapshotDirectoryTree(d).descendants
+        def snapshot = parallelSnapshotter.snapshotDirectoryTree(d)
+
+        then:
+        snapshot.descendants.size() == 107
+        snapshot.descendants*.path == expected*.path
+        snapshot.descendants*.content == expected*.content
+
+        cleanup:
+        parallelSnapshotter.stop()
+        executorFactory.stop()
+    }
+
     def "fetches details of a directory hierarchy and caches the result"() {
         def d = tmpDir.createDir("d")
         d.createFile("f1")
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import com.google.common.base.Charsets
+import com.google.common.hash.Hashing
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedFileHashStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def storeFile = tmpDir.file("fileHashes.map")
+    def hash = Hashing.md5().hashString("hello", Charsets.UTF_8)
+    def otherHash = Hashing.murmur3_128().hashString("hello", Charsets.UTF_8)
+
+    def "returns hash of file with same length and timestamp"() {
+        def store = new MappedFileHashStore(storeFile, 1024)
+
+        when:
+        store.put("/some/file", 12, 123, hash)
+
+        then:
+        store.get("/some/file", 12, 123) == hash
+        store.get("/some/file", 13, 123) == null
+        store.get("/some/file", 12, 124) == null
+        store.get("/some/other", 12, 123) == null
+    }
+
+    def "replaces hash of file"() {
+        def store = new MappedFileHashStore(storeFile, 1024)
+
+        when:
+        store.put("/some/file", 12, 123, hash)
+        store.put("/some/file", 13, 124, otherHash)
+
+        then:
+        store.get("/some/file", 12, 123) == null
+        store.get("/some/file", 13, 124) == otherHash
+    }
+
+    def "removes hash of file"() {
+        def store = new MappedFileHashStore(storeFile, 1024)
+        store.put("/some/file", 12, 123, hash)
+        store.put("/some/other", 12, 123, hash)
+
+        when:
+        store.remove("/some/file")
+
+        then:
+        store.get("/some/file", 12, 123) == null
+        store.get("/some/other", 12, 123) == hash
+    }
+
+    def "does not store hashes of a different size"() {
+        def store = new MappedFileHashStore(storeFile, 1024)
+        store.put("/some/file", 12, 123, hash)
+
+        when:
+        store.put("/some/file", 12, 123, Hashing.sha1().hashString("hello", Charsets.UTF_8))
+
+        then:
+        store.get("/some/file", 12, 123) == null
+    }
+
+    def "keeps hashes of many files up to its capacity"() {
+        def store = new MappedFileHashStore(storeFile, 1024)
+
+        when:
+        2048.times { store.put("/some/file" + it, it, 123, hash) }
+
+        then:
+        def found = (0..<2048).findAll { store.get("/some/file" + it, it, 123) != null }
+        found.size() > 512
+        found.size() <= 1024
+        found.contains(2047)
+    }
+
+    def "reuses hashes stored by another instance"() {
+        def store = new MappedFileHashStore(storeFile, 1024)
+        store.put("/some/file", 12, 123, hash)
+        store.close()
+
+        when:
+        store = new MappedFileHashStore(storeFile, 1024)
+
+        then:
+        store.get("/some/file", 12, 123) == hash
+    }
+
+    def "discards hashes when store file has different capacity or is corrupt"() {
+        def store = new MappedFileHashStore(storeFile, 1024)
+        store.put("/some/file", 12, 123, hash)
+        store.close()
+
+        when:
+        store = new MappedFileHashStore(storeFile, 2048)
+
+        then:
+        store.get("/some/file", 12, 123) == null
+
+        when:
+        store.put("/some/file", 12, 123, hash)
+        store.close()
+        def raf = new RandomAccessFile(storeFile, "rw")
+        raf.write(new byte[8])
+        raf.close()
+        store = new MappedFileHashStore(storeFile, 2048)
+
+        then:
+        store.get("/some/file", 12, 123) == null
+    }
+
+    def "ignores records that have been partially written"() {
+        def store = new MappedFileHashStore(storeFile, 4)
+        store.put("/some/file", 12, 123, hash)
+        store.close()
+
+        when:
+        def bytes = storeFile.bytes
+        // Change the content hash of every record
+        4.times { bytes[64 + it * 64 + 32] = (byte) (bytes[64 + it * 64 + 32] ^ 1) }
+        storeFile.bytes = bytes
+        store = new MappedFileHashStore(storeFile, 4)
+
+        then:
+        store.get("/some/file", 12, 123) == null
+    }
+
+    def "only one store can use a file at a time"() {
+        def store = new MappedFileHashStore(storeFile, 1024)
+
+        expect:
+        MappedFileHashStore.tryOpen(storeFile, 1024, 1024) == null
+
+        when:
+        store.close()
+        def other = MappedFileHashStore.tryOpen(storeFile, 1024, 1024)
+
+        then:
+        other != null
+
+        cleanup:
+        other?.close()
+    }
+
+    def "keeps consistent records when written concurrently"() {
+        def store = new MappedFileHashStore(storeFile, 4)
+        def hashes = (0..<8).collect { Hashing.md5().hashInt(it) }
+
+        when:
+        def threads = (0..<8).collect { index ->
+            Thread.start {
+                1000.times { store.put("/some/file", index, index, hashes[index]) }
+            }
+        }
+        threads*.join()
+
+        then:
+        def found = (0..<8).findAll { store.get("/some/file", it, it) != null }
+        found.size() == 1
+        store.get("/some/file", found[0], found[0]) == hashes[found[0]]
+
+        cleanup:
+        store.close()
+    }
+
+    def "grows when a quarter of the records are used and an entry does not fit"() {
+        def store = new MappedFileHashStore(storeFile, 16, 1 << 16)
+
+        when:
+        2048.times { store.put("/some/file" + it, it, 123, hash) }
+
+        then:
+        // An entry is only replaced when its bucket is full while less than a quarter of the records are used
+        def found = (0..<2048).findAll { store.get("/some/file" + it, it, 123) == hash }
+        found.size() > 1950
+        storeFile.length() > 64 + 4096 * 64
+        storeFile.length() <= 64 + 8192 * 64
+
+        when:
+        store.close()
+        store = new MappedFileHashStore(storeFile, 16, 1 << 16)
+
+        then:
+        (0..<2048).findAll { store.get("/some/file" + it, it, 123) == hash } == found
+
+        cleanup:
+        store.close()
+    }
+
+    def "stops growing at its maximum capacity"() {
+        def store = new MappedFileHashStore(storeFile, 16, 256)
+
+        when:
+        2048.times { store.put("/some/file" + it, it, 123, hash) }
+
+        then:
+        storeFile.length() == 64 + 256 * 64
+        def found = (0..<2048).findAll { store.get("/some/file" + it, it, 123) != null }
+        found.size() > 128
+        found.size() <= 256
+        found.contains(2047)
+
+        cleanup:
+        store.close()
+    }
+
+    def "keeps hashes when written concurrently while growing"() {
+        def store = new MappedFileHashStore(storeFile, 16, 1 << 16)
+
+        when:
+        def threads = (0..<8).collect { index ->
+            Thread.start {
+                1000.times { store.put("/some/file-" + index + "-" + it, it, index, hash) }
+            }
+        }
+        threads*.join()
+
+        then:
+        def found = (0..<8).sum { index -> (0..<1000).count { store.get("/some/file-" + index + "-" + it, it, index) == hash } }
+        found > 7800
+
+        cleanup:
+        store.close()
+    }
+
+    def "capacity must be a power of two"() {
+        when:
+        new MappedFileHashStore(storeFile, 1000)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Capacity must be a power of two of at least 4, but was 1000."
+    }
+}
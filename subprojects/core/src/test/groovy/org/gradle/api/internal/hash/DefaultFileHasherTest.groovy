@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class DefaultFileHasherTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def "hashes file contents with #function"() {
+        def hasher = new DefaultFileHasher(function.hashFunction)
+        def file = tmpDir.file("file")
+        def large = tmpDir.file("large")
+        file.text = "content"
+        large.bytes = new byte[200 * 1024]
+
+        expect:
+        hasher.hash(file) == hasher.hash(new ByteArrayInputStream("content".bytes))
+        hasher.hash(file).bits() == 128
+        hasher.hash(large) == hasher.hash(new ByteArrayInputStream(new byte[200 * 1024]))
+        hasher.hash(file) != hasher.hash(large)
+
+        where:
+        function << FileHashFunction.values()
+    }
+
+    def "different functions produce different hashes"() {
+        def file = tmpDir.file("file")
+        file.text = "content"
+
+        expect:
+        new DefaultFileHasher(FileHashFunction.MD5.hashFunction).hash(file) != new DefaultFileHasher(FileHashFunction.MURMUR3.hashFunction).hash(file)
+    }
+
+    def "hashes created by different functions are kept in different caches"() {
+        expect:
+        FileHashFunction.MD5.cacheName("fileHashes") == "fileHashes"
+        FileHashFunction.MURMUR3.cacheName("fileHashes") == "fileHashes-murmur3"
+    }
+}
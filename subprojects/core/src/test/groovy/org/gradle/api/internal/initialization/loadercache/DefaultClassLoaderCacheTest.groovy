@@ -17,6 +17,8 @@
 package org.gradle.api.internal.initialization.loadercache
 
 import com.google.common.hash.HashCode
+import org.gradle.api.internal.cache.InMemoryCacheStatistics
+import org.gradle.internal.classloader.ClassLoaderHierarchyHasher
 import org.gradle.internal.classloader.DefaultHashingClassLoaderFactory
 import org.gradle.internal.classloader.FilteringClassLoader
 import org.gradle.internal.classpath.ClassPath
@@ -29,7 +31,9 @@ import spock.lang.Specification
 class DefaultClassLoaderCacheTest extends Specification {
 
     def classpathHasher = new FileClasspathHasher()
-    def cache = new DefaultClassLoaderCache(new DefaultHashingClassLoaderFactory(classpathHasher), classpathHasher)
+    def cacheStatistics = new InMemoryCacheStatistics()
+    def hierarchyHasher = Mock(ClassLoaderHierarchyHasher)
+    def cache = new DefaultClassLoaderCache(new DefaultHashingClassLoaderFactory(classpathHasher), classpathHasher, hierarchyHasher, cacheStatistics)
     def id1 = new ClassLoaderId() {}
     def id2 = new ClassLoaderId() {}
 
@@ -74,6 +78,22 @@ class DefaultClassLoaderCacheTest extends Specification {
         cache.get(id1, classPath("c1"), root1, null) != cache.get(id2, classPath("c1"), root2, null)
     }
 
+    def "class loaders are reused when parents have the same hierarchy hash"() {
+        def root1 = classLoader(classPath("root"))
+        def root2 = classLoader(classPath("root"))
+        def other = classLoader(classPath("other"))
+
+        given:
+        hierarchyHasher.getClassLoaderHash(root1) >> HashCode.fromInt(1)
+        hierarchyHasher.getClassLoaderHash(root2) >> HashCode.fromInt(1)
+        hierarchyHasher.getClassLoaderHash(other) >> HashCode.fromInt(2)
+
+        expect:
+        cache.get(id1, classPath("c1"), root1, null).is cache.get(id2, classPath("c1"), root2, null)
+        !cache.get(id1, classPath("c1"), root1, null).is(cache.get(id2, classPath("c1"), other, null))
+        cache.size() == 2
+    }
+
     def "null parents are respected"() {
         expect:
         def root = classLoader(classPath("root"))
@@ -222,4 +242,21 @@ class DefaultClassLoaderCacheTest extends Specification {
         then:
         cache.size() == 1
     }
+
+    def "reports the number of class loaders until stopped"() {
+        def root = classLoader(classPath("root"))
+
+        when:
+        cache.get(id1, classPath("c1"), root, null)
+        cache.get(id2, classPath("c2"), root, null)
+
+        then:
+        cacheStatistics.sizes == ["class loaders": 2]
+
+        when:
+        cache.stop()
+
+        then:
+        cacheStatistics.sizes.isEmpty()
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.project
+
+import org.gradle.api.GradleException
+import spock.lang.Specification
+
+class ConcurrentProjectConfigurationTest extends Specification {
+    def current = project("project ':a'", false)
+
+    def "allows configuring any project when no project is configured concurrently"() {
+        when:
+        ConcurrentProjectConfiguration.checkCanConfigure(project("project ':b'", false))
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "allows configuring the project itself and projects that have been configured"() {
+        when:
+        ConcurrentProjectConfiguration.configure(current) {
+            ConcurrentProjectConfiguration.checkCanConfigure(current)
+            ConcurrentProjectConfiguration.checkCanConfigure(project("root project 'root'", true))
+        }
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "fails when configuring a project that has not been configured"() {
+        when:
+        ConcurrentProjectConfiguration.configure(current) {
+            ConcurrentProjectConfiguration.checkCanConfigure(project("project ':b'", false))
+        }
+
+        then:
+        def e = thrown(GradleException)
+        e.message == "Project ':a' was configured concurrently with other projects, but configures project ':b', which has not been configured yet. " +
+            "Projects that configure other projects cannot be configured concurrently. Run the build without the 'org.gradle.internal.configure.parallel' system property."
+
+        when:
+        ConcurrentProjectConfiguration.checkCanConfigure(project("project ':b'", false))
+
+        then:
+        noExceptionThrown()
+    }
+
+    def project(String displayName, boolean executed) {
+        def state = new ProjectStateInternal()
+        if (executed) {
+            state.executed()
+        }
+        def project = Stub(ProjectInternal)
+        project.displayName >> displayName
+        project.state >> state
+        return project
+    }
+}
@@ -17,6 +17,8 @@ package org.gradle.api.internal.tasks.execution
 
 import org.gradle.api.execution.TaskActionListener
 import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.file.collections.SimpleFileCollection
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.tasks.ContextAwareTaskAction
 import org.gradle.api.internal.tasks.TaskExecutionContext
@@ -24,6 +26,7 @@ import org.gradle.api.internal.tasks.TaskExecutionOutcome
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.tasks.StopActionException
 import org.gradle.api.tasks.StopExecutionException
+import org.gradle.api.tasks.TaskDestroyables
 import org.gradle.api.tasks.TaskExecutionException
 import org.gradle.groovy.scripts.ScriptSource
 import org.gradle.internal.exceptions.DefaultMultiCauseException
@@ -39,6 +42,7 @@ import static java.util.Collections.emptyList
 
 class ExecuteActionsTaskExecutorTest extends Specification {
     private final TaskInternal task = Mock(TaskInternal)
+    private final TaskOutputsInternal outputs = Stub(TaskOutputsInternal)
     private final ContextAwareTaskAction action1 = Mock(ContextAwareTaskAction)
     private final ContextAwareTaskAction action2 = Mock(ContextAwareTaskAction)
     private final TaskStateInternal state = new TaskStateInternal()
@@ -57,6 +61,7 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         task.getState() >> state
         project.getBuildScriptSource() >> scriptSource
         task.getStandardOutputCapture() >> standardOutputCapture
+        task.getOutputs() >> outputs
     }
 
     void noMoreInteractions() {
@@ -142,6 +147,26 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         state.actionable
     }
 
+    def notifiesListenerOfDeclaredOutputsAndDestroyablesOfTask() {
+        def outputFile = new File("out")
+        def destroyedFile = new File("destroyed")
+        def destroyables = Stub(TaskDestroyables)
+
+        given:
+        task.getTaskActions() >> [action1]
+        outputs.hasDeclaredOutputs() >> true
+        outputs.getFiles() >> new SimpleFileCollection(outputFile)
+        task.getDestroyables() >> destroyables
+        destroyables.getFiles() >> new SimpleFileCollection(destroyedFile)
+
+        when:
+        executer.execute(task, state, executionContext)
+
+        then:
+        1 * internalListener.beforeTaskOutputsGenerated({ it.toList() == [outputFile, destroyedFile] })
+        0 * internalListener.beforeTaskOutputsGenerated()
+    }
+
     def executeDoesOperateOnNewActionListInstance() {
         given:
         interaction {
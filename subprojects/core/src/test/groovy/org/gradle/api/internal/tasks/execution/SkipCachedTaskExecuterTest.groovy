@@ -82,7 +82,7 @@ class SkipCachedTaskExecuterTest extends Specification {
             reader.readFrom(inputStream)
             return true
         }
-        1 * internalTaskExecutionListener.beforeTaskOutputsGenerated()
+        1 * internalTaskExecutionListener.beforeTaskOutputsGenerated([])
         1 * taskOutputOriginFactory.createReader(task) >> originReader
         1 * taskOutputPacker.unpack(_, inputStream, originReader) >> new TaskOutputOriginMetadata(originId)
 
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal
+
+import org.gradle.internal.Factory
+import spock.lang.Specification
+
+class AsyncCacheAccessDecoratedCacheTest extends Specification {
+    def asyncCacheAccess = Mock(AsyncCacheAccess)
+    def persistentCache = Mock(MultiProcessSafePersistentIndexedCache)
+    def cache = new AsyncCacheAccessDecoratedCache<String, String>(asyncCacheAccess, persistentCache)
+    def queued = []
+
+    def "writes only the latest value of a key that is updated while waiting"() {
+        def completion1 = Mock(Runnable)
+        def completion2 = Mock(Runnable)
+        def completion3 = Mock(Runnable)
+
+        when:
+        cache.putLater("key", "value1", completion1)
+
+        then:
+        1 * asyncCacheAccess.enqueue(_) >> { Runnable action -> queued << action }
+        0 * _
+
+        when:
+        cache.putLater("key", "value2", completion2)
+        cache.putLater("other", "value", Mock(Runnable))
+
+        then:
+        1 * completion1.run()
+        1 * asyncCacheAccess.enqueue(_) >> { Runnable action -> queued << action }
+        0 * _
+
+        when:
+        def result = cache.get("key")
+
+        then:
+        result == "value2"
+        0 * _
+
+        when:
+        cache.removeLater("key", completion3)
+        queued[0].run()
+
+        then:
+        1 * completion2.run()
+
+        then:
+        1 * persistentCache.remove("key")
+
+        then:
+        1 * completion3.run()
+        0 * _
+    }
+
+    def "queues new update once the pending update has been applied"() {
+        def completion = Mock(Runnable)
+
+        when:
+        cache.putLater("key", "value1", completion)
+        queued[0].run()
+        cache.putLater("key", "value2", completion)
+        queued[1].run()
+
+        then:
+        2 * asyncCacheAccess.enqueue(_) >> { Runnable action -> queued << action }
+        1 * persistentCache.put("key", "value1")
+        1 * persistentCache.put("key", "value2")
+        2 * completion.run()
+        0 * _
+    }
+
+    def "reads value from backing cache when there is no pending update"() {
+        when:
+        def result = cache.get("key")
+
+        then:
+        result == "value"
+        1 * asyncCacheAccess.read(_) >> { Factory factory -> factory.create() }
+        1 * persistentCache.get("key") >> "value"
+        0 * _
+    }
+}
@@ -93,6 +93,65 @@ class FixedSizeOldestCacheCleanupTest extends Specification {
         }
     }
 
+    def "uses index to find entries to delete"() {
+        def cacheEntries = [
+            indexedEntry(1024, 1000), // 1KB, most recently accessed
+            indexedEntry(1024*1024*10, 0), // 10MB, least recently accessed
+            indexedEntry(1024*1024, 500), // 1MB
+            indexedEntry(1024*1024*5, 250), // 5MB
+        ]
+        expect:
+        def entriesToDelete = cleanupAction.findEntriesToDelete(persistentCache, cacheEntries)
+        entriesToDelete == [cacheEntries[1]]
+    }
+
+    def "deletes indexed entries and removes them from the index"() {
+        def index = Mock(CacheEntryIndex)
+        def cacheEntries = [
+            indexedEntry(1024, 0),
+            indexedEntry(1024*1024, 0),
+        ]
+
+        when:
+        cleanupAction.cleanupEntries(persistentCache, index, cacheEntries)
+
+        then:
+        cacheEntries.each {
+            it.file.assertDoesNotExist()
+        }
+        1 * index.remove(cacheEntries)
+    }
+
+    def "keeps indexed entries that could not be deleted in the index"() {
+        def index = Mock(CacheEntryIndex)
+        def deleted = indexedEntry(1024, 0)
+        // A non-empty directory cannot be deleted
+        def undeletableFile = cacheDir.createDir("undeletable")
+        undeletableFile.createFile("child")
+        def undeletable = Stub(CacheEntryIndex.Entry) {
+            getKey() >> "undeletable"
+            getFile() >> undeletableFile
+            getSize() >> 1024
+        }
+
+        when:
+        cleanupAction.cleanupEntries(persistentCache, index, [deleted, undeletable])
+
+        then:
+        deleted.file.assertDoesNotExist()
+        1 * index.remove([deleted])
+    }
+
+    def indexedEntry(int size, long lastAccessTime) {
+        def file = createCacheEntry(size)
+        return Stub(CacheEntryIndex.Entry) {
+            getKey() >> file.name
+            getFile() >> file
+            getSize() >> size
+            getLastAccessTime() >> lastAccessTime
+        }
+    }
+
     def createCacheEntry(int size, int timestamp=0) {
         def cacheEntry = cacheDir.file(String.format("%032x", size))
         def data = new byte[size]
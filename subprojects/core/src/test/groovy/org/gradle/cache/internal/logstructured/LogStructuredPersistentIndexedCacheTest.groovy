@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class LogStructuredPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def serializer = new BaseSerializerFactory().getSerializerFor(String)
+    def cacheFile = tmpDir.file("cache.log")
+
+    def "returns null for unknown entry"() {
+        def cache = createCache()
+
+        expect:
+        cache.get("unknown") == null
+    }
+
+    def "persists added, replaced and removed entries"() {
+        def cache = createCache()
+
+        when:
+        100.times { cache.put("key" + it, "value" + it) }
+        cache.put("key1", "new value")
+        cache.remove("key2")
+        cache.remove("unknown")
+
+        then:
+        cache.get("key1") == "new value"
+        cache.get("key2") == null
+        cache.get("key3") == "value3"
+
+        when:
+        cache.close()
+        cache = createCache()
+
+        then:
+        cache.get("key1") == "new value"
+        cache.get("key2") == null
+        cache.get("key3") == "value3"
+    }
+
+    def "sees entries added by another instance when opened again"() {
+        def cache = createCache()
+        cache.put("key1", "value1")
+        cache.close()
+
+        when:
+        def other = createCache()
+        other.put("key1", "new value")
+        other.put("key2", "value2")
+        other.close()
+        cache.open()
+
+        then:
+        cache.get("key1") == "new value"
+        cache.get("key2") == "value2"
+    }
+
+    def "discards partially written entry at the end of the log"() {
+        def cache = createCache()
+        cache.put("key1", "value1")
+        cache.put("key2", "value2")
+        cache.close()
+
+        when:
+        def raf = new RandomAccessFile(cacheFile, "rw")
+        raf.setLength(raf.length() - 1)
+        raf.close()
+        cache = createCache()
+
+        then:
+        cache.get("key1") == "value1"
+        cache.get("key2") == null
+
+        when:
+        cache.put("key2", "value2")
+        cache.close()
+        cache = createCache()
+
+        then:
+        cache.get("key2") == "value2"
+    }
+
+    def "discards log with unexpected content"() {
+        cacheFile.text = "this is not a log file"
+
+        when:
+        def cache = createCache()
+        cache.put("key", "value")
+
+        then:
+        cache.get("key") == "value"
+    }
+
+    def "compacts log when most of it holds replaced entries"() {
+        def cache = createCache()
+        def other = createCache()
+        other.close()
+        def value = "x" * 1000
+        5.times { round ->
+            1000.times { cache.put("key" + it, value + round) }
+        }
+        def length = cacheFile.length()
+
+        when:
+        cache.close()
+
+        then:
+        cacheFile.length() < length / 4
+
+        when:
+        cache.open()
+        other.open()
+
+        then:
+        cache.get("key12") == value + 4
+        other.get("key12") == value + 4
+        cache.get("key1000") == null
+    }
+
+    def "keeps index entries when many keys are added and removed"() {
+        def index = new RecordIndex()
+
+        when:
+        10000.times { index.put(it * 0x9E3779B97F4A7C15L, it, 1) }
+        5000.times { index.removeAt(index.find(it * 2 * 0x9E3779B97F4A7C15L)) }
+
+        then:
+        index.size() == 5000
+        (0..<10000).every { (index.find(it * 0x9E3779B97F4A7C15L) >= 0) == (it % 2 == 1) }
+        index.sortedOffsets() == (0..<10000).findAll { it % 2 == 1 } as long[]
+    }
+
+    private LogStructuredPersistentIndexedCache<String, String> createCache() {
+        return new LogStructuredPersistentIndexedCache<String, String>(cacheFile, serializer, serializer)
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import org.gradle.api.internal.file.TemporaryFileProvider
+import org.gradle.caching.BuildCacheEntryReader
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheKey
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+
+class BackgroundStoringBuildCacheServiceDecoratorTest extends ConcurrentSpec {
+    @Rule
+    TestNameTestDirectoryProvider tempDir = new TestNameTestDirectoryProvider()
+
+    def key = Stub(BuildCacheKey) {
+        getHashCode() >> "0123456789abcdef"
+    }
+    def temporaryFileProvider = Stub(TemporaryFileProvider) {
+        createTemporaryFile(_, _) >> { tempDir.file("entry-" + UUID.randomUUID()) }
+    }
+    def delegate = Mock(RoleAwareBuildCacheService)
+    def decorator = new BackgroundStoringBuildCacheServiceDecorator(1, temporaryFileProvider, executorFactory, delegate)
+
+    def "stores entry in the background"() {
+        when:
+        async {
+            decorator.store(key, writer("data"))
+            instant.stored
+        }
+        decorator.close()
+
+        then:
+        1 * delegate.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            thread.blockUntil.stored
+            assert contents(writer) == "data"
+        }
+        1 * delegate.close()
+        !tempDir.testDirectory.listFiles().any { it.name.startsWith("entry-") }
+    }
+
+    def "waits for earlier entry to be stored when queue is full"() {
+        when:
+        async {
+            start {
+                decorator.store(key, writer("first"))
+                decorator.store(key, writer("second"))
+                instant.secondQueued
+            }
+            thread.blockUntil.firstStoreStarted
+            thread.block()
+            instant.firstStoreReleased
+        }
+        decorator.close()
+
+        then:
+        1 * delegate.store(key, { contents(it) == "first" }) >> {
+            instant.firstStoreStarted
+            thread.blockUntil.firstStoreReleased
+        }
+        1 * delegate.store(key, { contents(it) == "second" })
+        instant.secondQueued > instant.firstStoreReleased
+    }
+
+    def "loads entry that is waiting to be stored"() {
+        def reader = Mock(BuildCacheEntryReader)
+
+        when:
+        async {
+            decorator.store(key, writer("data"))
+            assert decorator.load(key, reader)
+            instant.loaded
+        }
+        decorator.close()
+
+        then:
+        1 * delegate.store(key, _) >> {
+            thread.blockUntil.loaded
+        }
+        1 * reader.readFrom(_) >> { InputStream input ->
+            assert input.text == "data"
+        }
+        0 * delegate.load(_, _)
+    }
+
+    def "does not accept entries once closed"() {
+        decorator.close()
+
+        when:
+        decorator.store(key, writer("data"))
+
+        then:
+        thrown IllegalStateException
+        0 * delegate.store(_, _)
+    }
+
+    private static BuildCacheEntryWriter writer(String contents) {
+        return new BuildCacheEntryWriter() {
+            @Override
+            void writeTo(OutputStream output) throws IOException {
+                output.write(contents.bytes)
+            }
+        }
+    }
+
+    private static String contents(BuildCacheEntryWriter writer) {
+        def output = new ByteArrayOutputStream()
+        writer.writeTo(output)
+        return output.toString()
+    }
+}
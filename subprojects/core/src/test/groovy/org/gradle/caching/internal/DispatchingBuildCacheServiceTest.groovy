@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import org.gradle.api.internal.file.TemporaryFileProvider
+import org.gradle.caching.BuildCacheEntryReader
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheKey
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class DispatchingBuildCacheServiceTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tempDir = new TestNameTestDirectoryProvider()
+
+    def key = Mock(BuildCacheKey)
+    def local = Mock(RoleAwareBuildCacheService)
+    def remote = Mock(RoleAwareBuildCacheService)
+    def reader = Mock(BuildCacheEntryReader)
+    def temporaryFileProvider = Stub(TemporaryFileProvider) {
+        createTemporaryFile(_, _) >> { tempDir.file("entry-" + UUID.randomUUID()) }
+    }
+    def service = new DispatchingBuildCacheService(local, true, remote, true, temporaryFileProvider)
+
+    def "stores entry loaded from remote cache locally"() {
+        when:
+        def found = service.load(key, reader)
+
+        then:
+        found
+        1 * local.load(key, reader) >> false
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("data".bytes))
+            true
+        }
+
+        then:
+        1 * reader.readFrom(_) >> { InputStream input ->
+            assert input.text == "data"
+        }
+
+        then:
+        1 * local.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            def output = new ByteArrayOutputStream()
+            writer.writeTo(output)
+            assert output.toString() == "data"
+        }
+    }
+
+    def "does not store entry loaded from remote cache locally when it cannot be read"() {
+        def failure = new IOException("corrupt")
+
+        when:
+        service.load(key, reader)
+
+        then:
+        def e = thrown(RuntimeException)
+        e.cause.is(failure)
+        1 * local.load(key, reader) >> false
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("data".bytes))
+            true
+        }
+        1 * reader.readFrom(_) >> { throw failure }
+        0 * local.store(_, _)
+    }
+}
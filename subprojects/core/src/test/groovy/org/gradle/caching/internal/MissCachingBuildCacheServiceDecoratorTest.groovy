@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import org.gradle.caching.BuildCacheEntryReader
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheKey
+import spock.lang.Specification
+
+class MissCachingBuildCacheServiceDecoratorTest extends Specification {
+    def key = Stub(BuildCacheKey) {
+        getHashCode() >> "0123456789abcdef"
+    }
+    def reader = Mock(BuildCacheEntryReader)
+    def writer = Mock(BuildCacheEntryWriter)
+    def delegate = Mock(RoleAwareBuildCacheService)
+    def decorator = new MissCachingBuildCacheServiceDecorator(delegate)
+
+    def "does not load missing entry again"() {
+        when:
+        def first = decorator.load(key, reader)
+        def second = decorator.load(key, reader)
+
+        then:
+        1 * delegate.load(key, reader) >> false
+        0 * _
+        !first
+        !second
+    }
+
+    def "loads found entry again"() {
+        when:
+        decorator.load(key, reader)
+        decorator.load(key, reader)
+
+        then:
+        2 * delegate.load(key, reader) >> true
+    }
+
+    def "loads entry again after it has been stored"() {
+        when:
+        decorator.load(key, reader)
+        decorator.store(key, writer)
+        def found = decorator.load(key, reader)
+
+        then:
+        1 * delegate.load(key, reader) >> false
+        1 * delegate.store(key, writer)
+
+        then:
+        1 * delegate.load(key, reader) >> true
+        found
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginMetadata
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.nativeplatform.filesystem.FileSystem
+
+import static org.gradle.api.internal.tasks.CacheableTaskOutputFilePropertySpec.OutputType.DIRECTORY
+import static org.gradle.api.internal.tasks.CacheableTaskOutputFilePropertySpec.OutputType.FILE
+
+class ParallelTaskOutputPackerTest extends AbstractTaskOutputPackerSpec {
+    def fileSystem = Mock(FileSystem)
+    def executorFactory = new DefaultExecutorFactory()
+    def fallback = Mock(TaskOutputPacker)
+    private parallelPacker = new ParallelTaskOutputPacker(fileSystem, executorFactory, 4, fallback)
+
+    @Override
+    TaskOutputPacker getPacker() {
+        return parallelPacker
+    }
+
+    def cleanup() {
+        parallelPacker.stop()
+        executorFactory.stop()
+    }
+
+    def "can pack single task output file"() {
+        def sourceOutputFile = tempDir.file("source.txt")
+        sourceOutputFile << "output"
+        sourceOutputFile.setLastModified(123456789000L)
+        def targetOutputFile = tempDir.file("target.txt")
+        def output = new ByteArrayOutputStream()
+
+        when:
+        pack output, new ResolvedTaskOutputFilePropertySpec("test", FILE, sourceOutputFile)
+
+        then:
+        1 * fileSystem.getUnixMode(sourceOutputFile) >> 0755
+        0 * _
+
+        when:
+        unpack new ByteArrayInputStream(output.toByteArray()), new ResolvedTaskOutputFilePropertySpec("test", FILE, targetOutputFile)
+
+        then:
+        1 * fileSystem.chmod(targetOutputFile, 0755)
+        0 * _
+        targetOutputFile.text == "output"
+        targetOutputFile.lastModified() == 123456789000L
+    }
+
+    def "can pack task output directory"() {
+        def sourceOutputDir = tempDir.file("source").createDir()
+        def sourceSubDir = sourceOutputDir.file("subdir").createDir()
+        def sourceDataFile = sourceSubDir.file("data.txt")
+        sourceDataFile << "output"
+        def sourceEmptyFile = sourceOutputDir.file("empty.txt")
+        sourceEmptyFile.createNewFile()
+        def targetOutputDir = tempDir.file("target").createDir()
+        def targetStaleFile = targetOutputDir.file("stale.txt")
+        targetStaleFile << "stale"
+        def output = new ByteArrayOutputStream()
+
+        when:
+        pack output, new ResolvedTaskOutputFilePropertySpec("test", DIRECTORY, sourceOutputDir)
+
+        then:
+        1 * fileSystem.getUnixMode(sourceOutputDir) >> 0755
+        1 * fileSystem.getUnixMode(sourceSubDir) >> 0711
+        1 * fileSystem.getUnixMode(sourceDataFile) >> 0600
+        1 * fileSystem.getUnixMode(sourceEmptyFile) >> 0644
+
+        when:
+        unpack new ByteArrayInputStream(output.toByteArray()), new ResolvedTaskOutputFilePropertySpec("test", DIRECTORY, targetOutputDir)
+
+        then:
+        1 * fileSystem.chmod(targetOutputDir, 0755)
+        1 * fileSystem.chmod(targetOutputDir.file("subdir"), 0711)
+        1 * fileSystem.chmod(targetOutputDir.file("subdir/data.txt"), 0600)
+        1 * fileSystem.chmod(targetOutputDir.file("empty.txt"), 0644)
+        0 * _
+        targetOutputDir.file("subdir/data.txt").text == "output"
+        targetOutputDir.file("empty.txt").length() == 0
+        !targetStaleFile.exists()
+    }
+
+    def "can pack file larger than a single block"() {
+        def contents = new byte[3 * 1024 * 1024 + 17]
+        new Random(1234).nextBytes(contents)
+        def sourceOutputFile = tempDir.file("source.bin")
+        sourceOutputFile.bytes = contents
+        def targetOutputFile = tempDir.file("target.bin")
+        targetOutputFile << "previous contents"
+        def output = new ByteArrayOutputStream()
+        fileSystem.getUnixMode(_) >> 0644
+
+        when:
+        pack output, new ResolvedTaskOutputFilePropertySpec("test", FILE, sourceOutputFile)
+        unpack new ByteArrayInputStream(output.toByteArray()), new ResolvedTaskOutputFilePropertySpec("test", FILE, targetOutputFile)
+
+        then:
+        targetOutputFile.bytes == contents
+    }
+
+    def "can pack task output with missing output"() {
+        def sourceOutput = tempDir.file("source")
+        def targetOutput = tempDir.file("target")
+        targetOutput << "existing"
+        def output = new ByteArrayOutputStream()
+
+        when:
+        pack output, new ResolvedTaskOutputFilePropertySpec("test", FILE, sourceOutput)
+        unpack new ByteArrayInputStream(output.toByteArray()), new ResolvedTaskOutputFilePropertySpec("test", FILE, targetOutput)
+
+        then:
+        !targetOutput.exists()
+        0 * _
+    }
+
+    def "can pack origin metadata"() {
+        def writeOrigin = Mock(TaskOutputOriginWriter)
+        def readOrigin = Mock(TaskOutputOriginReader)
+        def originMetadata = Mock(TaskOutputOriginMetadata)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        pack output, writeOrigin
+
+        then:
+        1 * writeOrigin.execute(_) >> { OutputStream originOutput ->
+            originOutput.write("origin".bytes)
+        }
+        0 * _
+
+        when:
+        def result = unpack new ByteArrayInputStream(output.toByteArray()), readOrigin
+
+        then:
+        1 * readOrigin.execute(_) >> { InputStream originInput ->
+            assert originInput.text == "origin"
+            return originMetadata
+        }
+        0 * _
+        result == originMetadata
+    }
+
+    def "delegates to fallback packer for entries in another format"() {
+        def targetOutputFile = tempDir.file("target.txt")
+        def originMetadata = Mock(TaskOutputOriginMetadata)
+        def propertySpec = new ResolvedTaskOutputFilePropertySpec("test", FILE, targetOutputFile)
+
+        when:
+        def result = unpack new ByteArrayInputStream("legacy entry".bytes), propertySpec
+
+        then:
+        1 * fallback.unpack(_, _, readOrigin) >> { SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, InputStream input, TaskOutputOriginReader reader ->
+            assert propertySpecs as List == [propertySpec]
+            assert input.text == "legacy entry"
+            return originMetadata
+        }
+        0 * _
+        result == originMetadata
+    }
+}
@@ -44,7 +44,7 @@ class DirectoryBuildCacheServiceFactoryTest extends Specification {
     @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
 
     def "can create service with default directory"() {
-        def cacheDir = temporaryFolder.file("build-cache-1")
+        def cacheDir = temporaryFolder.file("build-cache-2")
 
         when:
         def service = factory.createBuildCacheService(config, buildCacheDescriber)
@@ -52,7 +52,7 @@ class DirectoryBuildCacheServiceFactoryTest extends Specification {
         service instanceof DirectoryBuildCacheService
         1 * config.getDirectory() >> null
         1 * config.getTargetSizeInMB() >> 1000
-        1 * cacheScopeMapping.getBaseDirectory(null, "build-cache-1", VersionStrategy.SharedCache) >> cacheDir
+        1 * cacheScopeMapping.getBaseDirectory(null, "build-cache-2", VersionStrategy.SharedCache) >> cacheDir
         1 * cacheRepository.cache(cacheDir) >> cacheBuilder
         0 * _
     }
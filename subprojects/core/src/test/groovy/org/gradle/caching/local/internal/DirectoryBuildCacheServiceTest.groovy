@@ -16,6 +16,7 @@
 
 package org.gradle.caching.local.internal
 
+import org.gradle.api.Transformer
 import org.gradle.cache.CacheBuilder
 import org.gradle.cache.CacheRepository
 import org.gradle.cache.PersistentCache
@@ -34,6 +35,7 @@ class DirectoryBuildCacheServiceTest extends Specification {
     def cacheDir = temporaryFolder.createDir("cache")
     def persistentCache = Mock(PersistentCache) {
         getBaseDir() >> cacheDir
+        useCache(_ as Runnable) >> { Runnable action -> action.run() }
     }
     def cacheBuilder = Mock(CacheBuilder) {
         open() >> persistentCache
@@ -50,8 +52,8 @@ class DirectoryBuildCacheServiceTest extends Specification {
         when:
         service.store(key) { OutputStream output ->
             // Check that partial result file is created inside the cache directory
-            def cacheDirFiles = cacheDir.listFiles()
-            assert cacheDirFiles.length == 1
+            def cacheDirFiles = cacheDir.listFiles().findAll { it.name != "entries.bin" }
+            assert cacheDirFiles.size() == 1
 
             def partialCacheFile = cacheDirFiles[0]
             assert partialCacheFile.name.startsWith(hashCode)
@@ -63,7 +65,55 @@ class DirectoryBuildCacheServiceTest extends Specification {
         then:
         def ex = thrown RuntimeException
         ex.message == "Simulated write error"
-        cacheDir.listFiles() as List == []
+        cacheDir.listFiles().findAll { it.name != "entries.bin" } == []
         1 * key.getHashCode() >> hashCode
     }
+
+    def "stores entries in shard directories and loads them back"() {
+        def hashCode = "0123456789abcdef0123456789abcdef"
+        key.getHashCode() >> hashCode
+
+        when:
+        service.store(key) { OutputStream output ->
+            output << "entry"
+        }
+        then:
+        cacheDir.file("01/${hashCode}").text == "entry"
+
+        when:
+        def loaded = null
+        def found = service.load(key) { InputStream input ->
+            loaded = input.text
+        }
+        then:
+        found
+        loaded == "entry"
+    }
+
+    def "records stored entries in the index"() {
+        def hashCode = "0123456789abcdef0123456789abcdef"
+        key.getHashCode() >> hashCode
+
+        when:
+        service.store(key) { OutputStream output ->
+            output << "entry"
+        }
+        service.close()
+        def index = new MappedBuildCacheEntryIndex(cacheDir.file("entries.bin"), { String k -> cacheDir.file(k) } as Transformer<File, String>)
+
+        then:
+        !index.open()
+        index.entries*.key == [hashCode]
+        index.entries*.size == [5L]
+
+        cleanup:
+        index?.close()
+    }
+
+    def "does not find missing entry"() {
+        key.getHashCode() >> "0123456789abcdef0123456789abcdef"
+
+        expect:
+        !service.load(key) { throw new IllegalStateException("Should not be called") }
+    }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.gradle.api.Transformer
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+@CleanupTestDirectory
+class MappedBuildCacheEntryIndexTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def cacheDir = temporaryFolder.createDir("cache")
+    def indexFile = cacheDir.file("entries.bin")
+    def index = newIndex()
+
+    def cleanup() {
+        index.close()
+    }
+
+    def "creates new index when file does not exist"() {
+        expect:
+        index.open()
+        index.entries.empty
+        indexFile.assertIsFile()
+    }
+
+    def "recreates index when file is not a valid index"() {
+        indexFile.text = "not an index" * 100
+
+        expect:
+        index.open()
+        index.entries.empty
+    }
+
+    def "only indexes 128 bit hexadecimal keys"() {
+        expect:
+        MappedBuildCacheEntryIndex.isIndexable(key("1"))
+        MappedBuildCacheEntryIndex.isIndexable("ABCDEFABCDEFABCDEFABCDEFABCDEF00")
+        !MappedBuildCacheEntryIndex.isIndexable("1234abcd")
+        !MappedBuildCacheEntryIndex.isIndexable("g" * 32)
+    }
+
+    def "records entries and access times"() {
+        index.open()
+
+        when:
+        index.put(key("1"), 100, 1000)
+        index.put(key("2"), 200, 2000)
+        index.recordAccess(key("1"), 3000)
+        index.recordAccess(key("3"), 3000)
+
+        then:
+        def entries = index.entries.collectEntries { [it.key, it] }
+        entries.keySet() == [key("1"), key("2")] as Set
+        entries[key("1")].size == 100
+        entries[key("1")].lastAccessTime == 3000
+        entries[key("1")].file == cacheDir.file(key("1"))
+        entries[key("2")].size == 200
+        entries[key("2")].lastAccessTime == 2000
+    }
+
+    def "replaces existing entry"() {
+        index.open()
+
+        when:
+        index.put(key("1"), 100, 1000)
+        index.put(key("1"), 150, 2000)
+
+        then:
+        index.entries.size() == 1
+        index.entries[0].size == 150
+        index.entries[0].lastAccessTime == 2000
+    }
+
+    def "records entry with all-zero key"() {
+        index.open()
+
+        when:
+        index.put(key("0"), 100, 1000)
+        index.recordAccess(key("0"), 2000)
+
+        then:
+        index.entries*.key == [key("0")]
+        index.entries[0].size == 100
+        index.entries[0].lastAccessTime == 2000
+    }
+
+    def "removes entries"() {
+        index.open()
+        index.put(key("1"), 100, 1000)
+        index.put(key("2"), 200, 2000)
+        index.put(key("3"), 300, 3000)
+
+        when:
+        index.remove(index.entries.findAll { it.key != key("2") })
+
+        then:
+        index.entries*.key == [key("2")]
+        index.entries[0].lastAccessTime == 2000
+    }
+
+    def "grows when many entries are added"() {
+        index.open()
+
+        when:
+        (1..5000).each {
+            index.put(key(Integer.toHexString(it)), it, it)
+        }
+
+        then:
+        def entries = index.entries
+        entries.size() == 5000
+        entries.every { it.key == key(Long.toHexString(it.size)) && it.lastAccessTime == it.size }
+    }
+
+    def "entries are visible to another instance"() {
+        index.open()
+        index.put(key("1"), 100, 1000)
+        def other = newIndex()
+
+        when:
+        def created = other.open()
+        other.recordAccess(key("1"), 4000)
+        (2..2000).each {
+            other.put(key(Integer.toHexString(it)), it, it)
+        }
+
+        then:
+        !created
+        index.entries.size() == 2000
+        index.entries.find { it.key == key("1") }.lastAccessTime == 4000
+
+        cleanup:
+        other.close()
+    }
+
+    private MappedBuildCacheEntryIndex newIndex() {
+        new MappedBuildCacheEntryIndex(indexFile, { String key -> cacheDir.file(key) } as Transformer<File, String>)
+    }
+
+    private static String key(String suffix) {
+        "0" * (32 - suffix.length()) + suffix
+    }
+}
@@ -49,4 +49,21 @@ class DefaultBuildConfigurerTest extends Specification {
         startParameter.isConfigureOnDemand() >> true
         1 * projectConfigurer.configure(rootProject)
     }
+
+    def "precompiles subproject scripts once the root project is configured"() {
+        def scriptPrecompiler = Mock(ProjectScriptPrecompiler)
+        def configurer = new DefaultBuildConfigurer(projectConfigurer, scriptPrecompiler)
+
+        when:
+        configurer.configure(gradle)
+
+        then:
+        1 * projectConfigurer.configure(rootProject)
+
+        then:
+        1 * scriptPrecompiler.precompileSubprojectScripts(rootProject)
+
+        then:
+        1 * projectConfigurer.configureHierarchy(rootProject)
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configuration
+
+import org.gradle.api.internal.DocumentationRegistry
+import org.gradle.api.internal.initialization.ClassLoaderScope
+import org.gradle.api.internal.project.ProjectInternal
+import org.gradle.groovy.scripts.ScriptSource
+import org.gradle.groovy.scripts.internal.FileCacheBackedScriptClassCompiler
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.resource.TextResource
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ProjectScriptPrecompilerTest extends Specification {
+    def scriptCompiler = Mock(FileCacheBackedScriptClassCompiler)
+    def buildOperationExecutor = new TestBuildOperationExecutor()
+    def precompiler = new ProjectScriptPrecompiler(scriptCompiler, new DocumentationRegistry(), buildOperationExecutor)
+    def classLoader = new URLClassLoader(new URL[0])
+    def root = Mock(ProjectInternal)
+
+    def setup() {
+        def scope = Stub(ClassLoaderScope)
+        scope.exportClassLoader >> classLoader
+        root.classLoaderScope >> scope
+    }
+
+    def "compiles both passes of the scripts of projects that share the class loader of the root project"() {
+        def a = project(":a", "apply plugin: 'java'")
+        def b = project(":b", "plugins { id 'com.example.plugin' version '1.0' }")
+        def c = project(":a:c", "", a)
+        def d = project(":b:d", "", b)
+        root.subprojects >> ([a, b, c, d] as LinkedHashSet)
+
+        when:
+        precompiler.precompileSubprojectScripts(root)
+
+        then:
+        2 * scriptCompiler.precompile(a.buildScriptSource, classLoader, _, _, _)
+        1 * scriptCompiler.precompile(b.buildScriptSource, classLoader, { it.id == "cp_proj" }, _, _)
+        2 * scriptCompiler.precompile(c.buildScriptSource, classLoader, _, _, _)
+        0 * scriptCompiler._
+
+        and:
+        buildOperationExecutor.log.descriptors*.displayName == [
+            "Precompile build file ':a' (first pass)", "Precompile build file ':a'",
+            "Precompile build file ':b' (first pass)",
+            "Precompile build file ':a:c' (first pass)", "Precompile build file ':a:c'"]
+    }
+
+    def "ignores scripts that fail to compile"() {
+        def a = project(":a", "broken {")
+        def b = project(":b", "")
+        root.subprojects >> ([a, b] as LinkedHashSet)
+
+        when:
+        precompiler.precompileSubprojectScripts(root)
+
+        then:
+        2 * scriptCompiler.precompile(a.buildScriptSource, _, _, _, _) >> { throw new RuntimeException("broken") }
+        2 * scriptCompiler.precompile(b.buildScriptSource, _, _, _, _)
+        noExceptionThrown()
+    }
+
+    @Unroll
+    def "detects when a script adds to its class path: #script"() {
+        expect:
+        ProjectScriptPrecompiler.addsToClassPath(script) == addsToClassPath
+
+        where:
+        script                                                  | addsToClassPath
+        "apply plugin: 'java'"                                  | false
+        "buildscript { dependencies { classpath 'a:b:1.0' } }"  | true
+        "plugins { id 'java' }"                                 | false
+        "plugins { id('org.gradle.java') }"                     | false
+        "plugins { id 'java'\n id 'com.example.plugin' }"       | true
+    }
+
+    private ProjectInternal project(String path, String script, ProjectInternal parent = root) {
+        def project = Mock(ProjectInternal)
+        def buildScript = Mock(ScriptSource)
+        def resource = Mock(TextResource)
+        project.parent >> parent
+        project.buildScriptSource >> buildScript
+        buildScript.displayName >> "build file '$path'"
+        buildScript.fileName >> "${path.substring(1).replace(':', '/')}/build.gradle"
+        buildScript.resource >> resource
+        resource.exists >> true
+        resource.text >> script
+        return project
+    }
+}
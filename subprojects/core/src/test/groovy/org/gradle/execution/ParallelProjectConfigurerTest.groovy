@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution
+
+import org.gradle.api.internal.project.ProjectInternal
+import org.gradle.groovy.scripts.ScriptSource
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.resource.TextResource
+import spock.lang.Specification
+
+class ParallelProjectConfigurerTest extends Specification {
+    def delegate = Mock(ProjectConfigurer)
+    def buildOperationExecutor = new TestBuildOperationExecutor()
+    def configurer = new ParallelProjectConfigurer(delegate, buildOperationExecutor)
+    def root = Mock(ProjectInternal)
+
+    def "configures projects that do not configure other projects concurrently"() {
+        def a = project(":a", "dependencies { compile project(':b') }")
+        def b = project(":b", "apply plugin: 'java'")
+        root.subprojects >> ([a, b] as LinkedHashSet)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configure(root)
+
+        then:
+        1 * delegate.configure(a)
+        1 * delegate.configure(b)
+        0 * delegate._
+
+        and:
+        buildOperationExecutor.log.descriptors*.displayName == ["Configure project ':a' concurrently", "Configure project ':b' concurrently"]
+    }
+
+    def "configures a project that may configure other projects on its own"() {
+        def a = project(":a", "")
+        def b = project(":b", "project(':a').afterEvaluate { }")
+        def c = project(":c", "")
+        def d = project(":d", "")
+        root.subprojects >> ([a, b, c, d] as LinkedHashSet)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configure(root)
+
+        then:
+        1 * delegate.configure(a)
+
+        then:
+        1 * delegate.configure(b)
+
+        then:
+        1 * delegate.configure(c)
+        1 * delegate.configure(d)
+
+        and:
+        buildOperationExecutor.log.descriptors*.displayName == ["Configure project ':c' concurrently", "Configure project ':d' concurrently"]
+    }
+
+    def "configures a project on its own when other scripts added evaluation hooks to it"() {
+        def a = project(":a", "")
+        def b = project(":b", "")
+        b.hasExternalEvaluationClosures() >> true
+        root.subprojects >> ([a, b] as LinkedHashSet)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configure(root)
+
+        then:
+        1 * delegate.configure(a)
+
+        then:
+        1 * delegate.configure(b)
+
+        and:
+        buildOperationExecutor.log.descriptors.empty
+    }
+
+    def "does not configure a project concurrently with its parent"() {
+        def a = project(":a", "")
+        def b = project(":b", "")
+        def child = project(":a:c", "", a)
+        root.subprojects >> ([a, b, child] as LinkedHashSet)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configure(root)
+
+        then:
+        1 * delegate.configure(a)
+        1 * delegate.configure(b)
+
+        then:
+        1 * delegate.configure(child)
+
+        and:
+        buildOperationExecutor.log.descriptors*.displayName == ["Configure project ':a' concurrently", "Configure project ':b' concurrently"]
+    }
+
+    def "fails with the failure of the first project that failed"() {
+        def a = project(":a", "")
+        def b = project(":b", "")
+        def c = project(":c", "")
+        def failure1 = new RuntimeException()
+        def failure2 = new RuntimeException()
+        root.subprojects >> ([a, b, c] as LinkedHashSet)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configure(a)
+        1 * delegate.configure(b) >> { throw failure1 }
+        1 * delegate.configure(c) >> { throw failure2 }
+
+        and:
+        def e = thrown(RuntimeException)
+        e.is(failure1)
+    }
+
+    private ProjectInternal project(String path, String script, ProjectInternal parent = root) {
+        def project = Mock(ProjectInternal)
+        def buildScript = Mock(ScriptSource)
+        def resource = Mock(TextResource)
+        project.displayName >> "project '$path'"
+        project.parent >> parent
+        project.buildScriptSource >> buildScript
+        buildScript.displayName >> "build file '$path'"
+        buildScript.resource >> resource
+        resource.exists >> true
+        resource.text >> script
+        return project
+    }
+}
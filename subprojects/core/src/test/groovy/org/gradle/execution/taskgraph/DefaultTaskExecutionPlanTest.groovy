@@ -866,6 +866,82 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         filtered(b)
     }
 
+    def "starts tasks with the longest remaining path first when prioritizing the critical path"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c")
+        Task d = task("d", dependsOn: [c])
+        def durationHistory = Stub(TaskDurationHistory) {
+            getPreviousDuration(_) >> { TaskInternal task -> [a: 10, b: 50, c: 20, d: 40][task.name] }
+        }
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, durationHistory, true)
+
+        when:
+        addToGraphAndPopulate([a, b, d])
+
+        then:
+        executes(a, b, c, d)
+        executedTasks == [c, b, d, a]
+    }
+
+    def "keeps ordering constraints when prioritizing the critical path"() {
+        given:
+        Task a = task("a")
+        Task b = task("b", shouldRunAfter: [a])
+        Task c = task("c", mustRunAfter: [b])
+        Task d = task("d")
+        def durationHistory = Stub(TaskDurationHistory) {
+            getPreviousDuration(_) >> { TaskInternal task -> [a: 1, b: 50, c: 100][task.name] ?: -1 }
+        }
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, durationHistory, true)
+
+        when:
+        addToGraphAndPopulate([a, b, c, d])
+
+        then:
+        executedTasks == [a, b, c, d]
+    }
+
+    def "records duration of tasks that did their work"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", failure: new RuntimeException("failure"))
+        def durationHistory = Mock(TaskDurationHistory)
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, durationHistory, true)
+        executionPlan.useFailureHandler(createIgnoreTaskFailureHandler(c))
+
+        and:
+        a.state.getSkipped() >> false
+        b.state.getSkipped() >> true
+
+        when:
+        addToGraphAndPopulate([a, b, c])
+        executedTasks
+
+        then:
+        1 * durationHistory.recordDuration(a, { it >= 0 })
+        0 * durationHistory.recordDuration(_, _)
+    }
+
+    def "does not record durations when not prioritizing the critical path"() {
+        given:
+        Task a = task("a")
+        def durationHistory = Mock(TaskDurationHistory)
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, durationHistory, false)
+
+        and:
+        a.state.getSkipped() >> false
+
+        when:
+        addToGraphAndPopulate([a])
+        executedTasks
+
+        then:
+        0 * durationHistory.recordDuration(_, _)
+    }
+
     private void addToGraphAndPopulate(List tasks) {
         executionPlan.addToTaskGraph(tasks)
         executionPlan.determineExecutionPlan()
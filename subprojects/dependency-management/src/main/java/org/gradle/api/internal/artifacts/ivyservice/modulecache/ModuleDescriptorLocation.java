@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import java.math.BigInteger;
+
+/**
+ * The location of a serialized module descriptor in the segments of a {@link ModuleMetadataStore}, and the hash of the descriptor.
+ */
+class ModuleDescriptorLocation {
+    private final int segment;
+    private final int offset;
+    private final int length;
+    private final BigInteger hash;
+
+    ModuleDescriptorLocation(int segment, int offset, int length, BigInteger hash) {
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+        this.hash = hash;
+    }
+
+    public int getSegment() {
+        return segment;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public BigInteger getHash() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "segment " + segment + " at " + offset;
+    }
+}
@@ -30,21 +30,23 @@ class ModuleMetadataCacheEntry {
     final long createTimestamp;
     final ModuleSource moduleSource;
     final BigInteger moduleDescriptorHash;
+    final ModuleDescriptorLocation moduleDescriptorLocation;
 
-    ModuleMetadataCacheEntry(byte type, boolean isChanging, long createTimestamp, BigInteger moduleDescriptorHash, ModuleSource moduleSource) {
+    ModuleMetadataCacheEntry(byte type, boolean isChanging, long createTimestamp, BigInteger moduleDescriptorHash, ModuleDescriptorLocation moduleDescriptorLocation, ModuleSource moduleSource) {
         this.type = type;
         this.isChanging = isChanging;
         this.createTimestamp = createTimestamp;
         this.moduleSource = moduleSource;
         this.moduleDescriptorHash = moduleDescriptorHash;
+        this.moduleDescriptorLocation = moduleDescriptorLocation;
     }
 
     public static ModuleMetadataCacheEntry forMissingModule(long createTimestamp) {
         return new MissingModuleCacheEntry(createTimestamp);
     }
 
-    public static ModuleMetadataCacheEntry forMetaData(ModuleComponentResolveMetadata metaData, long createTimestamp, BigInteger moduleDescriptorHash) {
-        return new ModuleMetadataCacheEntry(TYPE_PRESENT, metaData.isChanging(), createTimestamp, moduleDescriptorHash, metaData.getSource());
+    public static ModuleMetadataCacheEntry forMetaData(ModuleComponentResolveMetadata metaData, long createTimestamp, ModuleDescriptorLocation moduleDescriptorLocation) {
+        return new ModuleMetadataCacheEntry(TYPE_PRESENT, metaData.isChanging(), createTimestamp, moduleDescriptorLocation.getHash(), moduleDescriptorLocation, metaData.getSource());
     }
 
     public boolean isMissing() {
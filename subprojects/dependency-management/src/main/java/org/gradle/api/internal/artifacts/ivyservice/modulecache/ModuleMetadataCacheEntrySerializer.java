@@ -40,6 +40,10 @@ class ModuleMetadataCacheEntrySerializer extends AbstractSerializer<ModuleMetada
                 moduleSourceSerializer.write(encoder, value.moduleSource);
                 byte[] hash = value.moduleDescriptorHash.toByteArray();
                 encoder.writeBinary(hash);
+                ModuleDescriptorLocation location = value.moduleDescriptorLocation;
+                encoder.writeSmallInt(location.getSegment());
+                encoder.writeSmallInt(location.getOffset());
+                encoder.writeSmallInt(location.getLength());
                 break;
             default:
                 throw new IllegalArgumentException("Don't know how to serialize meta-data entry: " + value);
@@ -58,7 +62,8 @@ class ModuleMetadataCacheEntrySerializer extends AbstractSerializer<ModuleMetada
                 ModuleSource moduleSource = moduleSourceSerializer.read(decoder);
                 byte[] encodedHash = decoder.readBinary();
                 BigInteger hash = new BigInteger(encodedHash);
-                return new ModuleMetadataCacheEntry(ModuleMetadataCacheEntry.TYPE_PRESENT, isChanging, createTimestamp, hash, moduleSource);
+                ModuleDescriptorLocation location = new ModuleDescriptorLocation(decoder.readSmallInt(), decoder.readSmallInt(), decoder.readSmallInt(), hash);
+                return new ModuleMetadataCacheEntry(ModuleMetadataCacheEntry.TYPE_PRESENT, isChanging, createTimestamp, hash, location, moduleSource);
             default:
                 throw new IllegalArgumentException("Don't know how to deserialize meta-data entry of type " + type);
         }
@@ -34,8 +34,10 @@ import org.gradle.internal.component.external.descriptor.MutableModuleDescriptor
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
 import org.gradle.internal.component.external.model.DefaultMutableIvyModuleResolveMetadata;
 import org.gradle.internal.component.external.model.DefaultMutableMavenModuleResolveMetadata;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.component.external.model.IvyDependencyMetadata;
 import org.gradle.internal.component.external.model.IvyModuleResolveMetadata;
+import org.gradle.internal.component.external.model.LazyDependencyMetadataList;
 import org.gradle.internal.component.external.model.MavenDependencyMetadata;
 import org.gradle.internal.component.external.model.MavenModuleResolveMetadata;
 import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
@@ -46,7 +48,11 @@ import org.gradle.internal.component.model.Exclude;
 import org.gradle.internal.component.model.IvyArtifactName;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -167,11 +173,19 @@ public class ModuleMetadataSerializer {
             }
         }
 
+        /**
+         * Writes the dependencies as a separate block, so that they can be read only when used.
+         */
         private void writeDependencies(List<? extends DependencyMetadata> dependencies) throws IOException {
-            writeCount(dependencies.size());
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            KryoBackedEncoder dependenciesEncoder = new KryoBackedEncoder(outputStream);
+            Writer dependenciesWriter = new Writer(dependenciesEncoder);
+            dependenciesWriter.writeCount(dependencies.size());
             for (DependencyMetadata dd : dependencies) {
-                writeDependency(dd);
+                dependenciesWriter.writeDependency(dd);
             }
+            dependenciesEncoder.flush();
+            encoder.writeBinary(outputStream.toByteArray());
         }
 
         private void writeDependency(DependencyMetadata dep) throws IOException {
@@ -381,6 +395,20 @@ public class ModuleMetadataSerializer {
         }
 
         private List<DependencyMetadata> readDependencies() throws IOException {
+            final byte[] encodedDependencies = decoder.readBinary();
+            return new LazyDependencyMetadataList() {
+                @Override
+                protected List<DependencyMetadata> create() {
+                    try {
+                        return new Reader(new KryoBackedDecoder(new ByteArrayInputStream(encodedDependencies), encodedDependencies.length), moduleIdentifierFactory).readDependencyList();
+                    } catch (IOException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                }
+            };
+        }
+
+        private List<DependencyMetadata> readDependencyList() throws IOException {
             int len = readCount();
             List<DependencyMetadata> result = Lists.newArrayListWithCapacity(len);
             for (int i = 0; i < len; i++) {
@@ -15,75 +15,208 @@
  */
 package org.gradle.api.internal.artifacts.ivyservice.modulecache;
 
-import org.gradle.api.Action;
-import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import org.gradle.api.Nullable;
+import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
-import org.gradle.internal.UncheckedException;
 import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
 import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
-import org.gradle.internal.resource.local.LocallyAvailableResource;
-import org.gradle.internal.resource.local.PathKeyFileStore;
 import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Stores serialized module descriptors in a few large segment files, rather than in a file per module version. Descriptors are appended to
+ * the last segment, and are read through a memory mapping of their segment, so that reading a descriptor does not open any file.
+ *
+ * <p>A descriptor is never changed once written. Storing a descriptor again appends a new copy, and the location of the new copy replaces
+ * the old one in the module metadata cache. Each location carries a hash of the descriptor, so that a descriptor that was not written
+ * completely, or that was replaced because its segment was deleted, is treated as missing.</p>
+ *
+ * <p>Segments are mapped in fixed size chunks, so that the segment that is being appended to is not mapped again as a whole each time it has
+ * grown. Only the chunk at the end of a segment is mapped again. The mappings are looked up without locking, so a mapping that has been replaced
+ * is left to the garbage collector rather than released, as it may still be in use.</p>
+ *
+ * <p>Must only be used while holding the lock of the artifact cache, which makes appending to the segments safe across processes.</p>
+ */
 public class ModuleMetadataStore {
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 1024 * 1024;
 
-    private final PathKeyFileStore metaDataStore;
+    private final File baseDir;
+    private final int segmentSize;
+    private final int chunkSize;
     private final ModuleMetadataSerializer moduleMetadataSerializer;
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
     private final ModuleExclusions moduleExclusions;
+    private final Object mappingLock = new Object();
+    // Mapped chunks by segment and chunk number. Replaced as a whole when a chunk is mapped, so that reading needs no lock
+    private volatile Map<Long, MappedByteBuffer> mappedChunks = ImmutableMap.of();
+    private int lastSegment;
 
-    public ModuleMetadataStore(PathKeyFileStore metaDataStore, ModuleMetadataSerializer moduleMetadataSerializer, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions) {
-        this.metaDataStore = metaDataStore;
+    public ModuleMetadataStore(File baseDir, ModuleMetadataSerializer moduleMetadataSerializer, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions) {
+        this(baseDir, SEGMENT_SIZE, CHUNK_SIZE, moduleMetadataSerializer, moduleIdentifierFactory, moduleExclusions);
+    }
+
+    ModuleMetadataStore(File baseDir, int segmentSize, int chunkSize, ModuleMetadataSerializer moduleMetadataSerializer, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions) {
+        this.baseDir = baseDir;
+        this.segmentSize = segmentSize;
+        this.chunkSize = chunkSize;
         this.moduleMetadataSerializer = moduleMetadataSerializer;
         this.moduleIdentifierFactory = moduleIdentifierFactory;
         this.moduleExclusions = moduleExclusions;
     }
 
-    public MutableModuleComponentResolveMetadata getModuleDescriptor(ModuleComponentAtRepositoryKey component) {
-        String filePath = getFilePath(component);
-        final LocallyAvailableResource resource = metaDataStore.get(filePath);
-        if (resource != null) {
-            try {
-                KryoBackedDecoder decoder = new KryoBackedDecoder(new FileInputStream(resource.getFile()));
-                try {
-                    return moduleMetadataSerializer.read(decoder, moduleIdentifierFactory, moduleExclusions);
-                } finally {
-                    decoder.close();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Could not load module metadata from " + resource.getDisplayName(), e);
+    /**
+     * Reads the descriptor at the given location, or returns null when the descriptor is no longer there.
+     */
+    @Nullable
+    public MutableModuleComponentResolveMetadata getModuleDescriptor(ModuleDescriptorLocation location) {
+        File segmentFile = getSegmentFile(location.getSegment());
+        byte[] descriptor;
+        try {
+            descriptor = readDescriptor(segmentFile, location);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read module metadata from " + segmentFile, e);
+        }
+        if (descriptor == null) {
+            return null;
+        }
+        try {
+            KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(descriptor), descriptor.length);
+            return moduleMetadataSerializer.read(decoder, moduleIdentifierFactory, moduleExclusions);
+        } catch (Exception e) {
+            throw new RuntimeException("Could not load module metadata from " + location + " of " + segmentFile, e);
+        }
+    }
+
+    public synchronized ModuleDescriptorLocation putModuleDescriptor(ModuleComponentResolveMetadata metadata) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+            moduleMetadataSerializer.write(encoder, metadata);
+            encoder.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not serialize module metadata for " + metadata.getComponentId(), e);
+        }
+        byte[] descriptor = outputStream.toByteArray();
+
+        // Other processes may have started new segments since this store last appended to one
+        while (getSegmentFile(lastSegment + 1).exists()) {
+            lastSegment++;
+        }
+        File segmentFile = getSegmentFile(lastSegment);
+        long segmentLength = segmentFile.length();
+        if (segmentLength > 0 && segmentLength + descriptor.length > segmentSize) {
+            lastSegment++;
+            segmentFile = getSegmentFile(lastSegment);
+        }
+        try {
+            return new ModuleDescriptorLocation(lastSegment, append(segmentFile, descriptor), descriptor.length, hash(descriptor));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write module metadata to " + segmentFile, e);
+        }
+    }
+
+    private int append(File segmentFile, byte[] descriptor) throws IOException {
+        baseDir.mkdirs();
+        RandomAccessFile file = new RandomAccessFile(segmentFile, "rw");
+        try {
+            long offset = file.length();
+            file.seek(offset);
+            file.write(descriptor);
+            return (int) offset;
+        } finally {
+            file.close();
+        }
+    }
+
+    @Nullable
+    private byte[] readDescriptor(File segmentFile, ModuleDescriptorLocation location) throws IOException {
+        byte[] descriptor = new byte[location.getLength()];
+        long position = location.getOffset();
+        int read = 0;
+        while (read < descriptor.length) {
+            // A descriptor can span chunks
+            int chunk = (int) (position / chunkSize);
+            int chunkOffset = (int) (position % chunkSize);
+            int count = Math.min(descriptor.length - read, chunkSize - chunkOffset);
+            MappedByteBuffer buffer = getChunk(segmentFile, location.getSegment(), chunk, chunkOffset + count);
+            if (buffer == null) {
+                return null;
             }
+            ByteBuffer view = buffer.duplicate();
+            view.position(chunkOffset);
+            view.get(descriptor, read, count);
+            read += count;
+            position += count;
+        }
+        if (!hash(descriptor).equals(location.getHash())) {
+            return null;
         }
-        return null;
+        return descriptor;
     }
 
-    public LocallyAvailableResource putModuleDescriptor(ModuleComponentAtRepositoryKey component, final ModuleComponentResolveMetadata metadata) {
-        String filePath = getFilePath(component);
-        return metaDataStore.add(filePath, new Action<File>() {
-            public void execute(File moduleDescriptorFile) {
-                try {
-                    KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(moduleDescriptorFile));
-                    try {
-                        moduleMetadataSerializer.write(encoder, metadata);
-                    } finally {
-                        encoder.close();
-                    }
-                } catch (Exception e) {
-                    throw UncheckedException.throwAsUncheckedException(e);
-                }
+    @Nullable
+    private MappedByteBuffer getChunk(File segmentFile, int segment, int chunk, int minimumLength) throws IOException {
+        Long key = ((long) segment << 32) | chunk;
+        MappedByteBuffer buffer = mappedChunks.get(key);
+        if (buffer != null && buffer.capacity() >= minimumLength) {
+            return buffer;
+        }
+        synchronized (mappingLock) {
+            buffer = mappedChunks.get(key);
+            if (buffer != null && buffer.capacity() >= minimumLength) {
+                return buffer;
+            }
+            // The chunk has not been mapped yet, or is at the end of the segment and the segment has grown since
+            buffer = map(segmentFile, (long) chunk * chunkSize, minimumLength);
+            if (buffer == null) {
+                return null;
             }
-        });
+            Map<Long, MappedByteBuffer> chunks = new HashMap<Long, MappedByteBuffer>(mappedChunks);
+            chunks.put(key, buffer);
+            mappedChunks = ImmutableMap.copyOf(chunks);
+            return buffer;
+        }
     }
 
-    private String getFilePath(ModuleComponentAtRepositoryKey componentId) {
-        ModuleComponentIdentifier moduleComponentIdentifier = componentId.getComponentId();
-        return moduleComponentIdentifier.getGroup() + "/" + moduleComponentIdentifier.getModule() + "/" + moduleComponentIdentifier.getVersion() + "/" + componentId.getRepositoryId() + "/descriptor.bin";
+    @Nullable
+    private MappedByteBuffer map(File segmentFile, long position, int minimumLength) throws IOException {
+        if (!segmentFile.isFile()) {
+            return null;
+        }
+        RandomAccessFile file = new RandomAccessFile(segmentFile, "r");
+        try {
+            long length = file.length();
+            if (length < position + minimumLength) {
+                return null;
+            }
+            // The mapping stays valid after the file is closed
+            return file.getChannel().map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, length - position));
+        } finally {
+            file.close();
+        }
     }
 
+    private File getSegmentFile(int segment) {
+        return new File(baseDir, "segment-" + segment + ".bin");
+    }
+
+    private static BigInteger hash(byte[] descriptor) {
+        return new BigInteger(1, Hashing.murmur3_128().hashBytes(descriptor).asBytes());
+    }
 }
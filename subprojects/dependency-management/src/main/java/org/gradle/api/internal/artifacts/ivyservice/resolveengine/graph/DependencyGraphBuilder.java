@@ -43,6 +43,7 @@ import org.gradle.api.specs.Spec;
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
 import org.gradle.internal.component.local.model.DslOriginDependencyMetadata;
 import org.gradle.internal.component.model.ComponentArtifactMetadata;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
 import org.gradle.internal.component.model.ComponentResolveMetadata;
 import org.gradle.internal.component.model.ConfigurationMetadata;
 import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
@@ -132,9 +133,13 @@ public class DependencyGraphBuilder {
         final List<DependencyEdge> dependencies = Lists.newArrayList();
         final List<DependencyEdge> dependenciesMissingLocalMetadata = Lists.newArrayList();
         final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache = Maps.newHashMap();
+        final Set<ConfigurationNode> prefetchedNodes = Sets.newHashSet();
 
         while (resolveState.peek() != null || conflictHandler.hasConflicts()) {
             if (resolveState.peek() != null) {
+                if (!prefetchedNodes.contains(resolveState.peek())) {
+                    prefetchMetadataForQueuedNodes(resolveState, prefetchedNodes, componentIdentifierCache);
+                }
                 final ConfigurationNode node = resolveState.pop();
                 LOGGER.debug("Visiting configuration {}.", node);
 
@@ -164,6 +169,68 @@ public class DependencyGraphBuilder {
         }
     }
 
+    /**
+     * Fetches the metadata of the components that the queued configurations will most likely depend on, concurrently and before the
+     * configurations are visited. The queued configurations form the next level of the graph, so this fetches the metadata of a whole level
+     * at once, where visiting the configurations only fetches the metadata of the dependencies of one configuration at a time.
+     *
+     * The graph is still traversed serially and in the same order, so that conflict resolution stays deterministic. The traversal picks up
+     * the prefetched results instead of resolving the components again. Results for the dependencies of a configuration that is deselected
+     * before it is visited are not used.
+     */
+    private void prefetchMetadataForQueuedNodes(ResolveState resolveState, Set<ConfigurationNode> prefetchedNodes, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+        List<DependencyMetadata> dependencies = Lists.newArrayList();
+        for (ConfigurationNode node : resolveState.getQueuedNodes()) {
+            if (prefetchedNodes.add(node)) {
+                node.collectPendingDependencies(dependencies);
+            }
+        }
+
+        // Only prefetch a module that is not part of the graph yet, and that the queued configurations depend on a single version of, so as
+        // not to fetch versions that conflict resolution is about to evict
+        final Map<ModuleIdentifier, PrefetchMetadataOperation> operations = new LinkedHashMap<ModuleIdentifier, PrefetchMetadataOperation>();
+        Set<ModuleIdentifier> conflictingModules = Sets.newHashSet();
+        for (DependencyMetadata dependency : dependencies) {
+            ComponentIdResolveResult idResolveResult = resolveState.prefetchComponentId(dependency);
+            if (idResolveResult == null || idResolveResult.getFailure() != null || idResolveResult.getMetaData() != null) {
+                continue;
+            }
+            ModuleVersionIdentifier moduleVersionId = idResolveResult.getModuleVersionId();
+            ModuleIdentifier moduleId = moduleVersionId.getModule();
+            PrefetchMetadataOperation operation = operations.get(moduleId);
+            if (operation != null) {
+                if (!operation.componentId.equals(idResolveResult.getId())) {
+                    conflictingModules.add(moduleId);
+                }
+                continue;
+            }
+            if (resolveState.hasModule(moduleId) || metaDataResolver.isFetchingMetadataCheap(toComponentId(moduleVersionId, componentIdentifierCache))) {
+                continue;
+            }
+            operations.put(moduleId, new PrefetchMetadataOperation(idResolveResult.getId(), DefaultComponentOverrideMetadata.forDependency(dependency), metaDataResolver));
+        }
+        operations.keySet().removeAll(conflictingModules);
+        if (operations.size() < 2) {
+            // the traversal fetches the metadata of a single component just as well
+            return;
+        }
+
+        LOGGER.debug("Prefetching {} metadata files in parallel for {} queued configurations", operations.size(), resolveState.getQueuedNodes().size());
+        buildOperationExecutor.runAll(new Action<BuildOperationQueue<RunnableBuildOperation>>() {
+            @Override
+            public void execute(BuildOperationQueue<RunnableBuildOperation> buildOperationQueue) {
+                for (PrefetchMetadataOperation operation : operations.values()) {
+                    buildOperationQueue.add(operation);
+                }
+            }
+        });
+        for (PrefetchMetadataOperation operation : operations.values()) {
+            if (operation.result != null) {
+                resolveState.addPrefetchedMetaData(operation);
+            }
+        }
+    }
+
     private void performSelection(final ResolveState resolveState, ModuleVersionResolveState moduleRevision) {
         ModuleIdentifier moduleId = moduleRevision.id.getModule();
 
@@ -479,6 +546,9 @@ public class DependencyGraphBuilder {
         private final ComponentMetaDataResolver metaDataResolver;
         private final Set<ConfigurationNode> queued = Sets.newHashSet();
         private final LinkedList<ConfigurationNode> queue = new LinkedList<ConfigurationNode>();
+        private final Map<ModuleVersionSelector, DependencyMetadata> prefetchedDependencies = Maps.newHashMap();
+        private final Map<ModuleVersionSelector, BuildableComponentIdResolveResult> prefetchedComponentIds = Maps.newHashMap();
+        private final Map<ComponentIdentifier, PrefetchMetadataOperation> prefetchedMetaData = Maps.newConcurrentMap();
         private final AttributesSchemaInternal attributesSchema;
         private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
         private final ModuleExclusions moduleExclusions;
@@ -541,6 +611,64 @@ public class DependencyGraphBuilder {
             return resolveState;
         }
 
+        /**
+         * Resolves the component id of a dependency that no selector has been created for yet, ahead of the traversal. The selector that is
+         * later created for the dependency uses the result, so that the dependency is resolved only once.
+         *
+         * @return the result, or null if there already is a selector or a prefetched result for the requested module version.
+         */
+        public ComponentIdResolveResult prefetchComponentId(DependencyMetadata dependencyMetadata) {
+            ModuleVersionSelector requested = dependencyMetadata.getRequested();
+            if (selectors.containsKey(requested) || prefetchedDependencies.containsKey(requested)) {
+                return null;
+            }
+            BuildableComponentIdResolveResult result = new DefaultBuildableComponentIdResolveResult();
+            idResolver.resolve(dependencyMetadata, result);
+            prefetchedDependencies.put(requested, dependencyMetadata);
+            prefetchedComponentIds.put(requested, result);
+            return result;
+        }
+
+        /**
+         * Returns the prefetched component id of a dependency. The id of a dependency only depends on its requested module version and its
+         * component selector, so this also returns the id prefetched for another dependency with the same ones.
+         */
+        public BuildableComponentIdResolveResult takePrefetchedComponentId(DependencyMetadata dependencyMetadata) {
+            ModuleVersionSelector requested = dependencyMetadata.getRequested();
+            DependencyMetadata prefetchedDependency = prefetchedDependencies.get(requested);
+            if (prefetchedDependency == null || !prefetchedDependency.getSelector().equals(dependencyMetadata.getSelector())) {
+                return null;
+            }
+            return prefetchedComponentIds.remove(requested);
+        }
+
+        public boolean hasModule(ModuleIdentifier id) {
+            return modules.containsKey(id);
+        }
+
+        public void addPrefetchedMetaData(PrefetchMetadataOperation operation) {
+            prefetchedMetaData.put(operation.componentId, operation);
+        }
+
+        /**
+         * Returns the prefetched metadata of a component, if it was fetched for the same overrides. May be called concurrently.
+         */
+        public ComponentResolveResult takePrefetchedMetaData(ComponentIdentifier componentId, ComponentOverrideMetadata overrideMetadata) {
+            PrefetchMetadataOperation operation = prefetchedMetaData.remove(componentId);
+            if (operation == null || !isSameOverride(operation.overrideMetadata, overrideMetadata)) {
+                return null;
+            }
+            return operation.result;
+        }
+
+        private static boolean isSameOverride(ComponentOverrideMetadata left, ComponentOverrideMetadata right) {
+            return left.isChanging() == right.isChanging() && left.getArtifacts().equals(right.getArtifacts()) && left.getClientModule() == right.getClientModule();
+        }
+
+        public Collection<ConfigurationNode> getQueuedNodes() {
+            return queue;
+        }
+
         public ConfigurationNode peek() {
             return queue.isEmpty() ? null : queue.getFirst();
         }
@@ -742,7 +870,7 @@ public class DependencyGraphBuilder {
         }
 
         /**
-         * Returns true if this module version can be resolved quickly (already resolved or local)
+         * Returns true if this module version can be resolved quickly (already resolved, local or prefetched)
          * @return true if it has been resolved in a cheap way
          */
         public boolean fastResolve() {
@@ -759,6 +887,11 @@ public class DependencyGraphBuilder {
                 metaData = idResolveResult.getMetaData();
                 return true;
             }
+            ComponentResolveResult prefetched = module.resolveState.takePrefetchedMetaData(idResolveResult.getId(), DefaultComponentOverrideMetadata.forDependency(firstReference.dependencyMetadata));
+            if (prefetched != null) {
+                setResult(prefetched);
+                return true;
+            }
             return false;
         }
 
@@ -771,6 +904,10 @@ public class DependencyGraphBuilder {
 
             DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
             resolver.resolve(idResolveResult.getId(), DefaultComponentOverrideMetadata.forDependency(firstReference.dependencyMetadata), result);
+            setResult(result);
+        }
+
+        private void setResult(ComponentResolveResult result) {
             if (result.getFailure() != null) {
                 failure = result.getFailure();
                 return;
@@ -943,6 +1080,31 @@ public class DependencyGraphBuilder {
             previousTraversalExclusions = resolutionFilter;
         }
 
+        /**
+         * Collects the dependencies that the first visit of this configuration will traverse, without changing any state.
+         */
+        public void collectPendingDependencies(Collection<DependencyMetadata> target) {
+            if (moduleRevision.state != ModuleState.Selected || previousTraversalExclusions != null) {
+                return;
+            }
+            List<DependencyEdge> transitiveIncoming = new ArrayList<DependencyEdge>();
+            for (DependencyEdge edge : incomingEdges) {
+                if (edge.isTransitive()) {
+                    transitiveIncoming.add(edge);
+                }
+            }
+            if (transitiveIncoming.isEmpty() && this != resolveState.root) {
+                return;
+            }
+            ModuleExclusion resolutionFilter = getModuleResolutionFilter(transitiveIncoming);
+            for (DependencyMetadata dependency : metaData.getDependencies()) {
+                ModuleIdentifier targetModuleId = resolveState.moduleIdentifierFactory.module(dependency.getRequested().getGroup(), dependency.getRequested().getName());
+                if (resolveState.edgeFilter.isSatisfiedBy(dependency) && !resolutionFilter.excludeModule(targetModuleId)) {
+                    target.add(dependency);
+                }
+            }
+        }
+
         private boolean isExcluded(ModuleExclusion selector, DependencyMetadata dependency) {
             if (!resolveState.edgeFilter.isSatisfiedBy(dependency)) {
                 LOGGER.debug("{} is filtered.", dependency);
@@ -1092,8 +1254,11 @@ public class DependencyGraphBuilder {
                 return null;
             }
 
-            idResolveResult = new DefaultBuildableComponentIdResolveResult();
-            resolver.resolve(dependencyMetadata, idResolveResult);
+            idResolveResult = resolveState.takePrefetchedComponentId(dependencyMetadata);
+            if (idResolveResult == null) {
+                idResolveResult = new DefaultBuildableComponentIdResolveResult();
+                resolver.resolve(dependencyMetadata, idResolveResult);
+            }
             if (idResolveResult.getFailure() != null) {
                 failure = idResolveResult.getFailure();
                 return null;
@@ -1134,6 +1299,43 @@ public class DependencyGraphBuilder {
         }
     }
 
+    /**
+     * Fetches the metadata of a component ahead of the traversal. The result, which may also be a failure to resolve the component, is used
+     * once the traversal gets to the component. An unexpected exception is not reported here, as the component may not end up in the graph.
+     * The traversal resolves the component again instead.
+     */
+    private static class PrefetchMetadataOperation implements RunnableBuildOperation {
+        private final ComponentIdentifier componentId;
+        private final ComponentOverrideMetadata overrideMetadata;
+        private final ComponentMetaDataResolver resolver;
+        private ComponentResolveResult result;
+
+        PrefetchMetadataOperation(ComponentIdentifier componentId, ComponentOverrideMetadata overrideMetadata, ComponentMetaDataResolver resolver) {
+            this.componentId = componentId;
+            this.overrideMetadata = overrideMetadata;
+            this.resolver = resolver;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+            try {
+                resolver.resolve(componentId, overrideMetadata, result);
+            } catch (RuntimeException e) {
+                LOGGER.debug("Could not prefetch metadata for {}.", componentId, e);
+                return;
+            }
+            if (result.hasResult()) {
+                this.result = result;
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Resolving " + componentId);
+        }
+    }
+
     private static class DownloadMetadataOperation implements RunnableBuildOperation {
         private final ModuleVersionResolveState state;
 
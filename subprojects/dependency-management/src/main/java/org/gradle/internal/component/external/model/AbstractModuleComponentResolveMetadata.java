@@ -16,6 +16,7 @@
 
 package org.gradle.internal.component.external.model;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import org.gradle.api.Nullable;
@@ -214,7 +215,7 @@ abstract class AbstractModuleComponentResolveMetadata implements ModuleComponent
         Map<String, DefaultConfigurationMetadata> configurations = new HashMap<String, DefaultConfigurationMetadata>(configurationsNames.size());
         for (String configName : configurationsNames) {
             DefaultConfigurationMetadata configuration = populateConfigurationFromDescriptor(configName, configurationDefinitions, configurations);
-            configuration.populateDependencies(dependencies);
+            configuration.setComponentDependencies(dependencies);
         }
         return configurations;
     }
@@ -267,7 +268,8 @@ abstract class AbstractModuleComponentResolveMetadata implements ModuleComponent
         private final ModuleComponentIdentifier componentId;
         private final String name;
         private final List<DefaultConfigurationMetadata> parents;
-        private final List<DependencyMetadata> configDependencies = new ArrayList<DependencyMetadata>();
+        private List<? extends DependencyMetadata> componentDependencies;
+        private List<DependencyMetadata> configDependencies;
         private final Set<ComponentArtifactMetadata> artifacts = new LinkedHashSet<ComponentArtifactMetadata>();
         private final boolean transitive;
         private final boolean visible;
@@ -354,15 +356,28 @@ abstract class AbstractModuleComponentResolveMetadata implements ModuleComponent
 
         @Override
         public List<DependencyMetadata> getDependencies() {
+            if (configDependencies == null) {
+                configDependencies = selectDependencies();
+            }
             return configDependencies;
         }
 
-        private void populateDependencies(Iterable<? extends DependencyMetadata> dependencies) {
-            for (DependencyMetadata dependency : dependencies) {
+        /**
+         * Sets the dependencies of the component. The dependencies of this configuration are only selected from them when first used, as
+         * most configurations of a component are never used.
+         */
+        private void setComponentDependencies(List<? extends DependencyMetadata> dependencies) {
+            this.componentDependencies = dependencies;
+        }
+
+        private List<DependencyMetadata> selectDependencies() {
+            ImmutableList.Builder<DependencyMetadata> builder = ImmutableList.builder();
+            for (DependencyMetadata dependency : componentDependencies) {
                 if (include(dependency)) {
-                    this.configDependencies.add(dependency);
+                    builder.add(dependency);
                 }
             }
+            return builder.build();
         }
 
         private boolean include(DependencyMetadata dependency) {
@@ -158,6 +158,14 @@ abstract class AbstractMutableModuleComponentResolveMetadata implements MutableM
 
     @Override
     public void setDependencies(Iterable<? extends DependencyMetadata> dependencies) {
-        this.dependencies = ImmutableList.copyOf(dependencies);
+        this.dependencies = copyOf(dependencies);
+    }
+
+    protected static List<? extends DependencyMetadata> copyOf(Iterable<? extends DependencyMetadata> dependencies) {
+        if (dependencies instanceof LazyDependencyMetadataList) {
+            // Already immutable, and copying would create the dependencies
+            return (LazyDependencyMetadataList) dependencies;
+        }
+        return ImmutableList.copyOf(dependencies);
     }
 }
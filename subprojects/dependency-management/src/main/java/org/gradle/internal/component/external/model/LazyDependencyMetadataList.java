@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.component.external.model;
+
+import org.gradle.internal.component.model.DependencyMetadata;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * An immutable list of the dependencies of a module version, which creates the dependencies the first time the list is used. Metadata is
+ * often resolved without its dependencies ever being used, for example for a version that is evicted by conflict resolution.
+ */
+public abstract class LazyDependencyMetadataList extends AbstractList<DependencyMetadata> {
+    private volatile List<DependencyMetadata> dependencies;
+
+    /**
+     * Creates the dependencies. Called at most once, unless it fails.
+     */
+    protected abstract List<DependencyMetadata> create();
+
+    private List<DependencyMetadata> getDependencies() {
+        List<DependencyMetadata> dependencies = this.dependencies;
+        if (dependencies == null) {
+            synchronized (this) {
+                dependencies = this.dependencies;
+                if (dependencies == null) {
+                    dependencies = create();
+                    this.dependencies = dependencies;
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    @Override
+    public DependencyMetadata get(int index) {
+        return getDependencies().get(index);
+    }
+
+    @Override
+    public int size() {
+        return getDependencies().size();
+    }
+}
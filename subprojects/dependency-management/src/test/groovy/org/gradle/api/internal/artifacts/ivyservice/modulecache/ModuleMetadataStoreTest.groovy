@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 the original author or authors.
+ * Copyright 2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,16 +16,18 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.modulecache
 
-import org.gradle.api.artifacts.ModuleVersionIdentifier
-import org.gradle.api.artifacts.component.ModuleComponentIdentifier
-import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier
+import org.gradle.api.internal.artifacts.DefaultModuleVersionSelector
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions
+import org.gradle.internal.component.external.descriptor.MavenScope
 import org.gradle.internal.component.external.descriptor.MutableModuleDescriptorState
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
 import org.gradle.internal.component.external.model.DefaultMutableMavenModuleResolveMetadata
-import org.gradle.internal.resource.local.LocallyAvailableResource
-import org.gradle.internal.resource.local.PathKeyFileStore
+import org.gradle.internal.component.external.model.LazyDependencyMetadataList
+import org.gradle.internal.component.external.model.MavenDependencyMetadata
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
 import spock.lang.Specification
@@ -33,42 +35,131 @@ import spock.lang.Specification
 class ModuleMetadataStoreTest extends Specification {
 
     @Rule TestNameTestDirectoryProvider temporaryFolder
-    PathKeyFileStore pathKeyFileStore = Mock()
-    String repository = "repositoryId"
-    LocallyAvailableResource fileStoreEntry = Mock()
-    ImmutableModuleIdentifierFactory moduleIdentifierFactory = Mock(ImmutableModuleIdentifierFactory) {
-        module(_,_) >> { args -> DefaultModuleIdentifier.newId(*args)}
-    }
+    ImmutableModuleIdentifierFactory moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory()
     ModuleExclusions moduleExclusions = new ModuleExclusions(moduleIdentifierFactory)
-    ModuleComponentIdentifier moduleComponentIdentifier = DefaultModuleComponentIdentifier.newId("org.test", "testArtifact", "1.0")
-    ModuleMetadataSerializer serializer = Mock()
-    ModuleMetadataStore store = new ModuleMetadataStore(pathKeyFileStore, serializer, moduleIdentifierFactory, moduleExclusions);
+    def storeDir = temporaryFolder.file("descriptors")
+    // Descriptors span several chunks
+    ModuleMetadataStore store = new ModuleMetadataStore(storeDir, 1000, 64, new ModuleMetadataSerializer(), moduleIdentifierFactory, moduleExclusions)
+
+    def "reads descriptors that were written"() {
+        def descriptor1 = descriptor("a", 2)
+        def descriptor2 = descriptor("b", 0)
 
-    def "getModuleDescriptorFile returns null for not cached descriptors"() {
         when:
-        pathKeyFileStore.get("org.test/testArtifact/1.0/repositoryId/descriptor.bin") >> null
+        def location1 = store.putModuleDescriptor(descriptor1)
+        def location2 = store.putModuleDescriptor(descriptor2)
+
         then:
-        null == store.getModuleDescriptor(new ModuleComponentAtRepositoryKey(repository, moduleComponentIdentifier))
+        location1.segment == 0
+        location1.offset == 0
+        location2.segment == 0
+        location2.offset == location1.length
+        location1.hash != location2.hash
+
+        and:
+        def read1 = store.getModuleDescriptor(location1)
+        read1.componentId == descriptor1.componentId
+        read1.packaging == "jar"
+        read1.dependencies*.requested == descriptor1.dependencies*.requested
+        store.getModuleDescriptor(location2).dependencies.empty
+
+        and:
+        def otherStore = new ModuleMetadataStore(storeDir, 1000, 64, new ModuleMetadataSerializer(), moduleIdentifierFactory, moduleExclusions)
+        otherStore.getModuleDescriptor(location2).componentId == descriptor2.componentId
     }
 
-    def "getModuleDescriptorFile uses PathKeyFileStore to get file"() {
+    def "reads the dependencies of a descriptor only when they are used"() {
+        def location = store.putModuleDescriptor(descriptor("a", 3))
+
         when:
-        store.getModuleDescriptor(new ModuleComponentAtRepositoryKey(repository, moduleComponentIdentifier));
+        def metadata = store.getModuleDescriptor(location).asImmutable()
+
         then:
-        1 * pathKeyFileStore.get("org.test/testArtifact/1.0/repositoryId/descriptor.bin") >> null
+        metadata.dependencies instanceof LazyDependencyMetadataList
+        metadata.getConfiguration("compile").dependencies*.requested*.name == ["dep0", "dep1", "dep2"]
+    }
+
+    def "starts a new segment when the last segment is full"() {
+        def locations = (0..<20).collect { store.putModuleDescriptor(descriptor("a$it", 2)) }
+
+        expect:
+        locations*.segment.unique().size() > 1
+        locations.every { it.offset + it.length <= 1000 }
+        locations.every { store.getModuleDescriptor(it).componentId.module == "a${locations.indexOf(it)}" }
+        storeDir.listFiles()*.name.every { it ==~ /segment-\d+\.bin/ }
     }
 
-    def "putModuleDescriptor uses PathKeyFileStore to write file"() {
-        setup:
-        File descriptorFile = temporaryFolder.createFile("fileStoreEntry")
-        def descriptor = new DefaultMutableMavenModuleResolveMetadata(Mock(ModuleVersionIdentifier), moduleComponentIdentifier, new MutableModuleDescriptorState(moduleComponentIdentifier), "packaging", false, []).asImmutable()
+    def "appends to the segments written by another store"() {
+        def otherStore = new ModuleMetadataStore(storeDir, 1000, 64, new ModuleMetadataSerializer(), moduleIdentifierFactory, moduleExclusions)
+        def locations = (0..<20).collect { otherStore.putModuleDescriptor(descriptor("a$it", 2)) }
 
         when:
-        store.putModuleDescriptor(new ModuleComponentAtRepositoryKey(repository, moduleComponentIdentifier), descriptor)
+        def location = store.putModuleDescriptor(descriptor("b", 2))
+
         then:
-        1 * pathKeyFileStore.add("org.test/testArtifact/1.0/repositoryId/descriptor.bin", _) >> { path, action ->
-            action.execute(descriptorFile); fileStoreEntry
-        };
-        1 * serializer.write(_, descriptor)
+        location.segment == locations.last().segment
+        location.offset == locations.last().offset + locations.last().length
+    }
+
+    def "reads descriptors appended to a chunk after it was mapped"() {
+        def singleChunkStore = new ModuleMetadataStore(storeDir, 1000, 1000, new ModuleMetadataSerializer(), moduleIdentifierFactory, moduleExclusions)
+        def location1 = singleChunkStore.putModuleDescriptor(descriptor("a", 1))
+        singleChunkStore.getModuleDescriptor(location1)
+
+        when:
+        def location2 = singleChunkStore.putModuleDescriptor(descriptor("b", 1))
+
+        then:
+        location2.segment == location1.segment
+        singleChunkStore.getModuleDescriptor(location2).componentId.module == "b"
+        singleChunkStore.getModuleDescriptor(location1).componentId.module == "a"
+    }
+
+    def "reads descriptors from multiple threads"() {
+        def locations = (0..<20).collect { store.putModuleDescriptor(descriptor("a$it", 2)) }
+
+        when:
+        def modules = Collections.synchronizedList([])
+        def threads = (0..<4).collect {
+            Thread.start {
+                locations.each { modules << store.getModuleDescriptor(it).componentId.module }
+            }
+        }
+        threads*.join()
+
+        then:
+        modules.size() == 80
+        modules.toSet() == (0..<20).collect { "a$it" }.toSet()
+    }
+
+    def "treats a descriptor that is no longer there as missing"() {
+        def location = store.putModuleDescriptor(descriptor("a", 2))
+
+        when:
+        storeDir.deleteDir()
+        store.putModuleDescriptor(descriptor("b", 3))
+
+        then:
+        store.getModuleDescriptor(location) == null
+        store.getModuleDescriptor(new ModuleDescriptorLocation(1, 0, location.length, location.hash)) == null
+    }
+
+    def "treats a descriptor that was not written completely as missing"() {
+        def location = store.putModuleDescriptor(descriptor("a", 2))
+        def segment = storeDir.file("segment-0.bin")
+
+        when:
+        segment.bytes = segment.bytes[0..<(location.length - 1)] as byte[]
+
+        then:
+        store.getModuleDescriptor(location) == null
+    }
+
+    private ModuleComponentResolveMetadata descriptor(String module, int dependencyCount) {
+        def componentId = DefaultModuleComponentIdentifier.newId("org.test", module, "1.0")
+        def dependencies = (0..<dependencyCount).collect {
+            new MavenDependencyMetadata(MavenScope.Compile, false, DefaultModuleVersionSelector.newSelector("org.test", "dep$it", "1.0"), [], [])
+        }
+        return new DefaultMutableMavenModuleResolveMetadata(DefaultModuleVersionIdentifier.newId(componentId), componentId, new MutableModuleDescriptorState(componentId), "jar", false, dependencies).asImmutable()
     }
 }
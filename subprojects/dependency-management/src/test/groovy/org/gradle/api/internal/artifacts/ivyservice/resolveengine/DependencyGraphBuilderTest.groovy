@@ -80,9 +80,11 @@ class DependencyGraphBuilderTest extends Specification {
         }
     }
     def moduleExclusions = new ModuleExclusions(moduleIdentifierFactory)
+    def operations = []
     def buildOperationProcessor = Mock(BuildOperationExecutor) {
         def queue = Mock(BuildOperationQueue) {
             add(_) >> { args ->
+                operations << args[0].description().build().displayName
                 args[0].run()
             }
         }
@@ -125,6 +127,50 @@ class DependencyGraphBuilderTest extends Specification {
         result.components == ids(root, a, b, c)
     }
 
+    def "fetches the metadata of the dependencies of all queued configurations at once"() {
+        given:
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        def d = revision("d")
+        traverses root, a
+        traverses root, b
+        traverses a, c
+        traverses b, d
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        result.components == ids(root, a, b, c, d)
+        operations == ["Resolving group:a:1.0", "Resolving group:b:1.0", "Resolving group:c:1.0", "Resolving group:d:1.0"]
+    }
+
+    def "does not fetch the metadata of conflicting versions ahead of conflict resolution"() {
+        given:
+        def selected = revision("a", "1.2")
+        def evicted = revision("a", "1.1")
+        def b = revision("b")
+        traverses root, b
+        traverses root, selected
+        doesNotTraverse root, evicted
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        1 * conflictResolver.select(!null) >> {
+            Collection<ComponentResolutionState> candidates = it[0]
+            return candidates.find { it.version == '1.2' }
+        }
+
+        and:
+        result.components == ids(root, selected, b)
+        operations.empty
+    }
+
     def "honors component replacements"() {
         given:
         def a = revision('a') // a->c
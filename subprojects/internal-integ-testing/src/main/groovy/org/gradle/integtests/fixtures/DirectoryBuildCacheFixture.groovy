@@ -56,11 +56,22 @@ trait DirectoryBuildCacheFixture extends BuildCacheFixture{
         gcFile().lastModified = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(60)
     }
 
+    TestFile indexFile() {
+        cacheDir.file("entries.bin")
+    }
+
+    /**
+     * Removes the index of the cache, so that it is rebuilt from the entries and their modification times by the next build.
+     */
+    void resetBuildCacheIndex() {
+        indexFile().delete()
+    }
+
     List<TestFile> listCacheFiles() {
         listCacheFiles(cacheDir)
     }
 
     static List<TestFile> listCacheFiles(TestFile cacheDir) {
-        cacheDir.listFiles().findAll { it.name ==~ /\p{XDigit}{32}/}.sort()
+        cacheDir.listFiles().findAll { it.directory }.collectMany { it.listFiles() as List<TestFile> }.findAll { it.name ==~ /\p{XDigit}{32}/ }.sort()
     }
 }
@@ -18,45 +18,56 @@ package org.gradle.api.internal.tasks.compile;
 import org.gradle.api.internal.tasks.SimpleWorkResult;
 import org.gradle.api.tasks.WorkResult;
 import org.gradle.api.tasks.compile.CompileOptions;
+import org.gradle.api.internal.tasks.compile.StandardJavaFileManagerPool.PooledFileManager;
 import org.gradle.internal.Factory;
+import org.gradle.internal.os.OperatingSystem;
 import org.gradle.language.base.internal.compile.Compiler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
-import javax.tools.StandardJavaFileManager;
 import java.io.Serializable;
 import java.nio.charset.Charset;
 import java.util.List;
 
 public class JdkJavaCompiler implements Compiler<JavaCompileSpec>, Serializable {
     private static final Logger LOGGER = LoggerFactory.getLogger(JdkJavaCompiler.class);
+    // Jars opened by a file manager cannot be deleted on Windows, so file managers are not kept there
+    private static final boolean REUSE_FILE_MANAGERS = !OperatingSystem.current().isWindows();
     private final Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory;
+    // Not sent to a compiler daemon, which uses a pool of its own
+    private final transient StandardJavaFileManagerPool fileManagers;
 
-    public JdkJavaCompiler(Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory) {
+    public JdkJavaCompiler(Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory, StandardJavaFileManagerPool fileManagers) {
         this.javaHomeBasedJavaCompilerFactory = javaHomeBasedJavaCompilerFactory;
+        this.fileManagers = fileManagers;
     }
 
     @Override
     public WorkResult execute(JavaCompileSpec spec) {
         LOGGER.info("Compiling with JDK Java compiler API.");
 
-        JavaCompiler.CompilationTask task = createCompileTask(spec);
-        boolean success = task.call();
+        List<String> options = new JavaCompilerArgumentsBuilder(spec).build();
+        JavaCompiler compiler = javaHomeBasedJavaCompilerFactory.create();
+        CompileOptions compileOptions = spec.getCompileOptions();
+        Charset charset = compileOptions.getEncoding() != null ? Charset.forName(compileOptions.getEncoding()) : null;
+        StandardJavaFileManagerPool fileManagers = this.fileManagers != null ? this.fileManagers : StandardJavaFileManagerPool.forCompilerDaemon();
+        PooledFileManager fileManager = fileManagers.acquire(compiler, charset, options);
+        boolean completed = false;
+        boolean success;
+        try {
+            Iterable<? extends JavaFileObject> compilationUnits = fileManager.getFileManager().getJavaFileObjectsFromFiles(spec.getSource());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager.getFileManager(), null, options, null, compilationUnits);
+            success = task.call();
+            completed = true;
+        } finally {
+            fileManagers.release(fileManager, spec.getCompileClasspath(), completed && REUSE_FILE_MANAGERS);
+        }
         if (!success) {
             throw new CompilationFailedException();
         }
 
         return new SimpleWorkResult(true);
     }
-
-    private JavaCompiler.CompilationTask createCompileTask(JavaCompileSpec spec) {
-        List<String> options = new JavaCompilerArgumentsBuilder(spec).build();
-        JavaCompiler compiler = javaHomeBasedJavaCompilerFactory.create();
-        CompileOptions compileOptions = spec.getCompileOptions();
-        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, compileOptions.getEncoding() != null ? Charset.forName(compileOptions.getEncoding()) : null);
-        Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromFiles(spec.getSource());
-        return compiler.getTask(null, null, null, options, null, compilationUnits);
-    }
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile;
+
+import com.google.common.base.Objects;
+import org.gradle.api.Nullable;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.Stoppable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the file managers of the in-process Java compiler between compilations, so that the jars on the classpath are opened and indexed once
+ * per process rather than once per compilation, as suggested by {@link JavaCompiler}. There is one pool in the Gradle daemon, kept between builds,
+ * and one in each compiler daemon, see {@link #forCompilerDaemon()}.
+ *
+ * <p>A file manager is only reused by compilations that use the same compiler, encoding and options, apart from the options that set the classpath,
+ * source path, processor path and output directories. Those locations are reset before the file manager is handed out again. A file manager is
+ * discarded as soon as one of the jars it has been used with has changed, as it may still hold the previous contents of the jar.</p>
+ *
+ * <p>A file manager keeps the jars it has used open, so the number of idle file managers is bounded, discarding the least recently used one first.</p>
+ */
+public class StandardJavaFileManagerPool implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StandardJavaFileManagerPool.class);
+    private static final Set<String> PATH_OPTIONS = new HashSet<String>(Arrays.asList(
+        "-classpath", "-cp", "--class-path", "-sourcepath", "--source-path", "-processorpath", "--processor-path", "-d", "-s", "-h"));
+    private static final Set<String> RESET_LOCATIONS = new HashSet<String>(Arrays.asList(
+        "CLASS_PATH", "SOURCE_PATH", "ANNOTATION_PROCESSOR_PATH", "CLASS_OUTPUT", "SOURCE_OUTPUT", "NATIVE_HEADER_OUTPUT"));
+
+    private static final int MAX_JARS_PER_FILE_MANAGER = 2000;
+    private static StandardJavaFileManagerPool compilerDaemonPool;
+
+    private final int maxIdle;
+    private final int maxJarsPerFileManager;
+    // Most recently released first
+    private final LinkedList<PooledFileManager> idle = new LinkedList<PooledFileManager>();
+
+    /**
+     * @param maxIdle The maximum number of idle file managers, for all options together.
+     * @param maxJarsPerFileManager The maximum number of jars a file manager may have used to be kept.
+     */
+    public StandardJavaFileManagerPool(int maxIdle, int maxJarsPerFileManager) {
+        this.maxIdle = maxIdle;
+        this.maxJarsPerFileManager = maxJarsPerFileManager;
+    }
+
+    /**
+     * Creates a pool that keeps an idle file manager for each processor.
+     */
+    public static StandardJavaFileManagerPool create() {
+        return new StandardJavaFileManagerPool(Runtime.getRuntime().availableProcessors(), MAX_JARS_PER_FILE_MANAGER);
+    }
+
+    /**
+     * Returns the pool of the compilations that run in this compiler daemon. It is kept until the compiler daemon stops.
+     */
+    static synchronized StandardJavaFileManagerPool forCompilerDaemon() {
+        if (compilerDaemonPool == null) {
+            compilerDaemonPool = create();
+        }
+        return compilerDaemonPool;
+    }
+
+    /**
+     * Returns a file manager for a compilation with the given options. The file manager must be handed back using {@link #release(PooledFileManager, Iterable, boolean)}.
+     */
+    PooledFileManager acquire(JavaCompiler compiler, @Nullable Charset charset, List<String> options) {
+        Key key = new Key(compiler.getClass(), charset, withoutPathOptions(options));
+        while (true) {
+            PooledFileManager fileManager = takeIdle(key);
+            if (fileManager == null) {
+                return new PooledFileManager(key, compiler.getStandardFileManager(null, null, charset));
+            }
+            if (fileManager.jarsUnchanged() && fileManager.resetLocations()) {
+                return fileManager;
+            }
+            LOGGER.debug("Discarding Java file manager as the classpath has changed.");
+            fileManager.close();
+        }
+    }
+
+    /**
+     * Hands back a file manager after compilation.
+     *
+     * @param classpath The classpath used for the compilation. The jars on it are remembered, so that the file manager is discarded when they change.
+     * @param reusable Whether the file manager can be used by another compilation.
+     */
+    void release(PooledFileManager fileManager, Iterable<File> classpath, boolean reusable) {
+        if (reusable && maxIdle > 0) {
+            fileManager.rememberJars(classpath);
+            if (fileManager.jars.size() <= maxJarsPerFileManager) {
+                PooledFileManager evicted = null;
+                synchronized (idle) {
+                    idle.addFirst(fileManager);
+                    if (idle.size() > maxIdle) {
+                        evicted = idle.removeLast();
+                    }
+                }
+                if (evicted != null) {
+                    evicted.close();
+                }
+                return;
+            }
+        }
+        fileManager.close();
+    }
+
+    @Override
+    public void stop() {
+        List<PooledFileManager> fileManagers;
+        synchronized (idle) {
+            fileManagers = new ArrayList<PooledFileManager>(idle);
+            idle.clear();
+        }
+        CompositeStoppable.stoppable(fileManagers).stop();
+    }
+
+    @Nullable
+    private PooledFileManager takeIdle(Key key) {
+        synchronized (idle) {
+            Iterator<PooledFileManager> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                PooledFileManager fileManager = iterator.next();
+                if (fileManager.key.equals(key)) {
+                    iterator.remove();
+                    return fileManager;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static List<String> withoutPathOptions(List<String> options) {
+        List<String> result = new ArrayList<String>(options.size());
+        for (int i = 0; i < options.size(); i++) {
+            String option = options.get(i);
+            if (PATH_OPTIONS.contains(option)) {
+                // Skip the value as well
+                i++;
+            } else {
+                result.add(option);
+            }
+        }
+        return result;
+    }
+
+    static class PooledFileManager implements Closeable {
+        private final Key key;
+        private final StandardJavaFileManager fileManager;
+        private final Map<File, JarState> jars = new HashMap<File, JarState>();
+
+        private PooledFileManager(Key key, StandardJavaFileManager fileManager) {
+            this.key = key;
+            this.fileManager = fileManager;
+        }
+
+        StandardJavaFileManager getFileManager() {
+            return fileManager;
+        }
+
+        private void rememberJars(Iterable<File> classpath) {
+            for (File file : classpath) {
+                if (!jars.containsKey(file) && file.isFile()) {
+                    jars.put(file, JarState.of(file));
+                }
+            }
+        }
+
+        private boolean jarsUnchanged() {
+            for (Map.Entry<File, JarState> entry : jars.entrySet()) {
+                if (!entry.getValue().equals(JarState.of(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean resetLocations() {
+            try {
+                for (StandardLocation location : StandardLocation.values()) {
+                    if (RESET_LOCATIONS.contains(location.name())) {
+                        fileManager.setLocation(location, null);
+                    }
+                }
+                return true;
+            } catch (Exception e) {
+                LOGGER.debug("Could not reset locations of Java file manager.", e);
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                fileManager.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static class JarState {
+        private final long length;
+        private final long lastModified;
+
+        private JarState(long length, long lastModified) {
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        static JarState of(File file) {
+            return new JarState(file.length(), file.lastModified());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof JarState)) {
+                return false;
+            }
+            JarState other = (JarState) obj;
+            return length == other.length && lastModified == other.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (length ^ lastModified);
+        }
+    }
+
+    private static class Key {
+        private final Class<?> compilerType;
+        private final Charset charset;
+        private final List<String> options;
+
+        Key(Class<?> compilerType, @Nullable Charset charset, List<String> options) {
+            this.compilerType = compilerType;
+            this.charset = charset;
+            this.options = options;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return compilerType == other.compilerType && Objects.equal(charset, other.charset) && options.equals(other.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(compilerType, charset, options);
+        }
+    }
+}
@@ -17,27 +17,46 @@
 package org.gradle.api.internal.tasks.compile.incremental.analyzer;
 
 import com.google.common.hash.HashCode;
+import org.gradle.api.Action;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
 import org.gradle.api.internal.hash.FileHasher;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the class files of a class set while visiting it, then analyzes them. Class files are hashed and analyzed in batches that run
+ * concurrently, and the results are accumulated in visiting order, so that the first of several classes with the same name is kept.
+ */
 public class ClassFilesAnalyzer implements FileVisitor {
+    // Analyzing a class whose analysis is cached is cheap, so use batches that are large enough to make the build operation overhead negligible
+    private static final int BATCH_SIZE = 500;
+
     private final ClassDependenciesAnalyzer analyzer;
     private final ClassDependentsAccumulator accumulator;
     private final FileHasher hasher;
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final List<FileVisitDetails> classFiles = new ArrayList<FileVisitDetails>();
 
-    public ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, FileHasher fileHasher) {
-        this(analyzer, fileHasher, new ClassDependentsAccumulator());
+    public ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, FileHasher fileHasher, BuildOperationExecutor buildOperationExecutor) {
+        this(analyzer, fileHasher, buildOperationExecutor, new ClassDependentsAccumulator());
     }
 
-   ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, FileHasher fileHasher, ClassDependentsAccumulator accumulator) {
-       this.analyzer = analyzer;
-       this.hasher = fileHasher;
-       this.accumulator = accumulator;
-   }
+    ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, FileHasher fileHasher, BuildOperationExecutor buildOperationExecutor, ClassDependentsAccumulator accumulator) {
+        this.analyzer = analyzer;
+        this.hasher = fileHasher;
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.accumulator = accumulator;
+    }
 
     @Override
     public void visitDir(FileVisitDetails dirDetails) {}
@@ -48,13 +67,57 @@ public class ClassFilesAnalyzer implements FileVisitor {
             return;
         }
 
-        HashCode hash = hasher.hash(fileDetails);
-        ClassAnalysis analysis = analyzer.getClassAnalysis(hash, fileDetails);
-
-        accumulator.addClass(fileDetails.getFile(), analysis);
+        classFiles.add(fileDetails);
     }
 
     public ClassSetAnalysisData getAnalysis() {
+        final ClassAnalysis[] analyses = new ClassAnalysis[classFiles.size()];
+        if (classFiles.size() <= BATCH_SIZE) {
+            analyze(0, classFiles.size(), analyses);
+        } else {
+            buildOperationExecutor.runAll(new Action<BuildOperationQueue<RunnableBuildOperation>>() {
+                @Override
+                public void execute(BuildOperationQueue<RunnableBuildOperation> queue) {
+                    for (int start = 0; start < analyses.length; start += BATCH_SIZE) {
+                        queue.add(new AnalyzeClassFiles(start, Math.min(start + BATCH_SIZE, analyses.length), analyses));
+                    }
+                }
+            });
+        }
+        for (int i = 0; i < analyses.length; i++) {
+            accumulator.addClass(classFiles.get(i).getFile(), analyses[i]);
+        }
+        classFiles.clear();
         return accumulator.getAnalysis();
     }
+
+    private void analyze(int start, int end, ClassAnalysis[] analyses) {
+        for (int i = start; i < end; i++) {
+            FileVisitDetails fileDetails = classFiles.get(i);
+            HashCode hash = hasher.hash(fileDetails);
+            analyses[i] = analyzer.getClassAnalysis(hash, fileDetails);
+        }
+    }
+
+    private class AnalyzeClassFiles implements RunnableBuildOperation {
+        private final int start;
+        private final int end;
+        private final ClassAnalysis[] analyses;
+
+        AnalyzeClassFiles(int start, int end, ClassAnalysis[] analyses) {
+            this.start = start;
+            this.end = end;
+            this.analyses = analyses;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            analyze(start, end, analyses);
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Analyze class files " + (start + 1) + " to " + end);
+        }
+    }
 }
@@ -18,24 +18,32 @@ package org.gradle.api.internal.tasks.compile.incremental.deps;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class ClassDependentsAccumulator {
 
-    private final Set<String> dependenciesToAll = Sets.newHashSet();
+    private static final int[] NO_DEPENDENTS = new int[0];
+
+    // Each class name is given an index and stored once. The dependents of each class are kept as an array of indexes.
+    private final Map<String, Integer> classIds = new HashMap<String, Integer>();
+    private final List<String> classNames = new ArrayList<String>();
+    private int[][] dependents = new int[64][];
+    private int[] dependentCounts = new int[64];
+    private final BitSet dependenciesToAll = new BitSet();
+    private final BitSet seenClasses = new BitSet();
     private final Map<String, String> filePathToClassName = new HashMap<String, String>();
-    private final Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
     private final Multimap<String, Integer> classesToConstants = HashMultimap.create();
     private final Multimap<Integer, String> literalsToClasses = HashMultimap.create();
-    private final Set<String> seenClasses = Sets.newHashSet();
     private final Multimap<String, String> parentToChildren = HashMultimap.create();
 
     public ClassDependentsAccumulator() {
@@ -43,7 +51,7 @@ public class ClassDependentsAccumulator {
 
     public void addClass(File classFile, ClassAnalysis classAnalysis) {
         addClass(classAnalysis);
-        filePathToClassName.put(classFile.getAbsolutePath(), classAnalysis.getClassName());
+        filePathToClassName.put(classFile.getAbsolutePath(), classNames.get(classId(classAnalysis.getClassName())));
     }
 
     public void addClass(ClassAnalysis classAnalysis) {
@@ -51,12 +59,14 @@ public class ClassDependentsAccumulator {
     }
 
     public void addClass(String className, boolean dependencyToAll, Iterable<String> classDependencies, Set<Integer> constants, Set<Integer> literals, Set<String> superTypes) {
-        if (seenClasses.contains(className)) {
+        int classId = classId(className);
+        if (seenClasses.get(classId)) {
             // same classes may be found in different classpath trees/jars
             // and we keep only the first one
             return;
         }
-        seenClasses.add(className);
+        seenClasses.set(classId);
+        className = classNames.get(classId);
         for (Integer constant : constants) {
             classesToConstants.put(className, constant);
         }
@@ -64,39 +74,61 @@ public class ClassDependentsAccumulator {
             literalsToClasses.put(literal, className);
         }
         if (dependencyToAll) {
-            dependenciesToAll.add(className);
-            dependents.remove(className);
+            dependenciesToAll.set(classId);
+            dependents[classId] = NO_DEPENDENTS;
+            dependentCounts[classId] = 0;
         }
         for (String dependency : classDependencies) {
-            if (!dependency.equals(className) && !dependenciesToAll.contains(dependency)) {
-                Set<String> d = rememberClass(dependency);
-                d.add(className);
+            int dependencyId = classId(dependency);
+            if (dependencyId != classId && !dependenciesToAll.get(dependencyId)) {
+                addDependent(dependencyId, classId);
             }
         }
         for (String superType : superTypes) {
-            parentToChildren.put(superType, className);
+            parentToChildren.put(classNames.get(classId(superType)), className);
         }
     }
 
-    private Set<String> rememberClass(String className) {
-        Set<String> d = dependents.get(className);
-        if (d == null) {
-            d = Sets.newHashSet();
-            dependents.put(className, d);
+    private int classId(String className) {
+        Integer id = classIds.get(className);
+        if (id == null) {
+            id = classNames.size();
+            classIds.put(className, id);
+            classNames.add(className);
+            if (id == dependents.length) {
+                dependents = Arrays.copyOf(dependents, id * 2);
+                dependentCounts = Arrays.copyOf(dependentCounts, id * 2);
+            }
+            dependents[id] = NO_DEPENDENTS;
         }
-        return d;
+        return id;
+    }
+
+    private void addDependent(int classId, int dependentId) {
+        // A class is added only once, so the dependent cannot be present already
+        int[] ids = dependents[classId];
+        int count = dependentCounts[classId];
+        if (count == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(4, count * 2));
+            dependents[classId] = ids;
+        }
+        ids[count] = dependentId;
+        dependentCounts[classId] = count + 1;
     }
 
     public Map<String, DependentsSet> getDependentsMap() {
-        if (dependenciesToAll.isEmpty() && dependents.isEmpty()) {
+        if (classNames.isEmpty()) {
             return Collections.emptyMap();
         }
+        String[] names = classNames.toArray(new String[0]);
         ImmutableMap.Builder<String, DependentsSet> builder = ImmutableMap.builder();
-        for (String s : dependenciesToAll) {
-            builder.put(s, DependencyToAll.INSTANCE);
-        }
-        for (Map.Entry<String, Set<String>> entry : dependents.entrySet()) {
-            builder.put(entry.getKey(), new DefaultDependentsSet(ImmutableSet.copyOf(entry.getValue())));
+        for (int id = 0; id < names.length; id++) {
+            int count = dependentCounts[id];
+            if (dependenciesToAll.get(id)) {
+                builder.put(names[id], DependencyToAll.INSTANCE);
+            } else if (count > 0) {
+                builder.put(names[id], new IndexedDependentsSet(names, Arrays.copyOf(dependents[id], count)));
+            }
         }
         return builder.build();
     }
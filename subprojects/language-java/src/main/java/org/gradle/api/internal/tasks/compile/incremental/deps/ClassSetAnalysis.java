@@ -18,6 +18,8 @@ package org.gradle.api.internal.tasks.compile.incremental.deps;
 
 import com.google.common.collect.Sets;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -81,7 +83,10 @@ public class ClassSetAnalysis {
     }
 
     private void recurseDependents(Set<String> visited, Set<String> result, Set<String> dependentClasses) {
-        for (String d : dependentClasses) {
+        // Uses a work list rather than recursion, as the chains of dependents can be very long in a large class set
+        Deque<String> pending = new ArrayDeque<String>(dependentClasses);
+        while (!pending.isEmpty()) {
+            String d = pending.removeFirst();
             if (!visited.add(d)) {
                 continue;
             }
@@ -90,7 +95,7 @@ public class ClassSetAnalysis {
             }
             DependentsSet currentDependents = data.getDependents(d);
             if (currentDependents != null && !currentDependents.isDependencyToAll()) {
-                recurseDependents(visited, result, currentDependents.getDependentClasses());
+                pending.addAll(currentDependents.getDependentClasses());
             }
         }
     }
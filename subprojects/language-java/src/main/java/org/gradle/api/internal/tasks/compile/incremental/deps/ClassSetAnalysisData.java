@@ -96,12 +96,18 @@ public class ClassSetAnalysisData {
                 filePathToClassNameBuilder.put(filePath, className);
             }
 
+            // The dependent classes are kept as indexes into the table of all class names, which is complete only once everything has been read
             count = decoder.readSmallInt();
             ImmutableMap.Builder<String, DependentsSet> dependentsBuilder = ImmutableMap.builder();
+            Map<String, int[]> dependentIds = new HashMap<String, int[]>();
             for (int i = 0; i < count; i++) {
                 String className = readClassName(decoder, classNameMap);
-                DependentsSet dependents = readDependentsSet(decoder, classNameMap);
-                dependentsBuilder.put(className, dependents);
+                byte b = decoder.readByte();
+                if (b == 1) {
+                    dependentsBuilder.put(className, new DependencyToAll(decoder.readNullableString()));
+                } else {
+                    dependentIds.put(className, readDependentIds(decoder, classNameMap));
+                }
             }
 
             count = decoder.readSmallInt();
@@ -136,6 +142,14 @@ public class ClassSetAnalysisData {
                 classNameToChildren.put(parent, namesBuilder.build());
             }
 
+            String[] classNames = new String[classNameMap.size()];
+            for (Map.Entry<Integer, String> entry : classNameMap.entrySet()) {
+                classNames[entry.getKey() - 1] = entry.getValue();
+            }
+            for (Map.Entry<String, int[]> entry : dependentIds.entrySet()) {
+                dependentsBuilder.put(entry.getKey(), new IndexedDependentsSet(classNames, entry.getValue()));
+            }
+
             return new ClassSetAnalysisData(filePathToClassNameBuilder.build(), dependentsBuilder.build(), classesToConstantsBuilder.build(), literalsToClassesBuilder.build(), classNameToChildren.build());
         }
 
@@ -182,17 +196,13 @@ public class ClassSetAnalysisData {
             }
         }
 
-        private DependentsSet readDependentsSet(Decoder decoder, Map<Integer, String> classNameMap) throws IOException {
-            byte b = decoder.readByte();
-            if (b == 1) {
-                return new DependencyToAll(decoder.readNullableString());
-            }
+        private int[] readDependentIds(Decoder decoder, Map<Integer, String> classNameMap) throws IOException {
             int count = decoder.readSmallInt();
-            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+            int[] dependents = new int[count];
             for (int i = 0; i < count; i++) {
-                builder.add(readClassName(decoder, classNameMap));
+                dependents[i] = readClassId(decoder, classNameMap) - 1;
             }
-            return new DefaultDependentsSet(builder.build());
+            return dependents;
         }
 
         private void writeDependentSet(DependentsSet dependentsSet, Map<String, Integer> classNameMap, Encoder encoder) throws IOException {
@@ -209,14 +219,17 @@ public class ClassSetAnalysisData {
         }
 
         private String readClassName(Decoder decoder, Map<Integer, String> classNameMap) throws IOException {
+            return classNameMap.get(readClassId(decoder, classNameMap));
+        }
+
+        private int readClassId(Decoder decoder, Map<Integer, String> classNameMap) throws IOException {
             int id = decoder.readSmallInt();
             if (id == 0) {
                 id = decoder.readSmallInt();
                 String className = decoder.readString();
                 classNameMap.put(id, className);
-                return className;
             }
-            return classNameMap.get(id);
+            return id;
         }
 
         private void writeClassName(String className, Map<String, Integer> classIdMap, Encoder encoder) throws IOException {
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental.deps;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The dependent classes of a class, kept as indexes into a table of class names that is shared by all dependents sets of a class set analysis.
+ * A module with many classes has a dependents set for almost every class, so this uses considerably less memory than a set of names per class.
+ */
+class IndexedDependentsSet implements DependentsSet {
+    private final String[] classNames;
+    private final int[] dependents;
+
+    /**
+     * @param classNames The shared table of class names.
+     * @param dependents The distinct indexes of the dependent classes in the table.
+     */
+    IndexedDependentsSet(String[] classNames, int[] dependents) {
+        this.classNames = classNames;
+        this.dependents = dependents;
+    }
+
+    @Override
+    public Set<String> getDependentClasses() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < dependents.length;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next == dependents.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return classNames[dependents[next++]];
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return dependents.length;
+            }
+        };
+    }
+
+    @Override
+    public boolean isDependencyToAll() {
+        return false;
+    }
+
+    @Override
+    public String getDescription() {
+        return null;
+    }
+}
@@ -17,21 +17,32 @@ package org.gradle.api.internal.tasks.compile.incremental.jar;
 
 import com.google.common.collect.Maps;
 import com.google.common.hash.HashCode;
+import com.google.common.io.ByteStreams;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
+import org.gradle.api.internal.changedetection.state.AbiExtractingClasspathResourceHasher;
 import org.gradle.api.internal.hash.FileHasher;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
 
+/**
+ * Creates the snapshot of a jar on the compile classpath. The snapshot holds the hash of the ABI of each class rather than the hash of the class file,
+ * so that a change to the implementation of a class in the jar does not cause the classes that depend on it to be recompiled.
+ */
 class DefaultJarSnapshotter {
+    // Used for classes that are not part of the ABI, such as private inner classes, so that only their presence is tracked
+    private static final HashCode NOT_PART_OF_ABI = HashCode.fromInt(0);
+
     private final FileHasher hasher;
     private final ClassDependenciesAnalyzer analyzer;
+    private final AbiExtractingClasspathResourceHasher abiHasher = new AbiExtractingClasspathResourceHasher();
 
     public DefaultJarSnapshotter(FileHasher hasher, ClassDependenciesAnalyzer analyzer) {
         this.hasher = hasher;
@@ -51,25 +62,42 @@ class DefaultJarSnapshotter {
                     return;
                 }
 
-                HashCode classFileHash;
-                InputStream inputStream = fileDetails.open();
-                try {
-                    classFileHash = hasher.hash(inputStream);
-                } finally {
-                    try {
-                        inputStream.close();
-                    } catch (IOException e) {
-                        throw new UncheckedIOException(e);
-                    }
-                }
+                byte[] classBytes = readClassBytes(fileDetails);
+                HashCode classFileHash = hasher.hash(new ByteArrayInputStream(classBytes));
 
                 ClassAnalysis analysis = analyzer.getClassAnalysis(classFileHash, fileDetails);
                 accumulator.addClass(analysis);
 
-                hashes.put(analysis.getClassName(), classFileHash);
+                hashes.put(analysis.getClassName(), abiHash(classBytes, classFileHash));
             }
         });
 
         return new JarSnapshot(new JarSnapshotData(hash, hashes, accumulator.getAnalysis()));
     }
+
+    private HashCode abiHash(byte[] classBytes, HashCode classFileHash) {
+        HashCode abiHash;
+        try {
+            abiHash = abiHasher.hashClassBytes(classBytes);
+        } catch (Exception e) {
+            // Malformed class, any change to it is relevant
+            return classFileHash;
+        }
+        return abiHash == null ? NOT_PART_OF_ABI : abiHash;
+    }
+
+    private static byte[] readClassBytes(FileVisitDetails fileDetails) {
+        InputStream inputStream = fileDetails.open();
+        try {
+            return ByteStreams.toByteArray(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import javax.tools.JavaCompiler
+import javax.tools.StandardJavaFileManager
+import javax.tools.StandardLocation
+import java.nio.charset.Charset
+
+class StandardJavaFileManagerPoolTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def compiler = Mock(JavaCompiler)
+    def pool = new StandardJavaFileManagerPool(2, 10)
+    def jar = tmpDir.file("lib.jar").createFile()
+
+    def "reuses file manager for compilation with other classpath and output directories"() {
+        def fileManager = Mock(StandardJavaFileManager)
+
+        when:
+        def first = pool.acquire(compiler, null, ["-d", "out1", "-g", "-classpath", jar.path])
+
+        then:
+        first.fileManager == fileManager
+        1 * compiler.getStandardFileManager(null, null, null) >> fileManager
+        0 * _
+
+        when:
+        pool.release(first, [jar], true)
+        def second = pool.acquire(compiler, null, ["-d", "out2", "-g", "-classpath", "other.jar"])
+
+        then:
+        second.is(first)
+        1 * fileManager.setLocation(StandardLocation.CLASS_PATH, null)
+        1 * fileManager.setLocation(StandardLocation.CLASS_OUTPUT, null)
+        _ * fileManager.setLocation(_, null)
+        0 * _
+    }
+
+    def "does not reuse file manager for compilation with other options"() {
+        def fileManager1 = Mock(StandardJavaFileManager)
+        def fileManager2 = Mock(StandardJavaFileManager)
+        def fileManager3 = Mock(StandardJavaFileManager)
+        def charset = Charset.forName("UTF-8")
+
+        when:
+        pool.release(pool.acquire(compiler, null, ["-g"]), [], true)
+        def differentOptions = pool.acquire(compiler, null, ["-g:none"])
+        def differentCharset = pool.acquire(compiler, charset, ["-g"])
+
+        then:
+        differentOptions.fileManager == fileManager2
+        differentCharset.fileManager == fileManager3
+        2 * compiler.getStandardFileManager(null, null, null) >>> [fileManager1, fileManager2]
+        1 * compiler.getStandardFileManager(null, null, charset) >> fileManager3
+    }
+
+    def "discards file manager when a jar it has used has changed"() {
+        def fileManager1 = Mock(StandardJavaFileManager)
+        def fileManager2 = Mock(StandardJavaFileManager)
+        compiler.getStandardFileManager(null, null, null) >>> [fileManager1, fileManager2]
+        pool.release(pool.acquire(compiler, null, ["-g"]), [jar], true)
+
+        when:
+        jar << "changed"
+        def second = pool.acquire(compiler, null, ["-g"])
+
+        then:
+        second.fileManager == fileManager2
+        1 * fileManager1.close()
+    }
+
+    def "closes file manager that is not reusable"() {
+        def fileManager = Mock(StandardJavaFileManager)
+        compiler.getStandardFileManager(null, null, null) >> fileManager
+
+        when:
+        pool.release(pool.acquire(compiler, null, ["-g"]), [], false)
+
+        then:
+        1 * fileManager.close()
+    }
+
+    def "closes least recently used file manager when too many are idle"() {
+        def fileManager1 = Mock(StandardJavaFileManager)
+        def fileManager2 = Mock(StandardJavaFileManager)
+        def fileManager3 = Mock(StandardJavaFileManager)
+        compiler.getStandardFileManager(null, null, null) >>> [fileManager1, fileManager2, fileManager3]
+        def first = pool.acquire(compiler, null, ["-g"])
+        def second = pool.acquire(compiler, null, ["-g:none"])
+        def third = pool.acquire(compiler, null, ["-nowarn"])
+
+        when:
+        pool.release(first, [], true)
+        pool.release(second, [], true)
+
+        then:
+        0 * _
+
+        when:
+        pool.release(third, [], true)
+
+        then:
+        1 * fileManager1.close()
+        0 * _
+    }
+
+    def "closes idle file managers when stopped"() {
+        def fileManager = Mock(StandardJavaFileManager)
+        compiler.getStandardFileManager(null, null, null) >> fileManager
+        pool.release(pool.acquire(compiler, null, ["-g"]), [], true)
+
+        when:
+        pool.stop()
+
+        then:
+        1 * fileManager.close()
+    }
+
+    def "uses the same pool for all compilations in a compiler daemon"() {
+        expect:
+        StandardJavaFileManagerPool.forCompilerDaemon().is(StandardJavaFileManagerPool.forCompilerDaemon())
+    }
+}
@@ -23,6 +23,8 @@ import org.gradle.api.file.FileVisitDetails
 import org.gradle.api.internal.hash.FileHasher
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassFilesAnalyzer
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.operations.BuildOperationQueue
 import spock.lang.Specification
 import spock.lang.Subject
 
@@ -31,7 +33,8 @@ class ClassFilesAnalyzerTest extends Specification {
     def classAnalyzer = Mock(ClassDependenciesAnalyzer)
     def accumulator = Mock(ClassDependentsAccumulator)
     def fileHasher = Mock(FileHasher)
-    @Subject analyzer = new ClassFilesAnalyzer(classAnalyzer, fileHasher, accumulator)
+    def buildOperationExecutor = Mock(BuildOperationExecutor)
+    @Subject analyzer = new ClassFilesAnalyzer(classAnalyzer, fileHasher, buildOperationExecutor, accumulator)
 
     def "does not visit dirs"() {
         when: analyzer.visitDir(null)
@@ -59,11 +62,47 @@ class ClassFilesAnalyzerTest extends Specification {
 
         when:
         analyzer.visitFile(details)
+        analyzer.getAnalysis()
 
         then:
         1 * fileHasher.hash(details) >> hash
         1 * classAnalyzer.getClassAnalysis(hash, details) >> analysis
         1 * accumulator.addClass(file, analysis)
+        1 * accumulator.getAnalysis()
         0 * _
     }
+
+    def "analyzes large number of classes in batches and accumulates them in visiting order"() {
+        def files = (0..<1200).collect { new File("org/foo/Foo${it}.class") }
+        def operations = []
+        def queue = Stub(BuildOperationQueue) {
+            add(_) >> { args -> operations << args[0] }
+        }
+        def accumulated = []
+
+        when:
+        files.each { file ->
+            analyzer.visitFile(Stub(FileVisitDetails) {
+                getFile() >> file
+                getName() >> file.name
+            })
+        }
+        analyzer.getAnalysis()
+
+        then:
+        1 * buildOperationExecutor.runAll(_) >> { args ->
+            args[0].execute(queue)
+            // Run the batches in reverse order
+            operations.reverse()*.run(null)
+        }
+        1200 * fileHasher.hash(_) >> HashCode.fromInt(1)
+        1200 * classAnalyzer.getClassAnalysis(_, _) >> { hash, details -> new ClassAnalysis(details.name, [] as Set, false, [] as Set, [] as Set, [] as Set) }
+        1200 * accumulator.addClass(_ as File, _ as ClassAnalysis) >> { file, analysis -> accumulated << [file, analysis.className] }
+        1 * accumulator.getAnalysis()
+        0 * _
+
+        and:
+        operations.size() == 3
+        accumulated == files.collect { [it, it.name] }
+    }
 }
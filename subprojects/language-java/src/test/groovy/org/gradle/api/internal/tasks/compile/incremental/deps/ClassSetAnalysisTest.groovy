@@ -199,6 +199,18 @@ class ClassSetAnalysisTest extends Specification {
         deps.dependentClasses == ['D'] as Set
     }
 
+    def "finds dependents through long chains of dependents"() {
+        def chain = (0..<20000).collectEntries { ["C" + it, dependents("C" + (it + 1))] }
+        def a = analysis(chain)
+
+        when:
+        def deps = a.getRelevantDependents("C0", [] as Set)
+
+        then:
+        deps.dependentClasses.size() == 20000
+        deps.dependentClasses.contains("C20000")
+    }
+
     private static DependentsSet dependentSet(boolean dependencyToAll, Collection<String> dependentClasses) {
         dependencyToAll ? DependencyToAll.INSTANCE : new DefaultDependentsSet(dependentClasses as Set)
     }
@@ -28,8 +28,12 @@ import org.gradle.api.internal.hash.FileHasher
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.test.fixtures.file.TestFile
 import org.gradle.util.UsesNativeServices
 import org.junit.Rule
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.MethodVisitor
+import org.objectweb.asm.Opcodes
 import spock.lang.Specification
 import spock.lang.Subject
 
@@ -84,4 +88,39 @@ class DefaultJarSnapshotterTest extends Specification {
         snapshot.hashes == ["Foo": f1Hash, "com.Foo2": f2Hash]
         snapshot.analysis
     }
+
+    def "hashes the ABI of classes so that implementation changes are ignored"() {
+        hasher.hash(_ as InputStream) >> { InputStream input -> HashCode.fromBytes(input.bytes) }
+        classDependenciesAnalyzer.getClassAnalysis(_, _) >> Stub(ClassAnalysis) {
+            getClassName() >> "Foo"
+        }
+        def original = snapshotOf(classFile("original", 1, false))
+        def implementationChanged = snapshotOf(classFile("implementation", 2, false))
+        def apiChanged = snapshotOf(classFile("api", 1, true))
+
+        expect:
+        implementationChanged.hashes["Foo"] == original.hashes["Foo"]
+        apiChanged.hashes["Foo"] != original.hashes["Foo"]
+    }
+
+    private JarSnapshot snapshotOf(TestFile dir) {
+        return snapshotter.createSnapshot(HashCode.fromInt(123), new JarArchive(dir, new FileTreeAdapter(new DefaultDirectoryFileTreeFactory().create(dir))))
+    }
+
+    private TestFile classFile(String dir, int value, boolean withField) {
+        def cw = new ClassWriter(ClassWriter.COMPUTE_MAXS)
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "Foo", null, "java/lang/Object", null)
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "value", "()I", null, null)
+        mv.visitCode()
+        mv.visitIntInsn(Opcodes.BIPUSH, value)
+        mv.visitInsn(Opcodes.IRETURN)
+        mv.visitMaxs(0, 0)
+        mv.visitEnd()
+        if (withField) {
+            cw.visitField(Opcodes.ACC_PUBLIC, "field", "I", null, null).visitEnd()
+        }
+        cw.visitEnd()
+        temp.file(dir, "Foo.class").bytes = cw.toByteArray()
+        return temp.file(dir)
+    }
 }
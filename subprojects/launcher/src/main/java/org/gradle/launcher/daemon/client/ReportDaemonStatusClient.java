@@ -100,7 +100,11 @@ public class ReportDaemonStatusClient {
         if (!statuses.isEmpty()) {
             for(Status status : statuses) {
                 Long pid = status.getPid();
-                LOGGER.quiet(String.format(STATUS_FORMAT, pid == null ? "PID unknown" : pid, status.getStatus(), status.getVersion()));
+                String info = status.getVersion();
+                if (status.getHeapUsage() != null) {
+                    info += " (heap: " + status.getHeapUsage() + ", cache entries: " + status.getCacheEntryCounts() + ")";
+                }
+                LOGGER.quiet(String.format(STATUS_FORMAT, pid == null ? "PID unknown" : pid, status.getStatus(), info));
             }
         }
     }
@@ -25,11 +25,21 @@ public class Status implements Serializable {
     private final Long pid;
     private final String version;
     private final String status;
+    @Nullable
+    private final String heapUsage;
+    @Nullable
+    private final String cacheEntryCounts;
 
     public Status(Long pid, String version, String status) {
+        this(pid, version, status, null, null);
+    }
+
+    public Status(Long pid, String version, String status, @Nullable String heapUsage, @Nullable String cacheEntryCounts) {
         this.pid = pid;
         this.version = version;
         this.status = status;
+        this.heapUsage = heapUsage;
+        this.cacheEntryCounts = cacheEntryCounts;
     }
 
     @Nullable
@@ -44,4 +54,20 @@ public class Status implements Serializable {
     public String getStatus() {
         return status;
     }
+
+    /**
+     * Returns a description of the heap used by the daemon.
+     */
+    @Nullable
+    public String getHeapUsage() {
+        return heapUsage;
+    }
+
+    /**
+     * Returns the number of entries retained by each of the long-lived caches of the daemon. This is not the heap they use.
+     */
+    @Nullable
+    public String getCacheEntryCounts() {
+        return cacheEntryCounts;
+    }
 }
@@ -16,6 +16,7 @@
 package org.gradle.launcher.daemon.server;
 
 import com.google.common.collect.ImmutableList;
+import org.gradle.api.internal.cache.InMemoryCacheStatistics;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.classpath.ClassPath;
@@ -136,7 +137,7 @@ public class DaemonServices extends DefaultServiceRegistry {
         return ImmutableList.of(
             new HandleStop(get(ListenerManager.class)),
             new HandleCancel(),
-            new HandleReportStatus(),
+            new HandleReportStatus(get(InMemoryCacheStatistics.class)),
             new ReturnResult(),
             new StartBuildOrRespondWithBusy(daemonDiagnostics), // from this point down, the daemon is 'busy'
             new EstablishBuildEnvironment(processEnvironment),
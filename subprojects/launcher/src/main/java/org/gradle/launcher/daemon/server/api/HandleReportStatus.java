@@ -16,21 +16,47 @@
 
 package org.gradle.launcher.daemon.server.api;
 
+import org.gradle.api.internal.cache.InMemoryCacheStatistics;
+import org.gradle.internal.util.NumberUtil;
 import org.gradle.launcher.daemon.protocol.ReportStatus;
 import org.gradle.launcher.daemon.protocol.Status;
 import org.gradle.launcher.daemon.protocol.Success;
 import org.gradle.util.GradleVersion;
 
+import java.util.Map;
+
 public class HandleReportStatus implements DaemonCommandAction {
+    private final InMemoryCacheStatistics cacheStatistics;
+
+    public HandleReportStatus(InMemoryCacheStatistics cacheStatistics) {
+        this.cacheStatistics = cacheStatistics;
+    }
+
     @Override
     public void execute(DaemonCommandExecution execution) {
         if (execution.getCommand() instanceof ReportStatus) {
             String version = GradleVersion.current().getVersion();
             String status = execution.getDaemonStateControl().getState().toString().toUpperCase();
-            Status message = new Status(execution.getDaemonContext().getPid(), version, status);
+            Status message = new Status(execution.getDaemonContext().getPid(), version, status, getHeapUsage(), getCacheEntryCounts());
             execution.getConnection().completed(new Success(message));
         } else {
             execution.proceed();
         }
     }
+
+    private static String getHeapUsage() {
+        Runtime runtime = Runtime.getRuntime();
+        return NumberUtil.formatBytes(runtime.totalMemory() - runtime.freeMemory()) + " of " + NumberUtil.formatBytes(runtime.maxMemory());
+    }
+
+    private String getCacheEntryCounts() {
+        StringBuilder entryCounts = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : cacheStatistics.getEntryCounts().entrySet()) {
+            if (entryCounts.length() > 0) {
+                entryCounts.append(", ");
+            }
+            entryCounts.append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return entryCounts.toString();
+    }
 }
@@ -55,7 +55,8 @@ class ParallelDownloadsPerformanceTest extends AbstractCrossVersionPerformanceTe
             }
 
             private void cleanupCache(File userHomeDir) {
-                ['modules-2/metadata-2.23/descriptors', 'modules-2/files-2.1', 'external-resources'].each {
+                // The baseline and the current version use different metadata cache layouts
+                ['modules-2/metadata-2.23/descriptors', 'modules-2/metadata-2.24/descriptors', 'modules-2/files-2.1', 'external-resources'].each {
                     new File("$userHomeDir/caches/$it").deleteDir()
                 }
             }
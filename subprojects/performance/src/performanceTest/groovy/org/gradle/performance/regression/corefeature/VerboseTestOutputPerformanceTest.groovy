@@ -40,5 +40,6 @@ class VerboseTestOutputPerformanceTest extends AbstractCrossVersionPerformanceTe
         testProject         | _
         "withVerboseTestNG" | _
         "withVerboseJUnit"  | _
+        "withChattyJUnit"   | _
     }
 }
@@ -0,0 +1,22 @@
+package ${packageName};
+
+import static org.junit.Assert.*;
+
+public class ${testClassName} {
+
+    private final ${productionClassName} production = new ${productionClassName}("value");
+<% (1..20).each { %>
+    @org.junit.Test
+    public void test${it}() {
+        for (int i = 0; i < 500; i++) {
+            System.out.print(i);
+            System.out.print(' ');
+            if (i % 50 == 0) {
+                System.err.println();
+            }
+        }
+        System.out.println();
+        assertEquals(production.getProperty(), "value");
+    }
+<% } %>
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TestResultProcessor} which joins consecutive output events of the same test and destination into a single event. Tests commonly
+ * write their output a line or even a character at a time, and each output event is otherwise sent to the build process on its own.
+ *
+ * <p>The joined output is forwarded before any other event, once it has reached a maximum size, and at the latest a short while after it
+ * was written, so that the order of the events is kept and the output of a hanging test still shows up.</p>
+ */
+public class BatchingTestOutputResultProcessor implements TestResultProcessor, Stoppable {
+    private static final int MAX_CHARS = 8192;
+    private static final int MAX_DELAY_MS = 50;
+
+    private final TestResultProcessor processor;
+    private final ScheduledExecutorService executor;
+    private final int maxChars;
+    private final int maxDelayMs;
+    private final Object lock = new Object();
+    private final StringBuilder output = new StringBuilder();
+    private Object outputOwner;
+    private TestOutputEvent.Destination outputDestination;
+
+    public BatchingTestOutputResultProcessor(TestResultProcessor processor, ScheduledExecutorService executor) {
+        this(processor, executor, MAX_CHARS, MAX_DELAY_MS);
+    }
+
+    BatchingTestOutputResultProcessor(TestResultProcessor processor, ScheduledExecutorService executor, int maxChars, int maxDelayMs) {
+        this.processor = processor;
+        this.executor = executor;
+        this.maxChars = maxChars;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    @Override
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        synchronized (lock) {
+            flushOutput();
+            processor.started(test, event);
+        }
+    }
+
+    @Override
+    public void completed(Object testId, TestCompleteEvent event) {
+        synchronized (lock) {
+            flushOutput();
+            processor.completed(testId, event);
+        }
+    }
+
+    @Override
+    public void failure(Object testId, Throwable result) {
+        synchronized (lock) {
+            flushOutput();
+            processor.failure(testId, result);
+        }
+    }
+
+    @Override
+    public void output(Object testId, TestOutputEvent event) {
+        synchronized (lock) {
+            if (output.length() > 0 && (!testId.equals(outputOwner) || event.getDestination() != outputDestination)) {
+                flushOutput();
+            }
+            boolean first = output.length() == 0;
+            outputOwner = testId;
+            outputDestination = event.getDestination();
+            output.append(event.getMessage());
+            if (output.length() >= maxChars) {
+                flushOutput();
+            } else if (first) {
+                scheduleFlush();
+            }
+        }
+    }
+
+    /**
+     * Forwards the output that has not been forwarded yet.
+     */
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            flushOutput();
+        }
+    }
+
+    private void scheduleFlush() {
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    flushOutput();
+                }
+            }
+        }, maxDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushOutput() {
+        if (output.length() == 0) {
+            return;
+        }
+        DefaultTestOutputEvent event = new DefaultTestOutputEvent(outputDestination, output.toString());
+        output.setLength(0);
+        Object owner = outputOwner;
+        outputOwner = null;
+        outputDestination = null;
+        processor.output(owner, event);
+    }
+}
@@ -27,26 +27,43 @@ import org.gradle.internal.actor.ActorFactory;
 import org.gradle.internal.dispatch.DispatchException;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
- * processors.
+ * processors, unless the durations of the test classes in a previous run are known.
+ *
+ * <p>When durations are known, the test classes are collected until all of them have been received. They are then
+ * assigned longest first, each one to the processor with the least work assigned so far, so that the work is spread
+ * evenly over the processors. Test classes without a known duration are assumed to take the average duration.</p>
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     private final int maxProcessors;
     private final Factory<TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    private final Map<String, Long> previousDurations;
     private TestResultProcessor resultProcessor;
     private int pos;
     private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
     private List<Actor> actors = new ArrayList<Actor>();
     private Actor resultProcessorActor;
+    private final List<TestClassRunInfo> pendingTestClasses = new ArrayList<TestClassRunInfo>();
 
     public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory) {
+        this(maxProcessors, factory, actorFactory, Collections.<String, Long>emptyMap());
+    }
+
+    /**
+     * @param previousDurations The duration in milliseconds of each test class in a previous run.
+     */
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, Map<String, Long> previousDurations) {
         this.maxProcessors = maxProcessors;
         this.factory = factory;
         this.actorFactory = actorFactory;
+        this.previousDurations = previousDurations;
     }
 
     @Override
@@ -58,14 +75,13 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
 
     @Override
     public void processTestClass(TestClassRunInfo testClass) {
+        if (maxProcessors > 1 && !previousDurations.isEmpty()) {
+            pendingTestClasses.add(testClass);
+            return;
+        }
         TestClassProcessor processor;
         if (processors.size() < maxProcessors) {
-            processor = factory.create();
-            Actor actor = actorFactory.createActor(processor);
-            processor = actor.getProxy(TestClassProcessor.class);
-            actors.add(actor);
-            processors.add(processor);
-            processor.startProcessing(resultProcessor);
+            processor = startProcessor();
         } else {
             processor = processors.get(pos);
             pos = (pos + 1) % processors.size();
@@ -73,9 +89,67 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
         processor.processTestClass(testClass);
     }
 
+    private TestClassProcessor startProcessor() {
+        TestClassProcessor processor = factory.create();
+        Actor actor = actorFactory.createActor(processor);
+        processor = actor.getProxy(TestClassProcessor.class);
+        actors.add(actor);
+        processors.add(processor);
+        processor.startProcessing(resultProcessor);
+        return processor;
+    }
+
+    private void processPendingTestClasses() {
+        if (pendingTestClasses.isEmpty()) {
+            return;
+        }
+        long totalDuration = 0;
+        int knownDurations = 0;
+        for (TestClassRunInfo testClass : pendingTestClasses) {
+            Long duration = previousDurations.get(testClass.getTestClassName());
+            if (duration != null) {
+                totalDuration += duration;
+                knownDurations++;
+            }
+        }
+        final long defaultDuration = knownDurations == 0 ? 0 : totalDuration / knownDurations;
+        Collections.sort(pendingTestClasses, new Comparator<TestClassRunInfo>() {
+            @Override
+            public int compare(TestClassRunInfo o1, TestClassRunInfo o2) {
+                long duration1 = durationOf(o1, defaultDuration);
+                long duration2 = durationOf(o2, defaultDuration);
+                return duration1 < duration2 ? 1 : duration1 > duration2 ? -1 : 0;
+            }
+        });
+
+        int processorCount = Math.min(maxProcessors, pendingTestClasses.size());
+        long[] assignedDurations = new long[processorCount];
+        for (int i = 0; i < processorCount; i++) {
+            startProcessor();
+        }
+        for (TestClassRunInfo testClass : pendingTestClasses) {
+            int leastBusy = 0;
+            for (int i = 1; i < processorCount; i++) {
+                if (assignedDurations[i] < assignedDurations[leastBusy]) {
+                    leastBusy = i;
+                }
+            }
+            // Count each test class as at least 1ms, so that test classes without a duration are spread over the processors as well
+            assignedDurations[leastBusy] += Math.max(1, durationOf(testClass, defaultDuration));
+            processors.get(leastBusy).processTestClass(testClass);
+        }
+        pendingTestClasses.clear();
+    }
+
+    private long durationOf(TestClassRunInfo testClass, long defaultDuration) {
+        Long duration = previousDurations.get(testClass.getTestClassName());
+        return duration == null ? defaultDuration : duration;
+    }
+
     @Override
     public void stop() {
         try {
+            processPendingTestClasses();
             CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
         } catch (DispatchException e) {
             throw UncheckedException.throwAsUncheckedException(e.getCause());
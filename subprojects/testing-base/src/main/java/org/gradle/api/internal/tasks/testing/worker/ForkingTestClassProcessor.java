@@ -16,7 +16,9 @@
 
 package org.gradle.api.internal.tasks.testing.worker;
 
+import com.google.common.collect.Lists;
 import org.gradle.api.Action;
+import org.gradle.api.Nullable;
 import org.gradle.api.internal.classpath.ModuleRegistry;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
@@ -31,6 +33,8 @@ import org.gradle.util.CollectionUtils;
 
 import java.io.File;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 
 public class ForkingTestClassProcessor implements TestClassProcessor {
@@ -40,17 +44,27 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private final Iterable<File> classPath;
     private final Action<WorkerProcessBuilder> buildConfigAction;
     private final ModuleRegistry moduleRegistry;
+    private final TestWorkerPool workerPool;
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
+    private TestWorkerPool.PooledWorker pooledWorker;
     private TestResultProcessor resultProcessor;
 
     public ForkingTestClassProcessor(WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry) {
+        this(workerFactory, processorFactory, options, classPath, buildConfigAction, moduleRegistry, null);
+    }
+
+    /**
+     * @param workerPool The pool to take the worker from and to hand it back to when done, or null to fork a worker that is stopped when done.
+     */
+    public ForkingTestClassProcessor(WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry, @Nullable TestWorkerPool workerPool) {
         this.workerFactory = workerFactory;
         this.processorFactory = processorFactory;
         this.options = options;
         this.classPath = classPath;
         this.buildConfigAction = buildConfigAction;
         this.moduleRegistry = moduleRegistry;
+        this.workerPool = workerPool;
     }
 
     @Override
@@ -61,23 +75,14 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     @Override
     public void processTestClass(TestClassRunInfo testClass) {
         if (remoteProcessor == null) {
-            remoteProcessor = forkProcess();
+            remoteProcessor = workerPool == null ? forkProcess() : startPooledWorker();
         }
 
         remoteProcessor.processTestClass(testClass);
     }
 
     RemoteTestClassProcessor forkProcess() {
-        WorkerProcessBuilder builder = workerFactory.create(new TestWorker(processorFactory));
-        builder.setBaseName("Gradle Test Executor");
-        builder.setImplementationClasspath(getTestWorkerImplementationClasspath());
-        builder.applicationClasspath(classPath);
-        options.copyTo(builder.getJavaCommand());
-        builder.getJavaCommand().jvmArgs("-Dorg.gradle.native=false");
-        buildConfigAction.execute(builder);
-
-        workerProcess = builder.build();
-        workerProcess.start();
+        workerProcess = startWorkerProcess(new TestWorker(processorFactory));
 
         ObjectConnection connection = workerProcess.getConnection();
         connection.useParameterSerializers(TestEventSerializer.create());
@@ -88,6 +93,31 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         return remoteProcessor;
     }
 
+    private RemoteTestClassProcessor startPooledWorker() {
+        List<URL> implementationClasspath = getTestWorkerImplementationClasspath();
+        List<Object> key = Arrays.<Object>asList(options.getExecutable(), options.getWorkingDir(), new HashMap<String, Object>(options.getEnvironment()), options.getAllJvmArgs(),
+            Lists.newArrayList(classPath), implementationClasspath, processorFactory.getClass().getName());
+        pooledWorker = workerPool.reserveIdleWorker(key);
+        if (pooledWorker == null) {
+            pooledWorker = workerPool.add(key, startWorkerProcess(new TestWorker(processorFactory, true)));
+        }
+        return pooledWorker.startProcessing(processorFactory, resultProcessor);
+    }
+
+    private WorkerProcess startWorkerProcess(TestWorker testWorker) {
+        WorkerProcessBuilder builder = workerFactory.create(testWorker);
+        builder.setBaseName("Gradle Test Executor");
+        builder.setImplementationClasspath(getTestWorkerImplementationClasspath());
+        builder.applicationClasspath(classPath);
+        options.copyTo(builder.getJavaCommand());
+        builder.getJavaCommand().jvmArgs("-Dorg.gradle.native=false");
+        buildConfigAction.execute(builder);
+
+        WorkerProcess workerProcess = builder.build();
+        workerProcess.start();
+        return workerProcess;
+    }
+
     List<URL> getTestWorkerImplementationClasspath() {
         return CollectionUtils.flattenCollections(URL.class,
             moduleRegistry.getModule("gradle-core").getImplementationClasspath().getAsURLs(),
@@ -110,7 +140,9 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
 
     @Override
     public void stop() {
-        if (remoteProcessor != null) {
+        if (pooledWorker != null) {
+            workerPool.release(pooledWorker);
+        } else if (remoteProcessor != null) {
             remoteProcessor.stop();
             workerProcess.waitForStop();
         }
@@ -17,6 +17,7 @@
 package org.gradle.api.internal.tasks.testing.worker;
 
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 
 /**
  * @see org.gradle.api.internal.tasks.testing.TestClassProcessor
@@ -27,6 +28,11 @@ public interface RemoteTestClassProcessor {
      */
     void startProcessing();
 
+    /**
+     * Starts processing test classes using the given test framework, in a worker that is reused for several test tasks. Does not block.
+     */
+    void startProcessing(WorkerTestClassProcessorFactory factory);
+
     /**
      * Does not block.
      */
@@ -36,4 +42,9 @@ public interface RemoteTestClassProcessor {
      * Does not block.
      */
     void stop();
+
+    /**
+     * Stops a worker that is reused for several test tasks, once it has stopped processing test classes. Does not block.
+     */
+    void stopWorker();
 }
@@ -22,17 +22,28 @@ import org.gradle.api.tasks.testing.TestResult;
 import org.gradle.internal.id.CompositeIdGenerator;
 import org.gradle.internal.serialize.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The serializers for the messages between the build process and a test worker. A new registry is created for each connection, as the
+ * class and method names of the test descriptors are written only once per connection and referred to by their index afterwards.
+ */
 public class TestEventSerializer {
     public static SerializerRegistry create() {
         BaseSerializerFactory factory = new BaseSerializerFactory();
         DefaultSerializerRegistry registry = new DefaultSerializerRegistry();
+        NameSerializer classNameSerializer = new NameSerializer();
+        NameSerializer methodNameSerializer = new NameSerializer();
         registry.register(DefaultTestClassRunInfo.class, new DefaultTestClassRunInfoSerializer());
         registry.register(CompositeIdGenerator.CompositeId.class, new IdSerializer());
         registry.register(DefaultTestSuiteDescriptor.class, new DefaultTestSuiteDescriptorSerializer());
         registry.register(WorkerTestClassProcessor.WorkerTestSuiteDescriptor.class, new WorkerTestSuiteDescriptorSerializer());
-        registry.register(DefaultTestClassDescriptor.class, new DefaultTestClassDescriptorSerializer());
-        registry.register(DefaultTestMethodDescriptor.class, new DefaultTestMethodDescriptorSerializer());
-        registry.register(DefaultTestDescriptor.class, new DefaultTestDescriptorSerializer());
+        registry.register(DefaultTestClassDescriptor.class, new DefaultTestClassDescriptorSerializer(classNameSerializer));
+        registry.register(DefaultTestMethodDescriptor.class, new DefaultTestMethodDescriptorSerializer(classNameSerializer, methodNameSerializer));
+        registry.register(DefaultTestDescriptor.class, new DefaultTestDescriptorSerializer(classNameSerializer, methodNameSerializer));
         registry.register(TestStartEvent.class, new TestStartEventSerializer());
         registry.register(TestCompleteEvent.class, new TestCompleteEventSerializer());
         registry.register(DefaultTestOutputEvent.class, new DefaultTestOutputEventSerializer());
@@ -67,13 +78,49 @@ public class TestEventSerializer {
     private static class IdSerializer implements Serializer<CompositeIdGenerator.CompositeId> {
         @Override
         public CompositeIdGenerator.CompositeId read(Decoder decoder) throws Exception {
-            return new CompositeIdGenerator.CompositeId(decoder.readLong(), decoder.readLong());
+            return new CompositeIdGenerator.CompositeId(decoder.readSmallLong(), decoder.readSmallLong());
         }
 
         @Override
         public void write(Encoder encoder, CompositeIdGenerator.CompositeId value) throws Exception {
-            encoder.writeLong((Long) value.getScope());
-            encoder.writeLong((Long) value.getId());
+            encoder.writeSmallLong((Long) value.getScope());
+            encoder.writeSmallLong((Long) value.getId());
+        }
+    }
+
+    /**
+     * Writes each name in full the first time only, and as the index of the name afterwards. Relies on the messages of a connection
+     * being written and read in the same order, each on a single thread.
+     */
+    private static class NameSerializer implements Serializer<String> {
+        private final Map<String, Integer> writtenNames = new HashMap<String, Integer>();
+        private final List<String> readNames = new ArrayList<String>();
+
+        @Override
+        public String read(Decoder decoder) throws Exception {
+            synchronized (readNames) {
+                int index = decoder.readSmallInt();
+                if (index == 0) {
+                    String name = decoder.readString();
+                    readNames.add(name);
+                    return name;
+                }
+                return readNames.get(index - 1);
+            }
+        }
+
+        @Override
+        public void write(Encoder encoder, String value) throws Exception {
+            synchronized (writtenNames) {
+                Integer index = writtenNames.get(value);
+                if (index != null) {
+                    encoder.writeSmallInt(index);
+                    return;
+                }
+                writtenNames.put(value, writtenNames.size() + 1);
+                encoder.writeSmallInt(0);
+                encoder.writeString(value);
+            }
         }
     }
 
@@ -176,56 +223,75 @@ public class TestEventSerializer {
 
     private static class DefaultTestClassDescriptorSerializer implements Serializer<DefaultTestClassDescriptor> {
         final Serializer<CompositeIdGenerator.CompositeId> idSerializer = new IdSerializer();
+        final Serializer<String> classNameSerializer;
+
+        DefaultTestClassDescriptorSerializer(Serializer<String> classNameSerializer) {
+            this.classNameSerializer = classNameSerializer;
+        }
 
         @Override
         public DefaultTestClassDescriptor read(Decoder decoder) throws Exception {
             Object id = idSerializer.read(decoder);
-            String name = decoder.readString();
+            String name = classNameSerializer.read(decoder);
             return new DefaultTestClassDescriptor(id, name);
         }
 
         @Override
         public void write(Encoder encoder, DefaultTestClassDescriptor value) throws Exception {
             idSerializer.write(encoder, (CompositeIdGenerator.CompositeId) value.getId());
-            encoder.writeString(value.getName());
+            classNameSerializer.write(encoder, value.getName());
         }
     }
 
     private static class DefaultTestDescriptorSerializer implements Serializer<DefaultTestDescriptor> {
         final Serializer<CompositeIdGenerator.CompositeId> idSerializer = new IdSerializer();
+        final Serializer<String> classNameSerializer;
+        final Serializer<String> methodNameSerializer;
+
+        DefaultTestDescriptorSerializer(Serializer<String> classNameSerializer, Serializer<String> methodNameSerializer) {
+            this.classNameSerializer = classNameSerializer;
+            this.methodNameSerializer = methodNameSerializer;
+        }
 
         @Override
         public DefaultTestDescriptor read(Decoder decoder) throws Exception {
             Object id = idSerializer.read(decoder);
-            String className = decoder.readString();
-            String name = decoder.readString();
+            String className = classNameSerializer.read(decoder);
+            String name = methodNameSerializer.read(decoder);
             return new DefaultTestDescriptor(id, className, name);
         }
 
         @Override
         public void write(Encoder encoder, DefaultTestDescriptor value) throws Exception {
             idSerializer.write(encoder, (CompositeIdGenerator.CompositeId) value.getId());
-            encoder.writeString(value.getClassName());
-            encoder.writeString(value.getName());
+            classNameSerializer.write(encoder, value.getClassName());
+            methodNameSerializer.write(encoder, value.getName());
         }
     }
 
     private static class DefaultTestMethodDescriptorSerializer implements Serializer<DefaultTestMethodDescriptor> {
         final Serializer<CompositeIdGenerator.CompositeId> idSerializer = new IdSerializer();
+        final Serializer<String> classNameSerializer;
+        final Serializer<String> methodNameSerializer;
+
+        DefaultTestMethodDescriptorSerializer(Serializer<String> classNameSerializer, Serializer<String> methodNameSerializer) {
+            this.classNameSerializer = classNameSerializer;
+            this.methodNameSerializer = methodNameSerializer;
+        }
 
         @Override
         public DefaultTestMethodDescriptor read(Decoder decoder) throws Exception {
             Object id = idSerializer.read(decoder);
-            String className = decoder.readString();
-            String name = decoder.readString();
+            String className = classNameSerializer.read(decoder);
+            String name = methodNameSerializer.read(decoder);
             return new DefaultTestMethodDescriptor(id, className, name);
         }
 
         @Override
         public void write(Encoder encoder, DefaultTestMethodDescriptor value) throws Exception {
             idSerializer.write(encoder, (CompositeIdGenerator.CompositeId) value.getId());
-            encoder.writeString(value.getClassName());
-            encoder.writeString(value.getName());
+            classNameSerializer.write(encoder, value.getClassName());
+            methodNameSerializer.write(encoder, value.getName());
         }
     }
 }
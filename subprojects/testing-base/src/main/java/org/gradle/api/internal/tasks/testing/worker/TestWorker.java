@@ -21,11 +21,13 @@ import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.api.internal.tasks.testing.processors.BatchingTestOutputResultProcessor;
 import org.gradle.internal.time.TimeProvider;
 import org.gradle.internal.time.TrueTimeProvider;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.DefaultExecutorFactory;
 import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableScheduledExecutor;
 import org.gradle.internal.id.CompositeIdGenerator;
 import org.gradle.internal.id.IdGenerator;
 import org.gradle.internal.id.LongIdGenerator;
@@ -40,18 +42,38 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TimeZone;
 import java.util.concurrent.CountDownLatch;
 
 public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClassProcessor, Serializable {
     private static final Logger LOGGER = LoggerFactory.getLogger(TestWorker.class);
     public static final String WORKER_ID_SYS_PROPERTY = "org.gradle.test.worker";
     private final WorkerTestClassProcessorFactory factory;
+    private final boolean reusable;
     private CountDownLatch completed;
     private TestClassProcessor processor;
     private TestResultProcessor resultProcessor;
+    private StoppableScheduledExecutor outputFlushExecutor;
+    private BatchingTestOutputResultProcessor batchingResultProcessor;
+    private WorkerProcessContext workerProcessContext;
+    private ServiceRegistry testServices;
+    private Properties initialSystemProperties;
+    private Locale initialLocale;
+    private TimeZone initialTimeZone;
 
     public TestWorker(WorkerTestClassProcessorFactory factory) {
+        this(factory, false);
+    }
+
+    /**
+     * @param reusable Whether the worker is reused for several test tasks. Such a worker receives the test framework to use with each
+     * {@link #startProcessing(WorkerTestClassProcessorFactory)}, and keeps running until {@link #stopWorker()}.
+     */
+    public TestWorker(WorkerTestClassProcessorFactory factory, boolean reusable) {
         this.factory = factory;
+        this.reusable = reusable;
     }
 
     @Override
@@ -63,7 +85,16 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         System.setProperty(WORKER_ID_SYS_PROPERTY, workerProcessContext.getWorkerId().toString());
 
         DefaultServiceRegistry testServices = new TestFrameworkServiceRegistry(workerProcessContext);
-        startReceivingTests(workerProcessContext, testServices);
+        this.workerProcessContext = workerProcessContext;
+        this.testServices = testServices;
+        this.outputFlushExecutor = testServices.get(ExecutorFactory.class).createScheduled("Test output flusher", 1);
+        if (reusable) {
+            initialSystemProperties = new Properties();
+            initialSystemProperties.putAll(System.getProperties());
+            initialLocale = Locale.getDefault();
+            initialTimeZone = TimeZone.getDefault();
+        }
+        startReceivingTests(workerProcessContext);
 
         try {
             try {
@@ -79,7 +110,23 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         }
     }
 
-    private void startReceivingTests(WorkerProcessContext workerProcessContext, ServiceRegistry testServices) {
+    private void startReceivingTests(WorkerProcessContext workerProcessContext) {
+        if (!reusable) {
+            processor = createProcessor(factory);
+        }
+
+        ObjectConnection serverConnection = workerProcessContext.getServerConnection();
+        serverConnection.useParameterSerializers(TestEventSerializer.create());
+        if (reusable) {
+            this.resultProcessor = serverConnection.addOutgoing(TestWorkerResultProcessor.class);
+        } else {
+            this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
+        }
+        serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
+        serverConnection.connect();
+    }
+
+    private TestClassProcessor createProcessor(WorkerTestClassProcessorFactory factory) {
         TestClassProcessor targetProcessor = factory.create(testServices);
         IdGenerator<Object> idGenerator = testServices.get(IdGenerator.class);
 
@@ -87,19 +134,25 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
                 workerProcessContext.getDisplayName(), testServices.get(TimeProvider.class));
         ContextClassLoaderProxy<TestClassProcessor> proxy = new ContextClassLoaderProxy<TestClassProcessor>(
                 TestClassProcessor.class, targetProcessor, workerProcessContext.getApplicationClassLoader());
-        processor = proxy.getSource();
+        return proxy.getSource();
+    }
 
-        ObjectConnection serverConnection = workerProcessContext.getServerConnection();
-        serverConnection.useParameterSerializers(TestEventSerializer.create());
-        this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
-        serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
-        serverConnection.connect();
+    private TestResultProcessor createResultProcessor() {
+        batchingResultProcessor = new BatchingTestOutputResultProcessor(resultProcessor, outputFlushExecutor);
+        return batchingResultProcessor;
     }
 
     @Override
     public void startProcessing() {
         Thread.currentThread().setName("Test worker");
-        processor.startProcessing(resultProcessor);
+        processor.startProcessing(createResultProcessor());
+    }
+
+    @Override
+    public void startProcessing(WorkerTestClassProcessorFactory factory) {
+        Thread.currentThread().setName("Test worker");
+        processor = createProcessor(factory);
+        processor.startProcessing(createResultProcessor());
     }
 
     @Override
@@ -117,12 +170,48 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
     public void stop() {
         Thread.currentThread().setName("Test worker");
         try {
-            processor.stop();
+            try {
+                processor.stop();
+            } finally {
+                batchingResultProcessor.stop();
+            }
         } finally {
-            completed.countDown();
+            if (reusable) {
+                processor = null;
+                boolean canBeReused = false;
+                try {
+                    resetGlobalState();
+                    canBeReused = true;
+                } catch (RuntimeException e) {
+                    // For example, a security manager installed by the tests may not allow itself to be removed
+                    LOGGER.info("{} could not reset the global state changed by the tests, and will not be reused.", workerProcessContext.getDisplayName(), e);
+                } finally {
+                    // Always notify, as the pool waits for this notification
+                    ((TestWorkerResultProcessor) resultProcessor).stoppedProcessing(canBeReused);
+                }
+            } else {
+                completed.countDown();
+            }
         }
     }
 
+    @Override
+    public void stopWorker() {
+        completed.countDown();
+    }
+
+    /**
+     * Undoes the changes to global state that tests commonly make, so that they are not seen by the tests of the next test task.
+     */
+    private void resetGlobalState() {
+        System.setSecurityManager(null);
+        Properties systemProperties = new Properties();
+        systemProperties.putAll(initialSystemProperties);
+        System.setProperties(systemProperties);
+        Locale.setDefault(initialLocale);
+        TimeZone.setDefault(initialTimeZone);
+    }
+
     private static class TestFrameworkServiceRegistry extends DefaultServiceRegistry {
         private final WorkerProcessContext workerProcessContext;
 
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.Nullable;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.internal.remote.ObjectConnection;
+import org.gradle.process.internal.worker.WorkerProcess;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the forked test workers of a build between test tasks, so that the test tasks with the same fork options, classpath and test framework
+ * use the same worker processes instead of each forking workers of their own. A worker is handed out again once it has reported all results
+ * of the previous test task, and is discarded as soon as its process has stopped.
+ *
+ * <p>This is a narrow, opt-in optimization for builds with many test tasks that share the same test runtime classpath. It does not keep
+ * workers between builds, and does not swap the test runtime ClassLoader of a worker. The test classes are loaded by the system ClassLoader of
+ * a worker, so that a worker can only be reused for the same classpath. The workers are stopped at the end of the build, as the contents of the
+ * classpath may have changed by the next build.</p>
+ *
+ * <p>Between test tasks, a worker restores its system properties, security manager, default locale and time zone. Other static state of the
+ * test classes and the libraries they use is kept. A worker that could not restore its state, or that ran a test task with failures, is
+ * stopped instead of being reused.</p>
+ */
+public class TestWorkerPool implements Stoppable {
+    /**
+     * The system property that enables the reuse of test workers. The tests of the test tasks that share a worker also share its static state.
+     */
+    public static final String REUSE_WORKERS_PROPERTY = "org.gradle.testing.reuse-workers";
+
+    private static final Logger LOGGER = Logging.getLogger(TestWorkerPool.class);
+
+    private final StoppableExecutor executor;
+    private final int maxIdleWorkers;
+    private final Object lock = new Object();
+    private final List<PooledWorker> allWorkers = new ArrayList<PooledWorker>();
+    private final LinkedList<PooledWorker> idleWorkers = new LinkedList<PooledWorker>();
+
+    public TestWorkerPool(ExecutorFactory executorFactory, int maxIdleWorkers) {
+        this.executor = executorFactory.create("Test worker process watcher");
+        this.maxIdleWorkers = maxIdleWorkers;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(REUSE_WORKERS_PROPERTY);
+    }
+
+    /**
+     * Returns an idle worker with the given key, if there is one whose process is still running.
+     *
+     * @param key The fork options, classpath and test framework of the worker, compared using equals().
+     */
+    @Nullable
+    PooledWorker reserveIdleWorker(Object key) {
+        synchronized (lock) {
+            Iterator<PooledWorker> iterator = idleWorkers.iterator();
+            while (iterator.hasNext()) {
+                PooledWorker worker = iterator.next();
+                if (!worker.isRunning()) {
+                    iterator.remove();
+                    allWorkers.remove(worker);
+                } else if (worker.key.equals(key)) {
+                    iterator.remove();
+                    return worker;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Connects to a started worker process that runs a reusable {@link TestWorker}, and adds it to this pool.
+     */
+    PooledWorker add(Object key, WorkerProcess workerProcess) {
+        final PooledWorker worker = new PooledWorker(key, workerProcess);
+        ObjectConnection connection = workerProcess.getConnection();
+        connection.useParameterSerializers(TestEventSerializer.create());
+        connection.addIncoming(TestWorkerResultProcessor.class, worker);
+        worker.remoteProcessor = connection.addOutgoing(RemoteTestClassProcessor.class);
+        connection.connect();
+        synchronized (lock) {
+            allWorkers.add(worker);
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                worker.waitForStop();
+            }
+        });
+        return worker;
+    }
+
+    /**
+     * Stops the worker processing the test classes of a test task, and keeps it for another test task when its process is still running and it
+     * could reset its global state. Otherwise, the worker is stopped. Blocks until the worker has reported all results.
+     */
+    void release(PooledWorker worker) {
+        boolean reusable = worker.stopProcessing();
+        PooledWorker expired = null;
+        synchronized (lock) {
+            if (!reusable) {
+                allWorkers.remove(worker);
+                expired = worker;
+            } else {
+                idleWorkers.addFirst(worker);
+                if (idleWorkers.size() > maxIdleWorkers) {
+                    LOGGER.debug("Stopping idle test worker as there are more than {} idle test workers.", maxIdleWorkers);
+                    expired = idleWorkers.removeLast();
+                    allWorkers.remove(expired);
+                }
+            }
+        }
+        if (expired != null) {
+            expired.stopWorker();
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            LOGGER.debug("Stopping {} test worker(s).", allWorkers.size());
+            for (PooledWorker worker : allWorkers) {
+                worker.stopWorker();
+            }
+            allWorkers.clear();
+            idleWorkers.clear();
+        }
+        executor.stop();
+    }
+
+    static class PooledWorker implements TestWorkerResultProcessor {
+        private final Object key;
+        private final WorkerProcess workerProcess;
+        private final Lock lock = new ReentrantLock();
+        private final Condition condition = lock.newCondition();
+        private RemoteTestClassProcessor remoteProcessor;
+        private volatile TestResultProcessor resultProcessor;
+        private boolean processing;
+        private boolean reusable = true;
+        private volatile boolean failed;
+        private boolean stopped;
+        private Throwable failure;
+
+        PooledWorker(Object key, WorkerProcess workerProcess) {
+            this.key = key;
+            this.workerProcess = workerProcess;
+        }
+
+        /**
+         * Starts processing the test classes of a test task, which are sent to the returned processor.
+         */
+        RemoteTestClassProcessor startProcessing(WorkerTestClassProcessorFactory factory, TestResultProcessor resultProcessor) {
+            lock.lock();
+            try {
+                this.resultProcessor = resultProcessor;
+                processing = true;
+                failed = false;
+            } finally {
+                lock.unlock();
+            }
+            remoteProcessor.startProcessing(factory);
+            return remoteProcessor;
+        }
+
+        /**
+         * Returns true when the worker has reported all results, is still running, reported no failures and can be reused, or rethrows the
+         * failure of its process.
+         */
+        private boolean stopProcessing() {
+            remoteProcessor.stop();
+            lock.lock();
+            try {
+                while (processing && !stopped) {
+                    try {
+                        condition.await();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                }
+                if (failure != null) {
+                    throw UncheckedException.throwAsUncheckedException(failure);
+                }
+                // A failure may have left state behind that affects the tests of the next test task
+                return !stopped && reusable && !failed;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean isRunning() {
+            lock.lock();
+            try {
+                return !stopped;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void stopWorker() {
+            if (!isRunning()) {
+                return;
+            }
+            try {
+                remoteProcessor.stopWorker();
+            } catch (Exception e) {
+                // The process may have stopped in the meantime
+                LOGGER.debug("Could not stop test worker.", e);
+            }
+        }
+
+        private void waitForStop() {
+            Throwable processFailure = null;
+            try {
+                workerProcess.waitForStop();
+            } catch (Throwable t) {
+                processFailure = t;
+            }
+            lock.lock();
+            try {
+                stopped = true;
+                if (processing) {
+                    failure = processFailure;
+                } else if (processFailure != null) {
+                    LOGGER.debug("Idle test worker failed.", processFailure);
+                }
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void stoppedProcessing(boolean reusable) {
+            lock.lock();
+            try {
+                processing = false;
+                this.reusable = reusable;
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            resultProcessor.started(test, event);
+        }
+
+        @Override
+        public void completed(Object testId, TestCompleteEvent event) {
+            resultProcessor.completed(testId, event);
+        }
+
+        @Override
+        public void output(Object testId, TestOutputEvent event) {
+            resultProcessor.output(testId, event);
+        }
+
+        @Override
+        public void failure(Object testId, Throwable result) {
+            failed = true;
+            resultProcessor.failure(testId, result);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+
+/**
+ * The results of a worker that is reused for several test tasks. The notification that the worker has stopped processing the test classes
+ * of a test task is sent through the same connection as the results, so that it is received after all results of the test task.
+ */
+public interface TestWorkerResultProcessor extends TestResultProcessor {
+    /**
+     * Notifies this processor that the worker has stopped processing test classes.
+     *
+     * @param reusable Whether the worker can be used for another test task. A worker that could not undo the changes made by the tests to its
+     * global state cannot.
+     */
+    void stoppedProcessing(boolean reusable);
+}
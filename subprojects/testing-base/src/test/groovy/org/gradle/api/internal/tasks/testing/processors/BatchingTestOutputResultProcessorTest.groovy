@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.internal.tasks.testing.*
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdErr
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdOut
+
+class BatchingTestOutputResultProcessorTest extends Specification {
+
+    TestResultProcessor target = Mock()
+    ScheduledExecutorService executor = Mock()
+    @Subject processor = new BatchingTestOutputResultProcessor(target, executor, 10, 50)
+
+    def "joins consecutive output of the same test and destination"() {
+        def complete = new TestCompleteEvent(1)
+
+        when:
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "a"))
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "b"))
+        processor.output("1", new DefaultTestOutputEvent(StdErr, "c"))
+        processor.output("2", new DefaultTestOutputEvent(StdErr, "d"))
+        processor.completed("1", complete)
+
+        then: 1 * target.output("1", { it.destination == StdOut && it.message == "ab" })
+        then: 1 * target.output("1", { it.destination == StdErr && it.message == "c" })
+        then: 1 * target.output("2", { it.destination == StdErr && it.message == "d" })
+        then: 1 * target.completed("1", complete)
+        0 * target._
+    }
+
+    def "forwards output before any other event"() {
+        def test = new DefaultTestDescriptor("2", "Foo", "bar")
+        def start = new TestStartEvent(1)
+        def failure = new RuntimeException()
+
+        when:
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "a"))
+        processor.started(test, start)
+        processor.output("2", new DefaultTestOutputEvent(StdOut, "b"))
+        processor.failure("2", failure)
+
+        then: 1 * target.output("1", { it.message == "a" })
+        then: 1 * target.started(test, start)
+        then: 1 * target.output("2", { it.message == "b" })
+        then: 1 * target.failure("2", failure)
+        0 * target._
+    }
+
+    def "forwards output once it reaches the maximum size"() {
+        when:
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "12345"))
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "67890"))
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "1"))
+
+        then:
+        1 * target.output("1", { it.message == "1234567890" })
+        0 * target._
+
+        when:
+        processor.stop()
+
+        then:
+        1 * target.output("1", { it.message == "1" })
+        0 * target._
+    }
+
+    def "forwards output a while after it was written"() {
+        Runnable flush = null
+
+        when:
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "a"))
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "b"))
+
+        then:
+        1 * executor.schedule(_, 50, TimeUnit.MILLISECONDS) >> { Runnable action, long delay, TimeUnit unit -> flush = action; null }
+        0 * target._
+
+        when:
+        flush.run()
+
+        then:
+        1 * target.output("1", { it.message == "ab" })
+        0 * target._
+
+        when:
+        flush.run()
+
+        then:
+        0 * target._
+    }
+}
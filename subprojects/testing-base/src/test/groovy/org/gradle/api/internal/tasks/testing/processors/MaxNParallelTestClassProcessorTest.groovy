@@ -167,4 +167,54 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         then:
         1 * asyncProcessor2.processTestClass(test)
     }
+
+    def assignsTestClassesLongestFirstToLeastBusyProcessorWhenDurationsAreKnown() {
+        def balancingProcessor = new MaxNParallelTestClassProcessor(2, factory, actorFactory, [A: 10L, B: 6L, C: 5L, D: 4L])
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor processor2 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+        Actor actor1 = Mock()
+        Actor actor2 = Mock()
+        def tests = ["D", "C", "E", "B", "A"].collectEntries { name -> [name, Stub(TestClassRunInfo) { getTestClassName() >> name }] }
+
+        1 * actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        1 * resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        balancingProcessor.startProcessing(resultProcessor)
+
+        when:
+        tests.values().each { balancingProcessor.processTestClass(it) }
+
+        then:
+        0 * factory.create()
+
+        when:
+        balancingProcessor.stop()
+
+        then:
+        2 * factory.create() >>> [processor1, processor2]
+        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actorFactory.createActor(processor2) >> actor2
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+
+        then:
+        1 * asyncProcessor1.processTestClass(tests.A)
+
+        then:
+        1 * asyncProcessor2.processTestClass(tests.E)
+
+        then:
+        1 * asyncProcessor2.processTestClass(tests.B)
+
+        then:
+        1 * asyncProcessor1.processTestClass(tests.C)
+
+        then:
+        1 * asyncProcessor2.processTestClass(tests.D)
+
+        then:
+        1 * asyncProcessor1.stop()
+        1 * asyncProcessor2.stop()
+    }
 }
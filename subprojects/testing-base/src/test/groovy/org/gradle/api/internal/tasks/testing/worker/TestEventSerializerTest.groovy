@@ -115,6 +115,31 @@ class TestEventSerializerTest extends SerializerSpec {
         result.name == "some-test"
     }
 
+    def "writes the class and method names of a descriptor in full only once"() {
+        def descriptor1 = new DefaultTestMethodDescriptor(new CompositeIdGenerator.CompositeId(1L, 2L), "some-class", "some-test")
+        def descriptor2 = new DefaultTestMethodDescriptor(new CompositeIdGenerator.CompositeId(1L, 3L), "some-class", "some-test")
+        def descriptor3 = new DefaultTestClassDescriptor(new CompositeIdGenerator.CompositeId(1L, 4L), "other-class")
+        def methodSerializer = serializer.build(DefaultTestMethodDescriptor)
+        def classSerializer = serializer.build(DefaultTestClassDescriptor)
+
+        when:
+        def bytes1 = toBytes(descriptor1, methodSerializer)
+        def bytes2 = toBytes(descriptor2, methodSerializer)
+        def bytes3 = toBytes(descriptor3, classSerializer)
+        def result1 = fromBytes(bytes1, methodSerializer)
+        def result2 = fromBytes(bytes2, methodSerializer)
+        def result3 = fromBytes(bytes3, classSerializer)
+
+        then:
+        // The id, and the indexes of the class and method names
+        bytes2.length == 4
+        result1.className == "some-class"
+        result2.id == descriptor2.id
+        result2.className == "some-class"
+        result2.name == "some-test"
+        result3.name == "other-class"
+    }
+
     def "serializes TestStartEvent"() {
         def id = new CompositeIdGenerator.CompositeId(1L, 2L)
         def event1 = new TestStartEvent(123L, id)
@@ -71,4 +71,43 @@ public class TestWorkerTest extends ConcurrentSpec {
         1 * processor.processTestClass(test)
         1 * processor.stop()
     }
+
+    def reusableWorkerReportsEndOfProcessingAndBlocksUntilStopped() {
+        def reusableWorker = new TestWorker(null, true)
+        def workerResultProcessor = Mock(TestWorkerResultProcessor)
+
+        when:
+        async {
+            reusableWorker.execute(workerContext)
+            instant.completed
+        }
+
+        then:
+        instant.completed > instant.workerStopped
+        instant.workerStopped > instant.processingStopped
+
+        and:
+        1 * connection.addOutgoing(TestWorkerResultProcessor) >> workerResultProcessor
+        1 * connection.addIncoming(RemoteTestClassProcessor, reusableWorker)
+        1 * connection.useParameterSerializers(_)
+        1 * connection.connect() >> {
+            start {
+                reusableWorker.startProcessing(factory)
+                reusableWorker.processTestClass(test)
+                System.setProperty("org.gradle.test.changed", "true")
+                reusableWorker.stop()
+                assert System.getProperty("org.gradle.test.changed") == null
+                instant.processingStopped
+                thread.block()
+                instant.workerStopped
+                reusableWorker.stopWorker()
+            }
+        }
+        1 * factory.create(_) >> processor
+        1 * processor.startProcessing(_)
+        1 * processor.processTestClass(test)
+        1 * processor.stop()
+        1 * workerResultProcessor.stoppedProcessing(true)
+        0 * connection.addOutgoing(TestResultProcessor)
+    }
 }
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.gradle.api.Action;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.FileVisitor;
+import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
+import org.gradle.api.internal.hash.FileHasher;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassFilesAnalyzer;
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysis;
+import org.gradle.api.internal.tasks.compile.incremental.deps.DependentsSet;
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestFailure;
+import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestOutputStore;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultSerializer;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.FlushableEncoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.internal.time.Timer;
+import org.gradle.internal.time.Timers;
+import org.gradle.util.GFileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Skips the test classes that are not affected by the changes to the test runtime classpath since the previous run of a test task, and replays their
+ * results from that run into the results of the current run.
+ *
+ * <p>The class files in the directories of the classpath are tracked one by one. A test class is affected when its own class file has changed, or
+ * when it depends on a changed class, directly or transitively, according to the class dependency analysis of incremental Java compilation. Any other
+ * change to the classpath, such as a change to a jar or to a resource, affects all test classes. So does a change to the context of the run, such as the
+ * JVM arguments, the environment variables or the test framework options. Test classes that had failures in the previous run are always run again.</p>
+ *
+ * <p>Dependencies that are not visible in the class files, such as the use of a class through reflection, dependency injection or a service loader, and files
+ * read by the tests from outside the classpath, are not tracked.</p>
+ *
+ * <p>The hashes of the class files are kept in the binary results directory of the test task, next to the results they belong to.</p>
+ */
+public class TestClassAvoidance {
+    private static final Logger LOGGER = Logging.getLogger(TestClassAvoidance.class);
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "class-hashes.bin";
+
+    private final String context;
+    private final HashCode classpathHash;
+    private final Map<String, HashCode> classHashes;
+    private final Set<String> affectedClasses;
+    private final Map<String, TestClassResult> previousResults;
+    private final File previousResultsDir;
+    private final Set<String> skippedClasses = new LinkedHashSet<String>();
+
+    private TestClassAvoidance(String context, HashCode classpathHash, Map<String, HashCode> classHashes, Set<String> affectedClasses, Map<String, TestClassResult> previousResults, File previousResultsDir) {
+        this.context = context;
+        this.classpathHash = classpathHash;
+        this.classHashes = classHashes;
+        this.affectedClasses = affectedClasses;
+        this.previousResults = previousResults;
+        this.previousResultsDir = previousResultsDir;
+    }
+
+    /**
+     * Determines the test classes affected by the changes since the previous run, whose results are in the given binary results directory. Must be
+     * called before the binary results directory is cleaned, as the results and output of the previous run are moved to the given temporary directory.
+     *
+     * @param context Anything other than the classpath that the results of the test classes depend on.
+     */
+    public static TestClassAvoidance prepare(File binaryResultsDir, File temporaryDir, String context, Iterable<File> classpath, DirectoryFileTreeFactory directoryFileTreeFactory,
+                                             FileHasher fileHasher, ClassDependenciesAnalyzer analyzer, BuildOperationExecutor buildOperationExecutor) {
+        Timer clock = Timers.startTimer();
+        final Hasher classpathHasher = Hashing.md5().newHasher();
+        final Map<String, HashCode> classHashes = new HashMap<String, HashCode>();
+        for (File file : classpath) {
+            putString(classpathHasher, file.getAbsolutePath());
+            if (file.isFile()) {
+                classpathHasher.putBytes(fileHasher.hash(file).asBytes());
+            } else if (file.isDirectory()) {
+                hashDirectory(file, directoryFileTreeFactory, fileHasher, classpathHasher, classHashes);
+            }
+        }
+        HashCode classpathHash = classpathHasher.hash();
+
+        File previousResultsDir = new File(temporaryDir, "previous-results");
+        GFileUtils.deleteDirectory(previousResultsDir);
+        Map<String, HashCode> previousClassHashes = readPreviousClassHashes(binaryResultsDir, context, classpathHash);
+        if (previousClassHashes == null) {
+            return new TestClassAvoidance(context, classpathHash, classHashes, null, Collections.<String, TestClassResult>emptyMap(), previousResultsDir);
+        }
+
+        Set<String> changedClasses = new HashSet<String>();
+        for (Map.Entry<String, HashCode> entry : classHashes.entrySet()) {
+            if (!entry.getValue().equals(previousClassHashes.get(entry.getKey()))) {
+                changedClasses.add(entry.getKey());
+            }
+        }
+        for (String className : previousClassHashes.keySet()) {
+            if (!classHashes.containsKey(className)) {
+                changedClasses.add(className);
+            }
+        }
+        Set<String> affectedClasses = changedClasses.isEmpty() ? Collections.<String>emptySet()
+            : findAffectedClasses(changedClasses, classpath, directoryFileTreeFactory, fileHasher, analyzer, buildOperationExecutor);
+        Map<String, TestClassResult> previousResults = affectedClasses == null ? Collections.<String, TestClassResult>emptyMap()
+            : movePreviousResults(binaryResultsDir, previousResultsDir);
+        LOGGER.info("Found {} changed classes on the test runtime classpath, determining the affected test classes took {}.", changedClasses.size(), clock.getElapsed());
+        return new TestClassAvoidance(context, classpathHash, classHashes, affectedClasses, previousResults, previousResultsDir);
+    }
+
+    private static void hashDirectory(File dir, DirectoryFileTreeFactory directoryFileTreeFactory, final FileHasher fileHasher, final Hasher classpathHasher, final Map<String, HashCode> classHashes) {
+        directoryFileTreeFactory.create(dir).visit(new FileVisitor() {
+            @Override
+            public void visitDir(FileVisitDetails dirDetails) {
+            }
+
+            @Override
+            public void visitFile(FileVisitDetails fileDetails) {
+                String path = fileDetails.getRelativePath().getPathString();
+                HashCode hash = fileHasher.hash(fileDetails);
+                if (path.endsWith(".class")) {
+                    String className = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+                    // A class that is found earlier on the classpath shadows this one
+                    if (!classHashes.containsKey(className)) {
+                        classHashes.put(className, hash);
+                    }
+                } else {
+                    putString(classpathHasher, path);
+                    classpathHasher.putBytes(hash.asBytes());
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the top level classes that are, or that contain classes that are, affected by the given changed classes, or null when all classes are affected.
+     */
+    private static Set<String> findAffectedClasses(Set<String> changedClasses, Iterable<File> classpath, DirectoryFileTreeFactory directoryFileTreeFactory,
+                                                   FileHasher fileHasher, ClassDependenciesAnalyzer analyzer, BuildOperationExecutor buildOperationExecutor) {
+        ClassFilesAnalyzer classFilesAnalyzer = new ClassFilesAnalyzer(analyzer, fileHasher, buildOperationExecutor);
+        for (File file : classpath) {
+            if (file.isDirectory()) {
+                directoryFileTreeFactory.create(file).visit(classFilesAnalyzer);
+            }
+        }
+        ClassSetAnalysis analysis = new ClassSetAnalysis(classFilesAnalyzer.getAnalysis());
+        Set<String> affectedClasses = new HashSet<String>();
+        for (String changedClass : changedClasses) {
+            DependentsSet dependents = analysis.getRelevantDependents(changedClass, Collections.<Integer>emptySet());
+            if (dependents.isDependencyToAll()) {
+                LOGGER.info("All test classes are affected by the change to {}.", changedClass);
+                return null;
+            }
+            affectedClasses.add(topLevelClassName(changedClass));
+            for (String dependent : dependents.getDependentClasses()) {
+                affectedClasses.add(topLevelClassName(dependent));
+            }
+        }
+        return affectedClasses;
+    }
+
+    private static String topLevelClassName(String className) {
+        int index = className.indexOf('$');
+        return index < 0 ? className : className.substring(0, index);
+    }
+
+    private static Map<String, HashCode> readPreviousClassHashes(File binaryResultsDir, String context, HashCode classpathHash) {
+        File hashesFile = new File(binaryResultsDir, FILE_NAME);
+        if (!hashesFile.isFile()) {
+            return null;
+        }
+        try {
+            InputStream inputStream = new FileInputStream(hashesFile);
+            try {
+                Decoder decoder = new KryoBackedDecoder(inputStream);
+                if (decoder.readSmallInt() != VERSION || !decoder.readString().equals(context)) {
+                    return null;
+                }
+                if (!HashCode.fromBytes(decoder.readBinary()).equals(classpathHash)) {
+                    LOGGER.info("All test classes are affected by the changes to the jars or resources on the test runtime classpath.");
+                    return null;
+                }
+                int count = decoder.readSmallInt();
+                Map<String, HashCode> classHashes = new HashMap<String, HashCode>(count);
+                for (int i = 0; i < count; i++) {
+                    String className = decoder.readString();
+                    classHashes.put(className, HashCode.fromBytes(decoder.readBinary()));
+                }
+                return classHashes;
+            } finally {
+                inputStream.close();
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Could not read class hashes from {}.", hashesFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the results of the previous run of the test classes that had no failures, and moves the output of the previous run out of the binary results directory.
+     */
+    private static Map<String, TestClassResult> movePreviousResults(File binaryResultsDir, File previousResultsDir) {
+        final Map<String, TestClassResult> previousResults = new HashMap<String, TestClassResult>();
+        try {
+            new TestResultSerializer(binaryResultsDir).read(new Action<TestClassResult>() {
+                @Override
+                public void execute(TestClassResult result) {
+                    if (result.getFailuresCount() == 0) {
+                        previousResults.put(result.getClassName(), result);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            LOGGER.info("Could not read the test results of the previous run from {}.", binaryResultsDir, e);
+            return Collections.emptyMap();
+        }
+        GFileUtils.mkdirs(previousResultsDir);
+        TestOutputStore outputStore = new TestOutputStore(binaryResultsDir);
+        for (File file : new File[]{outputStore.getOutputsFile(), outputStore.getIndexFile()}) {
+            if (file.isFile() && !file.renameTo(new File(previousResultsDir, file.getName()))) {
+                LOGGER.info("Could not move the test output of the previous run from {}.", file);
+                return Collections.emptyMap();
+            }
+        }
+        return previousResults;
+    }
+
+    /**
+     * Returns true when the given test class needs to run. Otherwise the test class is remembered, so that its results can be replayed by {@link #replaySkippedTestClasses(Map, TestOutputStore.Writer)}.
+     */
+    public boolean shouldRun(String testClassName) {
+        if (affectedClasses == null || affectedClasses.contains(topLevelClassName(testClassName)) || !previousResults.containsKey(testClassName)) {
+            return true;
+        }
+        synchronized (skippedClasses) {
+            skippedClasses.add(testClassName);
+        }
+        return false;
+    }
+
+    /**
+     * Adds the results and output of the previous run of the skipped test classes to the results of the current run.
+     *
+     * @return The number of test classes whose results were replayed.
+     */
+    public int replaySkippedTestClasses(Map<String, TestClassResult> results, TestOutputStore.Writer outputWriter) {
+        Set<String> replayedClasses;
+        synchronized (skippedClasses) {
+            replayedClasses = new LinkedHashSet<String>(skippedClasses);
+        }
+        replayedClasses.removeAll(results.keySet());
+        if (replayedClasses.isEmpty()) {
+            return 0;
+        }
+
+        // The results of the current run and of the previous run are both numbered from 1, so give the replayed results ids that are not used yet
+        long nextId = 1;
+        for (TestClassResult result : results.values()) {
+            nextId = Math.max(nextId, result.getId() + 1);
+            for (TestMethodResult methodResult : result.getResults()) {
+                nextId = Math.max(nextId, methodResult.getId() + 1);
+            }
+        }
+
+        TestOutputStore.Reader outputReader = new TestOutputStore(previousResultsDir).reader();
+        try {
+            for (String className : replayedClasses) {
+                TestClassResult previousResult = previousResults.get(className);
+                TestClassResult result = new TestClassResult(nextId++, className, previousResult.getStartTime());
+                copyOutput(outputReader, previousResult.getId(), 0, outputWriter, result.getId(), 0);
+                for (TestMethodResult previousMethodResult : previousResult.getResults()) {
+                    TestMethodResult methodResult = new TestMethodResult(nextId++, previousMethodResult.getName(), previousMethodResult.getResultType(),
+                        previousMethodResult.getDuration(), previousMethodResult.getEndTime());
+                    for (TestFailure failure : previousMethodResult.getFailures()) {
+                        methodResult.addFailure(failure.getMessage(), failure.getStackTrace(), failure.getExceptionType());
+                    }
+                    result.add(methodResult);
+                    copyOutput(outputReader, previousResult.getId(), previousMethodResult.getId(), outputWriter, result.getId(), methodResult.getId());
+                }
+                results.put(className, result);
+            }
+        } finally {
+            try {
+                outputReader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return replayedClasses.size();
+    }
+
+    private static void copyOutput(TestOutputStore.Reader outputReader, long previousClassId, long previousTestId, TestOutputStore.Writer outputWriter, long classId, long testId) {
+        for (TestOutputEvent.Destination destination : TestOutputEvent.Destination.values()) {
+            if (!outputReader.hasOutput(previousClassId, destination)) {
+                continue;
+            }
+            StringWriter output = new StringWriter();
+            if (previousTestId == 0) {
+                outputReader.writeNonTestOutput(previousClassId, destination, output);
+            } else {
+                outputReader.writeTestOutput(previousClassId, previousTestId, destination, output);
+            }
+            if (output.getBuffer().length() > 0) {
+                outputWriter.onOutput(classId, testId, new DefaultTestOutputEvent(destination, output.toString()));
+            }
+        }
+    }
+
+    /**
+     * Writes the hashes of the classes on the classpath to the binary results directory, once the results of the current run have been written to it.
+     */
+    public void store(File binaryResultsDir) {
+        try {
+            OutputStream outputStream = new FileOutputStream(new File(binaryResultsDir, FILE_NAME));
+            try {
+                FlushableEncoder encoder = new KryoBackedEncoder(outputStream);
+                encoder.writeSmallInt(VERSION);
+                encoder.writeString(context);
+                encoder.writeBinary(classpathHash.asBytes());
+                encoder.writeSmallInt(classHashes.size());
+                for (Map.Entry<String, HashCode> entry : classHashes.entrySet()) {
+                    encoder.writeString(entry.getKey());
+                    encoder.writeBinary(entry.getValue().asBytes());
+                }
+                encoder.flush();
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        GFileUtils.deleteDirectory(previousResultsDir);
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        hasher.putInt(value.length());
+        hasher.putUnencodedChars(value);
+    }
+}
@@ -29,6 +29,7 @@ import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.progress.BuildOperationDescriptor;
 import org.gradle.internal.time.Timer;
 import org.gradle.internal.time.Timers;
+import org.gradle.util.GradleVersion;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -39,6 +40,8 @@ public class Binary2JUnitXmlReportGenerator {
     private final TestResultsProvider testResultsProvider;
     private JUnitXmlResultWriter xmlWriter;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final String hostName;
+    private final TestOutputAssociation outputAssociation;
     private final static Logger LOG = Logging.getLogger(Binary2JUnitXmlReportGenerator.class);
 
     public Binary2JUnitXmlReportGenerator(File testResultsDir, TestResultsProvider testResultsProvider, TestOutputAssociation outputAssociation, BuildOperationExecutor buildOperationExecutor, String hostName) {
@@ -46,22 +49,28 @@ public class Binary2JUnitXmlReportGenerator {
         this.testResultsProvider = testResultsProvider;
         this.xmlWriter = new JUnitXmlResultWriter(hostName, testResultsProvider, outputAssociation);
         this.buildOperationExecutor = buildOperationExecutor;
+        this.hostName = hostName;
+        this.outputAssociation = outputAssociation;
     }
 
     public void generate() {
         Timer clock = Timers.startTimer();
 
+        final TestClassResultHashes hashes = TestClassResultHashes.load(testResultsDir, GradleVersion.current().getVersion() + ":" + hostName + ":" + outputAssociation);
         buildOperationExecutor.runAll(new Action<BuildOperationQueue<JUnitXmlReportFileGenerator>>() {
             @Override
             public void execute(final BuildOperationQueue<JUnitXmlReportFileGenerator> queue) {
                 testResultsProvider.visitClasses(new Action<TestClassResult>() {
                     public void execute(final TestClassResult result) {
-                        final File reportFile = new File(testResultsDir, getReportFileName(result));
-                        queue.add(new JUnitXmlReportFileGenerator(result, reportFile, xmlWriter));
+                        String reportFileName = getReportFileName(result);
+                        if (!hashes.add(reportFileName, result)) {
+                            queue.add(new JUnitXmlReportFileGenerator(result, new File(testResultsDir, reportFileName), xmlWriter));
+                        }
                     }
                 });
             }
         });
+        hashes.store();
 
         LOG.info("Finished generating test XML results ({}) into: {}", clock.getElapsed(), testResultsDir);
     }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit.result;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.FlushableEncoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The hashes of the test class results that the files of a report were generated from, so that the file of a class is only generated again
+ * when the results of the class have changed. This is mostly useful for reports that aggregate the results of several test tasks, where
+ * only some of the tasks have run again.
+ *
+ * <p>The hashes are kept in a file in the report directory. The file is removed while the report is generated, and written again once all
+ * files of the report have been generated.</p>
+ */
+public class TestClassResultHashes {
+    private static final Logger LOG = Logging.getLogger(TestClassResultHashes.class);
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = ".test-class-hashes.bin";
+
+    private final File reportDir;
+    private final String context;
+    private final Map<String, HashCode> previousHashes;
+    private final Map<String, HashCode> hashes = new HashMap<String, HashCode>();
+
+    private TestClassResultHashes(File reportDir, String context, Map<String, HashCode> previousHashes) {
+        this.reportDir = reportDir;
+        this.context = context;
+        this.previousHashes = previousHashes;
+    }
+
+    /**
+     * Loads the hashes that the report in the given directory was last generated from.
+     *
+     * @param context Anything other than the class results that the files of the report depend on. The previous hashes are discarded when this has changed.
+     */
+    public static TestClassResultHashes load(File reportDir, String context) {
+        File hashesFile = new File(reportDir, FILE_NAME);
+        Map<String, HashCode> previousHashes = Collections.emptyMap();
+        if (hashesFile.isFile()) {
+            try {
+                previousHashes = read(hashesFile, context);
+            } catch (Exception e) {
+                LOG.debug("Could not read test class hashes from {}.", hashesFile, e);
+            }
+            if (!hashesFile.delete()) {
+                throw new UncheckedIOException(String.format("Could not delete file '%s'.", hashesFile));
+            }
+        }
+        return new TestClassResultHashes(reportDir, context, previousHashes);
+    }
+
+    /**
+     * Adds the given class result to the hash of the given report file.
+     *
+     * @return true when the report file exists and was generated from the same class results as now.
+     */
+    public boolean add(String fileName, TestClassResult result) {
+        HashCode hash = hash(result);
+        HashCode otherHash = hashes.get(fileName);
+        if (otherHash != null) {
+            hash = Hashing.combineOrdered(Arrays.asList(otherHash, hash));
+        }
+        hashes.put(fileName, hash);
+        return isUpToDate(fileName);
+    }
+
+    /**
+     * Returns true when the given report file exists and was generated from the same class results as have been added for it.
+     */
+    public boolean isUpToDate(String fileName) {
+        HashCode hash = hashes.get(fileName);
+        return hash != null && hash.equals(previousHashes.get(fileName)) && new File(reportDir, fileName).isFile();
+    }
+
+    /**
+     * Writes the hashes of the class results that have been added, once the files of the report have been generated from them.
+     */
+    public void store() {
+        if (hashes.isEmpty()) {
+            return;
+        }
+        try {
+            OutputStream outputStream = new FileOutputStream(new File(reportDir, FILE_NAME));
+            try {
+                FlushableEncoder encoder = new KryoBackedEncoder(outputStream);
+                encoder.writeSmallInt(VERSION);
+                encoder.writeString(context);
+                encoder.writeSmallInt(hashes.size());
+                for (Map.Entry<String, HashCode> entry : hashes.entrySet()) {
+                    encoder.writeString(entry.getKey());
+                    encoder.writeBinary(entry.getValue().asBytes());
+                }
+                encoder.flush();
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, HashCode> read(File hashesFile, String context) throws IOException {
+        InputStream inputStream = new FileInputStream(hashesFile);
+        try {
+            Decoder decoder = new KryoBackedDecoder(inputStream);
+            if (decoder.readSmallInt() != VERSION || !decoder.readString().equals(context)) {
+                return Collections.emptyMap();
+            }
+            int count = decoder.readSmallInt();
+            Map<String, HashCode> hashes = new HashMap<String, HashCode>(count);
+            for (int i = 0; i < count; i++) {
+                String fileName = decoder.readString();
+                hashes.put(fileName, HashCode.fromBytes(decoder.readBinary()));
+            }
+            return hashes;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Hashes everything about a class result that ends up in a report. The start time and the durations of a class change whenever its tests
+     * run again, so the hash of the results also stands for the output of the class, which is not hashed.
+     */
+    private static HashCode hash(TestClassResult result) {
+        Hasher hasher = Hashing.md5().newHasher();
+        putString(hasher, result.getClassName());
+        hasher.putLong(result.getStartTime());
+        hasher.putInt(result.getResults().size());
+        for (TestMethodResult methodResult : result.getResults()) {
+            putString(hasher, methodResult.getName());
+            TestResult.ResultType resultType = methodResult.getResultType();
+            hasher.putInt(resultType == null ? -1 : resultType.ordinal());
+            hasher.putLong(methodResult.getDuration());
+            hasher.putLong(methodResult.getEndTime());
+            hasher.putInt(methodResult.getFailures().size());
+            for (TestFailure failure : methodResult.getFailures()) {
+                putNullable(hasher, failure.getExceptionType());
+                putNullable(hasher, failure.getMessage());
+                putNullable(hasher, failure.getStackTrace());
+            }
+        }
+        return hasher.hash();
+    }
+
+    private static void putNullable(Hasher hasher, String value) {
+        hasher.putBoolean(value != null);
+        if (value != null) {
+            putString(hasher, value);
+        }
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        hasher.putInt(value.length());
+        hasher.putUnencodedChars(value);
+    }
+}
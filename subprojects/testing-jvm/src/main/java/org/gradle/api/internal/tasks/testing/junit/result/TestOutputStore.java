@@ -27,25 +27,32 @@ import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class TestOutputStore {
+    private static final int BUFFER_SIZE = 8192;
 
     private final File resultsDir;
     private final Charset messageStorageCharset;
+    private final Object indexLock = new Object();
+    private Index sharedIndex;
 
     public TestOutputStore(File resultsDir) {
         this.resultsDir = resultsDir;
         this.messageStorageCharset = Charset.forName("UTF-8");
     }
 
-    File getOutputsFile() {
+    public File getOutputsFile() {
         return new File(resultsDir, "output.bin");
     }
 
-    File getIndexFile() {
+    public File getIndexFile() {
         return new File(resultsDir, getOutputsFile().getName() + ".idx");
     }
 
@@ -86,6 +93,9 @@ public class TestOutputStore {
         public void close() {
             output.close();
             writeIndex();
+            synchronized (indexLock) {
+                sharedIndex = null;
+            }
         }
 
         public void onOutput(long classId, TestOutputEvent outputEvent) {
@@ -217,9 +227,59 @@ public class TestOutputStore {
         }
     }
 
+    /**
+     * Returns the index of the outputs file, which is read on first use. The index is shared by all readers of this store, as a report is
+     * usually generated by several threads that each use a reader of their own.
+     */
+    private Index getIndex() {
+        synchronized (indexLock) {
+            if (sharedIndex == null) {
+                sharedIndex = readIndex();
+            }
+            return sharedIndex;
+        }
+    }
+
+    private Index readIndex() {
+        Input input;
+        try {
+            input = new Input(new FileInputStream(getIndexFile()));
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            int numClasses = input.readInt(true);
+            IndexBuilder rootBuilder = new IndexBuilder();
+
+            for (int classCounter = 0; classCounter < numClasses; ++classCounter) {
+                long classId = input.readLong(true);
+                IndexBuilder classBuilder = new IndexBuilder();
+
+                int numEntries = input.readInt(true);
+                for (int entryCounter = 0; entryCounter < numEntries; ++entryCounter) {
+                    long testId = input.readLong(true);
+                    Region stdOut = new Region(input.readLong(), input.readLong());
+                    Region stdErr = new Region(input.readLong(), input.readLong());
+                    classBuilder.add(testId, new Index(stdOut, stdErr));
+                }
+
+                rootBuilder.add(classId, classBuilder.build());
+            }
+            return rootBuilder.build();
+        } finally {
+            input.close();
+        }
+    }
+
     public class Reader implements Closeable {
         private final Index index;
         private final RandomAccessFile dataFile;
+        private final byte[] byteBuffer = new byte[BUFFER_SIZE];
+        private final CharBuffer charBuffer = CharBuffer.allocate(BUFFER_SIZE);
+        private final CharsetDecoder charsetDecoder = messageStorageCharset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
 
         public Reader() {
             File indexFile = getIndexFile();
@@ -230,37 +290,7 @@ public class TestOutputStore {
                     throw new IllegalStateException(String.format("Test outputs data file '%s' exists but the index file '%s' does not", outputsFile, indexFile));
                 }
 
-                Input input;
-                try {
-                    input = new Input(new FileInputStream(indexFile));
-                } catch (FileNotFoundException e) {
-                    throw new UncheckedIOException(e);
-                }
-
-                IndexBuilder rootBuilder = null;
-                try {
-                    int numClasses = input.readInt(true);
-                    rootBuilder = new IndexBuilder();
-
-                    for (int classCounter = 0; classCounter < numClasses; ++classCounter) {
-                        long classId = input.readLong(true);
-                        IndexBuilder classBuilder = new IndexBuilder();
-
-                        int numEntries = input.readInt(true);
-                        for (int entryCounter = 0; entryCounter < numEntries; ++entryCounter) {
-                            long testId = input.readLong(true);
-                            Region stdOut = new Region(input.readLong(), input.readLong());
-                            Region stdErr = new Region(input.readLong(), input.readLong());
-                            classBuilder.add(testId, new Index(stdOut, stdErr));
-                        }
-
-                        rootBuilder.add(classId, classBuilder.build());
-                    }
-                } finally {
-                    input.close();
-                }
-
-                index = rootBuilder.build();
+                index = getIndex();
 
                 try {
                     dataFile = new RandomAccessFile(getOutputsFile(), "r");
@@ -362,17 +392,7 @@ public class TestOutputStore {
                     }
 
                     if (testId == 0 || testId == readTestId) {
-                        byte[] stringBytes = new byte[readLength];
-                        decoder.readBytes(stringBytes);
-                        String message;
-                        try {
-                            message = new String(stringBytes, messageStorageCharset.name());
-                        } catch (UnsupportedEncodingException e) {
-                            // shouldn't happen
-                            throw UncheckedException.throwAsUncheckedException(e);
-                        }
-
-                        writer.write(message);
+                        writeMessage(decoder, readLength, writer);
                     } else {
                         decoder.skipBytes(readLength);
                     }
@@ -381,6 +401,37 @@ public class TestOutputStore {
                 throw new UncheckedIOException(e1);
             }
         }
+
+        /**
+         * Decodes a message in chunks straight to the given writer, so that a large message is never held in memory.
+         */
+        private void writeMessage(KryoBackedDecoder decoder, int length, java.io.Writer writer) throws IOException {
+            charsetDecoder.reset();
+            ByteBuffer bytes = ByteBuffer.wrap(byteBuffer, 0, 0);
+            int remaining = length;
+            boolean endOfInput;
+            do {
+                // Keeps the bytes of a character that is split over two chunks
+                bytes.compact();
+                int count = Math.min(remaining, bytes.remaining());
+                decoder.readBytes(byteBuffer, bytes.position(), count);
+                bytes.position(bytes.position() + count);
+                bytes.flip();
+                remaining -= count;
+                endOfInput = remaining == 0;
+                // UTF-8 never decodes to more chars than bytes, so the chars of a chunk always fit into the char buffer
+                charsetDecoder.decode(bytes, charBuffer, endOfInput);
+                writeChars(writer);
+            } while (!endOfInput);
+            charsetDecoder.flush(charBuffer);
+            writeChars(writer);
+        }
+
+        private void writeChars(java.io.Writer writer) throws IOException {
+            charBuffer.flip();
+            writer.write(charBuffer.array(), 0, charBuffer.limit());
+            charBuffer.clear();
+        }
     }
 
     // IMPORTANT: return must be closed when done with.
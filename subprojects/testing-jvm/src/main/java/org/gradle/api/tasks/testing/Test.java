@@ -16,6 +16,8 @@
 
 package org.gradle.api.tasks.testing;
 
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
 import groovy.lang.Closure;
 import org.gradle.StartParameter;
 import org.gradle.api.Action;
@@ -29,13 +31,20 @@ import org.gradle.api.internal.ClosureBackedAction;
 import org.gradle.api.internal.ConventionTask;
 import org.gradle.api.internal.classpath.ModuleRegistry;
 import org.gradle.api.internal.file.FileResolver;
+import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
+import org.gradle.api.internal.hash.FileHasher;
 import org.gradle.api.internal.initialization.loadercache.ClassLoaderCache;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.CachingClassDependenciesAnalyzer;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.DefaultClassDependenciesAnalyzer;
+import org.gradle.api.internal.tasks.compile.incremental.cache.GeneralCompileCaches;
 import org.gradle.api.internal.tasks.options.Option;
 import org.gradle.api.internal.tasks.testing.DefaultTestTaskReports;
 import org.gradle.api.internal.tasks.testing.NoMatchingTestsReporter;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.detection.DefaultTestExecuter;
+import org.gradle.api.internal.tasks.testing.detection.TestClassAvoidance;
 import org.gradle.api.internal.tasks.testing.detection.TestExecuter;
 import org.gradle.api.internal.tasks.testing.filter.DefaultTestFilter;
 import org.gradle.api.internal.tasks.testing.junit.JUnitTestFramework;
@@ -59,6 +68,7 @@ import org.gradle.api.internal.tasks.testing.results.StateTrackingTestResultProc
 import org.gradle.api.internal.tasks.testing.results.TestListenerAdapter;
 import org.gradle.api.internal.tasks.testing.results.TestListenerInternal;
 import org.gradle.api.internal.tasks.testing.testng.TestNGTestFramework;
+import org.gradle.api.internal.tasks.testing.worker.TestWorkerPool;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.api.reporting.DirectoryReport;
 import org.gradle.api.reporting.Reporting;
@@ -78,6 +88,7 @@ import org.gradle.api.tasks.testing.logging.TestLogging;
 import org.gradle.api.tasks.testing.logging.TestLoggingContainer;
 import org.gradle.api.tasks.util.PatternFilterable;
 import org.gradle.internal.Actions;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.actor.ActorFactory;
 import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.event.ListenerBroadcast;
@@ -98,14 +109,19 @@ import org.gradle.process.internal.DefaultJavaForkOptions;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 import org.gradle.util.CollectionUtils;
 import org.gradle.util.ConfigureUtil;
+import org.gradle.util.GradleVersion;
 import org.gradle.util.SingleMessageLogger;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import static org.gradle.util.ConfigureUtil.configureUsing;
 
@@ -173,6 +189,7 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
     private FileCollection classpath;
     private TestFramework testFramework;
     private boolean scanForTestClasses = true;
+    private boolean skipUnchangedTestClasses;
     private long forkEvery;
     private int maxParallelForks = 1;
     private TestReporter testReporter;
@@ -614,6 +631,70 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         return this;
     }
 
+    /**
+     * Reads the duration of each test class from the results of the previous run, which are used to spread the test classes evenly over the forks.
+     */
+    private Map<String, Long> readTestClassDurations(File binaryResultsDir) {
+        final Map<String, Long> durations = new HashMap<String, Long>();
+        try {
+            new TestResultSerializer(binaryResultsDir).read(new Action<TestClassResult>() {
+                @Override
+                public void execute(TestClassResult result) {
+                    durations.put(result.getClassName(), result.getDuration());
+                }
+            });
+        } catch (Exception e) {
+            getLogger().info("Could not read the test results of the previous run from {}.", binaryResultsDir, e);
+            return Collections.emptyMap();
+        }
+        return durations;
+    }
+
+    private TestClassAvoidance prepareTestClassAvoidance(File binaryResultsDir) {
+        ClassDependenciesAnalyzer analyzer = new CachingClassDependenciesAnalyzer(new DefaultClassDependenciesAnalyzer(), getServices().get(GeneralCompileCaches.class).getClassAnalysisCache());
+        return TestClassAvoidance.prepare(binaryResultsDir, getTemporaryDir(), getTestClassAvoidanceContext(), getClasspath(),
+            getServices().get(DirectoryFileTreeFactory.class), getServices().get(FileHasher.class), analyzer, getBuildOperationExecutor());
+    }
+
+    /**
+     * Describes what the results of a test class depend on, apart from the test runtime classpath. The results of the previous run are not replayed once this has changed.
+     */
+    private String getTestClassAvoidanceContext() {
+        StringBuilder context = new StringBuilder();
+        context.append(GradleVersion.current().getVersion()).append('\n');
+        context.append(getJavaVersion()).append('\n');
+        context.append(getAllJvmArgs()).append('\n');
+        // Hashed, as the environment can hold secrets that should not end up in the binary results directory
+        Map<String, String> environment = new TreeMap<String, String>();
+        for (Map.Entry<String, Object> entry : getEnvironment().entrySet()) {
+            environment.put(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        context.append(Hashing.md5().hashString(environment.toString(), Charsets.UTF_8)).append('\n');
+        context.append(getFilter().getIncludePatterns()).append('\n');
+        TestFramework testFramework = getTestFramework();
+        context.append(testFramework.getClass().getName()).append('\n');
+        // The options are described by their fields, as their properties are not tracked as inputs of this task
+        Object options = testFramework.getOptions();
+        for (Class<?> type = options.getClass(); type != Object.class; type = type.getSuperclass()) {
+            if (type.isSynthetic()) {
+                // Generated subclass
+                continue;
+            }
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                try {
+                    context.append(field.getName()).append('=').append(field.get(options)).append('\n');
+                } catch (IllegalAccessException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
+        return context.toString();
+    }
+
     @TaskAction
     public void executeTests() {
         LogLevel currentLevel = determineCurrentLogLevel();
@@ -622,11 +703,14 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         TestEventLogger eventLogger = new TestEventLogger(getTextOutputFactory(), currentLevel, levelLogging, exceptionFormatter);
         addTestListener(eventLogger);
         addTestOutputListener(eventLogger);
-        if (getFilter().isFailOnNoMatchingTests() && !getFilter().getIncludePatterns().isEmpty()) {
+        boolean failOnNoMatchingTests = getFilter().isFailOnNoMatchingTests() && !getFilter().getIncludePatterns().isEmpty();
+        if (failOnNoMatchingTests && !skipUnchangedTestClasses) {
             addTestListener(new NoMatchingTestsReporter("No tests found for given includes: " + getFilter().getIncludePatterns()));
         }
 
         File binaryResultsDir = getBinResultsDir();
+        Map<String, Long> previousTestClassDurations = getMaxParallelForks() > 1 ? readTestClassDurations(binaryResultsDir) : Collections.<String, Long>emptyMap();
+        TestClassAvoidance testClassAvoidance = skipUnchangedTestClasses ? prepareTestClassAvoidance(binaryResultsDir) : null;
         getProject().delete(binaryResultsDir);
         getProject().mkdir(binaryResultsDir);
 
@@ -650,7 +734,8 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
             testExecuter = new DefaultTestExecuter(getProcessBuilderFactory(), getActorFactory(), getModuleRegistry(),
                 getServices().get(WorkerLeaseRegistry.class),
                 getServices().get(BuildOperationExecutor.class),
-                getServices().get(StartParameter.class).getMaxWorkerCount());
+                getServices().get(StartParameter.class).getMaxWorkerCount(), previousTestClassDurations,
+                getServices().get(TestWorkerPool.class), testClassAvoidance);
         }
 
         JavaVersion javaVersion = getJavaVersion();
@@ -660,6 +745,14 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
 
         try {
             testExecuter.execute(this, resultProcessor);
+            if (testClassAvoidance != null) {
+                int skippedTestClasses = testClassAvoidance.replaySkippedTestClasses(results, outputWriter);
+                getLogger().info("Skipped {} test classes that are not affected by the changes since the previous run.", skippedTestClasses);
+                // The matching tests may all have been skipped
+                if (failOnNoMatchingTests && results.isEmpty()) {
+                    throw new TestExecutionException("No tests found for given includes: " + getFilter().getIncludePatterns());
+                }
+            }
         } finally {
             testExecuter = null;
             testListenerBroadcaster.removeAll();
@@ -669,6 +762,9 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         }
 
         new TestResultSerializer(binaryResultsDir).write(results.values());
+        if (testClassAvoidance != null) {
+            testClassAvoidance.store(binaryResultsDir);
+        }
 
         TestResultsProvider testResultsProvider = new InMemoryTestResultsProvider(results.values(), testOutputStore);
 
@@ -1167,6 +1263,35 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         this.scanForTestClasses = scanForTestClasses;
     }
 
+    /**
+     * Specifies whether test classes that are not affected by the changes since the previous run of this task are skipped. When {@code true}, the test classes
+     * that passed in the previous run are only executed again when their class file, or a class file in a directory of the test runtime classpath they depend on,
+     * has changed. Any other change to the test runtime classpath, such as a change to a jar, causes all test classes to be executed, as does a change to the
+     * JVM arguments, the environment variables or the test framework options. The results of the skipped test classes from the previous run are included in
+     * the results and reports of this task. Defaults to {@code false}.
+     *
+     * <p>Only the dependencies between classes that are visible in their class files are tracked. A test class that uses another class only through reflection,
+     * dependency injection or a {@link java.util.ServiceLoader} is not executed again when only that class has changed. Resources are only tracked as part of the test
+     * runtime classpath, so a test class that reads files from elsewhere is not executed again when only those files have changed.</p>
+     *
+     * @since 4.1
+     */
+    @Incubating
+    @Input
+    public boolean isSkipUnchangedTestClasses() {
+        return skipUnchangedTestClasses;
+    }
+
+    /**
+     * Specifies whether test classes that are not affected by the changes since the previous run of this task are skipped.
+     *
+     * @since 4.1
+     */
+    @Incubating
+    public void setSkipUnchangedTestClasses(boolean skipUnchangedTestClasses) {
+        this.skipUnchangedTestClasses = skipUnchangedTestClasses;
+    }
+
     /**
      * Returns the maximum number of test classes to execute in a forked test process. The forked test process will be restarted when this limit is reached. The default value is 0 (no maximum).
      *
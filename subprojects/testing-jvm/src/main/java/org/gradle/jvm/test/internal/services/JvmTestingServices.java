@@ -16,6 +16,9 @@
 
 package org.gradle.jvm.test.internal.services;
 
+import org.gradle.StartParameter;
+import org.gradle.api.internal.tasks.testing.worker.TestWorkerPool;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.service.scopes.PluginServiceRegistry;
 import org.gradle.jvm.test.internal.JUnitTestSuiteBinaryRenderer;
@@ -33,7 +36,7 @@ public class JvmTestingServices implements PluginServiceRegistry {
 
     @Override
     public void registerBuildServices(ServiceRegistration registration) {
-
+        registration.addProvider(new BuildScopeServices());
     }
 
     @Override
@@ -45,4 +48,10 @@ public class JvmTestingServices implements PluginServiceRegistry {
     public void registerProjectServices(ServiceRegistration registration) {
 
     }
+
+    private static class BuildScopeServices {
+        TestWorkerPool createTestWorkerPool(ExecutorFactory executorFactory, StartParameter startParameter) {
+            return new TestWorkerPool(executorFactory, startParameter.getMaxWorkerCount());
+        }
+    }
 }
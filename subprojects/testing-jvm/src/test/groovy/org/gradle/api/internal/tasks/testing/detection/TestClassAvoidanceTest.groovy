@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection
+
+import org.gradle.api.file.FileTreeElement
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.internal.hash.DefaultFileHasher
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult
+import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult
+import org.gradle.api.internal.tasks.testing.junit.result.TestOutputStore
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultSerializer
+import org.gradle.api.tasks.testing.TestOutputEvent
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.api.tasks.testing.TestResult.ResultType.FAILURE
+import static org.gradle.api.tasks.testing.TestResult.ResultType.SUCCESS
+
+class TestClassAvoidanceTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def classesDir = tmpDir.createDir("classes")
+    def jar = tmpDir.file("lib.jar").createFile()
+    def binaryResultsDir = tmpDir.createDir("results")
+    Map<String, List<String>> dependencies = [ATest: ["A"], BTest: ["B"], B: ["C"]]
+    def analyzer = Stub(ClassDependenciesAnalyzer) {
+        getClassAnalysis(_, _) >> { hash, FileTreeElement classFile ->
+            def className = classFile.name - ".class"
+            new ClassAnalysis(className, (dependencies[className] ?: []) as Set, false, [] as Set, [] as Set, [] as Set)
+        }
+    }
+
+    def setup() {
+        ["A", "B", "C", "ATest", "BTest"].each { classesDir.file("${it}.class").text = "1" }
+    }
+
+    def "runs all test classes when there are no results of a previous run"() {
+        when:
+        def testClassAvoidance = prepare()
+
+        then:
+        testClassAvoidance.shouldRun("ATest")
+        testClassAvoidance.shouldRun("BTest")
+    }
+
+    def "runs only the test classes that depend on a changed class and replays the results of the others"() {
+        run(["ATest", "BTest"])
+
+        when:
+        classesDir.file("C.class").text = "2"
+        def testClassAvoidance = prepare()
+
+        then:
+        !testClassAvoidance.shouldRun("ATest")
+        testClassAvoidance.shouldRun("BTest")
+
+        when:
+        def results = [BTest: new TestClassResult(1, "BTest", 100).add(new TestMethodResult(2, "test", SUCCESS, 10, 110))]
+        def outputStore = new TestOutputStore(binaryResultsDir)
+        def writer = outputStore.writer()
+        def replayed = testClassAvoidance.replaySkippedTestClasses(results, writer)
+        writer.close()
+
+        then:
+        replayed == 1
+        def result = results.ATest
+        result.id == 3
+        result.startTime == 100
+        result.results*.name == ["test"]
+        result.results*.id == [4]
+        output(outputStore, result) == "ATest output"
+    }
+
+    def "runs test classes that have changed or that are new"() {
+        run(["ATest"])
+
+        when:
+        classesDir.file("ATest.class").text = "2"
+        def testClassAvoidance = prepare()
+
+        then:
+        testClassAvoidance.shouldRun("ATest")
+        testClassAvoidance.shouldRun("BTest")
+    }
+
+    def "runs test classes that failed in the previous run"() {
+        run(["ATest", "BTest"], ["BTest"])
+
+        when:
+        def testClassAvoidance = prepare()
+
+        then:
+        !testClassAvoidance.shouldRun("ATest")
+        testClassAvoidance.shouldRun("BTest")
+    }
+
+    def "runs all test classes when a jar or the context has changed"() {
+        run(["ATest", "BTest"])
+
+        when:
+        jar << "changed"
+
+        then:
+        prepare().shouldRun("ATest")
+
+        when:
+        run(["ATest", "BTest"])
+
+        then:
+        !prepare().shouldRun("ATest")
+        prepare("other").shouldRun("ATest")
+    }
+
+    private TestClassAvoidance prepare(String context = "context") {
+        return TestClassAvoidance.prepare(binaryResultsDir, tmpDir.createDir("tmp"), context, [classesDir, jar],
+            TestFiles.directoryFileTreeFactory(), new DefaultFileHasher(), analyzer, Stub(BuildOperationExecutor))
+    }
+
+    private void run(List<String> testClasses, List<String> failedTestClasses = []) {
+        def testClassAvoidance = prepare()
+        binaryResultsDir.deleteDir().createDir()
+        def writer = new TestOutputStore(binaryResultsDir).writer()
+        def results = []
+        testClasses.eachWithIndex { String testClass, int i ->
+            testClassAvoidance.shouldRun(testClass)
+            def methodResult = new TestMethodResult(2 * i + 2, "test", failedTestClasses.contains(testClass) ? FAILURE : SUCCESS, 10, 110)
+            if (failedTestClasses.contains(testClass)) {
+                methodResult.addFailure("broken", "stack trace", "java.lang.AssertionError")
+            }
+            results << new TestClassResult(2 * i + 1, testClass, 100).add(methodResult)
+            writer.onOutput(2 * i + 1, 2 * i + 2, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "${testClass} output"))
+        }
+        writer.close()
+        new TestResultSerializer(binaryResultsDir).write(results)
+        testClassAvoidance.store(binaryResultsDir)
+    }
+
+    private static String output(TestOutputStore outputStore, TestClassResult result) {
+        def reader = outputStore.reader()
+        try {
+            def output = new StringWriter()
+            reader.writeTestOutput(result.id, result.results[0].id, TestOutputEvent.Destination.StdOut, output)
+            return output.toString()
+        } finally {
+            reader.close()
+        }
+    }
+}
@@ -89,6 +89,39 @@ class Binary2JUnitXmlReportGeneratorSpec extends Specification {
         numThreads << [ 1, 4 ]
     }
 
+    def "does not write results again for class whose results have not changed"() {
+        generator = generatorWithMaxThreads(1)
+
+        def fooTest = new TestClassResult(1, 'FooTest', 100)
+            .add(new TestMethodResult(1, "foo"))
+        def barTest = new TestClassResult(2, 'BarTest', 100)
+            .add(new TestMethodResult(2, "bar"))
+        def changedBarTest = new TestClassResult(2, 'BarTest', 200)
+            .add(new TestMethodResult(2, "bar"))
+
+        when:
+        generator.generate()
+
+        then:
+        1 * resultsProvider.visitClasses(_) >> { Action action ->
+            action.execute(fooTest)
+            action.execute(barTest)
+        }
+        1 * generator.xmlWriter.write(fooTest, _)
+        1 * generator.xmlWriter.write(barTest, _)
+
+        when:
+        generator.generate()
+
+        then:
+        1 * resultsProvider.visitClasses(_) >> { Action action ->
+            action.execute(fooTest)
+            action.execute(changedBarTest)
+        }
+        1 * generator.xmlWriter.write(changedBarTest, _)
+        0 * generator.xmlWriter._
+    }
+
     def "adds context information to the failure if something goes wrong"() {
         generator = generatorWithMaxThreads(1)
 
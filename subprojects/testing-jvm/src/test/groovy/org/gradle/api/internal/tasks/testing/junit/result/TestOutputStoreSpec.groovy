@@ -145,6 +145,26 @@ class TestOutputStoreSpec extends WorkspaceTest {
         reader.close()
     }
 
+    def "writes message that is larger than the read buffer"() {
+        def message = "a\u00e9\u4e2d\ud83d\ude00" * 5000
+
+        when:
+        def writer = output.writer()
+        writer.onOutput(1, 1, output(StdOut, message))
+        writer.onOutput(1, 1, output(StdOut, "[out]"))
+        writer.close()
+        def reader1 = output.reader()
+        def reader2 = output.reader()
+
+        then:
+        collectAllOutput(reader1, 1, StdOut) == message + "[out]"
+        collectOutput(reader2, 1, 1, StdOut) == message + "[out]"
+
+        cleanup:
+        reader1.close()
+        reader2.close()
+    }
+
     def "can open empty reader"() {
         // neither file
         expect: